@@ -0,0 +1,127 @@
+package src.controller;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import src.model.db.DatabaseConnection;
+
+/**
+ * Confronta throughput e latenza degli executor su lavoro bloccante simile alle
+ * scritture dei manager: pool fisso di 4 thread (l'attuale {@code DB_IO}), pool fisso
+ * grande quanto il pool di connessioni ed executor virtuale con lo stesso limite.
+ * Ogni task attende per la latenza indicata; una parte dei task è dieci volte più lenta,
+ * per simulare un round trip lento verso il database.
+ * La latenza misurata va dalla sottomissione alla fine del task, attesa in coda compresa.
+ *
+ * Uso: {@code BenchmarkEsecutori [task] [latenzaMs] [percentualeLenti] [db]};
+ * con {@code db} l'attesa è eseguita dal server con {@code SELECT SLEEP(?)}.
+ *
+ */
+public class BenchmarkEsecutori {
+
+    private static final int RIPETIZIONI = 3;
+
+    private final int numeroTask;
+    private final long latenzaMillis;
+    private final int percentualeLenti;
+    private final boolean usaDatabase;
+
+    private BenchmarkEsecutori(int numeroTask, long latenzaMillis, int percentualeLenti, boolean usaDatabase) {
+        this.numeroTask = numeroTask;
+        this.latenzaMillis = latenzaMillis;
+        this.percentualeLenti = percentualeLenti;
+        this.usaDatabase = usaDatabase;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int numeroTask = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long latenzaMillis = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        int percentualeLenti = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        boolean usaDatabase = args.length > 3 && args[3].equalsIgnoreCase("db");
+        int connessioni = DatabaseConnection.MAX_CONNESSIONI;
+
+        BenchmarkEsecutori benchmark = new BenchmarkEsecutori(numeroTask, latenzaMillis, percentualeLenti, usaDatabase);
+        System.out.println("Task: " + numeroTask + ", latenza: " + latenzaMillis + " ms, lenti: " + percentualeLenti
+                + "%, attesa " + (usaDatabase ? "sul database" : "simulata"));
+        try {
+            for (int i = 1; i <= RIPETIZIONI; i++) {
+                System.out.println("Ripetizione " + i + "/" + RIPETIZIONI);
+                benchmark.misura(new EsecutoreLimitato("fisso-4", 4, numeroTask));
+                benchmark.misura(new EsecutoreLimitato("fisso-" + connessioni, connessioni, numeroTask));
+                benchmark.misura(new EsecutoreVirtuale("virtuale-" + connessioni, connessioni));
+            }
+        } finally {
+            if (usaDatabase) DatabaseConnection.chiudiPool();
+        }
+    }
+
+    private void misura(ExecutorService esecutore) throws InterruptedException {
+        long[] latenze = new long[numeroTask];
+        CountDownLatch completati = new CountDownLatch(numeroTask);
+        int ogniQuantiLento = percentualeLenti > 0 ? Math.max(1, 100 / percentualeLenti) : 0;
+
+        long inizio = System.nanoTime();
+        for (int i = 0; i < numeroTask; i++) {
+            final int indice = i;
+            final long attesa = ogniQuantiLento > 0 && i % ogniQuantiLento == 0 ? latenzaMillis * 10 : latenzaMillis;
+            final long sottomesso = System.nanoTime();
+            esecutore.execute(() -> {
+                try {
+                    attendi(attesa);
+                } finally {
+                    latenze[indice] = System.nanoTime() - sottomesso;
+                    completati.countDown();
+                }
+            });
+        }
+        completati.await();
+        long durata = System.nanoTime() - inizio;
+        StatisticheEsecutore statistiche = ((EsecutoreMisurato) esecutore).getStatistiche();
+        esecutore.shutdown();
+        esecutore.awaitTermination(10, TimeUnit.SECONDS);
+
+        Arrays.sort(latenze);
+        double secondi = durata / 1e9;
+        System.out.printf("  %-14s %8.1f task/s  media %7.1f ms  p50 %7.1f ms  p95 %7.1f ms  p99 %7.1f ms  rifiuti %d%n",
+                statistiche.getNome(), numeroTask / secondi, media(latenze) / 1e6,
+                percentile(latenze, 50) / 1e6, percentile(latenze, 95) / 1e6, percentile(latenze, 99) / 1e6,
+                statistiche.getRifiuti());
+    }
+
+    private void attendi(long millis) {
+        if (!usaDatabase) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        try (Connection conn = DatabaseConnection.connect()) {
+            if (conn == null) return;
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT SLEEP(?)")) {
+                pstmt.setDouble(1, millis / 1000.0);
+                pstmt.executeQuery().close();
+            }
+        } catch (SQLException e) {
+            System.err.println("Errore durante l'attesa sul database: " + e.getMessage());
+        }
+    }
+
+    private static double media(long[] valori) {
+        long somma = 0;
+        for (long valore : valori) somma += valore;
+        return valori.length > 0 ? (double) somma / valori.length : 0;
+    }
+
+    private static long percentile(long[] ordinati, int percentile) {
+        if (ordinati.length == 0) return 0;
+        int indice = (int) Math.ceil(percentile / 100.0 * ordinati.length) - 1;
+        return ordinati[Math.max(0, Math.min(indice, ordinati.length - 1))];
+    }
+}
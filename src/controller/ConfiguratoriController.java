@@ -4,7 +4,11 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import lib.InputDati;
 import src.model.AggiuntaUtilita;
@@ -12,6 +16,7 @@ import src.model.ModificaUtilita;
 import src.model.TipiVisitaClass;
 import src.model.Visita;
 import src.model.Volontario;
+import src.model.db.EsitoScrittura;
 import src.model.db.LuoghiManager;
 import src.model.db.PrenotazioneManager;
 import src.model.db.VisiteManagerDB;
@@ -30,6 +35,9 @@ import src.view.ConsoleIO;
  *  
  */
 public class ConfiguratoriController {
+
+    /** Attesa massima delle scritture di cui il menu mostra l'esito */
+    private static final long TIMEOUT_SCRITTURA_SECONDI = 15;
     /** Utility per l'aggiunta di nuovi elementi */
     private final AggiuntaUtilita addUtilita;
     
@@ -113,7 +121,7 @@ public class ConfiguratoriController {
          
         Volontario nuovoVolontario = consoleIO.chiediDatiNuovoVolontario();
         if (nuovoVolontario != null && InputDati.yesOrNo("Vuoi confermare e aggiungere il volontario?")) {
-            addUtilita.aggiungiVolontario(nuovoVolontario);
+            attendi(addUtilita.aggiungiVolontario(nuovoVolontario));
         } else {
             consoleIO.mostraMessaggio("Operazione annullata.");
         }
@@ -136,7 +144,7 @@ public class ConfiguratoriController {
          
         Luogo nuovoLuogo = consoleIO.chiediDatiNuovoLuogo(ambitoTerritoriale);
         if (nuovoLuogo != null && InputDati.yesOrNo("Vuoi confermare e aggiungere il luogo?")) {
-            addUtilita.aggiungiLuogo(nuovoLuogo);
+            attendi(addUtilita.aggiungiLuogo(nuovoLuogo));
         } else {
             consoleIO.mostraMessaggio("Operazione annullata.");
         }
@@ -242,7 +250,7 @@ public class ConfiguratoriController {
 
 
         if (nuovaVisita != null && InputDati.yesOrNo("Vuoi confermare e aggiungere la visita?")) {
-            addUtilita.aggiungiVisita(nuovaVisita);
+            attendi(addUtilita.aggiungiVisita(nuovaVisita));
         } else {
             consoleIO.mostraMessaggio("Operazione annullata.");
         }
@@ -404,8 +412,10 @@ public class ConfiguratoriController {
         List<Volontario> volontariDisponibili = new ArrayList<>(volontariMap.values());
         List<Volontario> volontariSelezionati = consoleIO.chiediVolontariMultipli(volontariDisponibili);
 
-        addUtilita.assegnaTipoVisitaAVolontari(volontariSelezionati, tipoVisitaScelto);
-        consoleIO.mostraMessaggio("Tipo di visita " + tipoVisitaScelto + " assegnato a " + volontariSelezionati.size() + " volontari.");
+        EsitoScrittura esito = attendi(addUtilita.assegnaTipoVisitaAVolontari(volontariSelezionati, tipoVisitaScelto));
+        if (esito != null) {
+            consoleIO.mostraMessaggio("Tipo di visita " + tipoVisitaScelto + " assegnato a " + esito.getRigheModificate() + " volontari.");
+        }
     }
 
     public void rimuoviTipoVisitaDaVolontari() {
@@ -421,7 +431,7 @@ public class ConfiguratoriController {
         TipiVisitaClass tipoVisitaScelto = consoleIO.chiediTipoVisita(tipiVisitaList);
 
         List<Volontario> volontariConTipoVisita = volontariMap.values().stream()
-            .filter(v -> v.getTipiDiVisite().contains(tipoVisitaScelto))
+            .filter(v -> v.contieneTipoVisita(tipoVisitaScelto))
             .toList();
 
         if (volontariConTipoVisita.isEmpty()) {
@@ -430,8 +440,10 @@ public class ConfiguratoriController {
         }
         List<Volontario> volontariSelezionati = consoleIO.chiediVolontariMultipli(volontariConTipoVisita);
 
-        modificaUtilita.rimuoviTipoVisitaDaVolontari(volontariSelezionati, tipoVisitaScelto, volontariManager);
-        consoleIO.mostraMessaggio("Tipo di visita " + tipoVisitaScelto + " rimosso da " + volontariSelezionati.size() + " volontari.");
+        EsitoScrittura esito = attendi(modificaUtilita.rimuoviTipoVisitaDaVolontari(volontariSelezionati, tipoVisitaScelto, volontariManager));
+        if (esito != null) {
+            consoleIO.mostraMessaggio("Tipo di visita " + tipoVisitaScelto + " rimosso da " + esito.getRigheModificate() + " volontari.");
+        }
     }
 
     public void visualizzaVolontariPerTipoVisita(){
@@ -448,7 +460,7 @@ public class ConfiguratoriController {
         int scelta = consoleIO.chiediSelezioneVisita(visite);
         Visita visitaDaEliminare = visite.get(scelta);
         if (consoleIO.chiediConfermaEliminazioneVisita(visitaDaEliminare)) {
-            modificaUtilita.eliminaVisita(visitaDaEliminare, visiteController);
+            attendi(modificaUtilita.eliminaVisita(visitaDaEliminare, visiteController));
         } else {
             consoleIO.mostraMessaggio("Operazione annullata.");
         }
@@ -540,10 +552,31 @@ public class ConfiguratoriController {
         }
         TipiVisitaClass tipoDaRimuovere = consoleIO.chiediTipoVisita(tipiVisitaList);
         if (consoleIO.chiediConfermaRimozioneTipoVisita(tipoDaRimuovere)) {
-            modificaUtilita.rimuoviTipoDiVisita(tipoDaRimuovere);
-            consoleIO.mostraMessaggio("Tipo di visita rimosso con successo.");
+            EsitoScrittura esito = attendi(modificaUtilita.rimuoviTipoDiVisita(tipoDaRimuovere));
+            if (esito != null) {
+                consoleIO.mostraMessaggio("Tipo di visita rimosso con successo. Visite cancellate: " + esito.getRigheModificate() + ".");
+            }
         } else {
             consoleIO.mostraMessaggio("Operazione annullata.");
         }
     }
+
+    /**
+     * Attende l'esito di una scrittura asincrona per mostrarlo all'utente.
+     * 
+     * @param scrittura il future della scrittura
+     * @return l'esito, o null se la scrittura è fallita o non è terminata entro il timeout
+     */
+    private EsitoScrittura attendi(CompletableFuture<EsitoScrittura> scrittura) {
+        try {
+            return scrittura.get(TIMEOUT_SCRITTURA_SECONDI, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            consoleIO.mostraMessaggio("L'operazione è ancora in corso e verrà completata in background.");
+        } catch (ExecutionException e) {
+            consoleIO.mostraMessaggio("Operazione non riuscita: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
 }
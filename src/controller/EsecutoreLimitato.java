@@ -0,0 +1,80 @@
+package src.controller;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor con nome, numero massimo di thread e coda di capacità limitata.
+ * I thread inattivi terminano dopo {@link #KEEP_ALIVE_SECONDI}, quindi un pool
+ * poco usato non tiene thread aperti.
+ * Quando la coda è piena il task viene eseguito dal thread che lo ha sottomesso,
+ * rallentando il produttore invece di perdere il lavoro. Dopo l'arresto la sottomissione
+ * lancia {@link RejectedExecutionException}. Entrambi i casi vengono contati come rifiuti
+ * nelle statistiche.
+ *
+ */
+public final class EsecutoreLimitato extends ThreadPoolExecutor implements EsecutoreMisurato {
+
+    /** Tempo dopo cui un thread inattivo termina */
+    static final long KEEP_ALIVE_SECONDI = 60;
+
+    private final String nome;
+    private final int capacitaCoda;
+    private final AtomicLong rifiuti = new AtomicLong();
+
+    /**
+     * Costruttore dell'executor.
+     *
+     * @param nome il nome del pool, usato come prefisso dei thread
+     * @param numeroThread il numero massimo di thread
+     * @param capacitaCoda il numero massimo di task in attesa
+     */
+    public EsecutoreLimitato(String nome, int numeroThread, int capacitaCoda) {
+        super(numeroThread, numeroThread, KEEP_ALIVE_SECONDI, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(capacitaCoda), creaFactory(nome), new GestoreRifiuti());
+        this.nome = nome;
+        this.capacitaCoda = capacitaCoda;
+        allowCoreThreadTimeOut(true);
+    }
+
+    private static ThreadFactory creaFactory(String nome) {
+        AtomicInteger contatore = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r);
+            t.setName(nome + "-" + contatore.incrementAndGet());
+            return t;
+        };
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    @Override
+    public StatisticheEsecutore getStatistiche() {
+        return new StatisticheEsecutore(nome, getMaximumPoolSize(), getPoolSize(), getActiveCount(),
+                getQueue().size(), capacitaCoda, getCompletedTaskCount(), rifiuti.get());
+    }
+
+    /**
+     * Conta i rifiuti ed esegue il task nel thread chiamante se la coda è piena;
+     * se l'executor è stato arrestato rifiuta il task.
+     */
+    private static final class GestoreRifiuti implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            EsecutoreLimitato esecutore = (EsecutoreLimitato) executor;
+            esecutore.rifiuti.incrementAndGet();
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Il pool " + esecutore.nome + " è stato arrestato");
+            }
+            r.run();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package src.controller;
+
+/**
+ * Executor gestito dal {@link ThreadPoolController} che espone le proprie statistiche.
+ *
+ */
+public interface EsecutoreMisurato {
+
+    /**
+     * Restituisce un'istantanea delle statistiche dell'executor.
+     *
+     * @return le statistiche correnti
+     */
+    StatisticheEsecutore getStatistiche();
+}
@@ -0,0 +1,127 @@
+package src.controller;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor che esegue ogni task su un nuovo virtual thread.
+ * Un semaforo limita i task in esecuzione contemporanea, di norma al numero
+ * di connessioni del pool del database: i task in eccesso attendono sul semaforo
+ * senza occupare thread di piattaforma, quindi un round trip lento verso il
+ * database non blocca quelli successivi finché restano connessioni libere.
+ * Dopo l'arresto la sottomissione lancia {@link RejectedExecutionException}
+ * e il task viene contato come rifiuto.
+ *
+ */
+public class EsecutoreVirtuale extends AbstractExecutorService implements EsecutoreMisurato {
+
+    private final String nome;
+    private final int maxConcorrenti;
+    private final Semaphore permessi;
+    private final ExecutorService delegato;
+
+    private final AtomicInteger inEsecuzione = new AtomicInteger();
+    private final AtomicInteger inAttesa = new AtomicInteger();
+    private final AtomicLong completati = new AtomicLong();
+    private final AtomicLong rifiuti = new AtomicLong();
+
+    /**
+     * Costruttore dell'executor.
+     *
+     * @param nome il nome del pool, usato come prefisso dei thread
+     * @param maxConcorrenti il numero massimo di task in esecuzione contemporanea
+     */
+    public EsecutoreVirtuale(String nome, int maxConcorrenti) {
+        this.nome = nome;
+        this.maxConcorrenti = maxConcorrenti;
+        this.permessi = new Semaphore(maxConcorrenti);
+        this.delegato = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(nome + "-", 1).factory());
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (delegato.isShutdown()) {
+            throw rifiuta();
+        }
+        inAttesa.incrementAndGet();
+        try {
+            delegato.execute(() -> esegui(task));
+        } catch (RejectedExecutionException e) {
+            inAttesa.decrementAndGet();
+            throw rifiuta();
+        }
+    }
+
+    private void esegui(Runnable task) {
+        try {
+            permessi.acquire();
+        } catch (InterruptedException e) {
+            inAttesa.decrementAndGet();
+            Thread.currentThread().interrupt();
+            return;
+        }
+        inAttesa.decrementAndGet();
+        inEsecuzione.incrementAndGet();
+        try {
+            task.run();
+        } finally {
+            inEsecuzione.decrementAndGet();
+            completati.incrementAndGet();
+            permessi.release();
+        }
+    }
+
+    private RejectedExecutionException rifiuta() {
+        rifiuti.incrementAndGet();
+        return new RejectedExecutionException("Il pool " + nome + " è stato arrestato");
+    }
+
+    @Override
+    public void shutdown() {
+        delegato.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegato.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegato.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegato.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegato.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Il numero di thread correnti comprende i virtual thread in attesa del semaforo;
+     * la coda non ha un limite di capacità.
+     */
+    @Override
+    public StatisticheEsecutore getStatistiche() {
+        int attesa = inAttesa.get();
+        int esecuzione = inEsecuzione.get();
+        return new StatisticheEsecutore(nome, maxConcorrenti, attesa + esecuzione, esecuzione,
+                attesa, -1, completati.get(), rifiuti.get());
+    }
+}
@@ -1,6 +1,5 @@
 package src.controller;
 
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -107,6 +106,12 @@ public class MasterController {
     /** Flag di autenticazione avvenuta */
     private Boolean isAuth = false;
 
+    /** Intervallo della scansione di sicurezza dello stato delle visite */
+    private static final long INTERVALLO_SCANSIONE_VISITE_SECONDI = 60;
+
+    /** Tempo massimo concesso alla chiusura ordinata dell'applicazione */
+    private static final long TIMEOUT_ARRESTO_SECONDI = 10;
+
     /**
      * Costruttore vuoto.
      */
@@ -121,6 +126,10 @@ public class MasterController {
     public MasterController createApp() {
 
         threadPoolController = ThreadPoolController.getInstance();
+        // lo schema va aggiornato prima che i manager carichino le cache
+        if (!new MigrazioniSchema().applica()) {
+            System.err.println("Attenzione: lo schema del database potrebbe non essere aggiornato.");
+        }
         volontariManager = new VolontariManager(threadPoolController);
         configuratoriManager = new ConfiguratoriManager(threadPoolController);
         fruitoreManager = new FruitoreManager(threadPoolController);
@@ -160,9 +169,10 @@ public class MasterController {
      */
     public void startApp() {
         if (autentica()) {
-            threadPoolController.createThreadPool(1).submit(() -> {
+            threadPoolController.getExecutor(ThreadPoolController.Pool.BACKGROUND).submit(() -> {
                 try {
                     validatore.validatoreAuto();
+                    validatore.avviaGestioneEventi();
                     disponibilita.sincronizzaDisponibilitaVolontari(volontariManager);
                 } catch (Throwable t) {
                     System.err.println("Errore gestioneVisiteAuto (immediato): " + t.getMessage());
@@ -177,13 +187,15 @@ public class MasterController {
                     t.setName("validatore-visite-scheduler");
                     return t;
                 });
+                // Le transizioni di stato sono guidate dagli eventi: la scansione periodica
+                // serve solo a recuperare eventuali visite rimaste indietro.
                 scheduledExecutor.scheduleAtFixedRate(() -> {
                     try {
                         validatore.gestioneVisiteAuto();
                     } catch (Throwable t) {
                         System.err.println("Errore gestioneVisiteAuto (scheduler): " + t.getMessage());
                     }
-                }, 50, 50, TimeUnit.MILLISECONDS);
+                }, INTERVALLO_SCANSIONE_VISITE_SECONDI, INTERVALLO_SCANSIONE_VISITE_SECONDI, TimeUnit.SECONDS);
             }
             aggiornaDatabaseAsync();            
             showMenu();
@@ -191,21 +203,69 @@ public class MasterController {
     }
 
     /**
-     * Aggiorna i dati dal database in modo asincrono.
-     * Esegue la sincronizzazione in un thread separato.
+     * Richiede un ciclo di sincronizzazione a {@link DatabaseUpdater#sincronizzaDalDatabase()},
+     * che lo accoda senza attenderlo o lo fonde con quello già in corso.
      */
     private void aggiornaDatabaseAsync() {
-        ExecutorService executor = threadPoolController.createThreadPool(4);
-        executor.submit(()->{
-            databaseUpdater.sincronizzaDalDatabase();
-        });
+        databaseUpdater.sincronizzaDalDatabase();
     }
 
     /**
-     * Arresta tutti gli ExecutorService gestiti dal ThreadPoolController.
+     * Chiude l'applicazione in modo ordinato entro {@link #TIMEOUT_ARRESTO_SECONDI}:
+     * ferma gli scheduler e la sincronizzazione periodica, consegna gli eventi in coda,
+     * attende la fine dei task dei pool, svuota la coda write-behind delle visite
+     * e infine chiude il pool di connessioni al database.
+     * Il lavoro non terminato entro la scadenza viene abbandonato e conteggiato nel rapporto,
+     * che viene stampato in una riga: sull'output normale se la chiusura è completa,
+     * sull'errore standard se del lavoro è stato abbandonato.
+     *
+     * @return il rapporto con i task e gli aggiornamenti completati o abbandonati
      */
-    public void stopExecutorService() {
-        threadPoolController.shutdownAll();
+    public RapportoArresto stopExecutorService() {
+        long inizio = System.nanoTime();
+        long scadenza = inizio + TimeUnit.SECONDS.toNanos(TIMEOUT_ARRESTO_SECONDI);
+
+        // 1. nessun nuovo lavoro periodico
+        if (scheduledExecutor != null) {
+            scheduledExecutor.shutdown();
+        }
+        if (databaseUpdater != null) {
+            databaseUpdater.arrestaSincronizzazioneConSleep();
+        }
+        ScadenzeVisite.getInstance().arresta();
+        if (scheduledExecutor != null) {
+            try {
+                if (!scheduledExecutor.awaitTermination(Math.max(0, scadenza - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    scheduledExecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                scheduledExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // 2. gli eventi in coda possono ancora produrre scritture sui pool
+        if (!BusEventiVisite.getInstance().arresta(scadenza)) {
+            System.err.println("Non tutti gli eventi delle visite sono stati consegnati prima della chiusura.");
+        }
+
+        // 3. i task dei pool possono accodare aggiornamenti: la coda si svuota dopo
+        RapportoArresto rapporto = threadPoolController.arrestaTutti(scadenza);
+        CodaAggiornamentiVisite coda = CodaAggiornamentiVisite.getInstance();
+        long scritteIniziali = coda.getRigheScritte();
+        int righeAbbandonate = coda.chiudi(scadenza);
+
+        // 4. nessuno usa più le connessioni
+        DatabaseConnection.chiudiPool();
+
+        rapporto = rapporto.conCoda(coda.getRigheScritte() - scritteIniziali, righeAbbandonate,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inizio));
+        if (rapporto.isCompleto()) {
+            consoleIO.mostraMessaggio(rapporto.toString());
+        } else {
+            System.err.println(rapporto);
+        }
+        return rapporto;
     }
 
     /**
@@ -0,0 +1,78 @@
+package src.controller;
+
+/**
+ * Riepilogo immutabile della chiusura ordinata dell'applicazione:
+ * task dei pool completati o abbandonati e aggiornamenti write-behind
+ * scritti o abbandonati entro la scadenza.
+ *
+ */
+public class RapportoArresto {
+    private final long taskCompletati;
+    private final long taskAbbandonati;
+    private final int poolForzati;
+    private final long righeScritte;
+    private final int righeAbbandonate;
+    private final long durataMillis;
+
+    public RapportoArresto(long taskCompletati, long taskAbbandonati, int poolForzati,
+                           long righeScritte, int righeAbbandonate, long durataMillis) {
+        this.taskCompletati = taskCompletati;
+        this.taskAbbandonati = taskAbbandonati;
+        this.poolForzati = poolForzati;
+        this.righeScritte = righeScritte;
+        this.righeAbbandonate = righeAbbandonate;
+        this.durataMillis = durataMillis;
+    }
+
+    /**
+     * Restituisce i task terminati durante lo svuotamento dei pool.
+     * @return il numero di task completati
+     */
+    public long getTaskCompletati() { return taskCompletati; }
+
+    /**
+     * Restituisce i task ancora in coda o interrotti allo scadere del tempo.
+     * @return il numero di task abbandonati
+     */
+    public long getTaskAbbandonati() { return taskAbbandonati; }
+
+    /**
+     * Restituisce i pool arrestati forzatamente perché non terminati entro la scadenza.
+     * @return il numero di pool forzati
+     */
+    public int getPoolForzati() { return poolForzati; }
+
+    public long getRigheScritte() { return righeScritte; }
+
+    public int getRigheAbbandonate() { return righeAbbandonate; }
+
+    public long getDurataMillis() { return durataMillis; }
+
+    /**
+     * Indica se la chiusura è avvenuta senza perdere lavoro.
+     * @return true se nessun task e nessun aggiornamento è stato abbandonato
+     */
+    public boolean isCompleto() {
+        return taskAbbandonati == 0 && righeAbbandonate == 0;
+    }
+
+    /**
+     * Restituisce un nuovo rapporto con i dati della coda write-behind e la durata totale.
+     *
+     * @param righeScritte gli aggiornamenti scritti durante la chiusura
+     * @param righeAbbandonate gli aggiornamenti non scritti
+     * @param durataMillis la durata complessiva della chiusura
+     * @return il rapporto completo
+     */
+    public RapportoArresto conCoda(long righeScritte, int righeAbbandonate, long durataMillis) {
+        return new RapportoArresto(taskCompletati, taskAbbandonati, poolForzati,
+                righeScritte, righeAbbandonate, durataMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "Chiusura in " + durataMillis + " ms: task completati " + taskCompletati
+                + ", abbandonati " + taskAbbandonati + " (pool forzati " + poolForzati + ")"
+                + "; aggiornamenti visite scritti " + righeScritte + ", abbandonati " + righeAbbandonate;
+    }
+}
@@ -0,0 +1,69 @@
+package src.controller;
+
+/**
+ * Istantanea immutabile delle statistiche di un {@link EsecutoreLimitato}.
+ *
+ */
+public class StatisticheEsecutore {
+    private final String nome;
+    private final int maxThread;
+    private final int threadCorrenti;
+    private final int taskInEsecuzione;
+    private final int taskInCoda;
+    private final int capacitaCoda;
+    private final long taskCompletati;
+    private final long rifiuti;
+
+    public StatisticheEsecutore(String nome, int maxThread, int threadCorrenti, int taskInEsecuzione,
+                                int taskInCoda, int capacitaCoda, long taskCompletati, long rifiuti) {
+        this.nome = nome;
+        this.maxThread = maxThread;
+        this.threadCorrenti = threadCorrenti;
+        this.taskInEsecuzione = taskInEsecuzione;
+        this.taskInCoda = taskInCoda;
+        this.capacitaCoda = capacitaCoda;
+        this.taskCompletati = taskCompletati;
+        this.rifiuti = rifiuti;
+    }
+
+    public String getNome() { return nome; }
+
+    public int getMaxThread() { return maxThread; }
+
+    /**
+     * Restituisce il numero di thread vivi, inattivi compresi.
+     * @return il numero di thread del pool
+     */
+    public int getThreadCorrenti() { return threadCorrenti; }
+
+    /**
+     * Restituisce il numero approssimato di thread che stanno eseguendo un task.
+     * @return il numero di task in esecuzione
+     */
+    public int getTaskInEsecuzione() { return taskInEsecuzione; }
+
+    public int getTaskInCoda() { return taskInCoda; }
+
+    /**
+     * Restituisce la capacità della coda.
+     * @return il numero massimo di task in attesa, o -1 se la coda è illimitata
+     */
+    public int getCapacitaCoda() { return capacitaCoda; }
+
+    public long getTaskCompletati() { return taskCompletati; }
+
+    /**
+     * Restituisce quante volte la coda era piena o il pool arrestato al momento della sottomissione.
+     * @return il numero di rifiuti
+     */
+    public long getRifiuti() { return rifiuti; }
+
+    @Override
+    public String toString() {
+        return "Pool " + nome + " [thread=" + threadCorrenti + "/" + maxThread
+            + ", inEsecuzione=" + taskInEsecuzione
+            + ", coda=" + taskInCoda + (capacitaCoda >= 0 ? "/" + capacitaCoda : "")
+            + ", completati=" + taskCompletati
+            + ", rifiuti=" + rifiuti + "]";
+    }
+}
@@ -1,25 +1,79 @@
 package src.controller;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import src.model.db.DatabaseConnection;
 
 /**
  * Controller singleton per la gestione centralizzata dei thread pool.
- * Fornisce metodi per creare thread pool e garantisce la corretta
- * terminazione di tutti i pool alla chiusura dell'applicazione.
- * 
- *  
- *  
+ * Fornisce un executor condiviso e limitato per ogni categoria di lavoro
+ * ({@link Pool}), creato al primo utilizzo secondo la sua {@link Modalita},
+ * e garantisce la corretta terminazione di tutti i pool alla chiusura dell'applicazione.
+ *
+ *
+ *
  */
 public class ThreadPoolController {
 
+    /**
+     * Modalità di esecuzione di un pool.
+     */
+    public enum Modalita {
+        /** Thread di piattaforma in numero fisso, con coda limitata ({@link EsecutoreLimitato}) */
+        PIATTAFORMA,
+        /** Un virtual thread per task, con concorrenza limitata da un semaforo ({@link EsecutoreVirtuale}) */
+        VIRTUALE
+    }
+
+    /**
+     * Categorie di lavoro, ciascuna servita da un executor condiviso.
+     * Per i pool virtuali il numero di thread indica i task in esecuzione contemporanea
+     * e la capacità della coda non è usata.
+     */
+    public enum Pool {
+        /** Letture e scritture sul database */
+        DB_IO("db-io", Modalita.PIATTAFORMA, 4, 256),
+        /** Letture e scritture bloccanti sul database, al più una per connessione del pool */
+        DB_IO_VIRTUALE("db-io-virtuale", Modalita.VIRTUALE, DatabaseConnection.MAX_CONNESSIONI, 0),
+        /** Sincronizzazioni e task di manutenzione */
+        BACKGROUND("background", Modalita.PIATTAFORMA, 2, 64),
+        /** Calcoli in memoria */
+        CPU("cpu", Modalita.PIATTAFORMA, Math.max(1, Runtime.getRuntime().availableProcessors()), 128);
+
+        private final String nome;
+        private final Modalita modalita;
+        private final int threadPredefiniti;
+        private final int codaPredefinita;
+
+        Pool(String nome, Modalita modalita, int threadPredefiniti, int codaPredefinita) {
+            this.nome = nome;
+            this.modalita = modalita;
+            this.threadPredefiniti = threadPredefiniti;
+            this.codaPredefinita = codaPredefinita;
+        }
+
+        public String getNome() {
+            return nome;
+        }
+
+        public Modalita getModalita() {
+            return modalita;
+        }
+    }
+
     /** Istanza singleton del controller */
-    private static ThreadPoolController instance;  
-    
-    /** Lista di tutti i thread pool creati per gestione centralizzata */
-    private static final List<ExecutorService> threadPools = new ArrayList<>();
+    private static ThreadPoolController instance;
+
+    /** Executor creati, per categoria */
+    private final Map<Pool, ExecutorService> esecutori = new EnumMap<>(Pool.class);
+
+    /** Dimensioni configurate prima della creazione: numero di thread e capacità della coda */
+    private final Map<Pool, int[]> configurazioni = new EnumMap<>(Pool.class);
 
     /**
      * Costruttore privato per pattern singleton.
@@ -27,45 +81,144 @@ public class ThreadPoolController {
     private ThreadPoolController() {}
 
     /**
-     * Crea un nuovo thread pool con un numero fisso di thread.
-     * Il pool viene registrato per la gestione centralizzata.
-     * 
-     * @param poolSize il numero di thread nel pool
-     * @return l'ExecutorService creato
+     * Imposta le dimensioni di un pool. Va chiamato prima del primo utilizzo del pool.
+     *
+     * @param pool la categoria del pool
+     * @param numeroThread il numero massimo di thread
+     * @param capacitaCoda il numero massimo di task in attesa, ignorato per i pool virtuali
+     * @throws IllegalArgumentException se le dimensioni non sono positive
+     * @throws IllegalStateException se il pool è già stato creato
      */
-    public ExecutorService createThreadPool(int poolSize) {
-        ExecutorService executorService = Executors.newFixedThreadPool(poolSize);
-        threadPools.add(executorService);
-        return executorService;
+    public synchronized void configura(Pool pool, int numeroThread, int capacitaCoda) {
+        if (numeroThread < 1 || (pool.modalita == Modalita.PIATTAFORMA && capacitaCoda < 1)) {
+            throw new IllegalArgumentException("Dimensioni del pool " + pool.nome + " non valide: thread="
+                    + numeroThread + ", coda=" + capacitaCoda);
+        }
+        if (esecutori.containsKey(pool)) {
+            throw new IllegalStateException("Il pool " + pool.nome + " è già in uso");
+        }
+        configurazioni.put(pool, new int[] { numeroThread, capacitaCoda });
     }
 
     /**
-     * Crea un nuovo executor con un singolo thread.
-     * L'executor viene registrato per la gestione centralizzata.
-     * 
-     * @return l'ExecutorService a singolo thread creato
+     * Restituisce l'executor condiviso di una categoria, creandolo al primo utilizzo.
+     * Dopo {@link #shutdownAll()} viene creato un nuovo executor.
+     *
+     * @param pool la categoria del pool
+     * @return l'executor condiviso
      */
-    public ExecutorService createSingleThreadExecutor() {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        threadPools.add(executorService);
-        return executorService;
+    public synchronized ExecutorService getExecutor(Pool pool) {
+        ExecutorService esecutore = esecutori.get(pool);
+        if (esecutore == null) {
+            int[] dimensioni = configurazioni.getOrDefault(pool, new int[] { pool.threadPredefiniti, pool.codaPredefinita });
+            switch (pool.modalita) {
+                case VIRTUALE:
+                    esecutore = new EsecutoreVirtuale(pool.nome, dimensioni[0]);
+                    break;
+                default:
+                    esecutore = new EsecutoreLimitato(pool.nome, dimensioni[0], dimensioni[1]);
+                    break;
+            }
+            esecutori.put(pool, esecutore);
+        }
+        return esecutore;
     }
 
     /**
-     * Arresta tutti i thread pool creati e li rimuove dalla lista.
+     * Restituisce le statistiche di un pool.
+     *
+     * @param pool la categoria del pool
+     * @return le statistiche, o null se il pool non è ancora stato creato
+     */
+    public synchronized StatisticheEsecutore getStatistiche(Pool pool) {
+        ExecutorService esecutore = esecutori.get(pool);
+        return esecutore != null ? ((EsecutoreMisurato) esecutore).getStatistiche() : null;
+    }
+
+    /**
+     * Restituisce le statistiche di tutti i pool creati.
+     *
+     * @return la lista delle statistiche, nell'ordine delle categorie
+     */
+    public synchronized List<StatisticheEsecutore> getStatistiche() {
+        List<StatisticheEsecutore> statistiche = new ArrayList<>();
+        for (ExecutorService esecutore : esecutori.values()) {
+            statistiche.add(((EsecutoreMisurato) esecutore).getStatistiche());
+        }
+        return statistiche;
+    }
+
+    /**
+     * Arresta tutti i thread pool creati e li rimuove dalla mappa.
      * Questo metodo dovrebbe essere chiamato alla chiusura dell'applicazione.
      */
-    public void shutdownAll() {
-        for (ExecutorService executorService : threadPools) {
+    public synchronized void shutdownAll() {
+        for (ExecutorService executorService : esecutori.values()) {
             executorService.shutdown();
         }
-        threadPools.clear();
+        esecutori.clear();
     }
-    
+
+    /**
+     * Arresta tutti i thread pool creati attendendo che i task già sottomessi terminino
+     * entro la scadenza; i pool ancora attivi allo scadere vengono arrestati forzatamente,
+     * interrompendo i task in esecuzione e scartando quelli in coda.
+     *
+     * @param scadenzaNanos l'istante limite, nella scala di {@link System#nanoTime()}
+     * @return il rapporto con i task completati e abbandonati
+     */
+    public RapportoArresto arrestaTutti(long scadenzaNanos) {
+        // l'attesa avviene fuori dal lock: i task in chiusura possono ancora chiedere un executor,
+        // e ricevono quello già arrestato, che rifiuta i nuovi task con RejectedExecutionException
+        Map<Pool, ExecutorService> daArrestare;
+        Map<Pool, Long> completatiIniziali = new EnumMap<>(Pool.class);
+        synchronized (this) {
+            daArrestare = new EnumMap<>(esecutori);
+            for (Map.Entry<Pool, ExecutorService> voce : daArrestare.entrySet()) {
+                completatiIniziali.put(voce.getKey(), ((EsecutoreMisurato) voce.getValue()).getStatistiche().getTaskCompletati());
+                voce.getValue().shutdown();
+            }
+        }
+
+        long completati = 0;
+        long abbandonati = 0;
+        int forzati = 0;
+        for (Map.Entry<Pool, ExecutorService> voce : daArrestare.entrySet()) {
+            ExecutorService esecutore = voce.getValue();
+            boolean terminato = attendiTerminazione(esecutore, scadenzaNanos);
+            StatisticheEsecutore statistiche = ((EsecutoreMisurato) esecutore).getStatistiche();
+            if (!terminato) {
+                forzati++;
+                abbandonati += statistiche.getTaskInCoda() + statistiche.getTaskInEsecuzione();
+                esecutore.shutdownNow();
+                System.err.println("Il pool " + voce.getKey().nome + " non è terminato entro la scadenza: "
+                        + statistiche.getTaskInCoda() + " task in coda scartati, "
+                        + statistiche.getTaskInEsecuzione() + " interrotti.");
+            }
+            completati += statistiche.getTaskCompletati() - completatiIniziali.get(voce.getKey());
+        }
+
+        synchronized (this) {
+            for (Map.Entry<Pool, ExecutorService> voce : daArrestare.entrySet()) {
+                esecutori.remove(voce.getKey(), voce.getValue());
+            }
+        }
+        return new RapportoArresto(completati, abbandonati, forzati, 0, 0, 0);
+    }
+
+    private static boolean attendiTerminazione(ExecutorService esecutore, long scadenzaNanos) {
+        try {
+            return esecutore.awaitTermination(Math.max(0, scadenzaNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return esecutore.isTerminated();
+        }
+    }
+
     /**
      * Restituisce l'istanza singleton del controller.
      * Crea l'istanza al primo accesso (lazy initialization).
-     * 
+     *
      * @return l'istanza singleton di ThreadPoolController
      */
     public static synchronized ThreadPoolController getInstance() {
@@ -2,8 +2,10 @@ package src.controller;
 
 import src.model.TipiVisitaClass;
 import src.model.Visita;
+import src.model.db.EsitoScrittura;
 import src.model.db.VisiteManagerDB;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.time.LocalDate;
 import java.util.List;
@@ -70,8 +72,9 @@ public class VisiteController {
      * Elimina una visita dal sistema.
      * 
      * @param visita la visita da eliminare
+     * @return il future con le righe eliminate
      */
-    public void eliminaVisita(Visita visita) {
-        visiteManagerDB.eliminaVisita(visita);
+    public CompletableFuture<EsitoScrittura> eliminaVisita(Visita visita) {
+        return visiteManagerDB.eliminaVisita(visita);
     }
 }
\ No newline at end of file
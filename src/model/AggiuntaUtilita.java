@@ -2,6 +2,7 @@ package src.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 import java.time.*;
@@ -21,8 +22,6 @@ public class AggiuntaUtilita {
     private final VisiteManagerDB visiteManagerDB;
     ConcurrentHashMap<String, Luogo> luoghiMap;
     ConcurrentHashMap<String, Volontario> volontariMap;
-    ConcurrentHashMap<String, TipiVisitaClass> tipiVisitaMap = TipiVisitaClass.getTipiVisitaClassMap();
-    List<TipiVisitaClass> tipiVisitaList;
     ConcurrentHashMap<Integer, Visita> visiteMap;
     ConcurrentHashMap<LocalDate, String> datePrecluseMap;
 
@@ -42,24 +41,32 @@ public class AggiuntaUtilita {
         this.luoghiMap = luoghiManager.getLuoghiMap();
         this.volontariMap = volontariManager.getVolontariMap();
         this.visiteMap = visiteManagerDB.getVisiteMap();
-        this.tipiVisitaList = visiteManagerDB.getTipiVisitaClassList();
         this.prenotazioneManager = prenotazioneManager;
     }
 
-    public boolean aggiungiVisita(Visita nuovaVisita) {
-        visiteManagerDB.aggiungiNuovaVisita(nuovaVisita);
-        visiteMap.put(nuovaVisita.getId(), nuovaVisita);
-        return true;
+    /**
+     * Aggiunge una visita e, una volta inserita, la registra in memoria con l'ID generato.
+     * 
+     * @param nuovaVisita la visita da aggiungere
+     * @return il future con l'ID generato della visita
+     */
+    public CompletableFuture<EsitoScrittura> aggiungiVisita(Visita nuovaVisita) {
+        return visiteManagerDB.aggiungiNuovaVisita(nuovaVisita).thenApply(esito -> {
+            if (esito.isModificato()) {
+                visiteMap.put(nuovaVisita.getId(), nuovaVisita);
+            }
+            return esito;
+        });
     }
 
-    public void aggiungiVolontario(Volontario nuovoVolontario) {
+    public CompletableFuture<EsitoScrittura> aggiungiVolontario(Volontario nuovoVolontario) {
         volontariMap.putIfAbsent(nuovoVolontario.getEmail(), nuovoVolontario);
-        volontariManager.aggiungiNuovoVolontario(nuovoVolontario);
+        return volontariManager.aggiungiNuovoVolontario(nuovoVolontario);
     }
 
-    public void aggiungiLuogo(Luogo nuovoLuogo) {
+    public CompletableFuture<EsitoScrittura> aggiungiLuogo(Luogo nuovoLuogo) {
         luoghiMap.putIfAbsent(nuovoLuogo.getNome(), nuovoLuogo);
-        luoghiManager.aggiungiNuovoLuogo(nuovoLuogo);
+        return luoghiManager.aggiungiNuovoLuogo(nuovoLuogo);
     }
 
     public void aggiungiDataPreclusa(LocalDate data, String motivo) {
@@ -86,17 +93,26 @@ public class AggiuntaUtilita {
         consoleIO.mostraElencoConOggetti(visiteDisponibili);
         int scelta = InputDati.leggiIntero("Seleziona la visita da prenotare: ", 1, visiteDisponibili.size());
 
-        maxPersoneIscrivibili = ApplicationSettingsDAO.getMaxPeoplePerVisit();
+        maxPersoneIscrivibili = ImpostazioniApplicazione.getInstance().get().getMaxPersonePerVisitaOPredefinito();
         int numPersone = InputDati.leggiIntero("Quante persone vuoi prenotare? ", 1, Math.min(visiteDisponibili.get(scelta - 1).getPostiDisponibili(), maxPersoneIscrivibili));
 
         prenotazioneManager.creaPrenotazione(fruitoreCorrente, visiteDisponibili.get(scelta - 1), numPersone);
         
     }
 
-    public void assegnaTipoVisitaAVolontari(List<Volontario> volontari, TipiVisitaClass tipoVisita) {
+    /**
+     * Assegna un tipo di visita a più volontari, avviando insieme le scritture.
+     * 
+     * @param volontari i volontari a cui assegnare il tipo
+     * @param tipoVisita il tipo di visita da assegnare
+     * @return il future completato quando tutte le scritture sono terminate, con il numero di volontari modificati
+     */
+    public CompletableFuture<EsitoScrittura> assegnaTipoVisitaAVolontari(List<Volontario> volontari, TipiVisitaClass tipoVisita) {
+        List<CompletableFuture<EsitoScrittura>> scritture = new ArrayList<>();
         for (Volontario volontario : volontari) {
-            volontariManager.aggiungiTipoVisitaAVolontari(volontario.getEmail(), tipoVisita);
+            scritture.add(volontariManager.aggiungiTipoVisitaAVolontari(volontario.getEmail(), tipoVisita));
         }
+        return DatabaseManager.tutte(scritture);
     }
 
     public void assegnaVisitaAVolontario(Visita visitaSelezionata, Volontario volontarioSelezionato) {
@@ -1,17 +1,11 @@
 package src.model;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import src.model.db.ApplicationSettingsDAO;
+import src.model.db.ImpostazioniApplicazione;
 import src.view.ConsoleIO;
 import lib.InputDati;
 
@@ -20,17 +14,14 @@ import lib.InputDati;
  * Questa classe si occupa della configurazione, salvataggio e caricamento
  * dell'ambito territoriale che definisce i comuni in cui il sistema opera.
  * 
- * L'ambito territoriale può essere salvato sia nel database tramite ApplicationSettingsDAO
- * che in un file di configurazione come fallback.
+ * L'ambito territoriale è salvato nelle impostazioni dell'applicazione
+ * ({@link ImpostazioniApplicazione}), lette dal database una sola volta.
  * 
  *  
  *  
  */
 public class AmbitoTerritoriale {
 
-    /** Percorso del file di configurazione per l'ambito territoriale */
-    private static final String AMBITO_FILE = "src/utility/ambito_territoriale.config";
-    
     /** Set dei comuni che compongono l'ambito territoriale */
     private Set<String> ambitoTerritoriale = new HashSet<>();
     
@@ -53,18 +44,11 @@ public class AmbitoTerritoriale {
 
     /**
      * Verifica se l'ambito territoriale è già stato configurato.
-     * Controlla prima nel database tramite ApplicationSettingsDAO,
-     * poi verifica l'esistenza del file di configurazione.
      * 
      * @return true se l'ambito territoriale è configurato, false altrimenti
      */
     public boolean isAmbitoConfigurato() {
-        try {
-            if (ApplicationSettingsDAO.hasTerritorialScope()) return true;
-        } catch (Throwable t) {}
-         
-        File file = new File(AMBITO_FILE);
-        return file.exists();
+        return ImpostazioniApplicazione.getInstance().get().hasAmbitoTerritoriale();
     }
 
     /**
@@ -84,71 +68,22 @@ public class AmbitoTerritoriale {
     }
 
     /**
-     * Salva l'ambito territoriale configurato.
-     * Tenta prima di salvare nel database tramite ApplicationSettingsDAO,
-     * in caso di fallimento utilizza il file di configurazione come fallback.
+     * Salva l'ambito territoriale configurato nelle impostazioni dell'applicazione.
      */
     private void salvaAmbitoTerritoriale() {
-        List<String> lista = new ArrayList<>(ambitoTerritoriale);
-        boolean ok = false;
-        try {
-            ok = ApplicationSettingsDAO.setTerritorialScope(lista);
-        } catch (Throwable t) {
-             
-        }
-        if (!ok) {
-             
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(AMBITO_FILE))) {
-                for (String comune : ambitoTerritoriale) {
-                    writer.write(comune);
-                    writer.newLine();
-                }
-                ok = true;
-            } catch (IOException e) {
-                consoleIO.mostraMessaggio("Errore nel salvataggio dell'ambito territoriale.");
-            }
+        if (ImpostazioniApplicazione.getInstance().setAmbitoTerritoriale(new ArrayList<>(ambitoTerritoriale))) {
+            consoleIO.mostraMessaggio("Ambito salvato.");
+        } else {
+            consoleIO.mostraMessaggio("Errore nel salvataggio dell'ambito territoriale.");
         }
-        if (ok) consoleIO.mostraMessaggio("Ambito salvato.");
     }
 
     /**
-     * Carica l'ambito territoriale dai dati salvati.
-     * Tenta prima di caricare dal database tramite ApplicationSettingsDAO,
-     * in caso di fallimento legge dal file di configurazione.
-     * Se i dati vengono caricati dal file, tenta di sincronizzarli con il database.
+     * Carica l'ambito territoriale dalle impostazioni dell'applicazione.
      */
     public void caricaAmbitoTerritoriale() {
         ambitoTerritoriale.clear();
-        List<String> fromDb = null;
-        try {
-            fromDb = ApplicationSettingsDAO.getTerritorialScope();
-        } catch (Throwable t) {
-            fromDb = null;
-        }
-        if (fromDb != null && !fromDb.isEmpty()) {
-            ambitoTerritoriale.addAll(fromDb);
-            return;
-        }
-
-         
-        try (BufferedReader reader = new BufferedReader(new FileReader(AMBITO_FILE))) {
-            String line;
-            List<String> tmp = new ArrayList<>();
-            while ((line = reader.readLine()) != null) {
-                String trimmed = line.trim();
-                if (!trimmed.isEmpty()) {
-                    ambitoTerritoriale.add(trimmed);
-                    tmp.add(trimmed);
-                }
-            }
-            if (!tmp.isEmpty()) {
-                try {
-                    ApplicationSettingsDAO.setTerritorialScope(tmp);
-                } catch (Throwable t) { /* ignore */ }
-            }
-        } catch (IOException e) {
-            consoleIO.mostraMessaggio("Errore nel caricamento dell'ambito territoriale.");
-        }
+        ambitoTerritoriale.addAll(ImpostazioniApplicazione.getInstance().get().getAmbitoTerritoriale());
     }
 
     /**
@@ -0,0 +1,120 @@
+package src.model;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bus degli eventi di dominio sulle visite.
+ * Gli eventi vengono consegnati agli ascoltatori su un unico thread dedicato,
+ * così le transizioni di stato di una visita non vengono mai valutate in parallelo.
+ * Più eventi per la stessa visita ancora in coda vengono fusi in una sola consegna.
+ * 
+ */
+public class BusEventiVisite {
+
+    private static final BusEventiVisite instance = new BusEventiVisite();
+
+    /** Ascoltatori registrati */
+    private final List<Consumer<EventoVisita>> ascoltatori = new CopyOnWriteArrayList<>();
+
+    /** ID delle visite con un evento già in coda */
+    private final Set<Integer> inCoda = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService esecutore;
+
+    private final AtomicLong eventiPubblicati = new AtomicLong();
+    private final AtomicLong eventiConsegnati = new AtomicLong();
+
+    private BusEventiVisite() {
+        esecutore = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            t.setName("eventi-visite");
+            return t;
+        });
+    }
+
+    /**
+     * Restituisce l'istanza condivisa del bus.
+     * 
+     * @return l'istanza singleton del bus
+     */
+    public static BusEventiVisite getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registra un ascoltatore degli eventi.
+     * 
+     * @param ascoltatore la funzione da invocare per ogni evento
+     */
+    public void registra(Consumer<EventoVisita> ascoltatore) {
+        ascoltatori.add(ascoltatore);
+    }
+
+    /**
+     * Pubblica un evento per una visita.
+     * 
+     * @param idVisita l'ID della visita interessata
+     * @param tipo il tipo dell'evento
+     */
+    public void pubblica(int idVisita, EventoVisita.Tipo tipo) {
+        eventiPubblicati.incrementAndGet();
+        if (ascoltatori.isEmpty() || !inCoda.add(idVisita)) {
+            return;
+        }
+        EventoVisita evento = new EventoVisita(idVisita, tipo);
+        try {
+            esecutore.execute(() -> consegna(evento));
+        } catch (RuntimeException e) {
+            inCoda.remove(idVisita);
+        }
+    }
+
+    private void consegna(EventoVisita evento) {
+        inCoda.remove(evento.getIdVisita());
+        eventiConsegnati.incrementAndGet();
+        for (Consumer<EventoVisita> ascoltatore : ascoltatori) {
+            try {
+                ascoltatore.accept(evento);
+            } catch (RuntimeException e) {
+                System.err.println("Errore nella gestione dell'evento " + evento + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Arresta il thread di consegna degli eventi.
+     */
+    public void arresta() {
+        esecutore.shutdown();
+    }
+
+    /**
+     * Arresta il thread di consegna attendendo, entro la scadenza, la consegna
+     * degli eventi già in coda.
+     *
+     * @param scadenzaNanos l'istante limite, nella scala di {@link System#nanoTime()}
+     * @return true se tutti gli eventi in coda sono stati consegnati
+     */
+    public boolean arresta(long scadenzaNanos) {
+        esecutore.shutdown();
+        try {
+            return esecutore.awaitTermination(Math.max(0, scadenzaNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return esecutore.isTerminated();
+        }
+    }
+
+    public long getEventiPubblicati() { return eventiPubblicati.get(); }
+
+    public long getEventiConsegnati() { return eventiConsegnati.get(); }
+}
@@ -77,7 +77,7 @@ public class CredentialManager {
 
         switch (tipoUtente) {
             case UserFactory.VOLONTARIO:
-                volontarioCorrente = volontariManager.getVolontariMap().get(email);
+                volontarioCorrente = volontariManager.getVolontariSnapshot().get(email);
                 if (volontarioCorrente == null) {
                     return null;
                 }
@@ -87,7 +87,7 @@ public class CredentialManager {
                 break;
 
             case UserFactory.CONFIGURATORE:
-                configuratoreCorrente = configuratoriManager.getConfiguratoriMap().get(email);
+                configuratoreCorrente = configuratoriManager.getConfiguratoriSnapshot().get(email);
                 if (configuratoreCorrente == null) {
                     return null;
                 }
@@ -96,7 +96,7 @@ public class CredentialManager {
                 break;
 
             case UserFactory.FRUITORE:
-                fruitoreCorrente = fruitoreManager.getFruitoriMap().get(email);
+                fruitoreCorrente = fruitoreManager.getFruitoriSnapshot().get(email);
                 if (fruitoreCorrente == null) {
                     return null;
                 }
@@ -0,0 +1,297 @@
+package src.model;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Insieme compatto di date di disponibilità di un volontario.
+ *
+ * Le date sono memorizzate come una maschera di 31 bit per ciascun mese: il bit (giorno - 1)
+ * è acceso se il giorno è disponibile. Le maschere sono tenute in un array di interi che copre
+ * i mesi dal primo all'ultimo non vuoto, così aggiunta, rimozione e verifica toccano un solo
+ * elemento, le operazioni insiemistiche tra volontari si riducono a operazioni bit a bit per mese
+ * e l'insieme si codifica in 8 byte per mese non vuoto.
+ * La classe non è thread-safe.
+ *
+ */
+public class DateDisponibili {
+
+    private static final int[] NESSUNA_MASCHERA = new int[0];
+
+    /** Mese della prima maschera, espresso come anno * 12 + (mese - 1) */
+    private int primoMese;
+
+    /** Maschere dei giorni per mese consecutivo; la prima e l'ultima non sono mai vuote */
+    private int[] maschere = NESSUNA_MASCHERA;
+
+    public DateDisponibili() {
+    }
+
+    /**
+     * Costruisce l'insieme a partire da un elenco di date; le date null vengono ignorate.
+     *
+     * @param date le date disponibili
+     * @return l'insieme delle date
+     */
+    public static DateDisponibili di(Collection<LocalDate> date) {
+        DateDisponibili insieme = new DateDisponibili();
+        if (date != null) {
+            for (LocalDate data : date) {
+                if (data != null) insieme.aggiungi(data);
+            }
+        }
+        return insieme;
+    }
+
+    /**
+     * Restituisce le chiavi i cui insiemi contengono una data, ad esempio i volontari
+     * liberi in un giorno.
+     *
+     * @param <K> il tipo delle chiavi
+     * @param insiemi gli insiemi delle date per chiave
+     * @param data la data di interesse
+     * @return la lista delle chiavi disponibili nella data
+     */
+    public static <K> List<K> disponibiliIl(Map<K, DateDisponibili> insiemi, LocalDate data) {
+        List<K> disponibili = new ArrayList<>();
+        for (Map.Entry<K, DateDisponibili> voce : insiemi.entrySet()) {
+            if (voce.getValue() != null && voce.getValue().contiene(data)) {
+                disponibili.add(voce.getKey());
+            }
+        }
+        return disponibili;
+    }
+
+    /**
+     * Aggiunge una data all'insieme.
+     *
+     * @param data la data da aggiungere
+     * @return true se la data non era già presente
+     */
+    public boolean aggiungi(LocalDate data) {
+        int bit = 1 << (data.getDayOfMonth() - 1);
+        int indice = estendi(chiaveMese(data));
+        if ((maschere[indice] & bit) != 0) return false;
+        maschere[indice] |= bit;
+        return true;
+    }
+
+    /**
+     * Rimuove una data dall'insieme.
+     *
+     * @param data la data da rimuovere
+     * @return true se la data era presente
+     */
+    public boolean rimuovi(LocalDate data) {
+        int indice = chiaveMese(data) - primoMese;
+        int bit = 1 << (data.getDayOfMonth() - 1);
+        if (indice < 0 || indice >= maschere.length || (maschere[indice] & bit) == 0) return false;
+        maschere[indice] &= ~bit;
+        if (maschere[indice] == 0) compatta();
+        return true;
+    }
+
+    public boolean contiene(LocalDate data) {
+        return (maschera(chiaveMese(data)) & (1 << (data.getDayOfMonth() - 1))) != 0;
+    }
+
+    /**
+     * Restituisce la maschera dei giorni disponibili di un mese.
+     *
+     * @param ym l'anno e mese
+     * @return la maschera, con il bit (giorno - 1) acceso per i giorni disponibili
+     */
+    public int mascheraMese(YearMonth ym) {
+        return maschera(ym.getYear() * 12 + ym.getMonthValue() - 1);
+    }
+
+    public int size() {
+        int totale = 0;
+        for (int maschera : maschere) {
+            totale += Integer.bitCount(maschera);
+        }
+        return totale;
+    }
+
+    public boolean isEmpty() {
+        return maschere.length == 0;
+    }
+
+    /**
+     * Restituisce le date dell'insieme in ordine cronologico.
+     *
+     * @return una nuova lista delle date
+     */
+    public List<LocalDate> comeLista() {
+        List<LocalDate> date = new ArrayList<>(size());
+        for (int i = 0; i < maschere.length; i++) {
+            int mese = primoMese + i;
+            YearMonth ym = YearMonth.of(mese / 12, mese % 12 + 1);
+            int maschera = maschere[i];
+            while (maschera != 0) {
+                date.add(ym.atDay(Integer.numberOfTrailingZeros(maschera) + 1));
+                maschera &= maschera - 1;
+            }
+        }
+        return date;
+    }
+
+    /**
+     * @param altre l'altro insieme
+     * @return un nuovo insieme con le date presenti in almeno uno dei due
+     */
+    public DateDisponibili unione(DateDisponibili altre) {
+        DateDisponibili risultato = copia();
+        for (int i = 0; i < altre.maschere.length; i++) {
+            int indice = risultato.estendi(altre.primoMese + i);
+            risultato.maschere[indice] |= altre.maschere[i];
+        }
+        return risultato;
+    }
+
+    /**
+     * @param altre l'altro insieme
+     * @return un nuovo insieme con le date presenti in entrambi
+     */
+    public DateDisponibili intersezione(DateDisponibili altre) {
+        DateDisponibili risultato = new DateDisponibili();
+        int da = Math.max(primoMese, altre.primoMese);
+        int a = Math.min(primoMese + maschere.length, altre.primoMese + altre.maschere.length);
+        if (da < a) {
+            risultato.primoMese = da;
+            risultato.maschere = new int[a - da];
+            for (int mese = da; mese < a; mese++) {
+                risultato.maschere[mese - da] = maschera(mese) & altre.maschera(mese);
+            }
+            risultato.compatta();
+        }
+        return risultato;
+    }
+
+    /**
+     * @param altre l'insieme da sottrarre
+     * @return un nuovo insieme con le date di questo insieme assenti nell'altro
+     */
+    public DateDisponibili differenza(DateDisponibili altre) {
+        DateDisponibili risultato = copia();
+        for (int i = 0; i < risultato.maschere.length; i++) {
+            risultato.maschere[i] &= ~altre.maschera(risultato.primoMese + i);
+        }
+        risultato.compatta();
+        return risultato;
+    }
+
+    public DateDisponibili copia() {
+        DateDisponibili copia = new DateDisponibili();
+        copia.primoMese = primoMese;
+        copia.maschere = maschere.clone();
+        return copia;
+    }
+
+    /**
+     * Codifica l'insieme in formato binario compatto: per ogni mese non vuoto,
+     * in ordine, un intero con il mese (anno * 12 + mese - 1) e uno con la maschera dei giorni.
+     *
+     * @return i byte della codifica
+     */
+    public byte[] codifica() {
+        int mesiNonVuoti = 0;
+        for (int maschera : maschere) {
+            if (maschera != 0) mesiNonVuoti++;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(mesiNonVuoti * 8);
+        for (int i = 0; i < maschere.length; i++) {
+            if (maschere[i] == 0) continue;
+            buffer.putInt(primoMese + i);
+            buffer.putInt(maschere[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Ricostruisce un insieme dalla codifica prodotta da {@link #codifica()}.
+     *
+     * @param dati i byte della codifica, anche null
+     * @return l'insieme decodificato
+     * @throws IllegalArgumentException se la lunghezza non è un multiplo di 8
+     */
+    public static DateDisponibili decodifica(byte[] dati) {
+        DateDisponibili insieme = new DateDisponibili();
+        if (dati == null) return insieme;
+        if (dati.length % 8 != 0) {
+            throw new IllegalArgumentException("Codifica delle disponibilità non valida: " + dati.length + " byte");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(dati);
+        while (buffer.hasRemaining()) {
+            int mese = buffer.getInt();
+            int maschera = buffer.getInt();
+            if (maschera == 0) continue;
+            int indice = insieme.estendi(mese);
+            insieme.maschere[indice] |= maschera;
+        }
+        return insieme;
+    }
+
+    private int maschera(int mese) {
+        int indice = mese - primoMese;
+        return indice >= 0 && indice < maschere.length ? maschere[indice] : 0;
+    }
+
+    /** Estende l'array fino a coprire il mese e ne restituisce l'indice */
+    private int estendi(int mese) {
+        if (maschere.length == 0) {
+            primoMese = mese;
+            maschere = new int[1];
+        } else if (mese < primoMese) {
+            int[] estese = new int[maschere.length + primoMese - mese];
+            System.arraycopy(maschere, 0, estese, primoMese - mese, maschere.length);
+            maschere = estese;
+            primoMese = mese;
+        } else if (mese >= primoMese + maschere.length) {
+            maschere = Arrays.copyOf(maschere, mese - primoMese + 1);
+        }
+        return mese - primoMese;
+    }
+
+    /** Elimina i mesi vuoti agli estremi dell'array */
+    private void compatta() {
+        int inizio = 0;
+        int fine = maschere.length;
+        while (inizio < fine && maschere[inizio] == 0) inizio++;
+        while (fine > inizio && maschere[fine - 1] == 0) fine--;
+        if (inizio == fine) {
+            primoMese = 0;
+            maschere = NESSUNA_MASCHERA;
+        } else if (inizio > 0 || fine < maschere.length) {
+            primoMese += inizio;
+            maschere = Arrays.copyOfRange(maschere, inizio, fine);
+        }
+    }
+
+    private static int chiaveMese(LocalDate data) {
+        return data.getYear() * 12 + data.getMonthValue() - 1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof DateDisponibili)) return false;
+        DateDisponibili altre = (DateDisponibili) o;
+        return primoMese == altre.primoMese && Arrays.equals(maschere, altre.maschere);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * primoMese + Arrays.hashCode(maschere);
+    }
+
+    @Override
+    public String toString() {
+        return comeLista().toString();
+    }
+}
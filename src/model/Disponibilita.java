@@ -10,7 +10,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import src.model.db.VolontariManager;
 import src.model.db.DisponibilitaManager;
-import src.model.db.ApplicationSettingsDAO;
+import src.model.db.ImpostazioniApplicazione;
 
 /**
  * Gestisce le disponibilità dei volontari per le visite guidate.
@@ -23,15 +23,12 @@ import src.model.db.ApplicationSettingsDAO;
  *  
  */
 public class Disponibilita {
-    /** Mappa thread-safe delle disponibilità per volontario */
-    private final Map<Volontario, List<LocalDate>> disponibilitaVolontari = new ConcurrentHashMap<>();
+    /** Mappa thread-safe delle disponibilità per volontario; gli insiemi non vengono modificati dopo l'inserimento */
+    private final Map<Volontario, DateDisponibili> disponibilitaVolontari = new ConcurrentHashMap<>();
     
     /** Manager per la persistenza delle disponibilità */
     private final DisponibilitaManager disponibilitaManager = new DisponibilitaManager();
     
-    /** DAO per le impostazioni dell'applicazione */
-    private final ApplicationSettingsDAO applicationSettings = new ApplicationSettingsDAO();
-    
     /**
      * Determina se il sistema è attualmente in periodo di raccolta disponibilità.
      * Il periodo di raccolta va dal 1° al 15 di ogni mese.
@@ -56,17 +53,11 @@ public class Disponibilita {
         disponibilitaVolontari.clear();
         if (volontariManager == null) return;
 
-         
+        // tutte le disponibilità con un'unica query, invece di una per volontario
+        Map<String, DateDisponibili> perEmail = disponibilitaManager.getDisponibilitaMap(volontariManager);
         for (Volontario v : volontariManager.getVolontariMap().values()) {
             if (v == null || v.getEmail() == null) continue;
-            List<LocalDate> dates = Collections.emptyList();
-            try {
-                 
-                dates = disponibilitaManager.getDisponibilitaByVolontarioId(volontariManager.getIdByEmail(v.getEmail()));
-            } catch (Exception e) {
-                 
-            }
-            disponibilitaVolontari.put(v, new ArrayList<>(dates == null ? List.of() : dates));
+            disponibilitaVolontari.put(v, perEmail.getOrDefault(v.getEmail(), new DateDisponibili()));
         }
     }
 
@@ -83,7 +74,7 @@ public class Disponibilita {
         if (oggi.getDayOfMonth() > 15) {
             for (Volontario volontario : volontariManager.getVolontariMap().values()) {
                 if (!disponibilitaVolontari.containsKey(volontario)) {
-                    disponibilitaVolontari.put(volontario, new ArrayList<>());
+                    disponibilitaVolontari.put(volontario, new DateDisponibili());
                 }
             }
              
@@ -106,14 +97,15 @@ public class Disponibilita {
 
     /**
      * Salva lo stato di raccolta e le disponibilità nel database.
-     * Aggiorna lo stato di raccolta corrente e persiste tutte le disponibilità.
+     * Aggiorna lo stato di raccolta corrente e persiste le disponibilità dei volontari indicati,
+     * scrivendo solo le date aggiunte o rimosse.
      * 
      * @param disponibilita Mappa delle disponibilità per volontario da salvare
      * @param volontariManager Manager per l'accesso ai dati dei volontari
      */
-    public void salvaStatoERaccolta(Map<Volontario, List<LocalDate>> disponibilita, VolontariManager volontariManager) {
+    public void salvaStatoERaccolta(Map<Volontario, DateDisponibili> disponibilita, VolontariManager volontariManager) {
         if (disponibilita == null) return;
-        applicationSettings.setStatoRaccolta(getStato_raccolta());
+        ImpostazioniApplicazione.getInstance().setStatoRaccolta(getStato_raccolta());
         disponibilitaManager.salvaDisponibilitaVolontari(disponibilita, volontariManager);
     }
 
@@ -126,11 +118,11 @@ public class Disponibilita {
      */
     public List<Integer> trovaGiorniDisponibili(Volontario volontario, YearMonth ym) {
         List<Integer> giorni = new ArrayList<>();
-        List<LocalDate> dates = disponibilitaVolontari.getOrDefault(volontario, new ArrayList<>());
-        for (LocalDate d : dates) {
-            if (d.getYear() == ym.getYear() && d.getMonthValue() == ym.getMonthValue()) {
-                giorni.add(d.getDayOfMonth());
-            }
+        DateDisponibili date = disponibilitaVolontari.get(volontario);
+        int maschera = date != null ? date.mascheraMese(ym) : 0;
+        while (maschera != 0) {
+            giorni.add(Integer.numberOfTrailingZeros(maschera) + 1);
+            maschera &= maschera - 1;
         }
         return giorni;
     }
@@ -148,7 +140,8 @@ public class Disponibilita {
         for (Volontario v : disponibilitaVolontari.keySet()) {
             String e = v == null ? null : v.getEmail();
             if (e != null && e.trim().toLowerCase().equals(target)) {
-                return Collections.unmodifiableList(disponibilitaVolontari.getOrDefault(v, new ArrayList<>()));
+                DateDisponibili date = disponibilitaVolontari.get(v);
+                return Collections.unmodifiableList(date != null ? date.comeLista() : new ArrayList<>());
             }
         }
         return new ArrayList<>();
@@ -158,10 +151,21 @@ public class Disponibilita {
      * Ottiene le disponibilità di un volontario specifico.
      * 
      * @param volontarioCorrente Volontario di cui ottenere le disponibilità
-     * @return Lista delle date di disponibilità del volontario
+     * @return Lista delle date di disponibilità del volontario, in ordine cronologico
      */
     public List<LocalDate> getDisponibilitaVolontario(Volontario volontarioCorrente) {
-        return disponibilitaVolontari.getOrDefault(volontarioCorrente, new ArrayList<>());
+        DateDisponibili date = disponibilitaVolontari.get(volontarioCorrente);
+        return date != null ? date.comeLista() : new ArrayList<>();
+    }
+
+    /**
+     * Restituisce i volontari disponibili in una data.
+     * 
+     * @param data la data di interesse
+     * @return la lista dei volontari disponibili nella data
+     */
+    public List<Volontario> getVolontariDisponibili(LocalDate data) {
+        return DateDisponibili.disponibiliIl(disponibilitaVolontari, data);
     }
 
     /**
@@ -175,25 +179,24 @@ public class Disponibilita {
             VolontariManager volontariManager, boolean merge) {
         if (volontario == null) return;
 
-        List<LocalDate> corrente = new ArrayList<>(disponibilitaVolontari.getOrDefault(volontario, new ArrayList<>()));
+        DateDisponibili esistenti = disponibilitaVolontari.get(volontario);
+        DateDisponibili corrente;
 
         if (merge) {
+            corrente = esistenti != null ? esistenti.copia() : new DateDisponibili();
             if (nuoveDisponibilita != null) {
                 for (LocalDate d : nuoveDisponibilita) {
-                    if (d == null) continue;
-                    if (!corrente.contains(d)) corrente.add(d);
+                    if (d != null) corrente.aggiungi(d);
                 }
             }
         } else {
              
-            corrente = nuoveDisponibilita == null ? new ArrayList<>() : new ArrayList<>(nuoveDisponibilita);
-            corrente.removeIf(d -> d == null);
+            corrente = DateDisponibili.di(nuoveDisponibilita);
         }
 
-        corrente.sort(LocalDate::compareTo);
         disponibilitaVolontari.put(volontario, corrente);
 
-         
-        salvaStatoERaccolta(disponibilitaVolontari, volontariManager);
+        // si persiste solo il volontario modificato: le altre disponibilità sono invariate
+        salvaStatoERaccolta(Map.of(volontario, corrente), volontariManager);
     }
 }
\ No newline at end of file
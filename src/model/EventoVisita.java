@@ -0,0 +1,54 @@
+package src.model;
+
+/**
+ * Evento di dominio che riguarda una singola visita.
+ * Viene pubblicato sul {@link BusEventiVisite} quando cambia qualcosa
+ * che può far avanzare lo stato della visita.
+ * 
+ */
+public class EventoVisita {
+
+    /**
+     * Tipi di evento che possono modificare lo stato di una visita.
+     */
+    public enum Tipo {
+        /** Un fruitore ha prenotato dei posti */
+        PRENOTAZIONE_CREATA,
+        /** Una prenotazione è stata cancellata */
+        PRENOTAZIONE_CANCELLATA,
+        /** I dati della visita sono stati modificati */
+        VISITA_MODIFICATA,
+        /** È stata raggiunta una scadenza temporale della visita */
+        SCADENZA
+    }
+
+    /** ID della visita interessata */
+    private final int idVisita;
+
+    /** Tipo dell'evento */
+    private final Tipo tipo;
+
+    /**
+     * Costruttore dell'evento.
+     * 
+     * @param idVisita l'ID della visita interessata
+     * @param tipo il tipo dell'evento
+     */
+    public EventoVisita(int idVisita, Tipo tipo) {
+        this.idVisita = idVisita;
+        this.tipo = tipo;
+    }
+
+    public int getIdVisita() {
+        return idVisita;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    @Override
+    public String toString() {
+        return tipo + " (visita " + idVisita + ")";
+    }
+}
@@ -0,0 +1,181 @@
+package src.model;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Insieme ordinato degli intervalli occupati da un gruppo di visite nella stessa giornata,
+ * ad esempio quelle di un luogo o di un volontario in una data.
+ *
+ * Gli intervalli [inizio, fine) sono espressi in minuti dalla mezzanotte e fusi in
+ * intervalli disgiunti e ordinati, così che la verifica di sovrapposizione richieda
+ * una ricerca binaria e l'elenco dei buchi liberi una sola scansione, senza creare
+ * oggetti per ogni orario candidato.
+ *
+ */
+public class IntervalliOccupati {
+
+    private static final IntervalliOccupati VUOTO = new IntervalliOccupati(new int[0], new int[0], 0);
+
+    private final int[] inizi;
+    private final int[] fini;
+    private final int numero;
+
+    private IntervalliOccupati(int[] inizi, int[] fini, int numero) {
+        this.inizi = inizi;
+        this.fini = fini;
+        this.numero = numero;
+    }
+
+    /**
+     * Costruisce gli intervalli occupati dalle visite indicate.
+     * Le visite senza orario di inizio vengono ignorate.
+     *
+     * @param visite le visite della giornata
+     * @return gli intervalli occupati
+     */
+    public static IntervalliOccupati di(Collection<Visita> visite) {
+        return di(visite, v -> true);
+    }
+
+    /**
+     * Costruisce gli intervalli occupati dalle visite che soddisfano il filtro.
+     *
+     * @param visite le visite della giornata
+     * @param filtro il criterio di selezione delle visite
+     * @return gli intervalli occupati
+     */
+    public static IntervalliOccupati di(Collection<Visita> visite, Predicate<Visita> filtro) {
+        long[] grezzi = new long[visite.size()];
+        int n = 0;
+        for (Visita visita : visite) {
+            if (visita.getOraInizio() == null || !filtro.test(visita)) continue;
+            int inizio = minuti(visita.getOraInizio());
+            int fine = inizio + Math.max(visita.getDurataMinuti(), 0);
+            if (fine <= inizio) continue;
+            // inizio nei bit alti per ordinare per inizio con un solo sort di primitivi
+            grezzi[n++] = ((long) inizio << 32) | fine;
+        }
+        if (n == 0) return VUOTO;
+        Arrays.sort(grezzi, 0, n);
+
+        int[] inizi = new int[n];
+        int[] fini = new int[n];
+        int fusi = 0;
+        for (int i = 0; i < n; i++) {
+            int inizio = (int) (grezzi[i] >>> 32);
+            int fine = (int) grezzi[i];
+            if (fusi > 0 && inizio <= fini[fusi - 1]) {
+                fini[fusi - 1] = Math.max(fini[fusi - 1], fine);
+            } else {
+                inizi[fusi] = inizio;
+                fini[fusi] = fine;
+                fusi++;
+            }
+        }
+        return new IntervalliOccupati(inizi, fini, fusi);
+    }
+
+    /**
+     * Verifica se l'intervallo [inizio, fine) si sovrappone a un intervallo occupato.
+     *
+     * @param inizio l'inizio in minuti dalla mezzanotte
+     * @param fine la fine in minuti dalla mezzanotte, esclusa
+     * @return true se c'è sovrapposizione
+     */
+    public boolean siSovrappone(int inizio, int fine) {
+        // ultimo intervallo che inizia prima della fine richiesta
+        int basso = 0;
+        int alto = numero - 1;
+        int candidato = -1;
+        while (basso <= alto) {
+            int medio = (basso + alto) >>> 1;
+            if (inizi[medio] < fine) {
+                candidato = medio;
+                basso = medio + 1;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        return candidato >= 0 && fini[candidato] > inizio;
+    }
+
+    /**
+     * Verifica se una visita che inizia all'ora indicata si sovrappone a un intervallo occupato.
+     *
+     * @param oraInizio l'ora di inizio
+     * @param durataMinuti la durata in minuti
+     * @return true se c'è sovrapposizione
+     */
+    public boolean siSovrappone(LocalTime oraInizio, int durataMinuti) {
+        int inizio = minuti(oraInizio);
+        return siSovrappone(inizio, inizio + durataMinuti);
+    }
+
+    /**
+     * Elenca gli orari di inizio liberi, a passi regolari, per una visita della durata indicata.
+     *
+     * @param primoInizio il primo orario di inizio candidato, in minuti
+     * @param ultimoInizio gli orari di inizio devono essere strettamente precedenti a questo, in minuti
+     * @param fineGiornata la visita deve terminare entro questo orario, in minuti
+     * @param passo la distanza tra due orari candidati, in minuti
+     * @param durata la durata della visita, in minuti
+     * @return gli orari di inizio liberi
+     */
+    public List<LocalTime> orariLiberi(int primoInizio, int ultimoInizio, int fineGiornata, int passo, int durata) {
+        List<LocalTime> liberi = new ArrayList<>();
+        int i = 0;
+        for (int inizio = primoInizio; inizio < ultimoInizio && inizio + durata <= fineGiornata; inizio += passo) {
+            int fine = inizio + durata;
+            // gli intervalli già superati non possono più sovrapporsi ai candidati successivi
+            while (i < numero && fini[i] <= inizio) i++;
+            if (i >= numero || inizi[i] >= fine) {
+                liberi.add(LocalTime.of(inizio / 60, inizio % 60));
+            }
+        }
+        return liberi;
+    }
+
+    /**
+     * Elenca i buchi liberi di almeno la durata indicata all'interno di una finestra.
+     *
+     * @param aperturaMinuti l'inizio della finestra, in minuti
+     * @param chiusuraMinuti la fine della finestra, in minuti
+     * @param durata la durata minima del buco, in minuti
+     * @return coppie [inizio, fine) dei buchi liberi, in minuti
+     */
+    public List<int[]> buchiLiberi(int aperturaMinuti, int chiusuraMinuti, int durata) {
+        List<int[]> buchi = new ArrayList<>();
+        int cursore = aperturaMinuti;
+        for (int i = 0; i < numero && cursore < chiusuraMinuti; i++) {
+            if (fini[i] <= cursore) continue;
+            int fineBuco = Math.min(inizi[i], chiusuraMinuti);
+            if (fineBuco - cursore >= durata) {
+                buchi.add(new int[] { cursore, fineBuco });
+            }
+            cursore = Math.max(cursore, fini[i]);
+        }
+        if (chiusuraMinuti - cursore >= durata) {
+            buchi.add(new int[] { cursore, chiusuraMinuti });
+        }
+        return buchi;
+    }
+
+    public boolean isVuoto() {
+        return numero == 0;
+    }
+
+    /**
+     * Converte un orario in minuti dalla mezzanotte.
+     *
+     * @param ora l'orario
+     * @return i minuti dalla mezzanotte
+     */
+    public static int minuti(LocalTime ora) {
+        return ora.getHour() * 60 + ora.getMinute();
+    }
+}
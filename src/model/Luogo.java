@@ -22,6 +22,9 @@ public class Luogo {
     /** Lista dei tipi di visita disponibili in questo luogo */
     private List<TipiVisitaClass> tipiVisita; 
 
+    /** Maschera dei tipi di visita disponibili, ricalcolata a ogni modifica della lista */
+    private volatile MascheraTipi mascheraTipi;
+
     /**
      * Costruttore per creare un nuovo luogo.
      * 
@@ -35,6 +38,7 @@ public class Luogo {
         this.descrizione = descrizione;
         this.collocazione = collocazione;
         this.tipiVisita = tipiVisita;
+        this.mascheraTipi = MascheraTipi.di(tipiVisita);
     }
 
     /**
@@ -53,6 +57,16 @@ public class Luogo {
      */
     public void setTipiVisitaClass(List<TipiVisitaClass> tipiVisita) {
         this.tipiVisita = tipiVisita;
+        this.mascheraTipi = MascheraTipi.di(tipiVisita);
+    }
+
+    /**
+     * Restituisce la maschera dei tipi di visita disponibili per questo luogo.
+     * 
+     * @return la maschera dei tipi di visita
+     */
+    public MascheraTipi getMascheraTipi() {
+        return mascheraTipi;
     }
 
     /**
@@ -0,0 +1,118 @@
+package src.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Insieme immutabile di tipi di visita rappresentato come maschera di bit,
+ * un bit per ordinale ({@link TipiVisitaClass#getOrdinale()}).
+ * Finché i tipi registrati sono al più 64 la maschera occupa una sola parola
+ * e il confronto tra due insiemi è un unico AND.
+ *
+ */
+public final class MascheraTipi {
+
+    /** Insieme vuoto */
+    public static final MascheraTipi VUOTA = new MascheraTipi(new long[0]);
+
+    private final long[] parole;
+
+    private MascheraTipi(long[] parole) {
+        this.parole = parole;
+    }
+
+    /**
+     * Costruisce la maschera dei tipi indicati.
+     *
+     * @param tipi i tipi di visita, eventualmente null
+     * @return la maschera corrispondente
+     */
+    public static MascheraTipi di(Collection<TipiVisitaClass> tipi) {
+        if (tipi == null || tipi.isEmpty()) return VUOTA;
+        int massimo = -1;
+        for (TipiVisitaClass tipo : tipi) {
+            if (tipo != null) massimo = Math.max(massimo, tipo.getOrdinale());
+        }
+        if (massimo < 0) return VUOTA;
+        long[] parole = new long[(massimo >>> 6) + 1];
+        for (TipiVisitaClass tipo : tipi) {
+            if (tipo != null) parole[tipo.getOrdinale() >>> 6] |= 1L << tipo.getOrdinale();
+        }
+        return new MascheraTipi(parole);
+    }
+
+    /**
+     * Costruisce la maschera di un solo tipo.
+     *
+     * @param tipo il tipo di visita
+     * @return la maschera corrispondente
+     */
+    public static MascheraTipi di(TipiVisitaClass tipo) {
+        if (tipo == null) return VUOTA;
+        long[] parole = new long[(tipo.getOrdinale() >>> 6) + 1];
+        parole[tipo.getOrdinale() >>> 6] = 1L << tipo.getOrdinale();
+        return new MascheraTipi(parole);
+    }
+
+    /**
+     * Verifica se il tipo appartiene all'insieme.
+     *
+     * @param tipo il tipo di visita
+     * @return true se il tipo è presente
+     */
+    public boolean contiene(TipiVisitaClass tipo) {
+        if (tipo == null) return false;
+        int parola = tipo.getOrdinale() >>> 6;
+        return parola < parole.length && (parole[parola] & (1L << tipo.getOrdinale())) != 0;
+    }
+
+    /**
+     * Verifica se i due insiemi hanno almeno un tipo in comune.
+     *
+     * @param altra l'altro insieme
+     * @return true se l'intersezione non è vuota
+     */
+    public boolean interseca(MascheraTipi altra) {
+        int n = Math.min(parole.length, altra.parole.length);
+        for (int i = 0; i < n; i++) {
+            if ((parole[i] & altra.parole[i]) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Verifica se questo insieme contiene tutti i tipi dell'altro.
+     *
+     * @param altra l'altro insieme
+     * @return true se l'altro insieme è un sottoinsieme di questo
+     */
+    public boolean contieneTutti(MascheraTipi altra) {
+        for (int i = 0; i < altra.parole.length; i++) {
+            long mia = i < parole.length ? parole[i] : 0L;
+            if ((altra.parole[i] & ~mia) != 0) return false;
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        for (long parola : parole) {
+            if (parola != 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MascheraTipi)) return false;
+        MascheraTipi altra = (MascheraTipi) o;
+        return contieneTutti(altra) && altra.contieneTutti(this);
+    }
+
+    @Override
+    public int hashCode() {
+        int n = parole.length;
+        while (n > 0 && parole[n - 1] == 0) n--;
+        return Arrays.hashCode(Arrays.copyOf(parole, n));
+    }
+}
@@ -1,12 +1,13 @@
 package src.model;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
-import src.model.db.ApplicationSettingsDAO;
+import src.model.db.DatabaseManager;
+import src.model.db.EsitoScrittura;
+import src.model.db.ImpostazioniApplicazione;
 import src.model.db.PrenotazioneManager;
 import src.model.db.VisiteManagerDB;
 import src.model.db.VolontariManager;
@@ -27,9 +28,6 @@ public class ModificaUtilita {
 
     /** Manager per la gestione delle visite nel database */
     private final VisiteManagerDB visiteManagerDB;
-    
-    /** Percorso del file di configurazione per il numero massimo di persone */
-    private static final String NUMERO_PERSONE_FILE = "src/utility/max_persone_iscrivibili.config";
 
 
     /**
@@ -151,14 +149,15 @@ public class ModificaUtilita {
      * 
      * @param visita Visita da eliminare
      * @param visiteController Controller per la gestione delle visite
+     * @return il future con le righe eliminate
      */
-    public void eliminaVisita(Visita visita, VisiteController visiteController) {
-        visiteController.eliminaVisita(visita);
+    public CompletableFuture<EsitoScrittura> eliminaVisita(Visita visita, VisiteController visiteController) {
+        return visiteController.eliminaVisita(visita);
     }
 
     /**
-     * Aggiorna il numero massimo di persone iscrivibili per visita.
-     * Tenta di salvare prima nel database, poi su file come fallback.
+     * Aggiorna il numero massimo di persone iscrivibili per visita
+     * nelle impostazioni dell'applicazione.
      * Validazione: il numero deve essere almeno 1.
      * 
      * @param numeroMax Nuovo numero massimo di persone iscrivibili
@@ -166,38 +165,24 @@ public class ModificaUtilita {
      */
     public boolean aggiornaNumeroPersoneIscrivibili(int numeroMax) {
         if (numeroMax < 1) return false;
-
-        boolean ok = false;
-        try {
-            ok = ApplicationSettingsDAO.setMaxPeoplePerVisit(numeroMax);
-        } catch (Throwable t) {
-            ok = false;
-        }
-
-        if (!ok) {
-             
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(NUMERO_PERSONE_FILE))) {
-                writer.write(String.valueOf(numeroMax));
-                ok = true;
-            } catch (IOException e) {
-                ok = false;
-            }
-        }
-        return ok;
+        return ImpostazioniApplicazione.getInstance().setMaxPersonePerVisita(numeroMax);
     }
 
     /**
      * Rimuove un tipo di visita specifico da una lista di volontari.
-     * Aggiorna il database per ogni volontario modificato.
+     * Le scritture dei singoli volontari vengono avviate insieme.
      * 
      * @param volontari Lista dei volontari da cui rimuovere il tipo di visita
      * @param tipoVisita Tipo di visita da rimuovere
      * @param volontariManager Manager per la gestione dei volontari nel database
+     * @return il future completato quando tutte le scritture sono terminate, con il numero di volontari modificati
      */
-    public void rimuoviTipoVisitaDaVolontari(List<Volontario> volontari, TipiVisitaClass tipoVisita, VolontariManager volontariManager) {
+    public CompletableFuture<EsitoScrittura> rimuoviTipoVisitaDaVolontari(List<Volontario> volontari, TipiVisitaClass tipoVisita, VolontariManager volontariManager) {
+        List<CompletableFuture<EsitoScrittura>> scritture = new ArrayList<>();
         for (Volontario volontario : volontari) {
-            volontariManager.rimuoviTipoVisitaDaVolontario(volontario.getEmail(), tipoVisita);
+            scritture.add(volontariManager.rimuoviTipoVisitaDaVolontario(volontario.getEmail(), tipoVisita));
         }
+        return DatabaseManager.tutte(scritture);
     }
 
     /**
@@ -216,9 +201,10 @@ public class ModificaUtilita {
      * ATTENZIONE: Questa operazione rimuove il tipo di visita da tutto il sistema.
      * 
      * @param tipoDaRimuovere Tipo di visita da rimuovere dal sistema
+     * @return il future della rimozione, con il numero di visite cancellate
      */
-    public void rimuoviTipoDiVisita(TipiVisitaClass tipoDaRimuovere) {
-        visiteManagerDB.rimuoviTipoDiVisita(tipoDaRimuovere);
+    public CompletableFuture<EsitoScrittura> rimuoviTipoDiVisita(TipiVisitaClass tipoDaRimuovere) {
+        return visiteManagerDB.rimuoviTipoDiVisita(tipoDaRimuovere);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,258 @@
+package src.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ruota temporizzata gerarchica per l'esecuzione di azioni a un istante preciso.
+ *
+ * Il primo livello ha celle larghe un tick; ogni livello superiore copre l'intero
+ * intervallo del livello sottostante con ciascuna cella e viene creato solo quando serve.
+ * Inserire o annullare un timer costa O(1) rispetto al numero di timer pianificati:
+ * nella coda di attesa entrano soltanto le celle non vuote, non i singoli timer.
+ * Quando una cella di un livello superiore scade, i suoi timer vengono ridistribuiti
+ * nei livelli inferiori fino all'esecuzione.
+ *
+ */
+public class RuotaTemporizzata {
+
+    private final Object lock = new Object();
+
+    /** Celle non vuote in attesa della propria scadenza */
+    private final DelayQueue<Cella> coda = new DelayQueue<>();
+
+    /** Livello più fine della ruota */
+    private final Livello radice;
+
+    private final Thread thread;
+    private volatile boolean attiva = true;
+
+    private final AtomicInteger timerAttivi = new AtomicInteger();
+
+    /**
+     * Costruttore della ruota.
+     *
+     * @param nome il nome del thread che fa avanzare la ruota
+     * @param tickMillis la larghezza di una cella del primo livello
+     * @param dimensione il numero di celle di ogni livello
+     */
+    public RuotaTemporizzata(String nome, long tickMillis, int dimensione) {
+        this.radice = new Livello(tickMillis, dimensione, System.currentTimeMillis());
+        this.thread = new Thread(this::ciclo, nome);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Pianifica un'azione all'istante indicato.
+     * Se l'istante è già passato l'azione viene eseguita al tick successivo.
+     *
+     * @param scadenzaEpochMillis l'istante di esecuzione in millisecondi epoch
+     * @param azione l'azione da eseguire, che deve essere breve
+     * @return il timer, annullabile
+     */
+    public Timer pianifica(long scadenzaEpochMillis, Runnable azione) {
+        Timer timer = new Timer(scadenzaEpochMillis, azione);
+        boolean inserito;
+        synchronized (lock) {
+            inserito = radice.aggiungi(timer);
+        }
+        if (inserito) {
+            timerAttivi.incrementAndGet();
+        } else {
+            esegui(timer);
+        }
+        return timer;
+    }
+
+    /**
+     * Ciclo del thread: attende la prossima cella in scadenza, fa avanzare
+     * i livelli e ridistribuisce o esegue i timer contenuti.
+     */
+    private void ciclo() {
+        while (attiva) {
+            try {
+                Cella cella = coda.poll(200, TimeUnit.MILLISECONDS);
+                if (cella == null) continue;
+                List<Timer> scaduti = new ArrayList<>();
+                synchronized (lock) {
+                    while (cella != null) {
+                        radice.avanza(cella.scadenza);
+                        for (Timer timer : cella.svuota()) {
+                            if (!timer.annullato && !radice.aggiungi(timer)) {
+                                scaduti.add(timer);
+                            }
+                        }
+                        cella = coda.poll();
+                    }
+                }
+                for (Timer timer : scaduti) {
+                    timerAttivi.decrementAndGet();
+                    esegui(timer);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void esegui(Timer timer) {
+        if (timer.annullato) return;
+        try {
+            timer.azione.run();
+        } catch (RuntimeException e) {
+            System.err.println("Errore nell'esecuzione di un timer: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Arresta la ruota; i timer non ancora scaduti non verranno eseguiti.
+     */
+    public void arresta() {
+        attiva = false;
+        thread.interrupt();
+    }
+
+    /**
+     * Restituisce il numero di timer pianificati e non ancora scaduti o annullati.
+     *
+     * @return il numero di timer attivi
+     */
+    public int getTimerAttivi() {
+        return timerAttivi.get();
+    }
+
+    /**
+     * Timer pianificato sulla ruota.
+     */
+    public final class Timer {
+        private final long scadenza;
+        private final Runnable azione;
+        private volatile boolean annullato = false;
+        private Cella cella;
+
+        private Timer(long scadenza, Runnable azione) {
+            this.scadenza = scadenza;
+            this.azione = azione;
+        }
+
+        /**
+         * Annulla il timer se non è ancora stato eseguito.
+         */
+        public void annulla() {
+            synchronized (lock) {
+                if (annullato) return;
+                annullato = true;
+                if (cella != null) {
+                    cella.timer.remove(this);
+                    cella = null;
+                    timerAttivi.decrementAndGet();
+                }
+            }
+        }
+
+        public long getScadenza() {
+            return scadenza;
+        }
+    }
+
+    /**
+     * Livello della ruota: un array circolare di celle larghe tickMillis.
+     */
+    private final class Livello {
+        private final long tickMillis;
+        private final int dimensione;
+        private final long intervallo;
+        private final Cella[] celle;
+        private long tempoCorrente;
+        private Livello superiore;
+
+        private Livello(long tickMillis, int dimensione, long inizio) {
+            this.tickMillis = tickMillis;
+            this.dimensione = dimensione;
+            this.intervallo = tickMillis * dimensione;
+            this.tempoCorrente = inizio - (inizio % tickMillis);
+            this.celle = new Cella[dimensione];
+            for (int i = 0; i < dimensione; i++) {
+                celle[i] = new Cella();
+            }
+        }
+
+        /**
+         * Inserisce il timer nella cella di questo livello o di uno superiore.
+         *
+         * @return false se il timer è già scaduto e va eseguito
+         */
+        private boolean aggiungi(Timer timer) {
+            if (timer.scadenza < tempoCorrente + tickMillis) {
+                return false;
+            }
+            if (timer.scadenza < tempoCorrente + intervallo) {
+                long idVirtuale = timer.scadenza / tickMillis;
+                Cella cella = celle[(int) (idVirtuale % dimensione)];
+                cella.timer.add(timer);
+                timer.cella = cella;
+                if (cella.impostaScadenza(idVirtuale * tickMillis)) {
+                    coda.offer(cella);
+                }
+                return true;
+            }
+            if (superiore == null) {
+                superiore = new Livello(intervallo, dimensione, tempoCorrente);
+            }
+            return superiore.aggiungi(timer);
+        }
+
+        private void avanza(long istante) {
+            if (istante >= tempoCorrente + tickMillis) {
+                tempoCorrente = istante - (istante % tickMillis);
+                if (superiore != null) {
+                    superiore.avanza(tempoCorrente);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cella di un livello, con i timer che scadono nel suo intervallo.
+     */
+    private static final class Cella implements Delayed {
+        private final Set<Timer> timer = new LinkedHashSet<>();
+        private long scadenza = -1;
+
+        private boolean impostaScadenza(long nuovaScadenza) {
+            if (nuovaScadenza != scadenza) {
+                scadenza = nuovaScadenza;
+                return true;
+            }
+            return false;
+        }
+
+        private List<Timer> svuota() {
+            List<Timer> contenuto = new ArrayList<>(timer);
+            for (Timer t : contenuto) {
+                t.cella = null;
+            }
+            timer.clear();
+            scadenza = -1;
+            return contenuto;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(scadenza - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed altra) {
+            return Long.compare(scadenza, ((Cella) altra).scadenza);
+        }
+    }
+}
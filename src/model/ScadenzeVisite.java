@@ -0,0 +1,128 @@
+package src.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pianifica le scadenze temporali delle visite e, al loro raggiungimento,
+ * pubblica un evento {@link EventoVisita.Tipo#SCADENZA} sul bus.
+ * Le scadenze di una visita sono la fine della visita e l'inizio del giorno successivo:
+ * per ogni visita resta pianificata soltanto la prossima.
+ * Le scadenze sono tenute in una {@link RuotaTemporizzata}, per cui pianificarle,
+ * spostarle o annullarle ha costo costante indipendente dal numero di visite.
+ * 
+ */
+public class ScadenzeVisite {
+
+    private static final ScadenzeVisite instance = new ScadenzeVisite();
+
+    private static final long TICK_MILLIS = 1000;
+
+    private static final int CELLE_PER_LIVELLO = 64;
+
+    private final RuotaTemporizzata ruota;
+
+    /** Scadenza pianificata per ogni visita */
+    private final ConcurrentHashMap<Integer, Pianificazione> pianificate = new ConcurrentHashMap<>();
+
+    private ScadenzeVisite() {
+        ruota = new RuotaTemporizzata("scadenze-visite", TICK_MILLIS, CELLE_PER_LIVELLO);
+    }
+
+    /**
+     * Restituisce l'istanza condivisa del pianificatore.
+     * 
+     * @return l'istanza singleton del pianificatore
+     */
+    public static ScadenzeVisite getInstance() {
+        return instance;
+    }
+
+    /**
+     * Pianifica la prossima scadenza di una visita, sostituendo quella precedente
+     * se diversa. Le visite in stato finale o senza data non hanno scadenze.
+     * 
+     * @param visita la visita da pianificare
+     */
+    public void pianifica(Visita visita) {
+        int id = visita.getId();
+        LocalDateTime prossima = prossimaScadenza(visita, LocalDateTime.now());
+        if (prossima == null) {
+            annulla(id);
+            return;
+        }
+        Pianificazione attuale = pianificate.get(id);
+        if (attuale != null && attuale.istante.equals(prossima)) {
+            return;
+        }
+        long istante = prossima.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Pianificazione nuova = new Pianificazione(prossima);
+        Pianificazione precedente = pianificate.put(id, nuova);
+        nuova.timer = ruota.pianifica(istante, () -> {
+            pianificate.remove(id, nuova);
+            BusEventiVisite.getInstance().pubblica(id, EventoVisita.Tipo.SCADENZA);
+        });
+        if (precedente != null && precedente.timer != null) {
+            precedente.timer.annulla();
+        }
+    }
+
+    /**
+     * Annulla la scadenza pianificata di una visita.
+     * 
+     * @param idVisita l'ID della visita
+     */
+    public void annulla(int idVisita) {
+        Pianificazione precedente = pianificate.remove(idVisita);
+        if (precedente != null && precedente.timer != null) {
+            precedente.timer.annulla();
+        }
+    }
+
+    /**
+     * Calcola la prossima scadenza futura della visita.
+     * 
+     * @param visita la visita
+     * @param adesso l'istante corrente
+     * @return la prossima scadenza, o null se non ce ne sono
+     */
+    static LocalDateTime prossimaScadenza(Visita visita, LocalDateTime adesso) {
+        String stato = visita.getStato();
+        LocalDate data = visita.getData();
+        if (data == null || stato == null
+                || stato.equals("Completata") || stato.equals("Cancellata") || stato.equals("Effettuata")) {
+            return null;
+        }
+        if (visita.getOraInizio() != null) {
+            LocalDateTime fine = data.atTime(visita.getOraInizio()).plusMinutes(visita.getDurataMinuti());
+            if (fine.isAfter(adesso) && fine.toLocalDate().equals(data)) {
+                return fine;
+            }
+        }
+        LocalDateTime giornoSuccessivo = data.plusDays(1).atStartOfDay();
+        return giornoSuccessivo.isAfter(adesso) ? giornoSuccessivo : null;
+    }
+
+    /**
+     * Arresta il pianificatore.
+     */
+    public void arresta() {
+        ruota.arresta();
+        pianificate.clear();
+    }
+
+    public int getNumeroPianificate() {
+        return pianificate.size();
+    }
+
+    private static final class Pianificazione {
+        private final LocalDateTime istante;
+        private volatile RuotaTemporizzata.Timer timer;
+
+        private Pianificazione(LocalDateTime istante) {
+            this.istante = istante;
+        }
+    }
+}
@@ -1,15 +1,23 @@
 package src.model;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Rappresenta un tipo di visita guidata.
  * Sostituisce l'ex enum per permettere l'aggiunta dinamica di nuovi tipi.
  * Include tipi predefiniti (STORICA, SCIENTIFICA, ENOGASTRONOMICA, LABBAMBINI)
  * e permette la registrazione di tipi personalizzati.
+ * Il registro contiene un'unica istanza per nome, allineata al catalogo
+ * del database da {@code CatalogoTipiVisita}.
+ * Ogni nome riceve un ordinale piccolo e stabile per tutta la vita del processo,
+ * usato per rappresentare insiemi di tipi come {@link MascheraTipi}.
  *   
  */
 public class TipiVisitaClass {
@@ -19,6 +27,15 @@ public class TipiVisitaClass {
     /** Descrizione dettagliata del tipo di visita */
     private final String descrizione;  
 
+    /** Ordinale del nome, condiviso da tutte le istanze con lo stesso nome */
+    private final int ordinale;
+
+    /** Ordinali assegnati, per nome normalizzato; dichiarati prima dei tipi predefiniti */
+    private static final ConcurrentHashMap<String, Integer> ordinali = new ConcurrentHashMap<>();
+
+    /** Prossimo ordinale libero */
+    private static final AtomicInteger prossimoOrdinale = new AtomicInteger();
+
     /**
      * Costruttore per creare un nuovo tipo di visita.
      * 
@@ -28,6 +45,7 @@ public class TipiVisitaClass {
     public TipiVisitaClass(String nome, String descrizione) {
         this.nome = nome != null ? nome.trim() : "";
         this.descrizione = descrizione != null ? descrizione : "";
+        this.ordinale = ordinali.computeIfAbsent(normalizeKey(this.nome), k -> prossimoOrdinale.getAndIncrement());
     }
 
     /** Tipo di visita predefinito: Visita storica */
@@ -45,6 +63,9 @@ public class TipiVisitaClass {
     /** Registro concorrente di tutti i tipi di visita (built-in e custom) */
     private static final ConcurrentHashMap<String, TipiVisitaClass> registry = new ConcurrentHashMap<>();
 
+    /** Istanze condivise dei nomi letti ma non presenti nel registro */
+    private static final ConcurrentHashMap<String, TipiVisitaClass> sconosciuti = new ConcurrentHashMap<>();
+
     static {
         // Registra i tipi predefiniti
         registry.put(normalizeKey(STORICA.getNome()), STORICA);
@@ -81,6 +102,15 @@ public class TipiVisitaClass {
         return descrizione;
     }
 
+    /**
+     * Restituisce l'ordinale del tipo, uguale per tutte le istanze con lo stesso nome.
+     * 
+     * @return l'ordinale, a partire da 0
+     */
+    public int getOrdinale() {
+        return ordinale;
+    }
+
     /**
      * Restituisce una rappresentazione in formato stringa del tipo di visita.
      * 
@@ -93,7 +123,8 @@ public class TipiVisitaClass {
 
     /**
      * Confronta questo tipo di visita con un altro oggetto.
-     * Due tipi sono uguali se hanno lo stesso nome (case-insensitive).
+     * Due tipi sono uguali se hanno lo stesso nome (case-insensitive),
+     * cioè lo stesso ordinale.
      * 
      * @param o l'oggetto da confrontare
      * @return true se i tipi hanno lo stesso nome
@@ -102,13 +133,18 @@ public class TipiVisitaClass {
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof TipiVisitaClass)) return false;
-        TipiVisitaClass that = (TipiVisitaClass) o;
-        return nome.equalsIgnoreCase(that.nome);
+        return ordinale == ((TipiVisitaClass) o).ordinale;
+    }
+
+    @Override
+    public int hashCode() {
+        return ordinale;
     }
 
     /**
-     * Factory method: restituisce un'istanza built-in se il nome corrisponde (case-insensitive),
-     * altrimenti crea una nuova istanza dinamica con descrizione vuota.
+     * Factory method: restituisce l'istanza registrata se il nome corrisponde (case-insensitive)
+     * a un tipo built-in o del catalogo, altrimenti un'istanza condivisa con descrizione vuota,
+     * creata alla prima richiesta di quel nome.
      * 
      * @param nome il nome del tipo di visita
      * @return un'istanza di TipiVisitaClass
@@ -116,11 +152,42 @@ public class TipiVisitaClass {
     public static TipiVisitaClass fromName(String nome) {
         if (nome == null) return null;
         String n = nome.trim();
-        if (n.equalsIgnoreCase(STORICA.getNome())) return STORICA;
-        if (n.equalsIgnoreCase(SCIENTIFICA.getNome())) return SCIENTIFICA;
-        if (n.equalsIgnoreCase(ENOGASTRONOMICA.getNome())) return ENOGASTRONOMICA;
-        if (n.equalsIgnoreCase(LABBAMBINI.getNome())) return LABBAMBINI;
-        return new TipiVisitaClass(n, "");
+        String key = normalizeKey(n);
+        TipiVisitaClass registrato = registry.get(key);
+        return registrato != null ? registrato : sconosciuti.computeIfAbsent(key, k -> new TipiVisitaClass(n, ""));
+    }
+
+    /**
+     * Restituisce l'istanza condivisa del tipo indicato, registrandola se assente.
+     * Se il tipo è già registrato con la stessa descrizione, o la descrizione
+     * indicata è vuota, viene restituita l'istanza esistente; altrimenti questa
+     * viene sostituita da una nuova istanza con la descrizione aggiornata.
+     * 
+     * @param nome il nome del tipo di visita
+     * @param descrizione la descrizione del tipo di visita
+     * @return l'istanza registrata, o null se il nome non è valido
+     */
+    public static TipiVisitaClass interna(String nome, String descrizione) {
+        if (nome == null || nome.trim().isEmpty()) return null;
+        String d = descrizione == null ? "" : descrizione;
+        String key = normalizeKey(nome);
+        sconosciuti.remove(key);
+        return registry.compute(key, (k, esistente) ->
+                esistente != null && (d.isEmpty() || esistente.descrizione.equals(d))
+                        ? esistente
+                        : new TipiVisitaClass(nome.trim(), d));
+    }
+
+    /**
+     * Rimuove dal registro i tipi personalizzati il cui nome non è tra quelli indicati.
+     * I tipi built-in restano sempre registrati.
+     * 
+     * @param nomiPresenti i nomi dei tipi da mantenere
+     */
+    public static void mantieniSolo(Collection<String> nomiPresenti) {
+        Set<String> chiavi = new HashSet<>();
+        for (String nome : nomiPresenti) chiavi.add(normalizeKey(nome));
+        registry.keySet().removeIf(key -> !chiavi.contains(key) && !isBuiltInKey(key));
     }
 
     /**
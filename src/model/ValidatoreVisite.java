@@ -1,14 +1,14 @@
 package src.model;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 import src.model.db.PrenotazioneManager;
 import src.model.db.VisiteManagerDB;
@@ -30,22 +30,22 @@ public class ValidatoreVisite {
     /** Manager per la gestione delle visite nel database */
     private VisiteManagerDB visiteManager;
     private PrenotazioneManager prenotazioneManager;
-    
-    /** Mappa thread-safe delle visite attive nel sistema */
-    private ConcurrentHashMap<Integer, Visita> visiteMap = new ConcurrentHashMap<>();
+
+    /** Indica se il validatore è già registrato sul bus degli eventi */
+    private boolean gestioneEventiAvviata = false;
     
     /** Interfaccia per l'input/output con la console */
     private ConsoleIO consoleIO = new ConsoleIO();
 
     /**
      * Costruttore del ValidatoreVisite.
-     * Inizializza il validatore con il manager delle visite e carica la mappa delle visite.
+     * Inizializza il validatore con il manager delle visite.
+     * Le visite vengono sempre lette dallo snapshot corrente del manager.
      * 
      * @param visiteManager Manager per l'accesso ai dati delle visite
      */
     public ValidatoreVisite(VisiteManagerDB visiteManager, PrenotazioneManager prenotazioneManager) {
         this.visiteManager = visiteManager;
-        this.visiteMap = visiteManager.getVisiteMap();
         this.prenotazioneManager = prenotazioneManager;
     }
 
@@ -55,6 +55,34 @@ public class ValidatoreVisite {
         gestionePrenotazioniAuto();
     }
 
+    /**
+     * Registra il validatore sul bus degli eventi delle visite e pianifica
+     * le scadenze di tutte le visite correnti.
+     * Da questo momento ogni evento provoca la rivalutazione della sola visita interessata.
+     */
+    public synchronized void avviaGestioneEventi() {
+        if (gestioneEventiAvviata) return;
+        gestioneEventiAvviata = true;
+        BusEventiVisite.getInstance().registra(this::gestisciEvento);
+        for (Visita visita : VisiteManagerDB.getVisiteSnapshot().valori()) {
+            ScadenzeVisite.getInstance().pianifica(visita);
+        }
+    }
+
+    /**
+     * Rivaluta lo stato della visita interessata da un evento di dominio.
+     * 
+     * @param evento l'evento ricevuto
+     */
+    public void gestisciEvento(EventoVisita evento) {
+        Visita visita = visiteManager.getVisiteMap().get(evento.getIdVisita());
+        if (visita == null) {
+            ScadenzeVisite.getInstance().annulla(evento.getIdVisita());
+            return;
+        }
+        valutaVisita(visita);
+    }
+
     /**
      * Gestisce automaticamente l'aggiornamento dello stato delle visite.
      * Regole applicate:
@@ -62,75 +90,113 @@ public class ValidatoreVisite {
      * - Visite passate con partecipanti < minimo: diventano "Cancellata" 
      * - Visite di oggi già terminate: diventano "Completata"
      * 
-     * Viene eseguita automaticamente dal sistema per mantenere coerenza dei dati.
+     * Le transizioni sono normalmente guidate dagli eventi: questo metodo esegue
+     * una scansione di sicurezza di tutte le visite in memoria, senza ricaricarle dal database.
      */
     public void gestioneVisiteAuto(){
-        visiteManager.caricaVisiteAsync();
-        visiteMap = visiteManager.getVisiteMap();
+        for(Visita visita : VisiteManagerDB.getVisiteSnapshot().valori()){
+            valutaVisita(visita);
+        }
+    }
+
+    /**
+     * Applica le regole di transizione di stato a una singola visita
+     * e ne ripianifica la prossima scadenza.
+     * 
+     * @param visita la visita da valutare
+     * @return true se lo stato della visita è cambiato
+     */
+    public synchronized boolean valutaVisita(Visita visita) {
+        String statoAttuale = visita.getStato();
+        boolean cambiata = false;
+
+        // Salta visite già in stati finali
+        if (statoAttuale == null || visita.getData() == null ||
+            statoAttuale.equals("Completata") || 
+            statoAttuale.equals("Cancellata") ||
+            statoAttuale.equals("Effettuata")) {
+            ScadenzeVisite.getInstance().annulla(visita.getId());
+            return false;
+        }
         
-        for(Visita visita : visiteMap.values()){
-            String statoAttuale = visita.getStato();
+        // 1. Da "Proposta" a "Confermata" quando raggiunge minimo partecipanti
+        if (visita.getPostiPrenotati() >= visita.getMinPartecipanti() && 
+            statoAttuale.equals("Proposta")) {
             
-            // Salta visite già in stati finali
-            if (statoAttuale.equals("Completata") || 
-                statoAttuale.equals("Cancellata") ||
-                statoAttuale.equals("Effettuata")) {
-                continue;
-            }
+            visita.setStato("Confermata");
+            cambiata = true;
+        }
+        
+        // 2. Da "Confermata" a "Proposta" se scende sotto il minimo (solo per visite future)
+        else if (visita.getPostiPrenotati() < visita.getMinPartecipanti() && 
+                statoAttuale.equals("Confermata") &&
+                !visita.getData().isBefore(LocalDate.now())) {
             
-            // 1. Da "Proposta" a "Confermata" quando raggiunge minimo partecipanti
-            if (visita.getPostiPrenotati() >= visita.getMinPartecipanti() && 
-                statoAttuale.equals("Proposta")) {
-                
-                visita.setStato("Confermata");
-                visiteManager.aggiornaVisita(visita.getId(), visita);
-            }
+            visita.setStato("Proposta");
+            cambiata = true;
+        }
+        
+        // 3. Da "Proposta/Confermata" a "Completa" quando raggiunge massimo
+        else if (visita.getPostiPrenotati() >= visita.getMaxPersone() && 
+                (statoAttuale.equals("Proposta") || statoAttuale.equals("Confermata"))) {
             
-            // 2. Da "Confermata" a "Proposta" se scende sotto il minimo (solo per visite future)
-            else if (visita.getPostiPrenotati() < visita.getMinPartecipanti() && 
-                    statoAttuale.equals("Confermata") &&
-                    !visita.getData().isBefore(LocalDate.now())) {
-                
-                visita.setStato("Proposta");
-                visiteManager.aggiornaVisita(visita.getId(), visita);
-            }
+            visita.setStato("Completa");
+            cambiata = true;
+        }
+        
+        // 4. Da "Completa" a "Confermata" se scendono le prenotazioni
+        else if (visita.getPostiPrenotati() < visita.getMaxPersone() && 
+                visita.getPostiPrenotati() >= visita.getMinPartecipanti() &&
+                statoAttuale.equals("Completa") &&
+                !visita.getData().isBefore(LocalDate.now())) {
             
-            // 3. Da "Proposta/Confermata" a "Completa" quando raggiunge massimo
-            else if (visita.getPostiPrenotati() >= visita.getMaxPersone() && 
-                    (statoAttuale.equals("Proposta") || statoAttuale.equals("Confermata"))) {
-                
-                visita.setStato("Completa");
-                visiteManager.aggiornaVisita(visita.getId(), visita);
-            }
+            visita.setStato("Confermata");
+            cambiata = true;
+        }
+        
+        // 5. Cancellazione per visite passate senza minimo partecipanti
+        else if (visita.getPostiPrenotati() < visita.getMinPartecipanti() && 
+                visita.getData().isBefore(LocalDate.now()) &&
+                statoAttuale.equals("Proposta")) {
             
-            // 4. Da "Completa" a "Confermata" se scendono le prenotazioni
-            else if (visita.getPostiPrenotati() < visita.getMaxPersone() && 
-                    visita.getPostiPrenotati() >= visita.getMinPartecipanti() &&
-                    statoAttuale.equals("Completa") &&
-                    !visita.getData().isBefore(LocalDate.now())) {
-                
-                visita.setStato("Confermata");
-                visiteManager.aggiornaVisita(visita.getId(), visita);
-            }
+            visita.setStato("Cancellata");
+            cambiata = true;
+        }
+        
+        // 6. Transizione a "Effettuata" per visite di oggi terminate
+        else if (visita.getData().isEqual(LocalDate.now()) && 
+                statoAttuale.equals("Completa")) {
             
-            // 5. Cancellazione per visite passate senza minimo partecipanti
-            else if (visita.getPostiPrenotati() < visita.getMinPartecipanti() && 
-                    visita.getData().isBefore(LocalDate.now()) &&
-                    statoAttuale.equals("Proposta")) {
-                
-                visita.setStato("Cancellata");
-                visiteManager.aggiornaVisita(visita.getId(), visita);
+            LocalTime fineVisita = visita.getOraInizio() != null
+                ? visita.getOraInizio().plusMinutes(visita.getDurataMinuti()) : LocalTime.MIDNIGHT;
+            if (fineVisita.isBefore(LocalTime.now())) {
+                visita.setStato("Effettuata");
+                cambiata = true;
             }
-            
-            // 6. Transizione a "Effettuata" per visite di oggi terminate
-            else if (visita.getData().isEqual(LocalDate.now()) && 
-                    statoAttuale.equals("Completa")) {
-                
-                LocalTime fineVisita = visita.getOraInizio().plusMinutes(visita.getDurataMinuti());
-                if (fineVisita.isBefore(LocalTime.now())) {
-                    visita.setStato("Effettuata");
-                    visiteManager.aggiornaVisita(visita.getId(), visita);
-                }
+        }
+
+        if (cambiata) {
+            visiteManager.aggiornaVisita(visita.getId(), visita);
+            if (visita.getStato().equals("Effettuata") || visita.getStato().equals("Cancellata")) {
+                aggiornaPrenotazioniVisita(visita);
+            }
+        }
+        ScadenzeVisite.getInstance().pianifica(visita);
+        return cambiata;
+    }
+
+    /**
+     * Allinea lo stato delle prenotazioni di una visita appena diventata
+     * "Effettuata" o "Cancellata".
+     * 
+     * @param visita la visita il cui stato è cambiato
+     */
+    private void aggiornaPrenotazioniVisita(Visita visita) {
+        String nuovoStato = visita.getStato().equals("Effettuata") ? "EFFETTUATA" : "CANCELLATA";
+        for (Prenotazione prenotazione : PrenotazioneManager.getIndicePrenotazioni().perVisita(visita.getId())) {
+            if (!nuovoStato.equals(prenotazione.getStato())) {
+                prenotazione.setStato(nuovoStato);
+                prenotazioneManager.aggiornaPrenotazione(prenotazione.getId(), prenotazione);
             }
         }
     }
@@ -148,13 +214,13 @@ public class ValidatoreVisite {
         try {
             // Ottieni tutte le prenotazioni attive dal database
             prenotazioneManager.caricaPrenotazioniAsync();
-            ConcurrentHashMap<String, Prenotazione> prenotazioniMap = PrenotazioneManager.getPrenotazioniMap();
+            Collection<Prenotazione> prenotazioni = PrenotazioneManager.getPrenotazioniSnapshot().valori();
             
-            // Aggiorna la mappa delle visite per avere i dati più recenti
-            visiteMap = visiteManager.getVisiteMap();
+            // Usa lo snapshot corrente delle visite per avere i dati più recenti
+            Map<Integer, Visita> visiteMap = VisiteManagerDB.getVisiteSnapshot().getDati();
             
             // Itera su tutte le prenotazioni
-            for (Prenotazione prenotazione : prenotazioniMap.values()) {
+            for (Prenotazione prenotazione : prenotazioni) {
                 // Trova la visita associata alla prenotazione
                 Visita visitaAssociata = visiteMap.get(prenotazione.getIdVisita());
                 
@@ -279,47 +345,11 @@ public class ValidatoreVisite {
      */
     public boolean isVolontarioDisponibile(String volontarioEmail, LocalDate dataVisita, 
                                          LocalTime oraInizio, int durataMinuti) {
-         
-        LocalTime oraFine = oraInizio.plusMinutes(durataMinuti);
-        
-         
-        List<Visita> visiteVolontario = visiteManager.getVisiteMap().values().stream()
-                .filter(v -> v.getVolontario() != null && 
-                             v.getVolontario().contains(volontarioEmail) &&  
-                             v.getData().equals(dataVisita) &&
-                             !v.getStato().equals("Cancellata"))  
-                .collect(Collectors.toList());
-        
-         
-        for (Visita visitaEsistente : visiteVolontario) {
-            if (visitaEsistente.getOraInizio() == null) continue;
-            
-            LocalTime inizioEsistente = visitaEsistente.getOraInizio();
-            LocalTime fineEsistente = visitaEsistente.getOraInizio()
-                                        .plusMinutes(visitaEsistente.getDurataMinuti());
-            
-             
-            if (siSovrappongono(oraInizio, oraFine, inizioEsistente, fineEsistente)) {
-                return false;
-            }
-        }
-        
-        return true;
-    }
-
-    /**
-     * Verifica se due intervalli temporali si sovrappongono.
-     * Utilizzato per validare che non ci siano conflitti di orario.
-     * 
-     * @param inizio1 Ora di inizio del primo intervallo
-     * @param fine1 Ora di fine del primo intervallo
-     * @param inizio2 Ora di inizio del secondo intervallo
-     * @param fine2 Ora di fine del secondo intervallo
-     * @return true se gli intervalli si sovrappongono, false altrimenti
-     */
-    private boolean siSovrappongono(LocalTime inizio1, LocalTime fine1, 
-                                  LocalTime inizio2, LocalTime fine2) {
-        return (inizio1.isBefore(fine2) && fine1.isAfter(inizio2));
+        IntervalliOccupati occupati = IntervalliOccupati.di(VisiteManagerDB.getVisitePerData(dataVisita),
+                v -> v.getVolontario() != null && 
+                     v.getVolontario().contains(volontarioEmail) &&  
+                     !v.getStato().equals("Cancellata"));
+        return !occupati.siSovrappone(oraInizio, durataMinuti);
     }
 
     /**
@@ -360,20 +390,9 @@ public class ValidatoreVisite {
      * @return true se la visita può essere programmata, false se ci sono conflitti
      */
     public boolean validaVisita(Visita nuovaVisita){
-        List<Visita> visiteEsistenti = visiteMap.values().stream()
-                .filter(v -> v.getData().equals(nuovaVisita.getData()) && 
-                             v.getLuogo().equals(nuovaVisita.getLuogo()))
-                .collect(Collectors.toList());
-        
-         
-        for (Visita visitaEsistente : visiteEsistenti) {
-            if (siSovrappongono(nuovaVisita.getOraInizio(), nuovaVisita.getOraInizio().plusMinutes(nuovaVisita.getDurataMinuti()),
-                                visitaEsistente.getOraInizio(), visitaEsistente.getOraInizio().plusMinutes(visitaEsistente.getDurataMinuti()))) {
-                return false;
-            }
-        }
-        
-        return true;
+        IntervalliOccupati occupati = IntervalliOccupati.di(
+                VisiteManagerDB.getVisitePerLuogoEData(nuovaVisita.getLuogo(), nuovaVisita.getData()));
+        return !occupati.siSovrappone(nuovaVisita.getOraInizio(), nuovaVisita.getDurataMinuti());
     }
 
     /**
@@ -387,11 +406,6 @@ public class ValidatoreVisite {
      * @return Lista degli orari di inizio disponibili per la visita
      */
     public List<LocalTime> trovaSlotDisponibili(LocalDate data, String luogo, int durataMinuti) {
-        List<Visita> visiteGiorno = visiteMap.values().stream()
-                .filter(v -> v.getData().equals(data) && v.getLuogo().equals(luogo))
-                .collect(Collectors.toList());
-        
-        List<LocalTime> slotDisponibili = new ArrayList<>();
         final LocalTime INIZIO_GIORNATA = LocalTime.of(9, 0);
         final LocalTime FINE_GIORNATA = LocalTime.of(19, 0);
         final LocalTime ULTIMO_ORARIO_CONSENTITO = LocalTime.of(17, 40);
@@ -399,47 +413,13 @@ public class ValidatoreVisite {
          
         if (INIZIO_GIORNATA.plusMinutes(durataMinuti).isAfter(FINE_GIORNATA)) {
             consoleIO.mostraErrore("Durata troppo lunga: la visita non rientra nell'orario di apertura");
-            return slotDisponibili;  
+            return new ArrayList<>();  
         }
         
-        LocalTime slotCorrente = INIZIO_GIORNATA;
-        
-        while (slotCorrente.isBefore(ULTIMO_ORARIO_CONSENTITO)) {
-            LocalTime fineVisita = slotCorrente.plusMinutes(durataMinuti);
-            
-             
-            if (fineVisita.isAfter(FINE_GIORNATA)) {
-                 
-                slotCorrente = slotCorrente.plusMinutes(30);
-                continue;
-            }
-            
-             
-            if (slotCorrente.isAfter(ULTIMO_ORARIO_CONSENTITO)) {
-                break;
-            }
-            
-            boolean slotLibero = true;
-            
-             
-            Visita visitaTemp = new Visita(-1, null, luogo, List.of(), "", data, 0, "", slotCorrente, durataMinuti, 0, 0, false, false);
-            
-            for (Visita visitaEsistente : visiteGiorno) {
-                if (siSovrappongono(visitaTemp.getOraInizio(), visitaTemp.getOraInizio().plusMinutes(visitaTemp.getDurataMinuti()),
-                                    visitaEsistente.getOraInizio(), visitaEsistente.getOraInizio().plusMinutes(visitaEsistente.getDurataMinuti()))) {
-                    slotLibero = false;
-                    break;
-                }
-            }
-            
-            if (slotLibero) {
-                slotDisponibili.add(slotCorrente);
-            }
-            
-            slotCorrente = slotCorrente.plusMinutes(30);
-        }
-        
-        return slotDisponibili;
+        IntervalliOccupati occupati = IntervalliOccupati.di(VisiteManagerDB.getVisitePerLuogoEData(luogo, data));
+        return occupati.orariLiberi(IntervalliOccupati.minuti(INIZIO_GIORNATA),
+                IntervalliOccupati.minuti(ULTIMO_ORARIO_CONSENTITO),
+                IntervalliOccupati.minuti(FINE_GIORNATA), 30, durataMinuti);
     }
 
     /**
@@ -452,40 +432,41 @@ public class ValidatoreVisite {
      */
     public List<Integer> trovaGiorniDisponibili(Volontario volontario, YearMonth ym) {
         List<Integer> giorniDisponibili = new ArrayList<>();
-        List<TipiVisitaClass> tipiVisitaVolontario = volontario.getTipiDiVisite();
+        int liberi = giorniProgrammabili(volontario.getTipiDiVisite(), ym)
+                & ~VisiteManagerDB.getIndiceVisite().giorniOccupati(ym);
 
-        for (int giorno = 1; giorno <= ym.lengthOfMonth(); giorno++) {
-            LocalDate data = ym.atDay(giorno);
-            if (isGiornoDisponibile(data, visiteMap, tipiVisitaVolontario)) {
-                giorniDisponibili.add(giorno);
-            }
+        while (liberi != 0) {
+            giorniDisponibili.add(Integer.numberOfTrailingZeros(liberi) + 1);
+            liberi &= liberi - 1;
         }
         return giorniDisponibili;
     }
 
     /**
-     * Verifica se un giorno specifico è disponibile per programmare visite.
-     * Un giorno è disponibile se:
-     * - Non ci sono già visite programmate non cancellate
-     * - Il volontario può gestire tipi di visita programmabili in quel giorno
+     * Calcola la maschera dei giorni del mese in cui il volontario può gestire
+     * almeno un tipo di visita: il bit (giorno - 1) è acceso se il giorno è programmabile.
+     * La programmabilità dipende solo dal giorno della settimana, quindi viene valutata
+     * una volta per giorno della settimana.
      * 
-     * @param data Data da verificare
-     * @param visiteMap Mappa delle visite esistenti
      * @param tipiVisitaVolontario Tipi di visita che il volontario può gestire
-     * @return true se il giorno è disponibile, false altrimenti
+     * @param ym Anno e mese di interesse
+     * @return la maschera dei giorni programmabili
      */
-    private boolean isGiornoDisponibile(LocalDate data, ConcurrentHashMap<Integer, Visita> visiteMap, 
-                                    List<TipiVisitaClass> tipiVisitaVolontario) {
-        boolean visitaProgrammata = visiteMap.values().stream()
-            .anyMatch(v -> v.getData() != null
-                        && v.getData().equals(data) 
-                        && (v.getStato() == null || !v.getStato().equalsIgnoreCase("Cancellata")) 
-                        );
-
-        boolean tipoVisitaConsentito = tipiVisitaVolontario.stream()
-            .anyMatch(tipo -> isTipoVisitaProgrammabileInGiorno(tipo, data.getDayOfWeek().toString()));
+    private int giorniProgrammabili(List<TipiVisitaClass> tipiVisitaVolontario, YearMonth ym) {
+        boolean[] consentito = new boolean[7];
+        for (DayOfWeek giornoSettimana : DayOfWeek.values()) {
+            consentito[giornoSettimana.ordinal()] = tipiVisitaVolontario.stream()
+                .anyMatch(tipo -> isTipoVisitaProgrammabileInGiorno(tipo, giornoSettimana.toString()));
+        }
 
-        return !visitaProgrammata && tipoVisitaConsentito;
+        int maschera = 0;
+        int primo = ym.atDay(1).getDayOfWeek().ordinal();
+        for (int giorno = 1; giorno <= ym.lengthOfMonth(); giorno++) {
+            if (consentito[(primo + giorno - 1) % 7]) {
+                maschera |= 1 << (giorno - 1);
+            }
+        }
+        return maschera;
     }
 
     /**
@@ -22,6 +22,9 @@ public class Visita {
     
     /** Lista dei tipi di visita associati */
     private List<TipiVisitaClass> tipiVisita;
+
+    /** Maschera dei tipi di visita, ricalcolata a ogni modifica della lista */
+    private volatile MascheraTipi mascheraTipi;
     
     /** Email del volontario assegnato alla visita */
     private String volontario;
@@ -79,6 +82,7 @@ public class Visita {
         this.titolo = titolo;
         this.luogo = luogo;
         this.tipiVisita = tipiVisita;
+        this.mascheraTipi = MascheraTipi.di(tipiVisita);
         this.volontario = volontario;
         this.data = data;
         this.maxPersone = maxPersone;
@@ -117,6 +121,15 @@ public class Visita {
 
     public void setTipiVisita(List<TipiVisitaClass> tipiVisita) {
         this.tipiVisita = tipiVisita;
+        this.mascheraTipi = MascheraTipi.di(tipiVisita);
+    }
+
+    /**
+     * Restituisce la maschera dei tipi di visita.
+     * @return la maschera dei tipi di visita
+     */
+    public MascheraTipi getMascheraTipi() {
+        return mascheraTipi;
     }
 
     public void setVolontario(String volontario) {
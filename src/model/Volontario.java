@@ -11,6 +11,9 @@ public class Volontario extends Utente {
     /** Lista dei tipi di visita che il volontario è qualificato a condurre */
     private List<TipiVisitaClass> tipiDiVisite;  
 
+    /** Maschera dei tipi di visita, ricalcolata a ogni modifica della lista */
+    private volatile MascheraTipi mascheraTipi;
+
     /**
      * Costruttore per creare un nuovo volontario.
      * 
@@ -23,6 +26,7 @@ public class Volontario extends Utente {
     public Volontario(String nome, String cognome, String email, String password, List<TipiVisitaClass> tipiDiVisite) {
         super(email, password, nome, cognome);
         this.tipiDiVisite = tipiDiVisite;
+        this.mascheraTipi = MascheraTipi.di(tipiDiVisite);
     }
 
     /**
@@ -41,6 +45,16 @@ public class Volontario extends Utente {
      */
     public void setTipiDiVisite(List<TipiVisitaClass> tipiDiVisite) {
         this.tipiDiVisite = tipiDiVisite;
+        this.mascheraTipi = MascheraTipi.di(tipiDiVisite);
+    }
+
+    /**
+     * Restituisce la maschera dei tipi di visita che il volontario può condurre.
+     * 
+     * @return la maschera dei tipi di visita
+     */
+    public MascheraTipi getMascheraTipi() {
+        return mascheraTipi;
     }
 
     /**
@@ -52,6 +66,7 @@ public class Volontario extends Utente {
     public void aggiungiTipoVisita(TipiVisitaClass tipoVisita) {
         if (!this.tipiDiVisite.contains(tipoVisita)) {
             this.tipiDiVisite.add(tipoVisita);
+            this.mascheraTipi = MascheraTipi.di(tipiDiVisite);
         }
     }
     
@@ -61,7 +76,9 @@ public class Volontario extends Utente {
      * @param tipoVisita il tipo di visita da rimuovere
      */
     public void rimuoviTipoVisita(TipiVisitaClass tipoVisita) {
-        this.tipiDiVisite.remove(tipoVisita);
+        if (this.tipiDiVisite.remove(tipoVisita)) {
+            this.mascheraTipi = MascheraTipi.di(tipiDiVisite);
+        }
     }
 
     /**
@@ -71,7 +88,7 @@ public class Volontario extends Utente {
      * @return true se il volontario può condurre questo tipo di visita, false altrimenti
      */
     public boolean contieneTipoVisita(TipiVisitaClass tipoVisita) {
-        return this.tipiDiVisite.contains(tipoVisita);
+        return mascheraTipi.contiene(tipoVisita);
     }
 
     /**
@@ -4,167 +4,163 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Data Access Object per la gestione delle impostazioni dell'applicazione.
  * Gestisce il campo territorial_scope (ambito territoriale) salvato come JSON array
  * e altre impostazioni globali come il numero massimo di persone per visita.
+ * Le letture dell'applicazione passano da {@link ImpostazioniApplicazione},
+ * che tiene in memoria l'ultima istantanea letta da questa classe.
  * 
  *  
  *  
  */
 public class ApplicationSettingsDAO {
 
-    private static final String SELECT_SQL = "SELECT territorial_scope FROM application_settings LIMIT 1";
+    private static final String SELECT_SQL = "SELECT territorial_scope, max_people_per_visit, stato_raccolta, updated_at FROM application_settings LIMIT 1";
+    private static final String SELECT_UPDATED_AT_SQL = "SELECT updated_at FROM application_settings LIMIT 1";
+
     private static final String UPDATE_SQL = "UPDATE application_settings SET territorial_scope = ?, updated_at = CURRENT_TIMESTAMP";
     private static final String INSERT_SQL = "INSERT INTO application_settings(territorial_scope, created_at, updated_at) VALUES (?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)";
 
     private static final String UPDATE_STATO_RACCOLTA_SQL = "UPDATE application_settings SET stato_raccolta = ?, updated_at = CURRENT_TIMESTAMP";
     
-    private static final String SELECT_MAX_SQL = "SELECT max_people_per_visit FROM application_settings LIMIT 1";
     private static final String UPDATE_MAX_SQL = "UPDATE application_settings SET max_people_per_visit = ?, updated_at = CURRENT_TIMESTAMP";
     private static final String INSERT_MAX_SQL = "INSERT INTO application_settings(max_people_per_visit, created_at, updated_at) VALUES (?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)";
 
+    /** Elementi tra virgolette dell'array JSON dell'ambito territoriale */
+    private static final Pattern ELEMENTO_JSON = Pattern.compile("\"([^\"]+)\"");
+
+    private ApplicationSettingsDAO() {
+    }
+
     /**
-     * Recupera il numero massimo di persone per visita dalle impostazioni.
+     * Legge la riga delle impostazioni.
      * 
-     * @return il numero massimo di persone, o null se non impostato
+     * @param conn la connessione da usare
+     * @param versione la versione da assegnare all'istantanea letta
+     * @return le impostazioni lette, vuote se la riga non esiste
+     * @throws SQLException se la query fallisce
      */
-    public static Integer getMaxPeoplePerVisit() {
-        try (Connection conn = DatabaseConnection.connect();
-             PreparedStatement ps = conn.prepareStatement(SELECT_MAX_SQL);
+    static Impostazioni leggi(Connection conn, long versione) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_SQL);
              ResultSet rs = ps.executeQuery()) {
-            if (rs.next()) {
-                int v = rs.getInt("max_people_per_visit");
-                if (rs.wasNull()) return null;
-                return v;
+            if (!rs.next()) {
+                return Impostazioni.VUOTE.conVersione(versione);
             }
-        } catch (SQLException e) {
-            System.err.println("ApplicationSettingsDAO.getMaxPeoplePerVisit error: " + e.getMessage());
+            List<String> ambito = parseAmbito(rs.getString("territorial_scope"));
+            int max = rs.getInt("max_people_per_visit");
+            Integer maxPersone = rs.wasNull() ? null : max;
+            boolean stato = rs.getBoolean("stato_raccolta");
+            Boolean statoRaccolta = rs.wasNull() ? null : stato;
+            return new Impostazioni(ambito, maxPersone, statoRaccolta, rs.getTimestamp("updated_at"), versione);
+        }
+    }
+
+    /**
+     * Legge l'istante dell'ultima modifica delle impostazioni.
+     * 
+     * @param conn la connessione da usare
+     * @return il valore di updated_at, o null se la riga non esiste
+     * @throws SQLException se la query fallisce
+     */
+    static Timestamp leggiUltimaModifica(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_UPDATED_AT_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getTimestamp(1) : null;
         }
-        return null;
     }
 
     /**
-     * Imposta il numero massimo di persone per visita nelle impostazioni.
+     * Salva il numero massimo di persone per visita.
      * Aggiorna se esiste già un record, altrimenti ne inserisce uno nuovo.
      * 
+     * @param conn la connessione da usare
      * @param max il numero massimo di persone
-     * @return true se l'operazione ha successo, false altrimenti
+     * @throws SQLException se la scrittura fallisce
      */
-    public static boolean setMaxPeoplePerVisit(int max) {
-        try (Connection conn = DatabaseConnection.connect()) {
-            try (PreparedStatement upd = conn.prepareStatement(UPDATE_MAX_SQL)) {
-                upd.setInt(1, max);
-                int u = upd.executeUpdate();
-                if (u > 0) return true;
-            }
-            try (PreparedStatement ins = conn.prepareStatement(INSERT_MAX_SQL)) {
-                ins.setInt(1, max);
-                ins.executeUpdate();
-                return true;
-            }
-        } catch (SQLException e) {
-            System.err.println("ApplicationSettingsDAO.setMaxPeoplePerVisit error: " + e.getMessage());
+    static void scriviMaxPeoplePerVisit(Connection conn, int max) throws SQLException {
+        try (PreparedStatement upd = conn.prepareStatement(UPDATE_MAX_SQL)) {
+            upd.setInt(1, max);
+            if (upd.executeUpdate() > 0) return;
+        }
+        try (PreparedStatement ins = conn.prepareStatement(INSERT_MAX_SQL)) {
+            ins.setInt(1, max);
+            ins.executeUpdate();
         }
-        return false;
     }
 
     /**
-     * Verifica se è stato impostato un ambito territoriale.
+     * Salva l'ambito territoriale come JSON array.
+     * Aggiorna se esiste già un record, altrimenti ne inserisce uno nuovo.
      * 
-     * @return true se l'ambito territoriale è impostato, false altrimenti
+     * @param conn la connessione da usare
+     * @param ambiti lista degli ambiti territoriali da salvare
+     * @throws SQLException se la scrittura fallisce
      */
-    public static boolean hasTerritorialScope() {
-        try (Connection conn = DatabaseConnection.connect();
-             PreparedStatement ps = conn.prepareStatement(SELECT_SQL);
-             ResultSet rs = ps.executeQuery()) {
-            if (rs.next()) {
-                String v = rs.getString("territorial_scope");
-                return v != null && !v.trim().isEmpty();
-            }
-        } catch (SQLException e) {
-            System.err.println("ApplicationSettingsDAO.hasTerritorialScope error: " + e.getMessage());
+    static void scriviTerritorialScope(Connection conn, List<String> ambiti) throws SQLException {
+        String json = toJsonArray(ambiti);
+        try (PreparedStatement upd = conn.prepareStatement(UPDATE_SQL)) {
+            upd.setString(1, json);
+            if (upd.executeUpdate() > 0) return;
+        }
+        try (PreparedStatement ins = conn.prepareStatement(INSERT_SQL)) {
+            ins.setString(1, json);
+            ins.executeUpdate();
         }
-        return false;
     }
 
     /**
-     * Recupera l'ambito territoriale dalle impostazioni.
-     * L'ambito è salvato come JSON array e viene parsato in una lista di stringhe.
+     * Salva lo stato della raccolta delle disponibilità.
      * 
-     * @return lista degli ambiti territoriali configurati
+     * @param conn la connessione da usare
+     * @param stato true se la raccolta è attiva, false altrimenti
+     * @throws SQLException se la scrittura fallisce
      */
-    public static List<String> getTerritorialScope() {
-        List<String> result = new ArrayList<>();
-        try (Connection conn = DatabaseConnection.connect();
-             PreparedStatement ps = conn.prepareStatement(SELECT_SQL);
-             ResultSet rs = ps.executeQuery()) {
-            if (rs.next()) {
-                String v = rs.getString("territorial_scope");
-                if (v != null && !v.trim().isEmpty()) {
-                    String s = v.trim();
-
-                     
-                    int idxOpen = s.indexOf('[');
-                    int idxClose = s.lastIndexOf(']');
-                    String target = s;
-                    if (idxOpen >= 0 && idxClose > idxOpen) {
-                        target = s.substring(idxOpen + 1, idxClose);
-                    }
-
-                     
-                    java.util.regex.Pattern p = java.util.regex.Pattern.compile("\"([^\"]+)\"");
-                    java.util.regex.Matcher m = p.matcher(target);
-                    while (m.find()) {
-                        String item = m.group(1).trim();
-                        if (!item.isEmpty()) result.add(item);
-                    }
-
-                     
-                    if (result.isEmpty()) {
-                        for (String part : target.split("\\R|,")) {
-                            String tt = part.trim().replaceAll("[\\[\\]\\{\\}\\\"]", "");
-                            if (!tt.isEmpty()) result.add(tt);
-                        }
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("ApplicationSettingsDAO.getTerritorialScope error: " + e.getMessage());
+    static void scriviStatoRaccolta(Connection conn, boolean stato) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(UPDATE_STATO_RACCOLTA_SQL)) {
+            ps.setBoolean(1, stato);
+            ps.executeUpdate();
         }
-        return result;
     }
 
     /**
-     * Imposta l'ambito territoriale nelle impostazioni.
-     * Salva la lista come JSON array nel database.
-     * Aggiorna se esiste già un record, altrimenti ne inserisce uno nuovo.
+     * Interpreta l'ambito territoriale salvato come JSON array.
+     * Se non contiene elementi tra virgolette, lo divide per righe o virgole.
      * 
-     * @param ambiti lista degli ambiti territoriali da salvare
-     * @return true se l'operazione ha successo, false altrimenti
+     * @param v il valore della colonna territorial_scope
+     * @return lista degli ambiti territoriali
      */
-    public static boolean setTerritorialScope(List<String> ambiti) {
-        String json = toJsonArray(ambiti);
-        try (Connection conn = DatabaseConnection.connect()) {
-             
-            try (PreparedStatement upd = conn.prepareStatement(UPDATE_SQL)) {
-                upd.setString(1, json);
-                int u = upd.executeUpdate();
-                if (u > 0) return true;
-            }
-             
-            try (PreparedStatement ins = conn.prepareStatement(INSERT_SQL)) {
-                ins.setString(1, json);
-                ins.executeUpdate();
-                return true;
+    private static List<String> parseAmbito(String v) {
+        List<String> result = new ArrayList<>();
+        if (v == null || v.trim().isEmpty()) return result;
+        String s = v.trim();
+
+        int idxOpen = s.indexOf('[');
+        int idxClose = s.lastIndexOf(']');
+        String target = s;
+        if (idxOpen >= 0 && idxClose > idxOpen) {
+            target = s.substring(idxOpen + 1, idxClose);
+        }
+
+        Matcher m = ELEMENTO_JSON.matcher(target);
+        while (m.find()) {
+            String item = m.group(1).trim();
+            if (!item.isEmpty()) result.add(item);
+        }
+
+        if (result.isEmpty()) {
+            for (String part : target.split("\\R|,")) {
+                String tt = part.trim().replaceAll("[\\[\\]\\{\\}\\\"]", "");
+                if (!tt.isEmpty()) result.add(tt);
             }
-        } catch (SQLException e) {
-            System.err.println("ApplicationSettingsDAO.setTerritorialScope error: " + e.getMessage());
         }
-        return false;
+        return result;
     }
 
     /**
@@ -186,20 +182,4 @@ public class ApplicationSettingsDAO {
         sb.append("]");
         return sb.toString();
     }
-
-    /**
-     * Imposta lo stato della raccolta dati nelle impostazioni.
-     * 
-     * @param stato true se la raccolta è attiva, false altrimenti
-     */
-    public void setStatoRaccolta(Boolean stato) {
-        try (Connection conn = DatabaseConnection.connect()) {
-            try (PreparedStatement ps = conn.prepareStatement(UPDATE_STATO_RACCOLTA_SQL)) {
-                ps.setBoolean(1, stato);
-                ps.executeUpdate();
-            }
-        } catch (SQLException e) {
-            System.err.println("ApplicationSettingsDAO.setStatoRaccolta error: " + e.getMessage());
-        }
-    }
 }
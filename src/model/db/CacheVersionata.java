@@ -0,0 +1,275 @@
+package src.model.db;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache in memoria che pubblica il proprio contenuto come snapshot immutabili e versionati.
+ *
+ * Un ricaricamento completo costruisce il nuovo stato a parte e lo pubblica con un solo
+ * scambio atomico di riferimento: i lettori che usano {@link #getSnapshot()} non si bloccano
+ * e non vedono mai una mappa vuota o parzialmente ricostruita.
+ * Per compatibilità con il codice che modifica direttamente la mappa, la cache espone anche
+ * una mappa "viva" che non viene mai svuotata: il nuovo stato vi viene riconciliato chiave per chiave.
+ * Le modifiche puntuali alla mappa viva rendono obsoleto lo snapshot, che viene ricostruito
+ * alla lettura successiva.
+ * Un eventuale {@link Osservatore} riceve ogni modifica, per mantenere indici secondari.
+ *
+ * @param <K> il tipo delle chiavi
+ * @param <V> il tipo dei valori
+ */
+public class CacheVersionata<K, V> {
+
+    private final MappaViva mappa = new MappaViva();
+    private final AtomicReference<Snapshot<K, V>> snapshot =
+            new AtomicReference<>(new Snapshot<>(Collections.emptyMap(), 0, 0));
+    private final Object lockPubblicazione = new Object();
+    private final Osservatore<K, V> osservatore;
+
+    public CacheVersionata() {
+        this(null);
+    }
+
+    /**
+     * Costruisce una cache che notifica le modifiche all'osservatore indicato.
+     *
+     * @param osservatore l'osservatore delle modifiche, o null
+     */
+    public CacheVersionata(Osservatore<K, V> osservatore) {
+        this.osservatore = osservatore;
+    }
+
+    /**
+     * Pubblica un nuovo stato completo della cache.
+     * La mappa ricevuta non deve essere modificata dopo la chiamata.
+     *
+     * @param nuovoStato il contenuto completo aggiornato
+     */
+    public void pubblica(Map<K, V> nuovoStato) {
+        synchronized (lockPubblicazione) {
+            long modificheBase = mappa.modifiche.get();
+            Snapshot<K, V> precedente = snapshot.get();
+            snapshot.set(new Snapshot<>(Collections.unmodifiableMap(new HashMap<>(nuovoStato)),
+                    precedente.getVersione() + 1, modificheBase));
+            for (Map.Entry<K, V> voce : nuovoStato.entrySet()) {
+                mappa.putSilenzioso(voce.getKey(), voce.getValue());
+            }
+            for (K chiave : mappa.keySet()) {
+                if (!nuovoStato.containsKey(chiave)) {
+                    mappa.removeSilenzioso(chiave);
+                }
+            }
+            if (osservatore != null) {
+                osservatore.ricostruito(nuovoStato);
+            }
+        }
+    }
+
+    /**
+     * Restituisce lo snapshot corrente, ricostruendolo se la mappa viva
+     * è stata modificata dopo l'ultima pubblicazione.
+     *
+     * @return lo snapshot immutabile corrente
+     */
+    public Snapshot<K, V> getSnapshot() {
+        Snapshot<K, V> corrente = snapshot.get();
+        long modifiche = mappa.modifiche.get();
+        if (corrente.modificheBase == modifiche) {
+            return corrente;
+        }
+        Snapshot<K, V> ricostruito = new Snapshot<>(
+                Collections.unmodifiableMap(new HashMap<>(mappa)), corrente.getVersione() + 1, modifiche);
+        return snapshot.compareAndSet(corrente, ricostruito) ? ricostruito : snapshot.get();
+    }
+
+    /**
+     * Restituisce la mappa viva, da usare solo per le modifiche puntuali.
+     *
+     * @return la mappa concorrente sottostante
+     */
+    public ConcurrentHashMap<K, V> getMappa() {
+        return mappa;
+    }
+
+    /**
+     * Stato immutabile della cache in un dato momento.
+     *
+     * @param <K> il tipo delle chiavi
+     * @param <V> il tipo dei valori
+     */
+    public static final class Snapshot<K, V> {
+        private final Map<K, V> dati;
+        private final long versione;
+        private final long modificheBase;
+
+        private Snapshot(Map<K, V> dati, long versione, long modificheBase) {
+            this.dati = dati;
+            this.versione = versione;
+            this.modificheBase = modificheBase;
+        }
+
+        /** @return la mappa non modificabile dei dati */
+        public Map<K, V> getDati() { return dati; }
+
+        /** @return i valori dello snapshot */
+        public Collection<V> valori() { return dati.values(); }
+
+        /** @return il valore associato alla chiave, o null */
+        public V get(K chiave) { return dati.get(chiave); }
+
+        /** @return il numero di versione, crescente a ogni pubblicazione */
+        public long getVersione() { return versione; }
+    }
+
+    /**
+     * Riceve le modifiche applicate alla cache.
+     *
+     * @param <K> il tipo delle chiavi
+     * @param <V> il tipo dei valori
+     */
+    public interface Osservatore<K, V> {
+        /** Il contenuto della cache è stato sostituito interamente */
+        void ricostruito(Map<K, V> contenuto);
+
+        /** La chiave è stata inserita o aggiornata */
+        void inserito(K chiave, V valore);
+
+        /** La chiave è stata rimossa */
+        void rimosso(K chiave);
+    }
+
+    /**
+     * Mappa concorrente che conta le modifiche ricevute dall'esterno.
+     * Se c'è un osservatore, le modifiche e le loro notifiche avvengono sotto il lock
+     * di pubblicazione: una ricostruzione non può così cadere tra una modifica e la sua
+     * notifica e cancellare dall'indice una chiave ancora presente nella mappa.
+     */
+    private final class MappaViva extends ConcurrentHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicLong modifiche = new AtomicLong();
+
+        private void putSilenzioso(K chiave, V valore) {
+            super.put(chiave, valore);
+        }
+
+        private void removeSilenzioso(Object chiave) {
+            super.remove(chiave);
+        }
+
+        /** Applica una modifica puntuale e ne notifica l'effetto sulla chiave */
+        private <R> R modifica(Object chiave, Supplier<R> operazione) {
+            if (osservatore == null) {
+                R risultato = operazione.get();
+                modifiche.incrementAndGet();
+                return risultato;
+            }
+            synchronized (lockPubblicazione) {
+                R risultato = operazione.get();
+                modifiche.incrementAndGet();
+                notifica(chiave);
+                return risultato;
+            }
+        }
+
+        /** Notifica all'osservatore lo stato attuale della chiave */
+        private void notifica(Object chiave) {
+            @SuppressWarnings("unchecked")
+            K k = (K) chiave;
+            V valore = super.get(k);
+            if (valore != null) {
+                osservatore.inserito(k, valore);
+            } else {
+                osservatore.rimosso(k);
+            }
+        }
+
+        @Override
+        public V put(K key, V value) {
+            return modifica(key, () -> super.put(key, value));
+        }
+
+        @Override
+        public V putIfAbsent(K key, V value) {
+            return modifica(key, () -> super.putIfAbsent(key, value));
+        }
+
+        @Override
+        public void putAll(Map<? extends K, ? extends V> m) {
+            if (osservatore == null) {
+                super.putAll(m);
+                modifiche.incrementAndGet();
+                return;
+            }
+            synchronized (lockPubblicazione) {
+                super.putAll(m);
+                modifiche.incrementAndGet();
+                for (K chiave : m.keySet()) {
+                    notifica(chiave);
+                }
+            }
+        }
+
+        @Override
+        public V remove(Object key) {
+            return modifica(key, () -> super.remove(key));
+        }
+
+        @Override
+        public boolean remove(Object key, Object value) {
+            return modifica(key, () -> super.remove(key, value));
+        }
+
+        @Override
+        public V replace(K key, V value) {
+            return modifica(key, () -> super.replace(key, value));
+        }
+
+        @Override
+        public boolean replace(K key, V oldValue, V newValue) {
+            return modifica(key, () -> super.replace(key, oldValue, newValue));
+        }
+
+        @Override
+        public void clear() {
+            if (osservatore == null) {
+                super.clear();
+                modifiche.incrementAndGet();
+                return;
+            }
+            synchronized (lockPubblicazione) {
+                super.clear();
+                modifiche.incrementAndGet();
+                osservatore.ricostruito(Collections.emptyMap());
+            }
+        }
+
+        @Override
+        public V compute(K key, BiFunction<? super K, ? super V, ? extends V> f) {
+            return modifica(key, () -> super.compute(key, f));
+        }
+
+        @Override
+        public V computeIfAbsent(K key, Function<? super K, ? extends V> f) {
+            return modifica(key, () -> super.computeIfAbsent(key, f));
+        }
+
+        @Override
+        public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> f) {
+            return modifica(key, () -> super.computeIfPresent(key, f));
+        }
+
+        @Override
+        public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> f) {
+            return modifica(key, () -> super.merge(key, value, f));
+        }
+    }
+}
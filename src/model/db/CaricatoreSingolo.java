@@ -0,0 +1,185 @@
+package src.model.db;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coordina le ricariche complete di un insieme di dati ("single flight"):
+ * le richieste concorrenti condividono il caricamento già in corso invece di
+ * avviarne un altro, e quelle che arrivano entro la finestra di freschezza
+ * dall'avvio dell'ultimo caricamento completato vengono saltate.
+ * Le ricariche forzate, usate dopo una scrittura, ignorano la finestra e sono
+ * servite solo da un caricamento iniziato dopo la richiesta.
+ *
+ */
+public class CaricatoreSingolo {
+
+    private final String nome;
+    private final long finestraNanos;
+    private final Object lock = new Object();
+
+    /** Caricamento in coda o in esecuzione, null se non ce ne sono */
+    private Volo inCorso;
+
+    /** Istante di avvio dell'ultimo caricamento completato */
+    private long ultimoAvvio;
+    private boolean caricato = false;
+
+    private final AtomicLong richieste = new AtomicLong();
+    private final AtomicLong eseguiti = new AtomicLong();
+    private final AtomicLong fusi = new AtomicLong();
+    private final AtomicLong saltati = new AtomicLong();
+
+    /**
+     * Costruttore del caricatore.
+     *
+     * @param nome il nome dell'insieme di dati, usato nelle statistiche
+     * @param finestraFreschezzaMillis il tempo dopo l'avvio di un caricamento
+     *        in cui le nuove richieste non forzate vengono saltate
+     */
+    public CaricatoreSingolo(String nome, long finestraFreschezzaMillis) {
+        this.nome = nome;
+        this.finestraNanos = TimeUnit.MILLISECONDS.toNanos(finestraFreschezzaMillis);
+    }
+
+    /**
+     * Carica i dati nel thread chiamante, oppure attende il caricamento già in corso.
+     *
+     * @param caricamento l'operazione di caricamento completo
+     */
+    public void carica(Runnable caricamento) {
+        attendi(richiedi(caricamento, Runnable::run, false, System.nanoTime()));
+    }
+
+    /**
+     * Ricarica i dati nel thread chiamante ignorando la finestra di freschezza,
+     * così le modifiche confermate prima della chiamata sono sicuramente lette.
+     *
+     * @param caricamento l'operazione di caricamento completo
+     */
+    public void ricarica(Runnable caricamento) {
+        attendi(richiedi(caricamento, Runnable::run, true, System.nanoTime()));
+    }
+
+    /**
+     * Richiede un caricamento sull'executor indicato senza attenderlo.
+     *
+     * @param caricamento l'operazione di caricamento completo
+     * @param esecutore l'executor su cui eseguire il caricamento
+     * @return il future completato al termine del caricamento che serve la richiesta
+     */
+    public CompletableFuture<Void> caricaAsync(Runnable caricamento, Executor esecutore) {
+        return richiedi(caricamento, esecutore, false, System.nanoTime());
+    }
+
+    /**
+     * Instrada una richiesta. Una richiesta forzata che trova in corso un caricamento
+     * avviato prima di lei ne attende la fine nel thread chiamante e poi riprova;
+     * per questo le richieste forzate arrivano solo dai metodi sincroni.
+     */
+    private CompletableFuture<Void> richiedi(Runnable caricamento, Executor esecutore, boolean forzata, long richiesta) {
+        richieste.incrementAndGet();
+        Volo volo;
+        while (true) {
+            CompletableFuture<Void> precedente;
+            synchronized (lock) {
+                if (inCorso != null) {
+                    if (!forzata || inCorso.servePer(richiesta)) {
+                        fusi.incrementAndGet();
+                        return inCorso.future;
+                    }
+                    precedente = inCorso.future;
+                } else {
+                    if (caricato) {
+                        if (forzata && ultimoAvvio - richiesta >= 0) {
+                            fusi.incrementAndGet();
+                            return CompletableFuture.completedFuture(null);
+                        }
+                        if (!forzata && richiesta - ultimoAvvio < finestraNanos) {
+                            saltati.incrementAndGet();
+                            return CompletableFuture.completedFuture(null);
+                        }
+                    }
+                    volo = new Volo();
+                    inCorso = volo;
+                    break;
+                }
+            }
+            // il caricamento in corso ha letto dati precedenti alla richiesta: se ne attende la fine
+            precedente.handle((v, e) -> null).join();
+        }
+
+        eseguiti.incrementAndGet();
+        try {
+            esecutore.execute(() -> esegui(volo, caricamento));
+        } catch (RejectedExecutionException e) {
+            termina(volo, false);
+            volo.future.completeExceptionally(e);
+        }
+        return volo.future;
+    }
+
+    private void esegui(Volo volo, Runnable caricamento) {
+        synchronized (lock) {
+            volo.avvio = System.nanoTime();
+            volo.avviato = true;
+        }
+        try {
+            caricamento.run();
+        } catch (RuntimeException e) {
+            termina(volo, false);
+            volo.future.completeExceptionally(e);
+            return;
+        }
+        termina(volo, true);
+        volo.future.complete(null);
+    }
+
+    private void termina(Volo volo, boolean riuscito) {
+        synchronized (lock) {
+            if (riuscito) {
+                ultimoAvvio = volo.avvio;
+                caricato = true;
+            }
+            if (inCorso == volo) inCorso = null;
+        }
+    }
+
+    private static void attendi(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Restituisce un'istantanea delle statistiche del caricatore.
+     *
+     * @return le statistiche correnti
+     */
+    public StatisticheCaricatore getStatistiche() {
+        return new StatisticheCaricatore(nome, richieste.get(), eseguiti.get(), fusi.get(), saltati.get());
+    }
+
+    /**
+     * Caricamento in coda o in esecuzione; i campi di avvio sono protetti dal lock del caricatore.
+     */
+    private static final class Volo {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private boolean avviato = false;
+        private long avvio;
+
+        /** Un caricamento non ancora avviato, o avviato dopo la richiesta, ne legge le modifiche */
+        private boolean servePer(long richiesta) {
+            return !avviato || avvio - richiesta >= 0;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package src.model.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import src.model.TipiVisitaClass;
+
+/**
+ * Catalogo dei tipi di visita letto dalla tabella {@code tipi_visita}.
+ * Il catalogo viene caricato al primo accesso e tenuto allineato dalle operazioni
+ * locali di aggiunta e rimozione e dalla sincronizzazione periodica, che lo rilegge
+ * solo quando l'impronta della tabella cambia.
+ * Le istanze restituite sono quelle condivise del registro di {@link TipiVisitaClass},
+ * per cui visite, luoghi e volontari con lo stesso tipo referenziano lo stesso oggetto.
+ *
+ */
+public class CatalogoTipiVisita {
+
+    private static final String SQL_CARICA = "SELECT nome, descrizione FROM tipi_visita ORDER BY id";
+
+    /** Numero di righe, id massimo e somma dei CRC di nome e descrizione */
+    private static final String SQL_IMPRONTA = "SELECT COUNT(*), COALESCE(MAX(id), 0), "
+            + "COALESCE(SUM(CRC32(CONCAT(nome, '|', COALESCE(descrizione, '')))), 0) FROM tipi_visita";
+
+    private static final CatalogoTipiVisita instance = new CatalogoTipiVisita();
+
+    /** Tipi del catalogo nell'ordine di inserimento, null finché non caricati */
+    private volatile List<TipiVisitaClass> tipi;
+
+    /** Impronta della tabella all'ultima lettura */
+    private String impronta;
+
+    private CatalogoTipiVisita() {
+    }
+
+    /**
+     * Restituisce l'istanza condivisa del catalogo.
+     *
+     * @return l'istanza singleton del catalogo
+     */
+    public static CatalogoTipiVisita getInstance() {
+        return instance;
+    }
+
+    /**
+     * Restituisce i tipi del catalogo, caricandoli al primo accesso.
+     * Se il database non è raggiungibile restituisce i tipi registrati in memoria.
+     *
+     * @return la lista non modificabile dei tipi di visita
+     */
+    public List<TipiVisitaClass> getTipi() {
+        List<TipiVisitaClass> attuali = tipi;
+        if (attuali != null) return attuali;
+        synchronized (this) {
+            if (tipi == null) {
+                try (Connection conn = DatabaseConnection.connect()) {
+                    if (conn == null) return Collections.unmodifiableList(TipiVisitaClass.values());
+                    ricarica(conn);
+                } catch (SQLException e) {
+                    System.err.println("Errore durante il recupero dei tipi di visita: " + e.getMessage());
+                    return Collections.unmodifiableList(TipiVisitaClass.values());
+                }
+            }
+            return tipi;
+        }
+    }
+
+    /**
+     * Restituisce l'istanza condivisa di un tipo letto dal database.
+     *
+     * @param nome il nome del tipo
+     * @param descrizione la descrizione del tipo
+     * @return l'istanza condivisa
+     */
+    public TipiVisitaClass interna(String nome, String descrizione) {
+        return TipiVisitaClass.interna(nome, descrizione);
+    }
+
+    /**
+     * Rilegge il catalogo se l'impronta della tabella è cambiata dall'ultima lettura.
+     * Se il catalogo non è ancora stato caricato non fa nulla.
+     *
+     * @param conn la connessione da usare
+     * @return true se il catalogo è stato riletto
+     * @throws SQLException se la lettura fallisce
+     */
+    public boolean aggiornaSeModificato(Connection conn) throws SQLException {
+        if (tipi == null) return false;
+        String nuova = leggiImpronta(conn);
+        synchronized (this) {
+            if (nuova.equals(impronta)) return false;
+            ricarica(conn);
+        }
+        return true;
+    }
+
+    /**
+     * Rilegge completamente il catalogo.
+     *
+     * @param conn la connessione da usare
+     * @throws SQLException se la lettura fallisce
+     */
+    public synchronized void ricarica(Connection conn) throws SQLException {
+        String nuovaImpronta = leggiImpronta(conn);
+        List<TipiVisitaClass> letti = new ArrayList<>();
+        List<String> nomi = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_CARICA);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                TipiVisitaClass tipo = TipiVisitaClass.interna(rs.getString("nome"), rs.getString("descrizione"));
+                if (tipo == null) continue;
+                letti.add(tipo);
+                nomi.add(tipo.getNome());
+            }
+        }
+        TipiVisitaClass.mantieniSolo(nomi);
+        tipi = Collections.unmodifiableList(letti);
+        impronta = nuovaImpronta;
+    }
+
+    /**
+     * Registra un tipo appena inserito nel database.
+     *
+     * @param tipo il tipo aggiunto
+     */
+    public synchronized void aggiunto(TipiVisitaClass tipo) {
+        TipiVisitaClass condiviso = TipiVisitaClass.interna(tipo.getNome(), tipo.getDescrizione());
+        if (tipi == null || condiviso == null) return;
+        List<TipiVisitaClass> nuovi = new ArrayList<>(tipi);
+        nuovi.removeIf(t -> t.equals(condiviso));
+        nuovi.add(condiviso);
+        tipi = Collections.unmodifiableList(nuovi);
+        impronta = null;
+    }
+
+    /**
+     * Rimuove dal catalogo un tipo appena eliminato dal database.
+     *
+     * @param tipo il tipo rimosso
+     */
+    public synchronized void rimosso(TipiVisitaClass tipo) {
+        TipiVisitaClass.removeCustomType(tipo.getNome());
+        if (tipi == null) return;
+        List<TipiVisitaClass> nuovi = new ArrayList<>(tipi);
+        nuovi.removeIf(t -> t.equals(tipo));
+        tipi = Collections.unmodifiableList(nuovi);
+        impronta = null;
+    }
+
+    private static String leggiImpronta(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_IMPRONTA);
+             ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) return "";
+            return rs.getLong(1) + ":" + rs.getLong(2) + ":" + rs.getLong(3);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package src.model.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import src.model.TipiVisitaClass;
+import src.model.Visita;
+
+/**
+ * Coda write-behind degli aggiornamenti delle visite.
+ * Gli aggiornamenti successivi della stessa visita vengono fusi nell'ultimo,
+ * e quelli in sospeso sono scritti come un unico batch JDBC in una sola transazione,
+ * insieme alle associazioni con i tipi di visita, a intervalli regolari o al
+ * raggiungimento della soglia di dimensione.
+ * Ogni aggiornamento accodato restituisce un future completato dopo il commit
+ * del batch che lo contiene, anche se è stato fuso in un aggiornamento successivo.
+ *
+ */
+public class CodaAggiornamentiVisite {
+
+    private static final String SQL_AGGIORNA = "UPDATE visite SET luogo = ?, volontario = ?, data = ?, stato = ?, max_persone = ?, ora_inizio = ?, durata_minuti = ? WHERE id = ?";
+
+    /** Intervallo massimo tra due scritture consecutive */
+    private static final long INTERVALLO_FLUSH_MILLIS = 200;
+
+    /** Numero di visite in sospeso che provoca una scrittura anticipata */
+    private static final int SOGLIA_FLUSH = 50;
+
+    /** Tempo concesso allo svuotamento della coda quando la chiusura avviene dallo shutdown hook */
+    private static final long TIMEOUT_CHIUSURA_MILLIS = 5000;
+
+    /** Numero di scritture fallite dopo cui l'aggiornamento di una visita viene scartato */
+    private static final int MAX_TENTATIVI = 3;
+
+    /** Attesa tra due tentativi di scrittura durante la chiusura */
+    private static final long PAUSA_RITENTATIVO_MILLIS = 100;
+
+    private static final CodaAggiornamentiVisite instance = new CodaAggiornamentiVisite();
+
+    /** Ultima versione in sospeso di ogni visita, indicizzata per ID */
+    private final ConcurrentHashMap<Integer, RigaVisita> inSospeso = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean flushAnticipatoRichiesto = new AtomicBoolean(false);
+    private final Object lockFlush = new Object();
+    private volatile boolean chiusa = false;
+
+    /** Impostato allo scadere della chiusura: da quel momento le righe non scritte vengono scartate */
+    private volatile boolean scaduta = false;
+
+    private final AtomicLong aggiornamentiRicevuti = new AtomicLong();
+    private final AtomicLong righeScritte = new AtomicLong();
+    private final AtomicLong batchEseguiti = new AtomicLong();
+
+    private CodaAggiornamentiVisite() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            t.setName("visite-write-behind");
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, INTERVALLO_FLUSH_MILLIS, INTERVALLO_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::chiudi, "visite-write-behind-shutdown"));
+    }
+
+    /**
+     * Restituisce l'istanza condivisa della coda.
+     *
+     * @return l'istanza singleton della coda
+     */
+    public static CodaAggiornamentiVisite getInstance() {
+        return instance;
+    }
+
+    /**
+     * Accoda l'aggiornamento di una visita, sostituendo quello eventualmente
+     * già in sospeso per lo stesso ID. I valori vengono copiati subito.
+     *
+     * @param visitaId l'ID della visita
+     * @param visita la visita con i dati aggiornati
+     * @return il future completato con le righe aggiornate quando la visita viene scritta
+     */
+    public CompletableFuture<EsitoScrittura> accoda(int visitaId, Visita visita) {
+        aggiornamentiRicevuti.incrementAndGet();
+        CompletableFuture<EsitoScrittura> esito = new CompletableFuture<>();
+        RigaVisita nuova = new RigaVisita(visitaId, visita);
+        nuova.attese.add(esito);
+        inSospeso.merge(visitaId, nuova, (precedente, riga) -> {
+            riga.attese.addAll(precedente.attese);
+            return riga;
+        });
+        if (chiusa) {
+            flush();
+        } else if (inSospeso.size() >= SOGLIA_FLUSH && flushAnticipatoRichiesto.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                flushAnticipatoRichiesto.set(false);
+                flush();
+            });
+        }
+        return esito;
+    }
+
+    /**
+     * Applica a una visita appena letta dal database l'eventuale aggiornamento
+     * ancora in sospeso, così una ricarica non riporta in memoria valori superati.
+     *
+     * @param visita la visita caricata dal database
+     */
+    public void applicaInSospeso(Visita visita) {
+        RigaVisita riga = inSospeso.get(visita.getId());
+        if (riga != null) {
+            riga.applicaA(visita);
+        }
+    }
+
+    /**
+     * Scrive su database tutti gli aggiornamenti in sospeso come un unico batch.
+     * Le righe restano in sospeso fino al commit, così una ricarica concorrente
+     * continua a vedere i valori non ancora scritti. Se il batch fallisce le righe
+     * vengono riscritte una per transazione, per isolare quelle che non possono essere
+     * scritte: dopo {@link #MAX_TENTATIVI} fallimenti una riga viene scartata e i suoi
+     * future completati con l'errore. Gli errori di connessione non contano come tentativi.
+     */
+    public void flush() {
+        synchronized (lockFlush) {
+            if (inSospeso.isEmpty()) return;
+            List<RigaVisita> righe = new ArrayList<>(inSospeso.values());
+
+            try (Connection conn = DatabaseConnection.connect()) {
+                if (conn == null) {
+                    System.err.println("Aggiornamento delle visite rinviato: connessione al database non disponibile.");
+                    return;
+                }
+                conn.setAutoCommit(false);
+                try {
+                    scrivi(conn, righe);
+                    batchEseguiti.incrementAndGet();
+                    return;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    if (erroreDiConnessione(e)) throw e;
+                    System.err.println("Errore durante l'aggiornamento delle visite, scrittura riga per riga: " + e.getMessage());
+                }
+                for (RigaVisita riga : righe) {
+                    try {
+                        scrivi(conn, List.of(riga));
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        if (erroreDiConnessione(e)) throw e;
+                        registraFallimento(riga, e);
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Aggiornamento delle visite rinviato: " + e.getMessage());
+                if (scaduta) {
+                    for (RigaVisita riga : righe) {
+                        scarta(riga, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scrive le righe in una transazione e, dopo il commit, le toglie dalle righe
+     * in sospeso (se non sono state sostituite nel frattempo) e ne completa i future.
+     */
+    private void scrivi(Connection conn, List<RigaVisita> righe) throws SQLException {
+        int[] risultati;
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_AGGIORNA)) {
+            Map<Integer, List<TipiVisitaClass>> tipiPerVisita = new HashMap<>();
+            for (RigaVisita riga : righe) {
+                riga.imposta(pstmt);
+                pstmt.addBatch();
+                if (riga.tipiVisita != null) tipiPerVisita.put(riga.id, riga.tipiVisita);
+            }
+            risultati = pstmt.executeBatch();
+            TipiVisitaAssociati.sostituisciTutti(conn, TipiVisitaAssociati.Associazione.VISITA, tipiPerVisita);
+        }
+        conn.commit();
+        righeScritte.addAndGet(righe.size());
+        for (int i = 0; i < righe.size(); i++) {
+            RigaVisita riga = righe.get(i);
+            inSospeso.remove(riga.id, riga);
+            int aggiornate = i < risultati.length ? risultati[i] : 0;
+            riga.completa(EsitoScrittura.righe(aggiornate == Statement.SUCCESS_NO_INFO ? 1 : aggiornate));
+        }
+    }
+
+    /**
+     * Conta un fallimento della riga e la scarta al raggiungimento del limite
+     * di tentativi o se il tempo concesso alla chiusura è scaduto.
+     */
+    private void registraFallimento(RigaVisita riga, SQLException errore) {
+        riga.tentativi++;
+        if (scaduta || riga.tentativi >= MAX_TENTATIVI) {
+            System.err.println("Aggiornamento della visita " + riga.id + " scartato dopo " + riga.tentativi
+                    + " tentativi: " + errore.getMessage());
+            scarta(riga, errore);
+        }
+    }
+
+    /**
+     * Toglie la riga dalle righe in sospeso e completa i suoi future con l'errore.
+     * Se nel frattempo è stata sostituita da un aggiornamento più recente, che ne ha
+     * ereditato i future, la riga viene solo ignorata.
+     */
+    private void scarta(RigaVisita riga, SQLException errore) {
+        if (inSospeso.remove(riga.id, riga)) {
+            riga.fallisci(errore);
+        }
+    }
+
+    /**
+     * Indica se l'errore dipende dalla connessione e non dai dati della riga.
+     */
+    private static boolean erroreDiConnessione(SQLException e) {
+        String stato = e.getSQLState();
+        return e instanceof SQLTransientException || e instanceof SQLRecoverableException
+                || (stato != null && stato.startsWith("08"));
+    }
+
+    /**
+     * Ferma lo scheduler e scrive gli aggiornamenti ancora in sospeso,
+     * concedendo allo svuotamento il tempo predefinito.
+     */
+    public void chiudi() {
+        chiudi(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_CHIUSURA_MILLIS));
+    }
+
+    /**
+     * Ferma lo scheduler e svuota la coda entro la scadenza: le scritture fallite
+     * vengono ritentate finché resta tempo, poi le righe ancora in sospeso sono scartate
+     * e i relativi future completati con errore. Viene tentata almeno una scrittura.
+     *
+     * @param scadenzaNanos l'istante limite, nella scala di {@link System#nanoTime()}
+     * @return il numero di visite i cui aggiornamenti sono stati abbandonati,
+     *         0 se la coda era già chiusa
+     */
+    public int chiudi(long scadenzaNanos) {
+        synchronized (lockFlush) {
+            if (chiusa) return 0;
+            chiusa = true;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(Math.max(0, scadenzaNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+        while (!inSospeso.isEmpty() && !Thread.currentThread().isInterrupted()) {
+            long rimanente = TimeUnit.NANOSECONDS.toMillis(scadenzaNanos - System.nanoTime());
+            if (rimanente <= 0) break;
+            try {
+                Thread.sleep(Math.min(PAUSA_RITENTATIVO_MILLIS, rimanente));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            flush();
+        }
+
+        synchronized (lockFlush) {
+            scaduta = true;
+            List<RigaVisita> abbandonate = new ArrayList<>(inSospeso.values());
+            if (!abbandonate.isEmpty()) {
+                System.err.println("Aggiornamenti di " + abbandonate.size() + " visite non salvati alla chiusura.");
+                SQLException errore = new SQLException("Chiusura della coda prima della scrittura");
+                for (RigaVisita riga : abbandonate) {
+                    scarta(riga, errore);
+                }
+            }
+            return abbandonate.size();
+        }
+    }
+
+    /**
+     * Restituisce il numero di visite con aggiornamenti non ancora scritti.
+     *
+     * @return il numero di visite in sospeso
+     */
+    public int getNumeroInSospeso() {
+        return inSospeso.size();
+    }
+
+    public long getAggiornamentiRicevuti() { return aggiornamentiRicevuti.get(); }
+
+    public long getRigheScritte() { return righeScritte.get(); }
+
+    public long getBatchEseguiti() { return batchEseguiti.get(); }
+
+    /**
+     * Copia immutabile dei campi aggiornabili di una visita.
+     */
+    private static final class RigaVisita {
+        private final int id;
+        private final String luogo;
+        private final List<TipiVisitaClass> tipiVisita;
+        private final String volontario;
+        private final LocalDate data;
+        private final String stato;
+        private final int maxPersone;
+        private final LocalTime oraInizio;
+        private final int durataMinuti;
+
+        /** Future degli aggiornamenti fusi in questa riga, modificati solo dentro le operazioni della mappa */
+        private final List<CompletableFuture<EsitoScrittura>> attese = new ArrayList<>(1);
+
+        /** Scritture fallite per errori nei dati, letto e modificato sotto il lock del flush */
+        private int tentativi = 0;
+
+        private RigaVisita(int id, Visita visita) {
+            this.id = id;
+            this.luogo = visita.getLuogo();
+            this.tipiVisita = visita.getTipiVisitaClass() != null ? new ArrayList<>(visita.getTipiVisitaClass()) : null;
+            this.volontario = visita.getVolontario();
+            this.data = visita.getData();
+            this.stato = visita.getStato();
+            this.maxPersone = visita.getMaxPersone();
+            this.oraInizio = visita.getOraInizio();
+            this.durataMinuti = visita.getDurataMinuti();
+        }
+
+        private void imposta(PreparedStatement pstmt) throws SQLException {
+            pstmt.setString(1, luogo);
+            pstmt.setString(2, volontario);
+            pstmt.setDate(3, data != null ? java.sql.Date.valueOf(data) : null);
+            pstmt.setString(4, stato);
+            pstmt.setInt(5, maxPersone);
+            pstmt.setTime(6, oraInizio != null ? java.sql.Time.valueOf(oraInizio) : null);
+            pstmt.setInt(7, durataMinuti);
+            pstmt.setInt(8, id);
+        }
+
+        private void completa(EsitoScrittura esito) {
+            for (CompletableFuture<EsitoScrittura> attesa : attese) {
+                attesa.complete(esito);
+            }
+        }
+
+        private void fallisci(SQLException errore) {
+            for (CompletableFuture<EsitoScrittura> attesa : attese) {
+                attesa.completeExceptionally(errore);
+            }
+        }
+
+        private void applicaA(Visita visita) {
+            visita.setLuogo(luogo);
+            if (tipiVisita != null) visita.setTipiVisita(new ArrayList<>(tipiVisita));
+            visita.setVolontario(volontario);
+            visita.setData(data);
+            visita.setStato(stato);
+            visita.setMaxPersone(maxPersone);
+            visita.setOraInizio(oraInizio);
+            visita.setDurataMinuti(durataMinuti);
+        }
+    }
+}
@@ -3,6 +3,9 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import src.controller.ThreadPoolController;
@@ -17,8 +20,11 @@ import src.model.Configuratore;
  *  
  */
 public class ConfiguratoriManager extends DatabaseManager {
+    /** Cache versionata dei configuratori indicizzata per email */
+    private final CacheVersionata<String, Configuratore> configuratoriCache = new CacheVersionata<>();
+
     /** Mappa concorrente dei configuratori indicizzata per email */
-    private ConcurrentHashMap<String, Configuratore> configuratoriMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Configuratore> configuratoriMap = configuratoriCache.getMappa();
 
     /**
      * Costruttore del manager dei configuratori.
@@ -54,24 +60,61 @@ public class ConfiguratoriManager extends DatabaseManager {
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
 
-            synchronized (configuratoriMap) {
-                configuratoriMap.clear();
-                while (rs.next()) {
-                    String email = rs.getString("email");
-                    Configuratore configuratore = new Configuratore(
-                            rs.getString("nome"),
-                            rs.getString("cognome"),
-                            email,
-                            rs.getString("password")
-                    );
-                    configuratoriMap.putIfAbsent(email, configuratore);
-                }
+            Map<String, Configuratore> nuoviConfiguratori = new HashMap<>();
+            while (rs.next()) {
+                Configuratore configuratore = mappaConfiguratore(rs);
+                nuoviConfiguratori.putIfAbsent(configuratore.getEmail(), configuratore);
             }
+            configuratoriCache.pubblica(nuoviConfiguratori);
         } catch (SQLException e) {
             consoleIO.mostraMessaggio("Errore durante il caricamento dei configuratori: " + e.getMessage());
         }
     }
 
+    /**
+     * Carica i soli configuratori modificati a partire dall'istante indicato
+     * e li aggiorna nella mappa senza svuotarla.
+     * 
+     * @param conn la connessione da usare
+     * @param dal l'istante da cui cercare le modifiche (incluso)
+     * @return l'istante di modifica più recente letto, o quello ricevuto se non ci sono modifiche
+     * @throws SQLException se la query fallisce
+     */
+    protected Timestamp caricaConfiguratoriModificati(Connection conn, Timestamp dal) throws SQLException {
+        String sql = "SELECT nome, cognome, email, password, aggiornato_il FROM configuratori WHERE aggiornato_il >= ?";
+        Timestamp ultimo = dal;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setTimestamp(1, dal);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Configuratore configuratore = mappaConfiguratore(rs);
+                    configuratoriMap.put(configuratore.getEmail(), configuratore);
+                    Timestamp aggiornatoIl = rs.getTimestamp("aggiornato_il");
+                    if (aggiornatoIl.after(ultimo)) ultimo = aggiornatoIl;
+                }
+            }
+        }
+        return ultimo;
+    }
+
+    /**
+     * Rimuove dalla mappa un configuratore eliminato dal database.
+     * 
+     * @param email l'email del configuratore eliminato
+     */
+    protected void rimuoviConfiguratoreDallaCache(String email) {
+        configuratoriMap.remove(email);
+    }
+
+    private Configuratore mappaConfiguratore(ResultSet rs) throws SQLException {
+        return new Configuratore(
+                rs.getString("nome"),
+                rs.getString("cognome"),
+                rs.getString("email"),
+                rs.getString("password")
+        );
+    }
+
     /**
      * Aggiunge un nuovo configuratore al database.
      * Inserisce il configuratore sia nella tabella configuratori che nella tabella utenti_unificati.
@@ -206,14 +249,24 @@ public class ConfiguratoriManager extends DatabaseManager {
     public ConcurrentHashMap<String, Configuratore> getConfiguratoriMap() {
         return configuratoriMap;
     }
+
+    /**
+     * Restituisce lo snapshot immutabile corrente dei configuratori.
+     * 
+     * @return lo snapshot dei configuratori
+     */
+    public CacheVersionata.Snapshot<String, Configuratore> getConfiguratoriSnapshot() {
+        return configuratoriCache.getSnapshot();
+    }
     
     /**
      * Imposta la mappa dei configuratori.
+     * Il contenuto viene pubblicato come nuovo snapshot della cache.
      * 
      * @param configuratoriMap la nuova mappa dei configuratori
      */
     public void setConfiguratoriMap(ConcurrentHashMap<String, Configuratore> configuratoriMap) {
-        this.configuratoriMap = configuratoriMap;
+        configuratoriCache.pubblica(new HashMap<>(configuratoriMap));
     }
 
     /**
@@ -0,0 +1,378 @@
+package src.model.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool limitato di connessioni JDBC verso il database.
+ * Mantiene un numero minimo di connessioni pronte, non supera mai il numero
+ * massimo configurato e chiude le connessioni rimaste inattive troppo a lungo.
+ *
+ * Le connessioni restituite al chiamante sono proxy: la chiamata a close()
+ * non chiude la connessione fisica ma la riconsegna al pool, per cui il codice
+ * esistente basato su try-with-resources continua a funzionare invariato.
+ *
+ */
+public class ConnectionPool {
+
+    /** Intervallo di esecuzione del task di pulizia delle connessioni inattive */
+    private static final long INTERVALLO_PULIZIA_MILLIS = 30_000;
+
+    /** Connessioni usate più di recente di questa soglia non vengono rivalidate */
+    private static final long FINESTRA_VALIDAZIONE_MILLIS = 500;
+
+    /** Numero massimo di PreparedStatement tenuti in cache per ogni connessione */
+    private static final int CAPACITA_CACHE_STATEMENT = 64;
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    /** Numero minimo di connessioni fisiche da mantenere aperte */
+    private final int minConnessioni;
+
+    /** Numero massimo di connessioni fisiche aperte contemporaneamente */
+    private final int maxConnessioni;
+
+    /** Tempo di inattività oltre il quale una connessione libera viene chiusa */
+    private final long idleTimeoutMillis;
+
+    /** Tempo massimo di attesa per ottenere una connessione */
+    private final long timeoutAcquisizioneMillis;
+
+    /** Timeout, in secondi, del controllo di validità eseguito al prestito */
+    private final int timeoutValidazioneSecondi;
+
+    /** Connessioni fisiche libere, la più recente in testa */
+    private final LinkedBlockingDeque<ConnessioneFisica> libere = new LinkedBlockingDeque<>();
+
+    /** Permessi di prestito: uno per ogni connessione che può essere in uso */
+    private final Semaphore permessi;
+
+    /** Executor del task periodico di pulizia */
+    private final ScheduledExecutorService pulizia;
+
+    private final AtomicInteger totali = new AtomicInteger();
+    private final AtomicInteger inUso = new AtomicInteger();
+    private final AtomicInteger inAttesa = new AtomicInteger();
+    private final AtomicLong prestiti = new AtomicLong();
+    private final AtomicLong create = new AtomicLong();
+    private final AtomicLong chiuse = new AtomicLong();
+    private final AtomicLong timeoutAcquisizione = new AtomicLong();
+    private final AtomicLong validazioniFallite = new AtomicLong();
+    private final AtomicLong attesaTotaleNanos = new AtomicLong();
+
+    private volatile boolean chiuso = false;
+
+    /**
+     * Costruttore del pool di connessioni.
+     *
+     * @param url l'URL JDBC del database
+     * @param user l'utente del database
+     * @param password la password dell'utente
+     * @param minConnessioni il numero minimo di connessioni da tenere aperte
+     * @param maxConnessioni il numero massimo di connessioni aperte
+     * @param idleTimeoutMillis il tempo di inattività dopo cui una connessione libera viene chiusa
+     * @param timeoutAcquisizioneMillis il tempo massimo di attesa di una connessione libera
+     * @param timeoutValidazioneSecondi il timeout del controllo di validità al prestito
+     */
+    public ConnectionPool(String url, String user, String password,
+                          int minConnessioni, int maxConnessioni,
+                          long idleTimeoutMillis, long timeoutAcquisizioneMillis,
+                          int timeoutValidazioneSecondi) {
+        if (minConnessioni < 0 || maxConnessioni < 1 || minConnessioni > maxConnessioni) {
+            throw new IllegalArgumentException("Dimensioni del pool non valide: min=" + minConnessioni + ", max=" + maxConnessioni);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minConnessioni = minConnessioni;
+        this.maxConnessioni = maxConnessioni;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.timeoutAcquisizioneMillis = timeoutAcquisizioneMillis;
+        this.timeoutValidazioneSecondi = timeoutValidazioneSecondi;
+        this.permessi = new Semaphore(maxConnessioni, true);
+        this.pulizia = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            t.setName("connection-pool-pulizia");
+            return t;
+        });
+        this.pulizia.scheduleWithFixedDelay(this::eseguiPulizia,
+                INTERVALLO_PULIZIA_MILLIS, INTERVALLO_PULIZIA_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ottiene una connessione dal pool, attendendo al massimo il timeout di acquisizione.
+     * La connessione viene validata se è rimasta inutilizzata oltre una breve finestra.
+     *
+     * @return una connessione pronta all'uso, da chiudere per restituirla al pool
+     * @throws SQLException se il pool è chiuso, il timeout scade o la connessione non può essere aperta
+     */
+    public Connection getConnection() throws SQLException {
+        if (chiuso) {
+            throw new SQLException("Il pool di connessioni è chiuso");
+        }
+        long inizio = System.nanoTime();
+        inAttesa.incrementAndGet();
+        try {
+            if (!permessi.tryAcquire(timeoutAcquisizioneMillis, TimeUnit.MILLISECONDS)) {
+                timeoutAcquisizione.incrementAndGet();
+                throw new SQLException("Timeout di " + timeoutAcquisizioneMillis + " ms nell'acquisizione di una connessione dal pool");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Acquisizione della connessione interrotta", e);
+        } finally {
+            inAttesa.decrementAndGet();
+        }
+
+        try {
+            ConnessioneFisica fisica = prendiConnessioneValida();
+            if (fisica == null) {
+                fisica = apriConnessione();
+            }
+            inUso.incrementAndGet();
+            prestiti.incrementAndGet();
+            attesaTotaleNanos.addAndGet(System.nanoTime() - inizio);
+            return creaProxy(fisica);
+        } catch (SQLException | RuntimeException e) {
+            permessi.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Estrae dalla coda delle connessioni libere la prima ancora valida.
+     * Le connessioni non più valide vengono chiuse e scartate.
+     *
+     * @return una connessione valida, o null se non ce ne sono di libere
+     */
+    private ConnessioneFisica prendiConnessioneValida() {
+        ConnessioneFisica fisica;
+        while ((fisica = libere.pollFirst()) != null) {
+            if (System.currentTimeMillis() - fisica.ultimoUso < FINESTRA_VALIDAZIONE_MILLIS) {
+                return fisica;
+            }
+            try {
+                if (fisica.connessione.isValid(timeoutValidazioneSecondi)) {
+                    return fisica;
+                }
+            } catch (SQLException e) {
+                // la connessione viene scartata qui sotto
+            }
+            validazioniFallite.incrementAndGet();
+            chiudiFisica(fisica);
+        }
+        return null;
+    }
+
+    /**
+     * Apre una nuova connessione fisica verso il database.
+     *
+     * @return la nuova connessione fisica
+     * @throws SQLException se la connessione non può essere aperta
+     */
+    private ConnessioneFisica apriConnessione() throws SQLException {
+        Connection connessione = DriverManager.getConnection(url, user, password);
+        totali.incrementAndGet();
+        create.incrementAndGet();
+        return new ConnessioneFisica(connessione);
+    }
+
+    /**
+     * Riconsegna una connessione al pool ripristinandone lo stato di default.
+     * Se il ripristino fallisce o il pool è chiuso la connessione fisica viene chiusa.
+     *
+     * @param fisica la connessione fisica da restituire
+     */
+    private void restituisci(ConnessioneFisica fisica) {
+        try {
+            boolean riutilizzabile = !chiuso && !fisica.connessione.isClosed();
+            if (riutilizzabile) {
+                try {
+                    if (!fisica.connessione.getAutoCommit()) {
+                        fisica.connessione.rollback();
+                        fisica.connessione.setAutoCommit(true);
+                    }
+                    fisica.connessione.clearWarnings();
+                    fisica.cacheStatement.rilasciaTutti();
+                } catch (SQLException e) {
+                    riutilizzabile = false;
+                }
+            }
+            if (riutilizzabile) {
+                fisica.ultimoUso = System.currentTimeMillis();
+                libere.offerFirst(fisica);
+            } else {
+                chiudiFisica(fisica);
+            }
+        } catch (SQLException e) {
+            chiudiFisica(fisica);
+        } finally {
+            inUso.decrementAndGet();
+            permessi.release();
+        }
+    }
+
+    /**
+     * Chiude una connessione fisica aggiornando i contatori del pool.
+     *
+     * @param fisica la connessione fisica da chiudere
+     */
+    private void chiudiFisica(ConnessioneFisica fisica) {
+        fisica.cacheStatement.chiudi();
+        try {
+            fisica.connessione.close();
+        } catch (SQLException e) {
+            System.err.println("Errore durante la chiusura di una connessione del pool: " + e.getMessage());
+        }
+        totali.decrementAndGet();
+        chiuse.incrementAndGet();
+    }
+
+    /**
+     * Chiude le connessioni libere inattive oltre l'idle timeout, mantenendo
+     * comunque il numero minimo configurato, e riporta il pool al minimo se necessario.
+     */
+    private void eseguiPulizia() {
+        if (chiuso) return;
+        long ora = System.currentTimeMillis();
+        Iterator<ConnessioneFisica> it = libere.descendingIterator();
+        while (it.hasNext() && totali.get() > minConnessioni) {
+            ConnessioneFisica fisica = it.next();
+            if (ora - fisica.ultimoUso > idleTimeoutMillis && libere.removeLastOccurrence(fisica)) {
+                chiudiFisica(fisica);
+            }
+        }
+        while (!chiuso && totali.get() < minConnessioni) {
+            try {
+                libere.offerLast(apriConnessione());
+            } catch (SQLException e) {
+                System.err.println("Errore durante il riempimento del pool di connessioni: " + e.getMessage());
+                break;
+            }
+        }
+    }
+
+    /**
+     * Crea il proxy che il chiamante usa al posto della connessione fisica.
+     *
+     * @param fisica la connessione fisica da avvolgere
+     * @return il proxy della connessione
+     */
+    private Connection creaProxy(ConnessioneFisica fisica) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new GestoreConnessione(fisica));
+    }
+
+    /**
+     * Chiude il pool: le connessioni libere vengono chiuse subito, quelle
+     * ancora in uso verranno chiuse alla loro restituzione.
+     */
+    public void chiudi() {
+        chiuso = true;
+        pulizia.shutdownNow();
+        ConnessioneFisica fisica;
+        while ((fisica = libere.pollFirst()) != null) {
+            chiudiFisica(fisica);
+        }
+    }
+
+    /**
+     * Restituisce un'istantanea delle statistiche correnti del pool.
+     *
+     * @return le statistiche del pool
+     */
+    public StatistichePool getStatistiche() {
+        long numeroPrestiti = prestiti.get();
+        return new StatistichePool(totali.get(), inUso.get(), libere.size(), inAttesa.get(),
+                minConnessioni, maxConnessioni, numeroPrestiti, create.get(), chiuse.get(),
+                timeoutAcquisizione.get(), validazioniFallite.get(),
+                numeroPrestiti == 0 ? 0 : attesaTotaleNanos.get() / numeroPrestiti / 1_000,
+                StatementCache.getHit(), StatementCache.getMiss(), StatementCache.getEvizioni());
+    }
+
+    /**
+     * Connessione fisica gestita dal pool con l'istante del suo ultimo utilizzo
+     * e la cache dei suoi PreparedStatement.
+     */
+    private static final class ConnessioneFisica {
+        private final Connection connessione;
+        private final StatementCache cacheStatement;
+        private volatile long ultimoUso = System.currentTimeMillis();
+
+        private ConnessioneFisica(Connection connessione) {
+            this.connessione = connessione;
+            this.cacheStatement = new StatementCache(connessione, CAPACITA_CACHE_STATEMENT);
+        }
+    }
+
+    /**
+     * Gestore delle invocazioni sul proxy: inoltra tutto alla connessione fisica
+     * tranne close(), che la restituisce al pool una sola volta, e prepareStatement,
+     * servito dalla cache degli statement della connessione.
+     */
+    private final class GestoreConnessione implements InvocationHandler {
+        private final ConnessioneFisica fisica;
+        private boolean restituita = false;
+
+        private GestoreConnessione(ConnessioneFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nome = method.getName();
+            switch (nome) {
+                case "close":
+                    if (!restituita) {
+                        restituita = true;
+                        restituisci(fisica);
+                    }
+                    return null;
+                case "isClosed":
+                    return restituita || fisica.connessione.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConnessionePool[" + fisica.connessione + "]";
+                default:
+                    break;
+            }
+            if (restituita) {
+                throw new SQLException("La connessione è già stata restituita al pool");
+            }
+            if (nome.equals("prepareStatement") && args.length <= 2 && args[0] instanceof String) {
+                if (args.length == 1) {
+                    return fisica.cacheStatement.prepara((String) args[0], null);
+                }
+                if (args[1] instanceof Integer) {
+                    return fisica.cacheStatement.prepara((String) args[0], (Integer) args[1]);
+                }
+            }
+            try {
+                return method.invoke(fisica.connessione, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
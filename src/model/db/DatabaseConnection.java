@@ -1,37 +1,69 @@
 package src.model.db;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import src.view.ConsoleIO;
 
 /**
  * Gestisce la connessione al database MySQL.
- * Fornisce un metodo statico per ottenere una connessione al database.
+ * Fornisce un metodo statico per ottenere una connessione al database,
+ * prelevata da un pool condiviso di connessioni già aperte.
  * 
  */
 public class DatabaseConnection {
 
-    private static final String URL = "jdbc:mysql://localhost:3306/gestione_visite?useSSL=false";
+    private static final String URL = "jdbc:mysql://localhost:3306/gestione_visite?useSSL=false&useServerPrepStmts=true";
     
     private static final String USER = "root"; 
     
     private static final String PASSWORD = ""; 
 
+    private static final int MIN_CONNESSIONI = 2;
+
+    /** Numero massimo di connessioni aperte, usato anche per limitare il lavoro concorrente sul database */
+    public static final int MAX_CONNESSIONI = 10;
+
+    private static final long IDLE_TIMEOUT_MILLIS = 5 * 60_000;
+
+    private static final long TIMEOUT_ACQUISIZIONE_MILLIS = 10_000;
+
+    private static final int TIMEOUT_VALIDAZIONE_SECONDI = 2;
+
+    private static final ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD,
+            MIN_CONNESSIONI, MAX_CONNESSIONI, IDLE_TIMEOUT_MILLIS,
+            TIMEOUT_ACQUISIZIONE_MILLIS, TIMEOUT_VALIDAZIONE_SECONDI);
+
     private static ConsoleIO consoleIO = new ConsoleIO();
 
     /**
-     * Crea e restituisce una connessione al database MySQL.
+     * Restituisce una connessione al database MySQL presa dal pool.
+     * La chiusura della connessione la riconsegna al pool.
      * 
      * @return un oggetto Connection se la connessione ha successo, null altrimenti
      */
     public static Connection connect() {
         try {
-            return DriverManager.getConnection(URL, USER, PASSWORD);
+            return pool.getConnection();
         } catch (SQLException e) {
             consoleIO.mostraMessaggio("Errore di connessione al database: " + e.getMessage());
             return null;
         }
     }
 
+    /**
+     * Restituisce le statistiche correnti del pool di connessioni.
+     * 
+     * @return le statistiche del pool
+     */
+    public static StatistichePool getStatistichePool() {
+        return pool.getStatistiche();
+    }
+
+    /**
+     * Chiude il pool di connessioni; da invocare alla chiusura dell'applicazione.
+     */
+    public static void chiudiPool() {
+        pool.chiudi();
+    }
+
 }
@@ -7,7 +7,11 @@ import src.model.Volontario;
 import src.view.ConsoleIO;
 import src.controller.ThreadPoolController;
 import java.sql.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Classe astratta base per tutti i manager del database.
@@ -19,20 +23,82 @@ public abstract class DatabaseManager {
     /** Oggetto per l'output su console */
     protected ConsoleIO consoleIO;
     
-    /** Executor service per operazioni asincrone sul database */
+    /** Executor condiviso per operazioni asincrone sul database */
     protected ExecutorService executorService;
 
     /**
      * Costruttore del manager del database.
-     * Inizializza il thread pool e l'oggetto per l'output.
+     * Usa il pool condiviso di I/O sul database e inizializza l'oggetto per l'output.
      * 
      * @param threadPoolManager il controller del thread pool
      */
     public DatabaseManager(ThreadPoolController threadPoolManager) {
-        this.executorService = threadPoolManager.createThreadPool(4);
+        this(threadPoolManager, ThreadPoolController.Pool.DB_IO);
+    }
+
+    /**
+     * Costruttore del manager del database che esegue le operazioni asincrone sul pool indicato,
+     * ad esempio {@link ThreadPoolController.Pool#DB_IO_VIRTUALE} per le scritture bloccanti.
+     * 
+     * @param threadPoolManager il controller del thread pool
+     * @param pool il pool delle operazioni asincrone
+     */
+    protected DatabaseManager(ThreadPoolController threadPoolManager, ThreadPoolController.Pool pool) {
+        this.executorService = threadPoolManager.getExecutor(pool);
         this.consoleIO = new ConsoleIO();
     }
 
+    /**
+     * Esegue una scrittura sull'executor del manager.
+     * Un errore SQL viene stampato, come per le scritture senza esito,
+     * e completa il future in modo eccezionale; lo stesso accade se l'executor
+     * è già stato arrestato e rifiuta la scrittura.
+     * 
+     * @param descrizioneErrore il messaggio da stampare in caso di errore
+     * @param scrittura la scrittura da eseguire
+     * @return il future completato con l'esito della scrittura
+     */
+    protected CompletableFuture<EsitoScrittura> scriviAsync(String descrizioneErrore, Scrittura scrittura) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return scrittura.esegui();
+                } catch (SQLException e) {
+                    System.err.println(descrizioneErrore + ": " + e.getMessage());
+                    throw new CompletionException(e);
+                }
+            }, executorService);
+        } catch (RejectedExecutionException e) {
+            System.err.println(descrizioneErrore + ": " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Attende più scritture indipendenti e ne combina gli esiti.
+     * 
+     * @param scritture i future delle scritture
+     * @return il future completato quando tutte le scritture sono terminate
+     */
+    public static CompletableFuture<EsitoScrittura> tutte(List<CompletableFuture<EsitoScrittura>> scritture) {
+        return CompletableFuture.allOf(scritture.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> {
+                    EsitoScrittura totale = EsitoScrittura.NESSUNA_MODIFICA;
+                    for (CompletableFuture<EsitoScrittura> scrittura : scritture) {
+                        totale = totale.piu(scrittura.join());
+                    }
+                    return totale;
+                });
+    }
+
+    /**
+     * Scrittura sul database che restituisce il proprio esito.
+     */
+    @FunctionalInterface
+    protected interface Scrittura {
+        EsitoScrittura esegui() throws SQLException;
+    }
+
     /**
      * Verifica se esiste almeno un record nel database che soddisfa la query.
      * 
@@ -93,6 +159,7 @@ public abstract class DatabaseManager {
                          
                     }
                     utente.setEmail(nuovaEmail);
+                    emailAggiornata(vecchiaEmail, nuovaEmail);
                     consoleIO.mostraMessaggio("Email aggiornata con successo.");
                     return true;
                 } else {
@@ -108,6 +175,7 @@ public abstract class DatabaseManager {
                         }
                          
                         utente.setEmail(nuovaEmail);
+                        emailAggiornata(vecchiaEmail, nuovaEmail);
                         consoleIO.mostraMessaggio("Email già aggiornata nel DB (persistita da altro processo).");
                         return true;
                     } else {
@@ -121,6 +189,16 @@ public abstract class DatabaseManager {
         return false;
     }
 
+    /**
+     * Notifica che l'email di un utente è stata aggiornata nel database,
+     * per consentire ai manager di riallineare le proprie cache.
+     * 
+     * @param vecchiaEmail l'email precedente
+     * @param nuovaEmail la nuova email
+     */
+    protected void emailAggiornata(String vecchiaEmail, String nuovaEmail) {
+    }
+
     /**
      * Aggiunge un utente alla tabella unificata degli utenti.
      * Questa tabella contiene tutti gli utenti del sistema per facilitare
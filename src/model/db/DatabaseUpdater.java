@@ -8,8 +8,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Gestisce la sincronizzazione periodica dei dati dal database.
@@ -36,8 +41,8 @@ public class DatabaseUpdater {
     /** Manager delle visite */
     private final VisiteManagerDB visiteManagerDB;
     
-    /** Thread pool per operazioni asincrone */
-    private final ExecutorService executorService = ThreadPoolController.getInstance().createThreadPool(4);  
+    /** Executor condiviso dei task in background */
+    private final ExecutorService executorService = ThreadPoolController.getInstance().getExecutor(ThreadPoolController.Pool.BACKGROUND);
     
     /** Thread dedicato alla sincronizzazione periodica */
     private Thread aggiornamentoThread;
@@ -45,6 +50,50 @@ public class DatabaseUpdater {
     /** Flag per controllare l'esecuzione del thread di aggiornamento */
     private volatile boolean eseguiAggiornamento = true;  
 
+    /** Margine di rilettura che copre le transazioni confermate con un timestamp già superato */
+    private static final long MARGINE_WATERMARK_MILLIS = 2000;
+
+    /** Tempo per cui le eliminazioni restano nella tabella eliminazioni prima di essere cancellate */
+    private static final long RITENZIONE_ELIMINAZIONI_SECONDI = 3600;
+
+    /** Intervallo minimo tra due pulizie della tabella eliminazioni */
+    private static final long INTERVALLO_PULIZIA_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /** Intervallo minimo tra l'avvio di due cicli di sincronizzazione richiesti */
+    private static final long FINESTRA_SINCRONIZZAZIONE_MILLIS = 1000;
+
+    /** Evita di accodare un ciclo di sincronizzazione mentre un altro è in coda o in esecuzione */
+    private final CaricatoreSingolo caricatoreSincronizzazione = new CaricatoreSingolo("sincronizzazione", FINESTRA_SINCRONIZZAZIONE_MILLIS);
+
+    /** Lock che impedisce l'esecuzione contemporanea di due cicli di sincronizzazione */
+    private final Object lockSincronizzazione = new Object();
+
+    /** Indica se i watermark sono stati letti e le mappe caricate completamente */
+    private boolean watermarkInizializzati = false;
+
+    /** Istante dell'ultima modifica letta per ciascuna tabella */
+    private Timestamp watermarkVolontari;
+    private Timestamp watermarkConfiguratori;
+    private Timestamp watermarkLuoghi;
+    private Timestamp watermarkVisite;
+    private Timestamp watermarkDatePrecluse;
+
+    /** Istante dell'ultima eliminazione letta */
+    private Timestamp watermarkEliminazioni;
+
+    /**
+     * Eliminazioni già applicate entro il margine del watermark, con il loro istante:
+     * gli id sono assegnati all'inserimento e non alla conferma, quindi le eliminazioni
+     * vengono rilette per istante e quelle già viste vengono saltate
+     */
+    private final Map<Long, Timestamp> eliminazioniApplicate = new HashMap<>();
+
+    /** Istante, nella scala di {@link System#nanoTime()}, dell'ultimo ciclo incrementale riuscito */
+    private long ultimoCicloIncrementale;
+
+    /** Istante, nella scala di {@link System#nanoTime()}, dell'ultima pulizia delle eliminazioni */
+    private long ultimaPulizia;
+
     /**
      * Costruttore del database updater.
      * 
@@ -69,25 +118,205 @@ public class DatabaseUpdater {
     
     /**
      * Sincronizza i dati in memoria con il database in modo asincrono.
-     * Ricarica volontari, configuratori, luoghi, visite e date precluse.
+     * Al primo ciclo ricarica volontari, configuratori, luoghi, visite e date precluse;
+     * nei successivi legge solo le righe modificate o eliminate dall'ultimo ciclo
+     * e rilegge le impostazioni e il catalogo dei tipi di visita se sono stati modificati.
+     * Se lo schema non supporta la sincronizzazione incrementale ricarica tutto.
+     * Una richiesta che arriva mentre un ciclo è in coda o in esecuzione viene servita da quel ciclo.
      */
     public void sincronizzaDalDatabase() {
-        executorService.submit(() -> {
+        caricatoreSincronizzazione.caricaAsync(() -> {
             if (eseguiAggiornamento) {
                 try {
-                     
-                    volontariManager.caricaVolontari();
-                    configuratoriManager.caricaConfiguratori();
-                    luoghiManager.caricaLuoghi();
-                    visiteManagerDB.caricaVisite();
-                    visiteManagerDB.caricaDatePrecluse();
+                    sincronizzaIncrementale();
+                } catch (SQLException e) {
+                    System.err.println("Sincronizzazione incrementale non riuscita, ricarico tutte le tabelle: " + e.getMessage());
+                    synchronized (lockSincronizzazione) {
+                        watermarkInizializzati = false;
+                        ricaricaTutto();
+                    }
                 } catch (Exception e) {
                     System.err.println("Errore durante la sincronizzazione dal database: " + e.getMessage());
                 }
             } else {
                 return;
             }            
-        });
+        }, executorService);
+    }
+
+    /**
+     * Restituisce le statistiche delle richieste di sincronizzazione.
+     * 
+     * @return le statistiche del caricatore della sincronizzazione
+     */
+    public StatisticheCaricatore getStatisticheSincronizzazione() {
+        return caricatoreSincronizzazione.getStatistiche();
+    }
+
+    /**
+     * Esegue un ciclo di sincronizzazione incrementale.
+     * Applica prima le eliminazioni registrate e poi le righe modificate,
+     * così una chiave eliminata e reinserita resta presente in memoria.
+     * 
+     * @throws SQLException se le colonne o le tabelle di supporto non sono disponibili
+     */
+    private void sincronizzaIncrementale() throws SQLException {
+        synchronized (lockSincronizzazione) {
+            try (Connection conn = DatabaseConnection.connect()) {
+                if (conn == null) {
+                    throw new SQLException("Connessione al database non disponibile");
+                }
+                if (watermarkInizializzati && System.nanoTime() - ultimoCicloIncrementale
+                        > TimeUnit.SECONDS.toNanos(RITENZIONE_ELIMINAZIONI_SECONDI) - TimeUnit.MILLISECONDS.toNanos(MARGINE_WATERMARK_MILLIS)) {
+                    // le eliminazioni successive all'ultimo ciclo potrebbero essere già state cancellate
+                    watermarkInizializzati = false;
+                }
+                if (!watermarkInizializzati) {
+                    leggiWatermarkIniziali(conn);
+                    CatalogoTipiVisita.getInstance().ricarica(conn);
+                    ricaricaTutto();
+                    watermarkInizializzati = true;
+                    return;
+                }
+                long inizioCiclo = System.nanoTime();
+                applicaEliminazioni(conn);
+                CatalogoTipiVisita.getInstance().aggiornaSeModificato(conn);
+                watermarkVolontari = avanza(watermarkVolontari,
+                        volontariManager.caricaVolontariModificati(conn, conMargine(watermarkVolontari)));
+                watermarkConfiguratori = avanza(watermarkConfiguratori,
+                        configuratoriManager.caricaConfiguratoriModificati(conn, conMargine(watermarkConfiguratori)));
+                watermarkLuoghi = avanza(watermarkLuoghi,
+                        luoghiManager.caricaLuoghiModificati(conn, conMargine(watermarkLuoghi)));
+                watermarkVisite = avanza(watermarkVisite,
+                        visiteManagerDB.caricaVisiteModificate(conn, conMargine(watermarkVisite)));
+                watermarkDatePrecluse = avanza(watermarkDatePrecluse,
+                        visiteManagerDB.caricaDatePrecluseModificate(conn, conMargine(watermarkDatePrecluse)));
+                ImpostazioniApplicazione.getInstance().aggiornaSeModificate(conn);
+                ultimoCicloIncrementale = inizioCiclo;
+                pulisciEliminazioni(conn);
+            }
+        }
+    }
+
+    /**
+     * Ricarica completamente tutte le mappe in memoria.
+     */
+    private void ricaricaTutto() {
+        volontariManager.caricaVolontari();
+        configuratoriManager.caricaConfiguratori();
+        luoghiManager.caricaLuoghi();
+        visiteManagerDB.ricaricaVisite();
+        visiteManagerDB.ricaricaDatePrecluse();
+    }
+
+    /**
+     * Legge i watermark correnti di tutte le tabelle prima del caricamento completo,
+     * in modo che le modifiche concorrenti al caricamento vengano rilette al ciclo successivo.
+     * 
+     * @param conn la connessione da usare
+     * @throws SQLException se le colonne o le tabelle di supporto non esistono
+     */
+    private void leggiWatermarkIniziali(Connection conn) throws SQLException {
+        watermarkVolontari = leggiMassimo(conn, "SELECT MAX(aggiornato_il) FROM volontari");
+        watermarkConfiguratori = leggiMassimo(conn, "SELECT MAX(aggiornato_il) FROM configuratori");
+        watermarkLuoghi = leggiMassimo(conn, "SELECT MAX(aggiornato_il) FROM luoghi");
+        watermarkVisite = leggiMassimo(conn, "SELECT MAX(aggiornato_il) FROM visite");
+        watermarkDatePrecluse = leggiMassimo(conn, "SELECT MAX(modificato_il) FROM date_precluse");
+        watermarkEliminazioni = leggiMassimo(conn, "SELECT MAX(eliminato_il) FROM eliminazioni");
+        // le eliminazioni già visibili sono riflesse dal caricamento completo
+        eliminazioniApplicate.clear();
+        String sql = "SELECT id, eliminato_il FROM eliminazioni WHERE eliminato_il >= ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setTimestamp(1, conMargine(watermarkEliminazioni));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    eliminazioniApplicate.put(rs.getLong("id"), rs.getTimestamp("eliminato_il"));
+                }
+            }
+        }
+        ultimoCicloIncrementale = System.nanoTime();
+    }
+
+    private Timestamp leggiMassimo(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            Timestamp massimo = rs.next() ? rs.getTimestamp(1) : null;
+            return massimo != null ? massimo : new Timestamp(0);
+        }
+    }
+
+    /**
+     * Rimuove dalle mappe le righe eliminate dopo il watermark delle eliminazioni,
+     * rileggendo il margine e saltando le eliminazioni già applicate.
+     * 
+     * @param conn la connessione da usare
+     * @throws SQLException se la tabella delle eliminazioni non esiste
+     */
+    private void applicaEliminazioni(Connection conn) throws SQLException {
+        String sql = "SELECT id, tabella, chiave, eliminato_il FROM eliminazioni WHERE eliminato_il >= ? ORDER BY id";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setTimestamp(1, conMargine(watermarkEliminazioni));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp eliminatoIl = rs.getTimestamp("eliminato_il");
+                    watermarkEliminazioni = avanza(watermarkEliminazioni, eliminatoIl);
+                    if (eliminazioniApplicate.putIfAbsent(rs.getLong("id"), eliminatoIl) != null) {
+                        continue;
+                    }
+                    String chiave = rs.getString("chiave");
+                    switch (rs.getString("tabella")) {
+                        case "volontari":
+                            volontariManager.rimuoviVolontarioDallaCache(chiave);
+                            break;
+                        case "configuratori":
+                            configuratoriManager.rimuoviConfiguratoreDallaCache(chiave);
+                            break;
+                        case "luoghi":
+                            luoghiManager.rimuoviLuogoDallaCache(chiave);
+                            break;
+                        case "visite":
+                            visiteManagerDB.rimuoviVisitaDallaCache(Integer.parseInt(chiave));
+                            break;
+                        case "date_precluse":
+                            visiteManagerDB.rimuoviDataPreclusaDallaCache(LocalDate.parse(chiave));
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+        }
+        Timestamp limite = conMargine(watermarkEliminazioni);
+        eliminazioniApplicate.values().removeIf(eliminatoIl -> eliminatoIl.before(limite));
+    }
+
+    /**
+     * Cancella dalla tabella eliminazioni le righe più vecchie della ritenzione,
+     * al più una volta per intervallo di pulizia. Un'istanza che non sincronizza
+     * da più della ritenzione ricarica tutto al ciclo successivo.
+     * 
+     * @param conn la connessione da usare
+     * @throws SQLException se la tabella delle eliminazioni non esiste
+     */
+    private void pulisciEliminazioni(Connection conn) throws SQLException {
+        long adesso = System.nanoTime();
+        if (ultimaPulizia != 0 && adesso - ultimaPulizia < INTERVALLO_PULIZIA_NANOS) {
+            return;
+        }
+        ultimaPulizia = adesso;
+        String sql = "DELETE FROM eliminazioni WHERE eliminato_il < NOW(3) - INTERVAL ? SECOND";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, RITENZIONE_ELIMINAZIONI_SECONDI);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static Timestamp conMargine(Timestamp watermark) {
+        return new Timestamp(Math.max(0, watermark.getTime() - MARGINE_WATERMARK_MILLIS));
+    }
+
+    private static Timestamp avanza(Timestamp attuale, Timestamp letto) {
+        return letto.after(attuale) ? letto : attuale;
     }
 
     /**
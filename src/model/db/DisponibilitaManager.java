@@ -6,11 +6,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.sql.Date;
 
+import src.model.DateDisponibili;
 import src.model.Volontario;
 
 /**
@@ -22,52 +25,77 @@ import src.model.Volontario;
 public class DisponibilitaManager{
 
     /**
-     * Salva le disponibilità di tutti i volontari nel database.
-     * Utilizza una transazione per garantire la consistenza dei dati:
-     * prima elimina tutte le disponibilità esistenti, poi inserisce quelle nuove.
+     * Salva le disponibilità dei volontari indicati nel database.
+     * Per ogni volontario confronta le date già memorizzate con quelle nuove ed esegue
+     * solo le cancellazioni e gli inserimenti necessari, in batch e in un'unica transazione.
+     * Le disponibilità dei volontari non presenti nella mappa non vengono toccate.
      * 
      * @param merged mappa dei volontari con le rispettive liste di date disponibili
      * @param volontariManager il manager dei volontari per recuperare gli ID
      * @throws RuntimeException se si verifica un errore durante il salvataggio
      */
-    public void salvaDisponibilitaVolontari(Map<Volontario, List<LocalDate>> merged, VolontariManager volontariManager) {
+    public void salvaDisponibilitaVolontari(Map<Volontario, DateDisponibili> merged, VolontariManager volontariManager) {
         if (merged == null || merged.isEmpty()) {
             return;
         }
-        
-        String deleteSql = "DELETE FROM disponibilita WHERE volontario_id = ?";
+
+        Map<Integer, DateDisponibili> nuove = new HashMap<>();
+        for (Map.Entry<Volontario, DateDisponibili> entry : merged.entrySet()) {
+            int id = volontariManager.getIdByEmail(entry.getKey().getEmail());
+            if (id < 0) continue;
+            nuove.put(id, entry.getValue() != null ? entry.getValue() : new DateDisponibili());
+        }
+        if (nuove.isEmpty()) {
+            return;
+        }
+
+        String selectSql = "SELECT volontario_id, data_disponibile FROM disponibilita WHERE volontario_id IN ("
+                + String.join(",", Collections.nCopies(nuove.size(), "?")) + ") FOR UPDATE";
+        String deleteSql = "DELETE FROM disponibilita WHERE volontario_id = ? AND data_disponibile = ?";
         String insertSql = "INSERT INTO disponibilita (volontario_id, data_disponibile) VALUES (?, ?)";
         
-        try (Connection conn = DatabaseConnection.connect();
-            PreparedStatement deleteStmt = conn.prepareStatement(deleteSql);
-            PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+        try (Connection conn = DatabaseConnection.connect()) {
             
             conn.setAutoCommit(false);
             
             try {
                  
-                for (Volontario volontario : merged.keySet()) {
-                    int id = volontariManager.getIdByEmail(volontario.getEmail());
-                    deleteStmt.setInt(1, id);
-                    deleteStmt.addBatch();
+                Map<Integer, DateDisponibili> memorizzate = new HashMap<>();
+                try (PreparedStatement selectStmt = conn.prepareStatement(selectSql)) {
+                    int indice = 1;
+                    for (Integer id : nuove.keySet()) {
+                        selectStmt.setInt(indice++, id);
+                    }
+                    try (ResultSet rs = selectStmt.executeQuery()) {
+                        while (rs.next()) {
+                            memorizzate.computeIfAbsent(rs.getInt("volontario_id"), k -> new DateDisponibili())
+                                    .aggiungi(rs.getDate("data_disponibile").toLocalDate());
+                        }
+                    }
                 }
-                deleteStmt.executeBatch();
-                
+
                  
-                for (Map.Entry<Volontario, List<LocalDate>> entry : merged.entrySet()) {
-                    Volontario volontario = entry.getKey();
-                    List<LocalDate> dateDisponibili = entry.getValue();
-                    int id = volontariManager.getIdByEmail(volontario.getEmail());
-                    
-                    if (dateDisponibili != null) {
-                        for (LocalDate data : dateDisponibili) {
+                try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql);
+                     PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+                    for (Map.Entry<Integer, DateDisponibili> entry : nuove.entrySet()) {
+                        int id = entry.getKey();
+                        DateDisponibili dateNuove = entry.getValue();
+                        DateDisponibili dateMemorizzate = memorizzate.getOrDefault(id, new DateDisponibili());
+
+                        for (LocalDate data : dateMemorizzate.differenza(dateNuove).comeLista()) {
+                            deleteStmt.setInt(1, id);
+                            deleteStmt.setDate(2, Date.valueOf(data));
+                            deleteStmt.addBatch();
+                        }
+                        for (LocalDate data : dateNuove.differenza(dateMemorizzate).comeLista()) {
                             insertStmt.setInt(1, id);
                             insertStmt.setDate(2, Date.valueOf(data));
                             insertStmt.addBatch();
                         }
                     }
+                    deleteStmt.executeBatch();
+                    insertStmt.executeBatch();
                 }
-                insertStmt.executeBatch();
                 
                 conn.commit();
                 
@@ -111,24 +139,26 @@ public class DisponibilitaManager{
 
     /**
      * Recupera tutte le disponibilità di tutti i volontari organizzate per email.
+     * Le email sono ottenute con un JOIN sulla tabella dei volontari, con un'unica query.
      * 
-     * @param volontariManager il manager dei volontari per recuperare le email dagli ID
-     * @return mappa con email del volontario come chiave e lista di date disponibili come valore
+     * @param volontariManager il manager dei volontari
+     * @return mappa con email del volontario come chiave e insieme delle date disponibili come valore
      */
-    public ConcurrentHashMap<String, List<LocalDate>> getDisponibilitaMap(VolontariManager volontariManager) {
-        ConcurrentHashMap<String, List<LocalDate>> disponibilitaMap = new ConcurrentHashMap<>();
-        String sql = "SELECT volontario_id, data_disponibile FROM disponibilita";
+    public ConcurrentHashMap<String, DateDisponibili> getDisponibilitaMap(VolontariManager volontariManager) {
+        ConcurrentHashMap<String, DateDisponibili> disponibilitaMap = new ConcurrentHashMap<>();
+        String sql = "SELECT v.email, d.data_disponibile FROM disponibilita d "
+                   + "JOIN volontari v ON v.id = d.volontario_id";
 
         try (Connection conn = DatabaseConnection.connect();
             PreparedStatement pstmt = conn.prepareStatement(sql);
             ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
-                int volontarioId = rs.getInt("volontario_id");
+                String email = rs.getString("email");
                 Date sqlDate = rs.getDate("data_disponibile");
                 LocalDate data = sqlDate.toLocalDate();
 
-                disponibilitaMap.computeIfAbsent(volontariManager.getEmailById(volontarioId), k -> new ArrayList<>()).add(data);
+                disponibilitaMap.computeIfAbsent(email, k -> new DateDisponibili()).aggiungi(data);
             }
 
         } catch (SQLException e) {
@@ -0,0 +1,92 @@
+package src.model.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Esito immutabile di una scrittura sul database: righe modificate ed eventuali chiavi generate.
+ * Le operazioni asincrone dei manager lo restituiscono tramite {@code CompletableFuture}.
+ *
+ */
+public final class EsitoScrittura {
+
+    /** Esito di un'operazione che non ha modificato alcuna riga */
+    public static final EsitoScrittura NESSUNA_MODIFICA = new EsitoScrittura(0, List.of());
+
+    private final int righeModificate;
+    private final List<Long> chiaviGenerate;
+
+    private EsitoScrittura(int righeModificate, List<Long> chiaviGenerate) {
+        this.righeModificate = righeModificate;
+        this.chiaviGenerate = chiaviGenerate;
+    }
+
+    /**
+     * Crea l'esito di una scrittura senza chiavi generate.
+     *
+     * @param righeModificate il numero di righe modificate
+     * @return l'esito
+     */
+    public static EsitoScrittura righe(int righeModificate) {
+        return righeModificate == 0 ? NESSUNA_MODIFICA : new EsitoScrittura(righeModificate, List.of());
+    }
+
+    /**
+     * Crea l'esito di un inserimento leggendo le chiavi generate dallo statement,
+     * che deve essere stato preparato con {@code RETURN_GENERATED_KEYS}.
+     *
+     * @param righeModificate il numero di righe modificate
+     * @param pstmt lo statement eseguito
+     * @return l'esito con le chiavi generate
+     * @throws SQLException se la lettura delle chiavi fallisce
+     */
+    public static EsitoScrittura conChiavi(int righeModificate, PreparedStatement pstmt) throws SQLException {
+        List<Long> chiavi = new ArrayList<>();
+        try (ResultSet rs = pstmt.getGeneratedKeys()) {
+            while (rs.next()) {
+                chiavi.add(rs.getLong(1));
+            }
+        }
+        return new EsitoScrittura(righeModificate, Collections.unmodifiableList(chiavi));
+    }
+
+    public int getRigheModificate() { return righeModificate; }
+
+    public List<Long> getChiaviGenerate() { return chiaviGenerate; }
+
+    /**
+     * Restituisce la prima chiave generata.
+     *
+     * @return la chiave, o -1 se non ne sono state generate
+     */
+    public long getChiaveGenerata() {
+        return chiaviGenerate.isEmpty() ? -1 : chiaviGenerate.get(0);
+    }
+
+    public boolean isModificato() {
+        return righeModificate > 0;
+    }
+
+    /**
+     * Combina due esiti sommando le righe e concatenando le chiavi.
+     *
+     * @param altro l'altro esito
+     * @return l'esito combinato
+     */
+    public EsitoScrittura piu(EsitoScrittura altro) {
+        if (altro == null || altro == NESSUNA_MODIFICA) return this;
+        if (this == NESSUNA_MODIFICA) return altro;
+        List<Long> chiavi = new ArrayList<>(chiaviGenerate);
+        chiavi.addAll(altro.chiaviGenerate);
+        return new EsitoScrittura(righeModificate + altro.righeModificate, Collections.unmodifiableList(chiavi));
+    }
+
+    @Override
+    public String toString() {
+        return "EsitoScrittura [righe=" + righeModificate + ", chiavi=" + chiaviGenerate + "]";
+    }
+}
@@ -4,6 +4,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import src.controller.ThreadPoolController;
@@ -17,8 +19,11 @@ import src.model.Fruitore;
  */
 public class FruitoreManager extends DatabaseManager {
 
+    /** Cache versionata dei fruitori indicizzata per email */
+    private final CacheVersionata<String, Fruitore> fruitoriCache = new CacheVersionata<>();
+
     /** Mappa concorrente dei fruitori indicizzata per email */
-    private ConcurrentHashMap<String, Fruitore> fruitoriMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Fruitore> fruitoriMap = fruitoriCache.getMappa();
 
     /**
      * Costruttore del manager dei fruitori.
@@ -46,27 +51,25 @@ public class FruitoreManager extends DatabaseManager {
     // Logiche dei fruitori--------------------------------------------------
     
     /**
-     * Carica tutti i fruitori dal database nella mappa in memoria.
-     * Svuota la mappa esistente e la riempie con i dati dal database.
+     * Carica tutti i fruitori dal database e li pubblica come nuovo snapshot.
      */
     protected void caricaFruitori() {
         String sql = "SELECT nome, cognome, email, password FROM fruitori";
         try (Connection conn = DatabaseConnection.connect();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
-            synchronized (fruitoriMap) {
-                fruitoriMap.clear();
-                while (rs.next()) {
-                    String email = rs.getString("email");
-                    Fruitore fruitore = new Fruitore(
-                            rs.getString("nome"),
-                            rs.getString("cognome"),
-                            email,
-                            rs.getString("password")
-                    );
-                    fruitoriMap.putIfAbsent(email, fruitore);
-                }
+            Map<String, Fruitore> nuoviFruitori = new HashMap<>();
+            while (rs.next()) {
+                String email = rs.getString("email");
+                Fruitore fruitore = new Fruitore(
+                        rs.getString("nome"),
+                        rs.getString("cognome"),
+                        email,
+                        rs.getString("password")
+                );
+                nuoviFruitori.putIfAbsent(email, fruitore);
             }
+            fruitoriCache.pubblica(nuoviFruitori);
         } catch (Exception e) {
             consoleIO.mostraErrore("Errore caricamento fruitori: " + e.getMessage());
         }
@@ -152,5 +155,14 @@ public class FruitoreManager extends DatabaseManager {
         return fruitoriMap;
     }
 
+    /**
+     * Restituisce lo snapshot immutabile corrente dei fruitori.
+     * 
+     * @return lo snapshot dei fruitori
+     */
+    public CacheVersionata.Snapshot<String, Fruitore> getFruitoriSnapshot() {
+        return fruitoriCache.getSnapshot();
+    }
+
 
 }
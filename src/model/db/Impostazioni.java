@@ -0,0 +1,87 @@
+package src.model.db;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Istantanea immutabile delle impostazioni globali dell'applicazione,
+ * lette dalla tabella {@code application_settings}.
+ * Ogni istantanea ha una versione crescente, incrementata a ogni ricarica.
+ *
+ */
+public class Impostazioni {
+
+    /** Numero massimo di persone per prenotazione usato se non impostato */
+    public static final int MAX_PERSONE_PREDEFINITO = 10;
+
+    /** Impostazioni di un database in cui la riga non esiste ancora */
+    static final Impostazioni VUOTE = new Impostazioni(List.of(), null, null, null, 0);
+
+    private final List<String> ambitoTerritoriale;
+    private final Integer maxPersonePerVisita;
+    private final Boolean statoRaccolta;
+    private final Timestamp aggiornatoIl;
+    private final long versione;
+
+    Impostazioni(List<String> ambitoTerritoriale, Integer maxPersonePerVisita, Boolean statoRaccolta,
+                 Timestamp aggiornatoIl, long versione) {
+        this.ambitoTerritoriale = Collections.unmodifiableList(new ArrayList<>(ambitoTerritoriale));
+        this.maxPersonePerVisita = maxPersonePerVisita;
+        this.statoRaccolta = statoRaccolta;
+        this.aggiornatoIl = aggiornatoIl;
+        this.versione = versione;
+    }
+
+    /**
+     * Restituisce la stessa istantanea con un'altra versione.
+     *
+     * @param versione la nuova versione
+     * @return la copia con la versione indicata
+     */
+    Impostazioni conVersione(long versione) {
+        return new Impostazioni(ambitoTerritoriale, maxPersonePerVisita, statoRaccolta, aggiornatoIl, versione);
+    }
+
+    /**
+     * Restituisce i comuni dell'ambito territoriale.
+     *
+     * @return la lista non modificabile dei comuni, vuota se non configurato
+     */
+    public List<String> getAmbitoTerritoriale() { return ambitoTerritoriale; }
+
+    public boolean hasAmbitoTerritoriale() { return !ambitoTerritoriale.isEmpty(); }
+
+    /**
+     * Restituisce il numero massimo di persone per prenotazione.
+     *
+     * @return il valore impostato, o null se non impostato
+     */
+    public Integer getMaxPersonePerVisita() { return maxPersonePerVisita; }
+
+    /**
+     * Restituisce il numero massimo di persone per prenotazione,
+     * o {@link #MAX_PERSONE_PREDEFINITO} se non impostato.
+     *
+     * @return il numero massimo di persone
+     */
+    public int getMaxPersonePerVisitaOPredefinito() {
+        return maxPersonePerVisita != null ? maxPersonePerVisita : MAX_PERSONE_PREDEFINITO;
+    }
+
+    public Boolean getStatoRaccolta() { return statoRaccolta; }
+
+    public Timestamp getAggiornatoIl() { return aggiornatoIl; }
+
+    public long getVersione() { return versione; }
+
+    @Override
+    public String toString() {
+        return "Impostazioni [versione=" + versione
+            + ", ambito=" + ambitoTerritoriale
+            + ", maxPersone=" + maxPersonePerVisita
+            + ", statoRaccolta=" + statoRaccolta
+            + ", aggiornatoIl=" + aggiornatoIl + "]";
+    }
+}
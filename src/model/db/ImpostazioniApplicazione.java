@@ -0,0 +1,135 @@
+package src.model.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Impostazioni globali dell'applicazione tenute in memoria.
+ * La riga di {@code application_settings} viene letta una sola volta e pubblicata
+ * come {@link Impostazioni} immutabile; le modifiche sono scritte subito sul database
+ * e seguite dalla pubblicazione di una nuova versione. La sincronizzazione periodica
+ * rilegge la riga soltanto quando {@code updated_at} cambia.
+ *
+ */
+public class ImpostazioniApplicazione {
+
+    private static final ImpostazioniApplicazione instance = new ImpostazioniApplicazione();
+
+    /** Istantanea corrente, null finché non viene caricata */
+    private volatile Impostazioni correnti;
+
+    private final Object lockScrittura = new Object();
+
+    private ImpostazioniApplicazione() {
+    }
+
+    /**
+     * Restituisce l'istanza condivisa delle impostazioni.
+     *
+     * @return l'istanza singleton delle impostazioni
+     */
+    public static ImpostazioniApplicazione getInstance() {
+        return instance;
+    }
+
+    /**
+     * Restituisce l'istantanea corrente, caricandola al primo accesso.
+     * Se il database non è raggiungibile restituisce impostazioni vuote,
+     * senza memorizzarle, così il caricamento viene ritentato.
+     *
+     * @return le impostazioni correnti
+     */
+    public Impostazioni get() {
+        Impostazioni attuali = correnti;
+        if (attuali != null) return attuali;
+        synchronized (lockScrittura) {
+            if (correnti == null) {
+                try (Connection conn = DatabaseConnection.connect()) {
+                    if (conn == null) return Impostazioni.VUOTE;
+                    correnti = ApplicationSettingsDAO.leggi(conn, 1);
+                } catch (SQLException e) {
+                    System.err.println("Errore durante il caricamento delle impostazioni: " + e.getMessage());
+                    return Impostazioni.VUOTE;
+                }
+            }
+            return correnti;
+        }
+    }
+
+    /**
+     * Rilegge le impostazioni se {@code updated_at} è cambiato dall'ultima lettura.
+     *
+     * @param conn la connessione da usare
+     * @return true se è stata pubblicata una nuova versione
+     * @throws SQLException se la lettura fallisce
+     */
+    public boolean aggiornaSeModificate(Connection conn) throws SQLException {
+        Impostazioni attuali = correnti;
+        if (attuali == null) return false;
+        Timestamp ultimaModifica = ApplicationSettingsDAO.leggiUltimaModifica(conn);
+        if (Objects.equals(ultimaModifica, attuali.getAggiornatoIl())) return false;
+        synchronized (lockScrittura) {
+            ricarica(conn);
+        }
+        return true;
+    }
+
+    /**
+     * Salva l'ambito territoriale e pubblica la nuova versione delle impostazioni.
+     *
+     * @param ambiti i comuni dell'ambito territoriale
+     * @return true se il salvataggio è riuscito
+     */
+    public boolean setAmbitoTerritoriale(List<String> ambiti) {
+        return scrivi(conn -> ApplicationSettingsDAO.scriviTerritorialScope(conn, ambiti), "dell'ambito territoriale");
+    }
+
+    /**
+     * Salva il numero massimo di persone per prenotazione e pubblica la nuova versione.
+     *
+     * @param max il numero massimo di persone
+     * @return true se il salvataggio è riuscito
+     */
+    public boolean setMaxPersonePerVisita(int max) {
+        return scrivi(conn -> ApplicationSettingsDAO.scriviMaxPeoplePerVisit(conn, max), "del numero massimo di persone");
+    }
+
+    /**
+     * Salva lo stato della raccolta delle disponibilità, se diverso da quello corrente.
+     *
+     * @param stato true se la raccolta è attiva
+     * @return true se lo stato salvato coincide con quello richiesto
+     */
+    public boolean setStatoRaccolta(boolean stato) {
+        if (Boolean.valueOf(stato).equals(get().getStatoRaccolta())) return true;
+        return scrivi(conn -> ApplicationSettingsDAO.scriviStatoRaccolta(conn, stato), "dello stato della raccolta");
+    }
+
+    private boolean scrivi(Scrittura scrittura, String descrizione) {
+        synchronized (lockScrittura) {
+            try (Connection conn = DatabaseConnection.connect()) {
+                if (conn == null) return false;
+                scrittura.esegui(conn);
+                ricarica(conn);
+                return true;
+            } catch (SQLException e) {
+                System.err.println("Errore durante il salvataggio " + descrizione + ": " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /** Da chiamare tenendo lockScrittura */
+    private void ricarica(Connection conn) throws SQLException {
+        Impostazioni attuali = correnti;
+        correnti = ApplicationSettingsDAO.leggi(conn, attuali != null ? attuali.getVersione() + 1 : 1);
+    }
+
+    @FunctionalInterface
+    private interface Scrittura {
+        void esegui(Connection conn) throws SQLException;
+    }
+}
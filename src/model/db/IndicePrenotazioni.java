@@ -0,0 +1,180 @@
+package src.model.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import src.model.Prenotazione;
+
+/**
+ * Indici secondari in memoria sulle prenotazioni, per ID visita e per email del fruitore.
+ *
+ * Per ogni chiave le prenotazioni sono partizionate per stato (confermate, cancellate,
+ * effettuate), così l'elenco delle prenotazioni attive di una visita o di un fruitore
+ * costa quanto il numero di prenotazioni restituite.
+ * Gli indici sono mantenuti dalla {@link CacheVersionata} delle prenotazioni e vanno
+ * riallineati con {@link #inserito} quando una prenotazione cambia stato sul posto.
+ *
+ */
+public class IndicePrenotazioni implements CacheVersionata.Osservatore<String, Prenotazione> {
+
+    /** Prenotazioni indicizzate per codice, con i valori usati al momento dell'indicizzazione */
+    private final Map<String, Voce> voci = new HashMap<>();
+
+    private final Map<Integer, Map<String, Set<String>>> perVisita = new HashMap<>();
+    private final Map<String, Map<String, Set<String>>> perFruitore = new HashMap<>();
+
+    @Override
+    public synchronized void ricostruito(Map<String, Prenotazione> prenotazioni) {
+        voci.clear();
+        perVisita.clear();
+        perFruitore.clear();
+        for (Map.Entry<String, Prenotazione> voce : prenotazioni.entrySet()) {
+            aggiungi(voce.getKey(), voce.getValue());
+        }
+    }
+
+    @Override
+    public synchronized void inserito(String codice, Prenotazione prenotazione) {
+        Voce precedente = voci.get(codice);
+        if (precedente != null) {
+            if (precedente.prenotazione == prenotazione && precedente.equals(new Voce(prenotazione))) {
+                return;
+            }
+            togli(codice, precedente);
+        }
+        aggiungi(codice, prenotazione);
+    }
+
+    @Override
+    public synchronized void rimosso(String codice) {
+        Voce precedente = voci.get(codice);
+        if (precedente != null) {
+            togli(codice, precedente);
+        }
+    }
+
+    /**
+     * Restituisce le prenotazioni di una visita nello stato indicato.
+     *
+     * @param idVisita l'ID della visita
+     * @param stato lo stato delle prenotazioni
+     * @return le prenotazioni della visita nello stato indicato
+     */
+    public synchronized List<Prenotazione> perVisita(int idVisita, String stato) {
+        return risolvi(perVisita.get(idVisita), stato);
+    }
+
+    /**
+     * Restituisce tutte le prenotazioni di una visita, in qualunque stato.
+     *
+     * @param idVisita l'ID della visita
+     * @return le prenotazioni della visita
+     */
+    public synchronized List<Prenotazione> perVisita(int idVisita) {
+        return risolvi(perVisita.get(idVisita), null);
+    }
+
+    /**
+     * Restituisce le prenotazioni di un fruitore nello stato indicato.
+     *
+     * @param emailFruitore l'email del fruitore
+     * @param stato lo stato delle prenotazioni
+     * @return le prenotazioni del fruitore nello stato indicato
+     */
+    public synchronized List<Prenotazione> perFruitore(String emailFruitore, String stato) {
+        return risolvi(perFruitore.get(emailFruitore), stato);
+    }
+
+    /**
+     * Restituisce tutte le prenotazioni di un fruitore, in qualunque stato.
+     *
+     * @param emailFruitore l'email del fruitore
+     * @return le prenotazioni del fruitore
+     */
+    public synchronized List<Prenotazione> perFruitore(String emailFruitore) {
+        return risolvi(perFruitore.get(emailFruitore), null);
+    }
+
+    private void aggiungi(String codice, Prenotazione prenotazione) {
+        Voce voce = new Voce(prenotazione);
+        voci.put(codice, voce);
+        perVisita.computeIfAbsent(voce.idVisita, k -> new HashMap<>())
+                .computeIfAbsent(voce.stato, k -> new LinkedHashSet<>()).add(codice);
+        if (voce.emailFruitore != null) {
+            perFruitore.computeIfAbsent(voce.emailFruitore, k -> new HashMap<>())
+                    .computeIfAbsent(voce.stato, k -> new LinkedHashSet<>()).add(codice);
+        }
+    }
+
+    private void togli(String codice, Voce voce) {
+        voci.remove(codice);
+        rimuoviDa(perVisita, voce.idVisita, voce.stato, codice);
+        if (voce.emailFruitore != null) {
+            rimuoviDa(perFruitore, voce.emailFruitore, voce.stato, codice);
+        }
+    }
+
+    private static <K> void rimuoviDa(Map<K, Map<String, Set<String>>> indice, K chiave, String stato, String codice) {
+        Map<String, Set<String>> partizioni = indice.get(chiave);
+        if (partizioni == null) return;
+        Set<String> codici = partizioni.get(stato);
+        if (codici != null) {
+            codici.remove(codice);
+            if (codici.isEmpty()) partizioni.remove(stato);
+        }
+        if (partizioni.isEmpty()) indice.remove(chiave);
+    }
+
+    /**
+     * Converte i codici di una o di tutte le partizioni nelle prenotazioni correnti,
+     * scartando quelle il cui stato è cambiato sul posto senza riallineare l'indice.
+     */
+    private List<Prenotazione> risolvi(Map<String, Set<String>> partizioni, String stato) {
+        List<Prenotazione> risultato = new ArrayList<>();
+        if (partizioni == null) return risultato;
+        for (Map.Entry<String, Set<String>> partizione : partizioni.entrySet()) {
+            if (stato != null && !stato.equals(partizione.getKey())) continue;
+            for (String codice : partizione.getValue()) {
+                Prenotazione prenotazione = voci.get(codice).prenotazione;
+                if (stato == null || stato.equals(prenotazione.getStato())) {
+                    risultato.add(prenotazione);
+                }
+            }
+        }
+        return risultato;
+    }
+
+    /**
+     * Valori di una prenotazione al momento dell'indicizzazione.
+     */
+    private static final class Voce {
+        private final Prenotazione prenotazione;
+        private final int idVisita;
+        private final String emailFruitore;
+        private final String stato;
+
+        private Voce(Prenotazione prenotazione) {
+            this.prenotazione = prenotazione;
+            this.idVisita = prenotazione.getIdVisita();
+            this.emailFruitore = prenotazione.getEmailFruitore();
+            this.stato = String.valueOf(prenotazione.getStato());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Voce)) return false;
+            Voce altra = (Voce) o;
+            return idVisita == altra.idVisita && Objects.equals(emailFruitore, altra.emailFruitore)
+                && stato.equals(altra.stato);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(idVisita, emailFruitore, stato);
+        }
+    }
+}
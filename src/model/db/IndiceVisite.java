@@ -0,0 +1,295 @@
+package src.model.db;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import src.model.Visita;
+
+/**
+ * Indici secondari in memoria sulle visite: per data, luogo, volontario, stato
+ * e per la coppia (luogo, data), più una maschera mensile dei giorni occupati
+ * da visite non cancellate.
+ *
+ * Gli indici sono mantenuti dalla {@link CacheVersionata} delle visite a ogni
+ * inserimento, rimozione o ricaricamento, e vanno riallineati con {@link #inserito}
+ * quando una visita viene modificata sul posto. Le ricerche costano quanto il
+ * numero di visite restituite, non quanto il totale delle visite in memoria.
+ *
+ */
+public class IndiceVisite implements CacheVersionata.Osservatore<Integer, Visita> {
+
+    /** Visite indicizzate, con i valori usati al momento dell'indicizzazione */
+    private final Map<Integer, Voce> voci = new HashMap<>();
+
+    private final NavigableMap<LocalDate, Set<Integer>> perData = new TreeMap<>();
+    private final Map<String, Set<Integer>> perLuogo = new HashMap<>();
+    private final Map<String, Set<Integer>> perVolontario = new HashMap<>();
+    private final Map<String, Set<Integer>> perStato = new HashMap<>();
+    private final Map<String, NavigableMap<LocalDate, Set<Integer>>> perLuogoData = new HashMap<>();
+    private final Map<YearMonth, OccupazioneMese> perMese = new HashMap<>();
+
+    @Override
+    public synchronized void ricostruito(Map<Integer, Visita> visite) {
+        voci.clear();
+        perData.clear();
+        perLuogo.clear();
+        perVolontario.clear();
+        perStato.clear();
+        perLuogoData.clear();
+        perMese.clear();
+        for (Map.Entry<Integer, Visita> voce : visite.entrySet()) {
+            aggiungi(voce.getKey(), voce.getValue());
+        }
+    }
+
+    @Override
+    public synchronized void inserito(Integer id, Visita visita) {
+        Voce precedente = voci.get(id);
+        if (precedente != null) {
+            if (precedente.visita == visita && precedente.equals(new Voce(visita))) {
+                return;
+            }
+            togli(id, precedente);
+        }
+        aggiungi(id, visita);
+    }
+
+    @Override
+    public synchronized void rimosso(Integer id) {
+        Voce precedente = voci.get(id);
+        if (precedente != null) {
+            togli(id, precedente);
+        }
+    }
+
+    /**
+     * Restituisce le visite in programma nella data indicata.
+     *
+     * @param data la data
+     * @return le visite della data
+     */
+    public synchronized List<Visita> perData(LocalDate data) {
+        return risolvi(perData.get(data), v -> data.equals(v.getData()));
+    }
+
+    /**
+     * Restituisce le visite con data compresa nell'intervallo indicato, estremi inclusi.
+     *
+     * @param da la prima data
+     * @param a l'ultima data
+     * @return le visite dell'intervallo, ordinate per data
+     */
+    public synchronized List<Visita> traDate(LocalDate da, LocalDate a) {
+        List<Visita> risultato = new ArrayList<>();
+        for (Set<Integer> ids : perData.subMap(da, true, a, true).values()) {
+            risultato.addAll(risolvi(ids, v -> v.getData() != null
+                    && !v.getData().isBefore(da) && !v.getData().isAfter(a)));
+        }
+        return risultato;
+    }
+
+    /**
+     * Restituisce le visite di un luogo.
+     *
+     * @param luogo il nome del luogo
+     * @return le visite del luogo
+     */
+    public synchronized List<Visita> perLuogo(String luogo) {
+        return risolvi(perLuogo.get(luogo), v -> Objects.equals(luogo, v.getLuogo()));
+    }
+
+    /**
+     * Restituisce le visite assegnate a un volontario.
+     *
+     * @param volontario il volontario come memorizzato sulla visita
+     * @return le visite del volontario
+     */
+    public synchronized List<Visita> perVolontario(String volontario) {
+        return risolvi(perVolontario.get(volontario), v -> Objects.equals(volontario, v.getVolontario()));
+    }
+
+    /**
+     * Restituisce le visite in un dato stato, senza distinzione tra maiuscole e minuscole.
+     *
+     * @param stato lo stato
+     * @return le visite nello stato indicato
+     */
+    public synchronized List<Visita> perStato(String stato) {
+        return risolvi(perStato.get(chiaveStato(stato)), v -> stato.equalsIgnoreCase(v.getStato()));
+    }
+
+    /**
+     * Restituisce le visite di un luogo in una data.
+     *
+     * @param luogo il nome del luogo
+     * @param data la data
+     * @return le visite del luogo nella data
+     */
+    public synchronized List<Visita> perLuogoEData(String luogo, LocalDate data) {
+        NavigableMap<LocalDate, Set<Integer>> date = perLuogoData.get(luogo);
+        return risolvi(date != null ? date.get(data) : null,
+                v -> Objects.equals(luogo, v.getLuogo()) && data.equals(v.getData()));
+    }
+
+    /**
+     * Restituisce la maschera dei giorni del mese con almeno una visita non cancellata:
+     * il bit (giorno - 1) è acceso se il giorno è occupato.
+     *
+     * @param mese l'anno e mese
+     * @return la maschera dei giorni occupati
+     */
+    public synchronized int giorniOccupati(YearMonth mese) {
+        OccupazioneMese occupazione = perMese.get(mese);
+        return occupazione != null ? occupazione.maschera : 0;
+    }
+
+    public synchronized int getNumeroVisite() {
+        return voci.size();
+    }
+
+    private void aggiungi(Integer id, Visita visita) {
+        Voce voce = new Voce(visita);
+        voci.put(id, voce);
+        if (voce.data != null) {
+            perData.computeIfAbsent(voce.data, k -> new LinkedHashSet<>()).add(id);
+        }
+        if (voce.luogo != null) {
+            perLuogo.computeIfAbsent(voce.luogo, k -> new LinkedHashSet<>()).add(id);
+            if (voce.data != null) {
+                perLuogoData.computeIfAbsent(voce.luogo, k -> new TreeMap<>())
+                        .computeIfAbsent(voce.data, k -> new LinkedHashSet<>()).add(id);
+            }
+        }
+        if (voce.volontario != null) {
+            perVolontario.computeIfAbsent(voce.volontario, k -> new LinkedHashSet<>()).add(id);
+        }
+        if (voce.stato != null) {
+            perStato.computeIfAbsent(voce.stato, k -> new LinkedHashSet<>()).add(id);
+        }
+        if (voce.occupaGiorno()) {
+            perMese.computeIfAbsent(YearMonth.from(voce.data), k -> new OccupazioneMese())
+                    .aggiungi(voce.data.getDayOfMonth());
+        }
+    }
+
+    private void togli(Integer id, Voce voce) {
+        voci.remove(id);
+        rimuoviDa(perData, voce.data, id);
+        rimuoviDa(perLuogo, voce.luogo, id);
+        rimuoviDa(perVolontario, voce.volontario, id);
+        rimuoviDa(perStato, voce.stato, id);
+        if (voce.luogo != null && voce.data != null) {
+            NavigableMap<LocalDate, Set<Integer>> date = perLuogoData.get(voce.luogo);
+            if (date != null) {
+                rimuoviDa(date, voce.data, id);
+                if (date.isEmpty()) perLuogoData.remove(voce.luogo);
+            }
+        }
+        if (voce.occupaGiorno()) {
+            YearMonth mese = YearMonth.from(voce.data);
+            OccupazioneMese occupazione = perMese.get(mese);
+            if (occupazione != null && occupazione.togli(voce.data.getDayOfMonth())) {
+                perMese.remove(mese);
+            }
+        }
+    }
+
+    private static <K> void rimuoviDa(Map<K, Set<Integer>> indice, K chiave, Integer id) {
+        if (chiave == null) return;
+        Set<Integer> ids = indice.get(chiave);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) indice.remove(chiave);
+        }
+    }
+
+    /**
+     * Converte gli ID nelle visite correnti, scartando quelle modificate sul posto
+     * che non corrispondono più al criterio dell'indice.
+     */
+    private List<Visita> risolvi(Collection<Integer> ids, Predicate<Visita> ancoraValida) {
+        List<Visita> risultato = new ArrayList<>();
+        if (ids == null) return risultato;
+        for (Integer id : ids) {
+            Visita visita = voci.get(id).visita;
+            if (ancoraValida.test(visita)) {
+                risultato.add(visita);
+            }
+        }
+        return risultato;
+    }
+
+    private static String chiaveStato(String stato) {
+        return stato != null ? stato.toLowerCase() : null;
+    }
+
+    /**
+     * Conteggio delle visite non cancellate per ogni giorno di un mese,
+     * con la maschera dei giorni occupati mantenuta a ogni variazione.
+     */
+    private static final class OccupazioneMese {
+        private final int[] visitePerGiorno = new int[31];
+        private int maschera;
+
+        private void aggiungi(int giorno) {
+            if (visitePerGiorno[giorno - 1]++ == 0) {
+                maschera |= 1 << (giorno - 1);
+            }
+        }
+
+        /** @return true se il mese non ha più giorni occupati */
+        private boolean togli(int giorno) {
+            if (visitePerGiorno[giorno - 1] > 0 && --visitePerGiorno[giorno - 1] == 0) {
+                maschera &= ~(1 << (giorno - 1));
+            }
+            return maschera == 0;
+        }
+    }
+
+    /**
+     * Valori di una visita al momento dell'indicizzazione.
+     */
+    private static final class Voce {
+        private final Visita visita;
+        private final LocalDate data;
+        private final String luogo;
+        private final String volontario;
+        private final String stato;
+
+        private Voce(Visita visita) {
+            this.visita = visita;
+            this.data = visita.getData();
+            this.luogo = visita.getLuogo();
+            this.volontario = visita.getVolontario();
+            this.stato = chiaveStato(visita.getStato());
+        }
+
+        /** Le visite non cancellate rendono il giorno non disponibile */
+        private boolean occupaGiorno() {
+            return data != null && !"cancellata".equals(stato);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Voce)) return false;
+            Voce altra = (Voce) o;
+            return Objects.equals(data, altra.data) && Objects.equals(luogo, altra.luogo)
+                && Objects.equals(volontario, altra.volontario) && Objects.equals(stato, altra.stato);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(data, luogo, volontario, stato);
+        }
+    }
+}
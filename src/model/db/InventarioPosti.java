@@ -0,0 +1,178 @@
+package src.model.db;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inventario in memoria dei posti prenotati per ogni visita.
+ *
+ * Per ogni visita mantiene, in un unico AtomicLong aggiornato con CAS, i posti già confermati
+ * e quelli riservati da prenotazioni in corso di scrittura. Le richieste che eccedono la capienza
+ * vengono respinte senza accedere al database; quelle accettate vengono comunque confermate
+ * da un UPDATE condizionale, che resta l'unica garanzia definitiva contro l'overbooking.
+ *
+ */
+public class InventarioPosti {
+
+    private static final InventarioPosti instance = new InventarioPosti();
+
+    /** Contatori dei posti indicizzati per ID visita */
+    private final ConcurrentHashMap<Integer, Contatore> contatori = new ConcurrentHashMap<>();
+
+    private final AtomicLong riservazioniAccettate = new AtomicLong();
+    private final AtomicLong riservazioniRespinte = new AtomicLong();
+
+    private InventarioPosti() {}
+
+    /**
+     * Restituisce l'istanza condivisa dell'inventario.
+     *
+     * @return l'istanza singleton dell'inventario
+     */
+    public static InventarioPosti getInstance() {
+        return instance;
+    }
+
+    /**
+     * Riserva dei posti per una visita se la capienza lo consente.
+     * La riserva va poi confermata con {@link #conferma} o annullata con {@link #annulla}.
+     *
+     * @param idVisita l'ID della visita
+     * @param posti il numero di posti richiesti
+     * @param postiPrenotati i posti prenotati noti, usati solo se la visita non ha ancora un contatore
+     * @param maxPersone la capienza massima della visita
+     * @return true se i posti sono stati riservati, false se la capienza non è sufficiente
+     */
+    public boolean riserva(int idVisita, int posti, int postiPrenotati, int maxPersone) {
+        Contatore contatore = contatori.computeIfAbsent(idVisita, id -> new Contatore(postiPrenotati));
+        while (true) {
+            long stato = contatore.stato.get();
+            int confermati = confermati(stato);
+            int inCorso = inCorso(stato);
+            if (confermati + inCorso + posti > maxPersone) {
+                riservazioniRespinte.incrementAndGet();
+                return false;
+            }
+            if (contatore.stato.compareAndSet(stato, componi(confermati, inCorso + posti))) {
+                riservazioniAccettate.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Conferma una riserva dopo il commit sul database. I posti confermati vengono portati
+     * almeno al valore riletto nella transazione e non incrementati: una ricarica avvenuta
+     * tra il commit e la conferma li ha già allineati al database. Il valore non viene mai
+     * abbassato, perché due prenotazioni concorrenti possono confermarsi in ordine inverso
+     * rispetto ai loro commit, e la rilettura applicata per ultima può essere la più vecchia.
+     *
+     * @param idVisita l'ID della visita
+     * @param posti i posti riservati
+     * @param postiPrenotati i posti prenotati riletti nella transazione della prenotazione
+     * @return i posti confermati risultanti per la visita
+     */
+    public int conferma(int idVisita, int posti, int postiPrenotati) {
+        Contatore contatore = contatori.get(idVisita);
+        if (contatore == null) return postiPrenotati;
+        while (true) {
+            long stato = contatore.stato.get();
+            int confermati = Math.max(confermati(stato), postiPrenotati);
+            int inCorso = Math.max(0, inCorso(stato) - posti);
+            if (contatore.stato.compareAndSet(stato, componi(confermati, inCorso))) return confermati;
+        }
+    }
+
+    /**
+     * Annulla una riserva non andata a buon fine.
+     *
+     * @param idVisita l'ID della visita
+     * @param posti i posti riservati
+     */
+    public void annulla(int idVisita, int posti) {
+        aggiorna(idVisita, 0, -posti);
+    }
+
+    /**
+     * Registra i posti liberati da una prenotazione confermata e poi cancellata,
+     * impostando i posti confermati al valore riletto nella transazione di cancellazione.
+     *
+     * @param idVisita l'ID della visita
+     * @param postiPrenotati i posti prenotati riletti nella transazione della cancellazione
+     * @return i posti confermati risultanti per la visita
+     */
+    public int rilascia(int idVisita, int postiPrenotati) {
+        contatori.computeIfAbsent(idVisita, id -> new Contatore(postiPrenotati));
+        return imposta(idVisita, postiPrenotati, 0);
+    }
+
+    /**
+     * Allinea i posti confermati al valore letto dal database,
+     * mantenendo le riserve ancora in corso.
+     *
+     * @param idVisita l'ID della visita
+     * @param postiPrenotati i posti prenotati secondo il database
+     */
+    public void allinea(int idVisita, int postiPrenotati) {
+        if (contatori.containsKey(idVisita)) {
+            imposta(idVisita, postiPrenotati, 0);
+        }
+    }
+
+    /**
+     * Rimuove il contatore di una visita eliminata.
+     *
+     * @param idVisita l'ID della visita
+     */
+    public void rimuovi(int idVisita) {
+        contatori.remove(idVisita);
+    }
+
+    private int imposta(int idVisita, int confermati, int deltaInCorso) {
+        Contatore contatore = contatori.get(idVisita);
+        if (contatore == null) return confermati;
+        while (true) {
+            long stato = contatore.stato.get();
+            int inCorso = Math.max(0, inCorso(stato) + deltaInCorso);
+            if (contatore.stato.compareAndSet(stato, componi(confermati, inCorso))) return confermati;
+        }
+    }
+
+    private int aggiorna(int idVisita, int deltaConfermati, int deltaInCorso) {
+        Contatore contatore = contatori.get(idVisita);
+        if (contatore == null) return Math.max(0, deltaConfermati);
+        while (true) {
+            long stato = contatore.stato.get();
+            int confermati = Math.max(0, confermati(stato) + deltaConfermati);
+            int inCorso = Math.max(0, inCorso(stato) + deltaInCorso);
+            if (contatore.stato.compareAndSet(stato, componi(confermati, inCorso))) return confermati;
+        }
+    }
+
+    public long getRiservazioniAccettate() { return riservazioniAccettate.get(); }
+
+    public long getRiservazioniRespinte() { return riservazioniRespinte.get(); }
+
+    private static long componi(int confermati, int inCorso) {
+        return ((long) confermati << 32) | (inCorso & 0xFFFFFFFFL);
+    }
+
+    private static int confermati(long stato) {
+        return (int) (stato >>> 32);
+    }
+
+    private static int inCorso(long stato) {
+        return (int) stato;
+    }
+
+    /**
+     * Stato dei posti di una singola visita.
+     */
+    private static final class Contatore {
+        private final AtomicLong stato;
+
+        private Contatore(int confermati) {
+            this.stato = new AtomicLong(componi(confermati, 0));
+        }
+    }
+}
@@ -4,12 +4,17 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import src.controller.ThreadPoolController;
 import src.model.Luogo;
 import src.model.TipiVisitaClass;
+import src.model.db.TipiVisitaAssociati.Associazione;
 
 /**
  * Gestisce le operazioni CRUD per i luoghi nel database.
@@ -18,8 +23,11 @@ import src.model.TipiVisitaClass;
  * 
  */
 public class LuoghiManager extends DatabaseManager {
+    /** Cache versionata dei luoghi indicizzata per nome */
+    private final CacheVersionata<String, Luogo> luoghiCache = new CacheVersionata<>();
+
     /** Mappa concorrente dei luoghi indicizzata per nome */
-    private ConcurrentHashMap<String, Luogo> luoghiMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Luogo> luoghiMap = luoghiCache.getMappa();
 
     /**
      * Costruttore del manager dei luoghi.
@@ -33,128 +41,198 @@ public class LuoghiManager extends DatabaseManager {
     }
     
     /**
-     * Carica tutti i luoghi dal database nella mappa in memoria.
-     * Svuota la mappa esistente e la riempie con i dati aggiornati.
+     * Carica tutti i luoghi dal database e li pubblica come nuovo snapshot.
+     * Il nuovo stato viene costruito a parte, senza mai svuotare la mappa letta dagli altri thread.
      */
     protected void caricaLuoghi() {
-        String sql = "SELECT nome, descrizione, collocazione, tipi_di_visita FROM luoghi";
+        String sql = "SELECT nome, descrizione, collocazione FROM luoghi";
         try (Connection conn = DatabaseConnection.connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            synchronized (luoghiMap) {
-                luoghiMap.clear();
+            Map<Object, List<TipiVisitaClass>> tipi = TipiVisitaAssociati.carica(conn, Associazione.LUOGO, null);
+            Map<String, Luogo> nuoviLuoghi = new HashMap<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    String nome = rs.getString("nome");
-                    String tipiVisitaStr = rs.getString("tipi_di_visita");
-                    List<TipiVisitaClass> tipiVisitaList = new ArrayList<>();
-                    if (tipiVisitaStr != null && !tipiVisitaStr.trim().isEmpty()) {
-                        String[] tipiArray = tipiVisitaStr.split(",");
-                        for (String tipo : tipiArray) {
-                            try {
-                                tipiVisitaList.add(TipiVisitaClass.valueOf(tipo.trim()));
-                            } catch (IllegalArgumentException e) {
-                                System.err.println("Valore non valido per TipiVisitaClass: " + tipo);
-                            }
-                        }
-                    }
-                    Luogo luogo = new Luogo(
-                        nome,
-                        rs.getString("descrizione"),
-                        rs.getString("collocazione"),
-                        tipiVisitaList
-                    );
-                luoghiMap.putIfAbsent(nome, luogo);
+                    Luogo luogo = mappaLuogo(rs, tipi);
+                    nuoviLuoghi.putIfAbsent(luogo.getNome(), luogo);
                 }
             }
+            luoghiCache.pubblica(nuoviLuoghi);
         } catch (SQLException e) {
             System.err.println("Errore durante il caricamento dei luoghi: " + e.getMessage());
         }
     }
 
+    /**
+     * Carica i soli luoghi modificati a partire dall'istante indicato
+     * e li aggiorna nella mappa senza svuotarla.
+     * 
+     * @param conn la connessione da usare
+     * @param dal l'istante da cui cercare le modifiche (incluso)
+     * @return l'istante di modifica più recente letto, o quello ricevuto se non ci sono modifiche
+     * @throws SQLException se la query fallisce
+     */
+    protected Timestamp caricaLuoghiModificati(Connection conn, Timestamp dal) throws SQLException {
+        String sql = "SELECT nome, descrizione, collocazione, aggiornato_il FROM luoghi WHERE aggiornato_il >= ?";
+        Timestamp ultimo = dal;
+        Map<Object, List<TipiVisitaClass>> tipi = TipiVisitaAssociati.carica(conn, Associazione.LUOGO,
+                "a.luogo IN (SELECT nome FROM luoghi WHERE aggiornato_il >= ?)", dal);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setTimestamp(1, dal);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Luogo luogo = mappaLuogo(rs, tipi);
+                    luoghiMap.put(luogo.getNome(), luogo);
+                    Timestamp aggiornatoIl = rs.getTimestamp("aggiornato_il");
+                    if (aggiornatoIl.after(ultimo)) ultimo = aggiornatoIl;
+                }
+            }
+        }
+        return ultimo;
+    }
+
+    /**
+     * Rimuove dalla mappa un luogo eliminato dal database.
+     * 
+     * @param nome il nome del luogo eliminato
+     */
+    protected void rimuoviLuogoDallaCache(String nome) {
+        luoghiMap.remove(nome);
+    }
+
+    /**
+     * Costruisce un luogo dalla riga corrente del ResultSet.
+     * 
+     * @param rs il ResultSet posizionato sulla riga da leggere
+     * @param tipi i tipi di visita associati a ogni luogo
+     * @return il luogo letto
+     * @throws SQLException se la lettura delle colonne fallisce
+     */
+    private Luogo mappaLuogo(ResultSet rs, Map<Object, List<TipiVisitaClass>> tipi) throws SQLException {
+        String nome = rs.getString("nome");
+        return new Luogo(
+            nome,
+            rs.getString("descrizione"),
+            rs.getString("collocazione"),
+            new ArrayList<>(tipi.getOrDefault(nome, List.of()))
+        );
+    }
+
     /**
      * Aggiorna un luogo esistente nel database in modo asincrono.
      * 
      * @param nome il nome del luogo da aggiornare
      * @param luogoAggiornato il luogo con i dati aggiornati
+     * @return il future con le righe aggiornate nella tabella luoghi
      */
-    private void aggiornaLuogo(String nome, Luogo luogoAggiornato) {
-        String sql = "UPDATE luoghi SET descrizione = ?, collocazione = ?, tipi_di_visita = ? WHERE nome = ?";
-        executorService.submit(() -> {
+    private CompletableFuture<EsitoScrittura> aggiornaLuogo(String nome, Luogo luogoAggiornato) {
+        String sql = "UPDATE luoghi SET descrizione = ?, collocazione = ? WHERE nome = ?";
+        return scriviAsync("Errore durante l'aggiornamento del luogo", () -> {
             try (Connection conn = DatabaseConnection.connect();
                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, luogoAggiornato.getDescrizione());
-                pstmt.setString(2, luogoAggiornato.getCollocazione());
-                String tipiVisitaStr = String.join(",", luogoAggiornato.getTipiVisitaClass()
-                                                    .stream().map(t -> t.getNome().toUpperCase()).toList());
-                pstmt.setString(3, tipiVisitaStr);
-                pstmt.setString(4, nome);
-                pstmt.executeUpdate();
-            } catch (SQLException e) {
-                consoleIO.mostraMessaggio("Errore durante l'aggiornamento del luogo: " + e.getMessage());
+                conn.setAutoCommit(false);
+                try {
+                    pstmt.setString(1, luogoAggiornato.getDescrizione());
+                    pstmt.setString(2, luogoAggiornato.getCollocazione());
+                    pstmt.setString(3, nome);
+                    int righe = pstmt.executeUpdate();
+                    if (righe == 0) {
+                        // nessun luogo con questo nome: i tipi non vanno associati a un nome inesistente
+                        conn.rollback();
+                        System.err.println("Nessun luogo trovato con il nome " + nome + ".");
+                        return EsitoScrittura.NESSUNA_MODIFICA;
+                    }
+                    TipiVisitaAssociati.sostituisci(conn, Associazione.LUOGO, nome, luogoAggiornato.getTipiVisitaClass());
+                    conn.commit();
+                    return EsitoScrittura.righe(righe);
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
             }
         });
     }
 
     /**
-     * Aggiunge un nuovo luogo al database.
+     * Aggiunge un nuovo luogo al database in modo asincrono.
      * 
      * @param luogo il luogo da aggiungere
+     * @return il future con le righe inserite
      */
-    private void aggiungiLuogo(Luogo luogo) {
-        String inserisciSql = "INSERT INTO luoghi (nome, descrizione, collocazione, tipi_di_visita) VALUES (?, ?, ?, ?)";
+    private CompletableFuture<EsitoScrittura> aggiungiLuogo(Luogo luogo) {
+        String inserisciSql = "INSERT INTO luoghi (nome, descrizione, collocazione) VALUES (?, ?, ?)";
 
+        return scriviAsync("Errore durante l'aggiunta del luogo", () -> {
             try (Connection conn = DatabaseConnection.connect();
                  PreparedStatement pstmt = conn.prepareStatement(inserisciSql)) {
-    
-                pstmt.setString(1, luogo.getNome());
-                pstmt.setString(2, luogo.getDescrizione());
-                pstmt.setString(3, luogo.getCollocazione());
-                String tipiVisitaStr = String.join(",", luogo.getTipiVisitaClass().stream().map(TipiVisitaClass::getNome).toList());
-                pstmt.setString(4, tipiVisitaStr);
-                pstmt.executeUpdate();
-    
-                consoleIO.mostraMessaggio("Luogo aggiunto con successo.");
-            } catch (SQLException e) {
-                consoleIO.mostraMessaggio("Errore durante l'aggiunta del luogo: " + e.getMessage());
+                conn.setAutoCommit(false);
+                try {
+                    pstmt.setString(1, luogo.getNome());
+                    pstmt.setString(2, luogo.getDescrizione());
+                    pstmt.setString(3, luogo.getCollocazione());
+                    int righe = pstmt.executeUpdate();
+                    TipiVisitaAssociati.sostituisci(conn, Associazione.LUOGO, luogo.getNome(), luogo.getTipiVisitaClass());
+                    conn.commit();
+                    consoleIO.mostraMessaggio("Luogo aggiunto con successo.");
+                    return EsitoScrittura.righe(righe);
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
             }
+        });
     }
 
     /**
      * Aggiunge un nuovo luogo verificando prima che non esista già.
      * 
      * @param nuovoLuogo il nuovo luogo da aggiungere
+     * @return il future con le righe inserite, già completato senza modifiche se il luogo esiste
      */
-    public void aggiungiNuovoLuogo(Luogo nuovoLuogo) {
+    public CompletableFuture<EsitoScrittura> aggiungiNuovoLuogo(Luogo nuovoLuogo) {
         String verificaSql = "SELECT 1 FROM luoghi WHERE nome = ?";
         if(!recordEsiste(verificaSql, nuovoLuogo.getNome())){
             consoleIO.mostraMessaggio("Il luogo non esiste già. Procedo con l'aggiunta.");
-            aggiungiLuogo(nuovoLuogo);
+            return aggiungiLuogo(nuovoLuogo);
         } else {
             consoleIO.mostraMessaggio("Il luogo esiste già.");
-            return;
+            return CompletableFuture.completedFuture(EsitoScrittura.NESSUNA_MODIFICA);
         }
     }
 
     /**
      * Rimuove un luogo dal database in modo asincrono.
+     * Le visite del luogo vengono eliminate esplicitamente nella stessa transazione:
+     * le eliminazioni in cascata della chiave esterna non attivano i trigger,
+     * e la sincronizzazione incrementale non le vedrebbe.
      * 
      * @param luogoDaEliminare il luogo da eliminare
+     * @return il future con le righe eliminate dalla tabella luoghi
      */
-    private void rimuoviLuogoDalDatabase(Luogo luogoDaEliminare) {
+    private CompletableFuture<EsitoScrittura> rimuoviLuogoDalDatabase(Luogo luogoDaEliminare) {
+        String eliminaVisiteSql = "DELETE FROM visite WHERE luogo = ?";
         String sql = "DELETE FROM luoghi WHERE nome = ?";
-        executorService.submit(() -> {
+        return scriviAsync("Errore durante la rimozione del luogo", () -> {
             try (Connection conn = DatabaseConnection.connect();
+                 PreparedStatement eliminaVisite = conn.prepareStatement(eliminaVisiteSql);
                  PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, luogoDaEliminare.getNome());
-                int rowsDeleted = pstmt.executeUpdate();
-                if (rowsDeleted > 0) {
-                    consoleIO.mostraMessaggio("Luogo rimosso con successo.");
-                } else {
-                    consoleIO.mostraMessaggio("Errore: Nessun luogo trovato con il nome specificato.");
+                conn.setAutoCommit(false);
+                try {
+                    eliminaVisite.setString(1, luogoDaEliminare.getNome());
+                    eliminaVisite.executeUpdate();
+                    pstmt.setString(1, luogoDaEliminare.getNome());
+                    int rowsDeleted = pstmt.executeUpdate();
+                    conn.commit();
+                    if (rowsDeleted > 0) {
+                        consoleIO.mostraMessaggio("Luogo rimosso con successo.");
+                    } else {
+                        consoleIO.mostraMessaggio("Errore: Nessun luogo trovato con il nome specificato.");
+                    }
+                    return EsitoScrittura.righe(rowsDeleted);
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
                 }
-            } catch (SQLException e) {
-                consoleIO.mostraMessaggio("Errore durante la rimozione del luogo: " + e.getMessage());
             }
         });
     }
@@ -167,33 +245,46 @@ public class LuoghiManager extends DatabaseManager {
     public ConcurrentHashMap<String, Luogo> getLuoghiMap() {
         return luoghiMap;
     }
+
+    /**
+     * Restituisce lo snapshot immutabile corrente dei luoghi.
+     * 
+     * @return lo snapshot dei luoghi
+     */
+    public CacheVersionata.Snapshot<String, Luogo> getLuoghiSnapshot() {
+        return luoghiCache.getSnapshot();
+    }
     
     /**
      * Imposta la mappa dei luoghi.
+     * Il contenuto viene pubblicato come nuovo snapshot della cache.
      * 
      * @param luoghiMap la nuova mappa dei luoghi
      */
     public void setLuoghiMap(ConcurrentHashMap<String, Luogo> luoghiMap) {
-        this.luoghiMap = luoghiMap;
+        luoghiCache.pubblica(new HashMap<>(luoghiMap));
     }
 
     /**
      * Rimuove un luogo sia dal database che dalla mappa in memoria.
      * 
      * @param luogoDaEliminare il luogo da rimuovere
+     * @return il future dell'eliminazione dal database
      */
-    public void rimuoviLuogo(Luogo luogoDaEliminare) {
-        rimuoviLuogoDalDatabase(luogoDaEliminare);
+    public CompletableFuture<EsitoScrittura> rimuoviLuogo(Luogo luogoDaEliminare) {
+        CompletableFuture<EsitoScrittura> eliminazione = rimuoviLuogoDalDatabase(luogoDaEliminare);
         luoghiMap.remove(luogoDaEliminare.getNome());
+        return eliminazione;
     }
 
     /**
      * Aggiorna un luogo esistente.
      * 
      * @param luogo il luogo con i dati aggiornati
+     * @return il future dell'aggiornamento
      */
-    public void aggiornaLuoghi(Luogo luogo) {
-        aggiornaLuogo(luogo.getNome(), luogo);
+    public CompletableFuture<EsitoScrittura> aggiornaLuoghi(Luogo luogo) {
+        return aggiornaLuogo(luogo.getNome(), luogo);
     }
 
 }
@@ -0,0 +1,68 @@
+package src.model.db;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Associazione biunivoca tra due insiemi di chiavi, consultabile in entrambe le direzioni.
+ * Inserire una coppia rimuove le eventuali associazioni precedenti di entrambe le chiavi,
+ * così le due direzioni restano sempre coerenti.
+ *
+ * @param <A> il tipo delle chiavi dirette
+ * @param <B> il tipo delle chiavi inverse
+ */
+public class MappaBidirezionale<A, B> {
+
+    private final Map<A, B> diretta = new HashMap<>();
+    private final Map<B, A> inversa = new HashMap<>();
+
+    /**
+     * Associa le due chiavi, sostituendo le associazioni precedenti di ciascuna.
+     *
+     * @param a la chiave diretta
+     * @param b la chiave inversa
+     */
+    public synchronized void associa(A a, B b) {
+        B vecchiaB = diretta.remove(a);
+        if (vecchiaB != null) inversa.remove(vecchiaB);
+        A vecchiaA = inversa.remove(b);
+        if (vecchiaA != null) diretta.remove(vecchiaA);
+        diretta.put(a, b);
+        inversa.put(b, a);
+    }
+
+    /**
+     * Sostituisce l'intero contenuto con le associazioni indicate.
+     *
+     * @param associazioni le nuove associazioni
+     */
+    public synchronized void sostituisci(Map<A, B> associazioni) {
+        diretta.clear();
+        inversa.clear();
+        for (Map.Entry<A, B> voce : associazioni.entrySet()) {
+            associa(voce.getKey(), voce.getValue());
+        }
+    }
+
+    public synchronized B getDiretta(A a) {
+        return diretta.get(a);
+    }
+
+    public synchronized A getInversa(B b) {
+        return inversa.get(b);
+    }
+
+    public synchronized void rimuoviDiretta(A a) {
+        B b = diretta.remove(a);
+        if (b != null) inversa.remove(b);
+    }
+
+    public synchronized void rimuoviInversa(B b) {
+        A a = inversa.remove(b);
+        if (a != null) diretta.remove(a);
+    }
+
+    public synchronized int size() {
+        return diretta.size();
+    }
+}
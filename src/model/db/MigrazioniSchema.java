@@ -0,0 +1,231 @@
+package src.model.db;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applica all'avvio le migrazioni dello schema del database.
+ *
+ * Le migrazioni sono script SQL nella cartella {@value #CARTELLA_MIGRAZIONI}, chiamati
+ * {@code V<versione>__<descrizione>.sql} e applicati in ordine di versione. Ogni script
+ * applicato viene registrato nella tabella {@code schema_versioni} con il checksum SHA-256
+ * del contenuto: uno script già applicato e poi modificato blocca le migrazioni successive.
+ * Un lock a livello di database evita che due istanze applichino le migrazioni insieme.
+ *
+ */
+public class MigrazioniSchema {
+
+    private static final String CARTELLA_MIGRAZIONI = "src/utility/migrazioni";
+
+    private static final Pattern NOME_SCRIPT = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private static final String NOME_LOCK = "gestione_visite_migrazioni";
+
+    private static final int TIMEOUT_LOCK_SECONDI = 30;
+
+    private final Path cartella;
+
+    public MigrazioniSchema() {
+        this(Paths.get(CARTELLA_MIGRAZIONI));
+    }
+
+    public MigrazioniSchema(Path cartella) {
+        this.cartella = cartella;
+    }
+
+    /**
+     * Applica le migrazioni non ancora registrate.
+     *
+     * @return true se lo schema è aggiornato all'ultima versione disponibile
+     */
+    public boolean applica() {
+        TreeMap<Integer, Path> script;
+        try {
+            script = trovaScript();
+        } catch (IOException e) {
+            System.err.println("Errore durante la lettura delle migrazioni: " + e.getMessage());
+            return false;
+        }
+
+        try (Connection conn = DatabaseConnection.connect()) {
+            if (conn == null) return false;
+            if (!acquisisciLock(conn)) {
+                System.err.println("Migrazioni non applicate: lock non ottenuto entro " + TIMEOUT_LOCK_SECONDI + " secondi");
+                return false;
+            }
+            try {
+                creaTabellaVersioni(conn);
+                Map<Integer, String> applicate = leggiApplicate(conn);
+                for (Map.Entry<Integer, Path> voce : script.entrySet()) {
+                    if (!applicaScript(conn, voce.getKey(), voce.getValue(), applicate)) {
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                rilasciaLock(conn);
+            }
+        } catch (SQLException | IOException e) {
+            System.err.println("Errore durante l'applicazione delle migrazioni: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Applica un singolo script, o ne verifica il checksum se è già stato applicato.
+     *
+     * @return false se lo script è stato modificato dopo l'applicazione
+     */
+    private boolean applicaScript(Connection conn, int versione, Path file, Map<Integer, String> applicate)
+            throws IOException, SQLException {
+        String contenuto = Files.readString(file, StandardCharsets.UTF_8);
+        String checksum = checksum(contenuto);
+        String registrato = applicate.get(versione);
+        if (registrato != null) {
+            if (!registrato.equals(checksum)) {
+                System.err.println("Migrazione " + file.getFileName() + " modificata dopo l'applicazione: "
+                        + "checksum registrato " + registrato + ", attuale " + checksum);
+                return false;
+            }
+            return true;
+        }
+
+        long inizio = System.currentTimeMillis();
+        try (Statement stmt = conn.createStatement()) {
+            for (String istruzione : dividiIstruzioni(contenuto)) {
+                stmt.execute(istruzione);
+            }
+        }
+        String sql = "INSERT INTO schema_versioni (versione, descrizione, checksum, durata_ms) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, versione);
+            pstmt.setString(2, descrizione(file));
+            pstmt.setString(3, checksum);
+            pstmt.setLong(4, System.currentTimeMillis() - inizio);
+            pstmt.executeUpdate();
+        }
+        System.out.println("Migrazione applicata: " + file.getFileName());
+        return true;
+    }
+
+    private TreeMap<Integer, Path> trovaScript() throws IOException {
+        TreeMap<Integer, Path> script = new TreeMap<>();
+        if (!Files.isDirectory(cartella)) return script;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cartella, "V*__*.sql")) {
+            for (Path file : files) {
+                Matcher m = NOME_SCRIPT.matcher(file.getFileName().toString());
+                if (!m.matches()) continue;
+                Path precedente = script.put(Integer.parseInt(m.group(1)), file);
+                if (precedente != null) {
+                    throw new IOException("Versione duplicata: " + precedente.getFileName() + " e " + file.getFileName());
+                }
+            }
+        }
+        return script;
+    }
+
+    private static String descrizione(Path file) {
+        Matcher m = NOME_SCRIPT.matcher(file.getFileName().toString());
+        return m.matches() ? m.group(2).replace('_', ' ') : file.getFileName().toString();
+    }
+
+    private static void creaTabellaVersioni(Connection conn) throws SQLException {
+        String sql = "CREATE TABLE IF NOT EXISTS schema_versioni ("
+                + "versione int NOT NULL PRIMARY KEY, "
+                + "descrizione varchar(255) NOT NULL, "
+                + "checksum char(64) NOT NULL, "
+                + "durata_ms bigint NOT NULL, "
+                + "applicata_il timestamp(3) NOT NULL DEFAULT current_timestamp(3))";
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static Map<Integer, String> leggiApplicate(Connection conn) throws SQLException {
+        Map<Integer, String> applicate = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT versione, checksum FROM schema_versioni");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                applicate.put(rs.getInt("versione"), rs.getString("checksum"));
+            }
+        }
+        return applicate;
+    }
+
+    private static boolean acquisisciLock(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            pstmt.setString(1, NOME_LOCK);
+            pstmt.setInt(2, TIMEOUT_LOCK_SECONDI);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void rilasciaLock(Connection conn) {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            pstmt.setString(1, NOME_LOCK);
+            pstmt.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println("Errore durante il rilascio del lock delle migrazioni: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Divide uno script nelle singole istruzioni, terminate da ';' a fine riga.
+     * Le righe di commento che iniziano con "--" vengono ignorate.
+     *
+     * @param contenuto il testo dello script
+     * @return le istruzioni da eseguire
+     */
+    static List<String> dividiIstruzioni(String contenuto) {
+        List<String> istruzioni = new ArrayList<>();
+        StringBuilder corrente = new StringBuilder();
+        for (String riga : contenuto.split("\\R")) {
+            String pulita = riga.strip();
+            if (pulita.isEmpty() || pulita.startsWith("--")) continue;
+            corrente.append(riga).append('\n');
+            if (pulita.endsWith(";")) {
+                String istruzione = corrente.toString().strip();
+                istruzioni.add(istruzione.substring(0, istruzione.length() - 1));
+                corrente.setLength(0);
+            }
+        }
+        if (!corrente.toString().isBlank()) {
+            istruzioni.add(corrente.toString().strip());
+        }
+        return istruzioni;
+    }
+
+    private static String checksum(String contenuto) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(contenuto.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+            StringBuilder esadecimale = new StringBuilder(64);
+            for (byte b : hash) {
+                esadecimale.append(String.format("%02x", b));
+            }
+            return esadecimale.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+}
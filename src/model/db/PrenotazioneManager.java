@@ -1,15 +1,18 @@
 package src.model.db;
 
 import src.controller.ThreadPoolController;
+import src.model.BusEventiVisite;
+import src.model.EventoVisita;
 import src.model.Fruitore;
 import src.model.Prenotazione;
 import src.model.Visita;
 
 
 import java.sql.*;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 /**
  * Gestisce le operazioni CRUD per le prenotazioni nel database.
@@ -18,8 +21,20 @@ import java.util.stream.Collectors;
  * 
  */
 public class PrenotazioneManager extends DatabaseManager {
+    /** Indici secondari delle prenotazioni per visita e per fruitore, partizionati per stato */
+    private static final IndicePrenotazioni indicePrenotazioni = new IndicePrenotazioni();
+
+    /** Cache versionata delle prenotazioni indicizzata per codice prenotazione */
+    private static final CacheVersionata<String, Prenotazione> prenotazioniCache = new CacheVersionata<>(indicePrenotazioni);
+
     /** Mappa concorrente delle prenotazioni indicizzata per codice prenotazione */
-    private static ConcurrentHashMap<String, Prenotazione> prenotazioniMap = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Prenotazione> prenotazioniMap = prenotazioniCache.getMappa();
+
+    /** Tempo dopo un caricamento completo in cui le nuove richieste di caricamento vengono saltate */
+    private static final long FINESTRA_FRESCHEZZA_MILLIS = 1000;
+
+    /** Caricatore delle prenotazioni, condiviso come la loro cache */
+    private static final CaricatoreSingolo caricatorePrenotazioni = new CaricatoreSingolo("prenotazioni", FINESTRA_FRESCHEZZA_MILLIS);
     
     /** Manager delle visite per verificare disponibilità */
     private VisiteManagerDB visiteManager;
@@ -40,8 +55,9 @@ public class PrenotazioneManager extends DatabaseManager {
 
     /**
      * Aggiunge una nuova prenotazione al database con controlli di validità.
-     * Verifica la disponibilità di posti e che il fruitore non abbia già prenotato.
-     * Utilizza una transazione per garantire consistenza dei dati.
+     * Verifica che il fruitore non abbia già prenotato e riserva i posti nell'inventario in memoria;
+     * nella transazione i posti vengono poi occupati con un UPDATE condizionale sulla capienza,
+     * così due prenotazioni concorrenti non possono superare il numero massimo di persone.
      * 
      * @param emailFruitore l'email del fruitore che prenota
      * @param idVisita l'ID della visita da prenotare
@@ -68,11 +84,31 @@ public class PrenotazioneManager extends DatabaseManager {
             return false;
         }
 
+        InventarioPosti inventario = InventarioPosti.getInstance();
+        if (!inventario.riserva(idVisita, numeroPersone, visita.getPostiPrenotati(), visita.getMaxPersone())) {
+            consoleIO.mostraErrore("Posti insufficienti per la visita selezionata");
+            return false;
+        }
+
         Prenotazione prenotazione = new Prenotazione(emailFruitore, idVisita,  numeroPersone);
+        boolean confermata = false;
 
         try (Connection conn = DatabaseConnection.connect()) {
             conn.setAutoCommit(false);
 
+            String sqlOccupaPosti = "UPDATE visite SET posti_prenotati = posti_prenotati + ? WHERE id = ? AND posti_prenotati + ? <= max_persone";
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlOccupaPosti)) {
+                pstmt.setInt(1, numeroPersone);
+                pstmt.setInt(2, idVisita);
+                pstmt.setInt(3, numeroPersone);
+                if (pstmt.executeUpdate() == 0) {
+                    conn.rollback();
+                    consoleIO.mostraErrore("Posti insufficienti per la visita selezionata");
+                    return false;
+                }
+            }
+            int postiPrenotati = leggiPostiPrenotati(conn, idVisita);
+
             String sqlPrenotazione = "INSERT INTO prenotazioni (id_visita, email_fruitore, numero_persone, codice_prenotazione) VALUES (?, ?, ?, ?)";
             try (PreparedStatement pstmt = conn.prepareStatement(sqlPrenotazione, Statement.RETURN_GENERATED_KEYS)) {
                 pstmt.setInt(1, idVisita);
@@ -93,15 +129,15 @@ public class PrenotazioneManager extends DatabaseManager {
                 }
             }
 
-            String sqlAggiornaVisita = "UPDATE visite SET posti_prenotati = posti_prenotati + ? WHERE id = ?";
-            try (PreparedStatement pstmt = conn.prepareStatement(sqlAggiornaVisita)) {
-                pstmt.setInt(1, numeroPersone);
-                pstmt.setInt(2, idVisita);
-                pstmt.executeUpdate();
-            }
-
             conn.commit();
+            confermata = true;
+            int confermati = inventario.conferma(idVisita, numeroPersone, postiPrenotati);
+            synchronized (visita) {
+                // anche sulla visita le conferme concorrenti possono arrivare in ordine inverso
+                visita.setPostiPrenotati(Math.max(visita.getPostiPrenotati(), confermati));
+            }
             prenotazioniMap.put(prenotazione.getCodicePrenotazione(), prenotazione);
+            BusEventiVisite.getInstance().pubblica(idVisita, EventoVisita.Tipo.PRENOTAZIONE_CREATA);
             
             consoleIO.mostraMessaggio("Prenotazione confermata! Codice: " + prenotazione.getCodicePrenotazione());
             return true;
@@ -109,6 +145,31 @@ public class PrenotazioneManager extends DatabaseManager {
         } catch (SQLException e) {
             System.err.println("Errore durante la creazione della prenotazione: " + e.getMessage());
             return false;
+        } finally {
+            if (!confermata) {
+                inventario.annulla(idVisita, numeroPersone);
+            }
+        }
+    }
+
+    /**
+     * Rilegge i posti prenotati di una visita nella transazione corrente, dopo averli modificati:
+     * la riga è bloccata dall'UPDATE, quindi il valore è quello che verrà confermato dal commit.
+     * 
+     * @param conn la connessione con la transazione in corso
+     * @param idVisita l'ID della visita
+     * @return i posti prenotati della visita
+     * @throws SQLException se la lettura fallisce o la visita non esiste
+     */
+    private int leggiPostiPrenotati(Connection conn, int idVisita) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT posti_prenotati FROM visite WHERE id = ?")) {
+            pstmt.setInt(1, idVisita);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Visita " + idVisita + " non trovata");
+                }
+                return rs.getInt(1);
+            }
         }
     }
 
@@ -136,35 +197,49 @@ public class PrenotazioneManager extends DatabaseManager {
     }
 
     /**
-     * Carica tutte le prenotazioni dal database nella mappa in memoria.
-     * Svuota la mappa esistente e la riempie con i dati aggiornati.
+     * Carica tutte le prenotazioni dal database, salvo che un caricamento sia già in corso
+     * (in tal caso ne attende la fine) o sia appena stato eseguito.
      */
     protected void caricaPrenotazioni() {
+        try {
+            caricatorePrenotazioni.carica(this::leggiPrenotazioni);
+        } catch (RuntimeException e) {
+            // il caricamento fallito non aggiorna la finestra di freschezza: il prossimo riprova
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Legge tutte le prenotazioni dal database e le pubblica come nuovo snapshot.
+     * Il nuovo stato viene costruito a parte, senza mai svuotare la mappa letta dagli altri thread.
+     * 
+     * @throws RuntimeException se la lettura non riesce, così il caricatore non la conta come riuscita
+     */
+    private void leggiPrenotazioni() {
         String sql = "SELECT id, id_visita, email_fruitore, numero_persone, data_prenotazione, codice_prenotazione, stato FROM prenotazioni";
         
         try (Connection conn = DatabaseConnection.connect();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
             
-            synchronized (prenotazioniMap) {
-                prenotazioniMap.clear();
-                while (rs.next()) {
-                    Prenotazione prenotazione = new Prenotazione(
-                        rs.getString("email_fruitore"),
-                        rs.getInt("id_visita"),
-                        rs.getInt("numero_persone")
-                    );
-                    prenotazione.setId(rs.getInt("id"));
-                    prenotazione.setDataPrenotazione(rs.getDate("data_prenotazione").toLocalDate());
-                    prenotazione.setCodicePrenotazione(rs.getString("codice_prenotazione"));
-                    prenotazione.setStato(rs.getString("stato"));
-                    
-                    prenotazioniMap.put(prenotazione.getCodicePrenotazione(), prenotazione);
-                }
+            Map<String, Prenotazione> nuovePrenotazioni = new HashMap<>();
+            while (rs.next()) {
+                Prenotazione prenotazione = new Prenotazione(
+                    rs.getString("email_fruitore"),
+                    rs.getInt("id_visita"),
+                    rs.getInt("numero_persone")
+                );
+                prenotazione.setId(rs.getInt("id"));
+                prenotazione.setDataPrenotazione(rs.getDate("data_prenotazione").toLocalDate());
+                prenotazione.setCodicePrenotazione(rs.getString("codice_prenotazione"));
+                prenotazione.setStato(rs.getString("stato"));
+                
+                nuovePrenotazioni.put(prenotazione.getCodicePrenotazione(), prenotazione);
             }
+            prenotazioniCache.pubblica(nuovePrenotazioni);
             
         } catch (SQLException e) {
-            System.err.println("Errore durante il caricamento delle prenotazioni: " + e.getMessage());
+            throw new RuntimeException("Errore durante il caricamento delle prenotazioni: " + e.getMessage(), e);
         }
     }
 
@@ -175,6 +250,9 @@ public class PrenotazioneManager extends DatabaseManager {
      * @param prenotazione l'oggetto prenotazione con i nuovi dati
      */
     protected void aggiornaPrenotazioneDB(int id, Prenotazione prenotazione) {
+        if (prenotazioniMap.get(prenotazione.getCodicePrenotazione()) == prenotazione) {
+            indicePrenotazioni.inserito(prenotazione.getCodicePrenotazione(), prenotazione);
+        }
         String sql = "UPDATE prenotazioni SET id_visita = ?, email_fruitore = ?, numero_persone = ?, data_prenotazione = ?, codice_prenotazione = ?, stato = ? WHERE id = ?";
         
         try (Connection conn = DatabaseConnection.connect();
@@ -202,9 +280,7 @@ public class PrenotazioneManager extends DatabaseManager {
      * @return lista delle prenotazioni confermate del fruitore
      */
     protected List<Prenotazione> getPrenotazioniFruitore(String emailFruitore) {
-        return prenotazioniMap.values().stream()
-                .filter(p -> p.getEmailFruitore().equals(emailFruitore) && "CONFERMATA".equals(p.getStato()))
-                .collect(Collectors.toList());
+        return indicePrenotazioni.perFruitore(emailFruitore, "CONFERMATA");
     }
 
     /**
@@ -214,15 +290,14 @@ public class PrenotazioneManager extends DatabaseManager {
      * @return lista delle prenotazioni confermate per la visita
      */
     public List<Prenotazione> getPrenotazioniVisita(int idVisita) {
-        return prenotazioniMap.values().stream()
-                .filter(p -> p.getIdVisita() == idVisita && "CONFERMATA".equals(p.getStato()))
-                .collect(Collectors.toList());
+        return indicePrenotazioni.perVisita(idVisita, "CONFERMATA");
     }
 
     /**
      * Cancella una prenotazione esistente.
      * Aggiorna lo stato della prenotazione e libera i posti nella visita.
-     * Utilizza una transazione per garantire consistenza dei dati.
+     * Utilizza una transazione per garantire consistenza dei dati; i posti vengono liberati
+     * solo se la prenotazione era ancora confermata, così una doppia cancellazione non li libera due volte.
      * 
      * @param codicePrenotazione il codice della prenotazione da cancellare
      * @param emailFruitore l'email del fruitore (per verifica autorizzazione)
@@ -240,22 +315,33 @@ public class PrenotazioneManager extends DatabaseManager {
             conn.setAutoCommit(false);
 
              
-            String sqlCancella = "UPDATE prenotazioni SET stato = 'CANCELLATA' WHERE codice_prenotazione = ?";
+            String sqlCancella = "UPDATE prenotazioni SET stato = 'CANCELLATA' WHERE codice_prenotazione = ? AND stato = 'CONFERMATA'";
             try (PreparedStatement pstmt = conn.prepareStatement(sqlCancella)) {
                 pstmt.setString(1, codicePrenotazione);
-                pstmt.executeUpdate();
+                if (pstmt.executeUpdate() == 0) {
+                    conn.rollback();
+                    consoleIO.mostraErrore("La prenotazione non è più attiva");
+                    return false;
+                }
             }
 
              
-            String sqlAggiornaVisita = "UPDATE visite SET posti_prenotati = posti_prenotati - ? WHERE id = ?";
+            String sqlAggiornaVisita = "UPDATE visite SET posti_prenotati = GREATEST(posti_prenotati - ?, 0) WHERE id = ?";
             try (PreparedStatement pstmt = conn.prepareStatement(sqlAggiornaVisita)) {
                 pstmt.setInt(1, prenotazione.getNumeroPersone());
                 pstmt.setInt(2, prenotazione.getIdVisita());
                 pstmt.executeUpdate();
             }
+            int postiPrenotati = leggiPostiPrenotati(conn, prenotazione.getIdVisita());
 
             conn.commit();
             prenotazione.setStato("CANCELLATA");
+            indicePrenotazioni.inserito(codicePrenotazione, prenotazione);
+            Visita visita = visiteManager.getVisiteMap().get(prenotazione.getIdVisita());
+            if (visita != null) {
+                visita.setPostiPrenotati(InventarioPosti.getInstance().rilascia(prenotazione.getIdVisita(), postiPrenotati));
+            }
+            BusEventiVisite.getInstance().pubblica(prenotazione.getIdVisita(), EventoVisita.Tipo.PRENOTAZIONE_CANCELLATA);
             
             consoleIO.mostraMessaggio("Prenotazione cancellata");
             return true;
@@ -268,7 +354,8 @@ public class PrenotazioneManager extends DatabaseManager {
 
     /**
      * Crea una nuova prenotazione per un fruitore.
-     * Metodo di alto livello che aggiorna anche lo stato della visita in memoria.
+     * Metodo di alto livello: i posti della visita in memoria vengono aggiornati
+     * da addPrenotazione solo se la prenotazione va a buon fine.
      * 
      * @param fruitore il fruitore che effettua la prenotazione
      * @param visita la visita da prenotare
@@ -276,8 +363,6 @@ public class PrenotazioneManager extends DatabaseManager {
      */
     public void creaPrenotazione(Fruitore fruitore, Visita visita,  int numeroPersone) {
         addPrenotazione(fruitore.getEmail(), visita.getId(), numeroPersone);
-         
-        visita.setPostiPrenotati(visita.getPostiPrenotati() + numeroPersone);
 
     }
 
@@ -305,10 +390,37 @@ public class PrenotazioneManager extends DatabaseManager {
         return prenotazioniMap;
     }
 
+    /**
+     * Restituisce lo snapshot immutabile corrente delle prenotazioni.
+     * 
+     * @return lo snapshot delle prenotazioni
+     */
+    public static CacheVersionata.Snapshot<String, Prenotazione> getPrenotazioniSnapshot() {
+        return prenotazioniCache.getSnapshot();
+    }
+
+    /**
+     * Restituisce gli indici secondari delle prenotazioni per visita e per fruitore.
+     * 
+     * @return gli indici delle prenotazioni
+     */
+    public static IndicePrenotazioni getIndicePrenotazioni() {
+        return indicePrenotazioni;
+    }
+
     public void caricaPrenotazioniAsync() {
        caricaPrenotazioni();
     }
 
+    /**
+     * Restituisce le statistiche dei caricamenti completi delle prenotazioni.
+     * 
+     * @return le statistiche del caricatore delle prenotazioni
+     */
+    public static StatisticheCaricatore getStatisticheCaricamento() {
+        return caricatorePrenotazioni.getStatistiche();
+    }
+
     public void aggiornaPrenotazione(int id, Prenotazione prenotazione) {
         aggiornaPrenotazioneDB(id, prenotazione);
     }
@@ -0,0 +1,176 @@
+package src.model.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache LRU dei PreparedStatement di una singola connessione fisica del pool.
+ * Gli statement sono indicizzati dal testo SQL (e dalla richiesta di chiavi generate):
+ * la close() del chiamante non li chiude ma li rende di nuovo disponibili,
+ * così le query ripetute non vengono rianalizzate dal driver e dal server.
+ *
+ */
+public class StatementCache {
+
+    private static final AtomicLong hit = new AtomicLong();
+    private static final AtomicLong miss = new AtomicLong();
+    private static final AtomicLong evizioni = new AtomicLong();
+
+    private final Connection connessione;
+    private final int capacita;
+    private final LinkedHashMap<String, VoceCache> statement;
+
+    /**
+     * Costruttore della cache.
+     *
+     * @param connessione la connessione fisica su cui preparare gli statement
+     * @param capacita il numero massimo di statement mantenuti
+     */
+    public StatementCache(Connection connessione, int capacita) {
+        this.connessione = connessione;
+        this.capacita = capacita;
+        this.statement = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Restituisce uno statement per la query indicata, riusando quello in cache se libero.
+     * Se lo statement in cache è già in uso ne viene preparato uno non condiviso.
+     *
+     * @param sql il testo della query
+     * @param autoGeneratedKeys il flag delle chiavi generate, o null per il default
+     * @return il proxy dello statement da usare e chiudere normalmente
+     * @throws SQLException se la preparazione fallisce
+     */
+    public synchronized PreparedStatement prepara(String sql, Integer autoGeneratedKeys) throws SQLException {
+        String chiave = autoGeneratedKeys == null ? sql : autoGeneratedKeys + "|" + sql;
+        VoceCache voce = statement.get(chiave);
+        if (voce != null && !voce.inUso) {
+            hit.incrementAndGet();
+            voce.inUso = true;
+            return voce.proxy;
+        }
+        miss.incrementAndGet();
+        PreparedStatement ps = autoGeneratedKeys == null
+                ? connessione.prepareStatement(sql)
+                : connessione.prepareStatement(sql, autoGeneratedKeys);
+        if (voce != null) {
+            return ps;
+        }
+        voce = new VoceCache(ps);
+        voce.inUso = true;
+        statement.put(chiave, voce);
+        rimuoviEccedenti();
+        return voce.proxy;
+    }
+
+    /**
+     * Chiude gli statement meno usati di recente oltre la capacità, saltando quelli in uso.
+     */
+    private void rimuoviEccedenti() {
+        Iterator<VoceCache> it = statement.values().iterator();
+        while (statement.size() > capacita && it.hasNext()) {
+            VoceCache voce = it.next();
+            if (voce.inUso) continue;
+            it.remove();
+            evizioni.incrementAndGet();
+            chiudiSilenziosamente(voce.reale);
+        }
+    }
+
+    /**
+     * Rende di nuovo disponibile uno statement chiuso dal chiamante.
+     */
+    private synchronized void rilascia(VoceCache voce) {
+        voce.inUso = false;
+        try {
+            voce.reale.clearParameters();
+            voce.reale.clearBatch();
+        } catch (SQLException e) {
+            statement.values().remove(voce);
+            chiudiSilenziosamente(voce.reale);
+        }
+    }
+
+    /**
+     * Rende disponibili gli statement che il chiamante non ha chiuso
+     * prima di restituire la connessione al pool.
+     */
+    public synchronized void rilasciaTutti() {
+        for (VoceCache voce : statement.values().toArray(new VoceCache[0])) {
+            if (voce.inUso) rilascia(voce);
+        }
+    }
+
+    /**
+     * Chiude tutti gli statement in cache.
+     */
+    public synchronized void chiudi() {
+        for (VoceCache voce : statement.values()) {
+            chiudiSilenziosamente(voce.reale);
+        }
+        statement.clear();
+    }
+
+    private static void chiudiSilenziosamente(Statement st) {
+        try {
+            st.close();
+        } catch (SQLException e) {
+            System.err.println("Errore durante la chiusura di uno statement in cache: " + e.getMessage());
+        }
+    }
+
+    public static long getHit() { return hit.get(); }
+
+    public static long getMiss() { return miss.get(); }
+
+    public static long getEvizioni() { return evizioni.get(); }
+
+    /**
+     * Statement in cache con il suo proxy e lo stato di utilizzo.
+     */
+    private final class VoceCache implements InvocationHandler {
+        private final PreparedStatement reale;
+        private final PreparedStatement proxy;
+        private boolean inUso;
+
+        private VoceCache(PreparedStatement reale) {
+            this.reale = reale;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    this);
+        }
+
+        @Override
+        public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (inUso) rilascia(this);
+                    return null;
+                case "isClosed":
+                    return !inUso || reale.isClosed();
+                case "equals":
+                    return p == args[0];
+                case "hashCode":
+                    return System.identityHashCode(p);
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(reale, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
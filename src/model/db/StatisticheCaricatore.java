@@ -0,0 +1,49 @@
+package src.model.db;
+
+/**
+ * Istantanea immutabile delle statistiche di un {@link CaricatoreSingolo}.
+ *
+ */
+public class StatisticheCaricatore {
+    private final String nome;
+    private final long richieste;
+    private final long eseguiti;
+    private final long fusi;
+    private final long saltati;
+
+    public StatisticheCaricatore(String nome, long richieste, long eseguiti, long fusi, long saltati) {
+        this.nome = nome;
+        this.richieste = richieste;
+        this.eseguiti = eseguiti;
+        this.fusi = fusi;
+        this.saltati = saltati;
+    }
+
+    public String getNome() { return nome; }
+
+    public long getRichieste() { return richieste; }
+
+    /**
+     * Restituisce i caricamenti effettivamente avviati.
+     * @return il numero di caricamenti eseguiti
+     */
+    public long getEseguiti() { return eseguiti; }
+
+    /**
+     * Restituisce le richieste servite da un caricamento già in corso.
+     * @return il numero di richieste fuse
+     */
+    public long getFusi() { return fusi; }
+
+    /**
+     * Restituisce le richieste ignorate perché i dati erano ancora freschi.
+     * @return il numero di richieste saltate
+     */
+    public long getSaltati() { return saltati; }
+
+    @Override
+    public String toString() {
+        return "StatisticheCaricatore [" + nome + ": richieste=" + richieste + ", eseguiti=" + eseguiti
+                + ", fusi=" + fusi + ", saltati=" + saltati + "]";
+    }
+}
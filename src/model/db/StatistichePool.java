@@ -0,0 +1,96 @@
+package src.model.db;
+
+/**
+ * Istantanea immutabile delle statistiche di un {@link ConnectionPool}.
+ *
+ */
+public class StatistichePool {
+    private final int connessioniTotali;
+    private final int connessioniInUso;
+    private final int connessioniLibere;
+    private final int threadInAttesa;
+    private final int minConnessioni;
+    private final int maxConnessioni;
+    private final long prestiti;
+    private final long connessioniCreate;
+    private final long connessioniChiuse;
+    private final long timeoutAcquisizione;
+    private final long validazioniFallite;
+    private final long attesaMediaMicros;
+    private final long statementHit;
+    private final long statementMiss;
+    private final long statementEvizioni;
+
+    public StatistichePool(int connessioniTotali, int connessioniInUso, int connessioniLibere, int threadInAttesa,
+                           int minConnessioni, int maxConnessioni, long prestiti, long connessioniCreate,
+                           long connessioniChiuse, long timeoutAcquisizione, long validazioniFallite,
+                           long attesaMediaMicros, long statementHit, long statementMiss,
+                           long statementEvizioni) {
+        this.connessioniTotali = connessioniTotali;
+        this.connessioniInUso = connessioniInUso;
+        this.connessioniLibere = connessioniLibere;
+        this.threadInAttesa = threadInAttesa;
+        this.minConnessioni = minConnessioni;
+        this.maxConnessioni = maxConnessioni;
+        this.prestiti = prestiti;
+        this.connessioniCreate = connessioniCreate;
+        this.connessioniChiuse = connessioniChiuse;
+        this.timeoutAcquisizione = timeoutAcquisizione;
+        this.validazioniFallite = validazioniFallite;
+        this.attesaMediaMicros = attesaMediaMicros;
+        this.statementHit = statementHit;
+        this.statementMiss = statementMiss;
+        this.statementEvizioni = statementEvizioni;
+    }
+
+    public int getConnessioniTotali() { return connessioniTotali; }
+
+    public int getConnessioniInUso() { return connessioniInUso; }
+
+    public int getConnessioniLibere() { return connessioniLibere; }
+
+    public int getThreadInAttesa() { return threadInAttesa; }
+
+    public int getMinConnessioni() { return minConnessioni; }
+
+    public int getMaxConnessioni() { return maxConnessioni; }
+
+    public long getPrestiti() { return prestiti; }
+
+    public long getConnessioniCreate() { return connessioniCreate; }
+
+    public long getConnessioniChiuse() { return connessioniChiuse; }
+
+    public long getTimeoutAcquisizione() { return timeoutAcquisizione; }
+
+    public long getValidazioniFallite() { return validazioniFallite; }
+
+    /**
+     * Restituisce il tempo medio di attesa per ottenere una connessione.
+     * @return l'attesa media in microsecondi
+     */
+    public long getAttesaMediaMicros() { return attesaMediaMicros; }
+
+    public long getStatementHit() { return statementHit; }
+
+    public long getStatementMiss() { return statementMiss; }
+
+    public long getStatementEvizioni() { return statementEvizioni; }
+
+    @Override
+    public String toString() {
+        return "Pool connessioni [totali=" + connessioniTotali + " (min " + minConnessioni + ", max " + maxConnessioni + ")"
+            + ", inUso=" + connessioniInUso
+            + ", libere=" + connessioniLibere
+            + ", inAttesa=" + threadInAttesa
+            + ", prestiti=" + prestiti
+            + ", create=" + connessioniCreate
+            + ", chiuse=" + connessioniChiuse
+            + ", timeout=" + timeoutAcquisizione
+            + ", validazioniFallite=" + validazioniFallite
+            + ", attesaMedia=" + attesaMediaMicros + "us"
+            + ", statementHit=" + statementHit
+            + ", statementMiss=" + statementMiss
+            + ", statementEvizioni=" + statementEvizioni + "]";
+    }
+}
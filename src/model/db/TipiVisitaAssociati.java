@@ -0,0 +1,222 @@
+package src.model.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import src.model.TipiVisitaClass;
+
+/**
+ * Accesso alle tabelle di associazione tra luoghi, volontari, visite e tipi di visita
+ * ({@code luogo_tipo}, {@code volontario_tipo}, {@code visita_tipo}).
+ * I metodi usano la connessione ricevuta senza gestirne la transazione,
+ * che resta a carico del chiamante.
+ *
+ */
+public class TipiVisitaAssociati {
+
+    /**
+     * Tabelle di associazione con la relativa colonna del proprietario.
+     */
+    public enum Associazione {
+        LUOGO("luogo_tipo", "luogo"),
+        VOLONTARIO("volontario_tipo", "volontario_id"),
+        VISITA("visita_tipo", "visita_id");
+
+        private final String tabella;
+        private final String colonna;
+
+        Associazione(String tabella, String colonna) {
+            this.tabella = tabella;
+            this.colonna = colonna;
+        }
+    }
+
+    private static final String SQL_REGISTRA_TIPO = "INSERT IGNORE INTO tipi_visita (nome, descrizione) VALUES (?, ?)";
+
+    private TipiVisitaAssociati() {
+    }
+
+    /**
+     * Carica i tipi di visita associati ai proprietari di una tabella di associazione.
+     *
+     * @param conn la connessione da usare
+     * @param associazione la tabella di associazione
+     * @param filtro condizione SQL opzionale sulla colonna {@code a.<proprietario>}, o null per caricare tutto
+     * @param parametri i parametri della condizione
+     * @return i tipi di ogni proprietario; le chiavi intere sono restituite come Integer
+     * @throws SQLException se la query fallisce
+     */
+    public static Map<Object, List<TipiVisitaClass>> carica(Connection conn, Associazione associazione,
+                                                             String filtro, Object... parametri) throws SQLException {
+        String sql = "SELECT a." + associazione.colonna + " AS chiave, t.id, t.nome, t.descrizione"
+                + " FROM " + associazione.tabella + " a JOIN tipi_visita t ON t.id = a.tipo_id"
+                + (filtro != null ? " WHERE " + filtro : "")
+                + " ORDER BY a.tipo_id";
+        Map<Object, List<TipiVisitaClass>> tipiPerChiave = new HashMap<>();
+        Map<Integer, TipiVisitaClass> tipiPerId = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < parametri.length; i++) {
+                pstmt.setObject(i + 1, parametri[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Object chiave = rs.getObject("chiave");
+                    if (chiave instanceof Number) {
+                        chiave = ((Number) chiave).intValue();
+                    }
+                    int id = rs.getInt("id");
+                    TipiVisitaClass tipo = tipiPerId.get(id);
+                    if (tipo == null) {
+                        tipo = CatalogoTipiVisita.getInstance().interna(rs.getString("nome"), rs.getString("descrizione"));
+                        tipiPerId.put(id, tipo);
+                    }
+                    tipiPerChiave.computeIfAbsent(chiave, k -> new ArrayList<>()).add(tipo);
+                }
+            }
+        }
+        return tipiPerChiave;
+    }
+
+    /**
+     * Carica i tipi di visita associati a un singolo proprietario.
+     *
+     * @param conn la connessione da usare
+     * @param associazione la tabella di associazione
+     * @param chiave la chiave del proprietario
+     * @return i tipi associati, eventualmente vuota
+     * @throws SQLException se la query fallisce
+     */
+    public static List<TipiVisitaClass> caricaDi(Connection conn, Associazione associazione, Object chiave) throws SQLException {
+        Map<Object, List<TipiVisitaClass>> tipi = carica(conn, associazione, "a." + associazione.colonna + " = ?", chiave);
+        return tipi.isEmpty() ? new ArrayList<>() : tipi.values().iterator().next();
+    }
+
+    /**
+     * Sostituisce i tipi associati a un proprietario.
+     *
+     * @param conn la connessione da usare
+     * @param associazione la tabella di associazione
+     * @param chiave la chiave del proprietario
+     * @param tipi i nuovi tipi associati
+     * @throws SQLException se la scrittura fallisce
+     */
+    public static void sostituisci(Connection conn, Associazione associazione, Object chiave,
+                                   List<TipiVisitaClass> tipi) throws SQLException {
+        Map<Object, List<TipiVisitaClass>> tipiPerChiave = new HashMap<>();
+        tipiPerChiave.put(chiave, tipi);
+        sostituisciTutti(conn, associazione, tipiPerChiave);
+    }
+
+    /**
+     * Sostituisce i tipi associati a più proprietari con due batch: uno rimuove
+     * le associazioni non più presenti, l'altro inserisce quelle mancanti.
+     * Le associazioni invariate non vengono toccate. I tipi non ancora
+     * presenti in {@code tipi_visita} vengono registrati.
+     *
+     * @param conn la connessione da usare
+     * @param associazione la tabella di associazione
+     * @param tipiPerChiave i nuovi tipi di ogni proprietario
+     * @throws SQLException se la scrittura fallisce
+     */
+    public static void sostituisciTutti(Connection conn, Associazione associazione,
+                                        Map<?, List<TipiVisitaClass>> tipiPerChiave) throws SQLException {
+        if (tipiPerChiave.isEmpty()) return;
+        String sqlRimuovi = "DELETE a FROM " + associazione.tabella + " a JOIN tipi_visita t ON t.id = a.tipo_id"
+                + " WHERE a." + associazione.colonna + " = ? AND FIND_IN_SET(t.nome, ?) = 0";
+        String sqlInserisci = "INSERT IGNORE INTO " + associazione.tabella + " (" + associazione.colonna + ", tipo_id)"
+                + " SELECT ?, id FROM tipi_visita WHERE nome = ?";
+
+        Map<String, TipiVisitaClass> daRegistrare = new LinkedHashMap<>();
+        for (List<TipiVisitaClass> tipi : tipiPerChiave.values()) {
+            if (tipi == null) continue;
+            for (TipiVisitaClass tipo : tipi) {
+                if (tipo != null && !tipo.getNome().isEmpty()) {
+                    daRegistrare.putIfAbsent(tipo.getNome().toLowerCase(), tipo);
+                }
+            }
+        }
+        if (!daRegistrare.isEmpty()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_REGISTRA_TIPO)) {
+                for (TipiVisitaClass tipo : daRegistrare.values()) {
+                    pstmt.setString(1, tipo.getNome());
+                    pstmt.setString(2, tipo.getDescrizione());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+        }
+
+        try (PreparedStatement pstmtRimuovi = conn.prepareStatement(sqlRimuovi);
+             PreparedStatement pstmtInserisci = conn.prepareStatement(sqlInserisci)) {
+            boolean inserimenti = false;
+            for (Map.Entry<?, List<TipiVisitaClass>> voce : tipiPerChiave.entrySet()) {
+                List<TipiVisitaClass> tipi = voce.getValue() != null ? voce.getValue() : List.of();
+                pstmtRimuovi.setObject(1, voce.getKey());
+                pstmtRimuovi.setString(2, tipi.stream()
+                        .filter(t -> t != null)
+                        .map(TipiVisitaClass::getNome)
+                        .collect(Collectors.joining(",")));
+                pstmtRimuovi.addBatch();
+                for (TipiVisitaClass tipo : tipi) {
+                    if (tipo == null || tipo.getNome().isEmpty()) continue;
+                    pstmtInserisci.setObject(1, voce.getKey());
+                    pstmtInserisci.setString(2, tipo.getNome());
+                    pstmtInserisci.addBatch();
+                    inserimenti = true;
+                }
+            }
+            pstmtRimuovi.executeBatch();
+            if (inserimenti) {
+                pstmtInserisci.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Rimuove alcuni tipi dalle associazioni di un proprietario.
+     *
+     * @param conn la connessione da usare
+     * @param associazione la tabella di associazione
+     * @param chiave la chiave del proprietario
+     * @param tipi i tipi da rimuovere
+     * @throws SQLException se la scrittura fallisce
+     */
+    public static void rimuovi(Connection conn, Associazione associazione, Object chiave,
+                               List<TipiVisitaClass> tipi) throws SQLException {
+        String sql = "DELETE a FROM " + associazione.tabella + " a JOIN tipi_visita t ON t.id = a.tipo_id"
+                + " WHERE a." + associazione.colonna + " = ? AND FIND_IN_SET(t.nome, ?) > 0";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setObject(1, chiave);
+            pstmt.setString(2, tipi.stream()
+                    .filter(t -> t != null)
+                    .map(TipiVisitaClass::getNome)
+                    .collect(Collectors.joining(",")));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Rimuove un tipo da tutte le tabelle di associazione.
+     *
+     * @param conn la connessione da usare
+     * @param nomeTipo il nome del tipo
+     * @throws SQLException se la scrittura fallisce
+     */
+    public static void rimuoviTipo(Connection conn, String nomeTipo) throws SQLException {
+        for (Associazione associazione : Associazione.values()) {
+            String sql = "DELETE a FROM " + associazione.tabella + " a JOIN tipi_visita t ON t.id = a.tipo_id WHERE t.nome = ?";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, nomeTipo);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+}
@@ -4,16 +4,25 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 import src.controller.ThreadPoolController;
+import src.model.BusEventiVisite;
+import src.model.EventoVisita;
+import src.model.ScadenzeVisite;
 import src.model.TipiVisitaClass;
 import src.model.Visita;
 import src.model.Volontario;
+import src.model.db.TipiVisitaAssociati.Associazione;
 
 /**
  * Gestisce le operazioni CRUD per le visite nel database.
@@ -22,20 +31,38 @@ import src.model.Volontario;
  * 
  */
 public class VisiteManagerDB extends DatabaseManager {
+    /** Indici secondari delle visite per data, luogo, volontario e stato */
+    private static final IndiceVisite indiceVisite = new IndiceVisite();
+
+    /** Cache versionata delle visite indicizzata per ID */
+    private static final CacheVersionata<Integer, Visita> visiteCache = new CacheVersionata<>(indiceVisite);
+
     /** Mappa concorrente delle visite indicizzata per ID */
-    private static ConcurrentHashMap<Integer, Visita> visiteMap = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, Visita> visiteMap = visiteCache.getMappa();
+
+    /** Cache versionata delle date in cui non è possibile organizzare visite */
+    private final CacheVersionata<LocalDate, String> datePrecluseCache = new CacheVersionata<>();
     
     /** Mappa delle date in cui non è possibile organizzare visite */
-    private ConcurrentHashMap<LocalDate, String> datePrecluseMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<LocalDate, String> datePrecluseMap = datePrecluseCache.getMappa();
+
+    /** Tempo dopo un caricamento completo in cui le nuove richieste di caricamento vengono saltate */
+    private static final long FINESTRA_FRESCHEZZA_MILLIS = 1000;
+
+    /** Caricatore delle visite, condiviso come la loro cache */
+    private static final CaricatoreSingolo caricatoreVisite = new CaricatoreSingolo("visite", FINESTRA_FRESCHEZZA_MILLIS);
+
+    /** Caricatore delle date precluse */
+    private final CaricatoreSingolo caricatoreDatePrecluse = new CaricatoreSingolo("date-precluse", FINESTRA_FRESCHEZZA_MILLIS);
 
     /**
      * Costruttore del manager delle visite.
-     * Carica visite e date precluse dal database.
+     * Esegue le scritture asincrone su virtual thread e carica visite e date precluse dal database.
      * 
      * @param threadPoolManager il controller del thread pool
      */
     public VisiteManagerDB(ThreadPoolController threadPoolManager) {
-        super(threadPoolManager);
+        super(threadPoolManager, ThreadPoolController.Pool.DB_IO_VIRTUALE);
         caricaVisite();
         caricaDatePrecluse();
     }
@@ -57,92 +84,187 @@ public class VisiteManagerDB extends DatabaseManager {
     //Logiche delle visite--------------------------------------------------
     
     /**
-     * Carica tutte le visite dal database nella mappa in memoria.
-     * Svuota la mappa esistente e la riempie con i dati aggiornati.
+     * Carica tutte le visite dal database, salvo che un caricamento sia già in corso
+     * (in tal caso ne attende la fine) o sia appena stato eseguito.
      */
     protected void caricaVisite() {
-        String sql = "SELECT id, titolo, luogo, tipo_visita, volontario, data, stato, max_persone, ora_inizio, durata_minuti, posti_prenotati, min_partecipanti, biglietto, barriere_architettoniche FROM visite";
+        try {
+            caricatoreVisite.carica(this::leggiVisite);
+        } catch (RuntimeException e) {
+            // il caricamento fallito non aggiorna la finestra di freschezza: il prossimo riprova
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Ricarica tutte le visite dal database, ignorando la finestra di freschezza:
+     * da usare dopo una scrittura che deve risultare nella cache.
+     */
+    protected void ricaricaVisite() {
+        try {
+            caricatoreVisite.ricarica(this::leggiVisite);
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Legge tutte le visite dal database e le pubblica come nuovo snapshot.
+     * Il nuovo stato viene costruito a parte, senza mai svuotare la mappa letta dagli altri thread.
+     * 
+     * @throws RuntimeException se la lettura non riesce, così il caricatore non la conta come riuscita
+     */
+    private void leggiVisite() {
+        String sql = "SELECT id, titolo, luogo, volontario, data, stato, max_persone, ora_inizio, durata_minuti, posti_prenotati, min_partecipanti, biglietto, barriere_architettoniche FROM visite";
         try (Connection conn = DatabaseConnection.connect();
-            PreparedStatement pstmt = conn.prepareStatement(sql);
-            ResultSet rs = pstmt.executeQuery()) {
+            PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            synchronized (visiteMap) {
-                visiteMap.clear();
+            Map<Object, List<TipiVisitaClass>> tipi = TipiVisitaAssociati.carica(conn, Associazione.VISITA, null);
+            Map<Integer, Visita> nuoveVisite = new HashMap<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    int id = rs.getInt("id");
-                    String titolo = rs.getString("titolo");
-                    String luogo = rs.getString("luogo");
-                    List<TipiVisitaClass> tipoVisita = TipiVisitaClass.fromString(rs.getString("tipo_visita"));
-                    String volontario = rs.getString("volontario");
-                    LocalDate data = rs.getDate("data") != null ? rs.getDate("data").toLocalDate() : null;  
-                    int maxPersone = rs.getInt("max_persone");
-                    String stato = rs.getString("stato");
-                    LocalTime oraInizio = rs.getTime("ora_inizio") != null ? rs.getTime("ora_inizio").toLocalTime() : null;
-                    int durataMinuti = rs.getInt("durata_minuti");
-                    int postiPrenotati = rs.getInt("posti_prenotati");
-                    int minPartecipanti = rs.getInt("min_partecipanti");
-                    boolean biglietto = rs.getBoolean("biglietto");
-                    boolean barriereArchitettoniche = rs.getBoolean("barriere_architettoniche");
-
-                     
-                    Visita visita = new Visita(id, titolo, luogo, tipoVisita, volontario,
-                                                data, maxPersone, stato, oraInizio,
-                                                durataMinuti, postiPrenotati, minPartecipanti, biglietto, barriereArchitettoniche);
-                    visiteMap.putIfAbsent(id, visita);
+                    Visita visita = mappaVisita(rs, tipi);
+                    nuoveVisite.putIfAbsent(visita.getId(), visita);
                 }
             }
+            visiteCache.pubblica(nuoveVisite);
         } catch (SQLException e) {
-            System.err.println("Errore durante il caricamento delle visite: " + e.getMessage());
+            throw new RuntimeException("Errore durante il caricamento delle visite: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Aggiunge una nuova visita al database.
+     * Carica le sole visite modificate a partire dall'istante indicato
+     * e le aggiorna nella mappa senza svuotarla.
+     * 
+     * @param conn la connessione da usare
+     * @param dal l'istante da cui cercare le modifiche (incluso)
+     * @return l'istante di modifica più recente letto, o quello ricevuto se non ci sono modifiche
+     * @throws SQLException se la query fallisce
+     */
+    protected Timestamp caricaVisiteModificate(Connection conn, Timestamp dal) throws SQLException {
+        String sql = "SELECT id, titolo, luogo, volontario, data, stato, max_persone, ora_inizio, durata_minuti, posti_prenotati, min_partecipanti, biglietto, barriere_architettoniche, aggiornato_il FROM visite WHERE aggiornato_il >= ?";
+        Timestamp ultimo = dal;
+        Map<Object, List<TipiVisitaClass>> tipi = TipiVisitaAssociati.carica(conn, Associazione.VISITA,
+                "a.visita_id IN (SELECT id FROM visite WHERE aggiornato_il >= ?)", dal);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setTimestamp(1, dal);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Visita visita = mappaVisita(rs, tipi);
+                    visiteMap.put(visita.getId(), visita);
+                    BusEventiVisite.getInstance().pubblica(visita.getId(), EventoVisita.Tipo.VISITA_MODIFICATA);
+                    Timestamp aggiornatoIl = rs.getTimestamp("aggiornato_il");
+                    if (aggiornatoIl.after(ultimo)) ultimo = aggiornatoIl;
+                }
+            }
+        }
+        return ultimo;
+    }
+
+    /**
+     * Rimuove dalla mappa una visita eliminata dal database.
+     * 
+     * @param id l'ID della visita eliminata
+     */
+    protected void rimuoviVisitaDallaCache(int id) {
+        visiteMap.remove(id);
+        InventarioPosti.getInstance().rimuovi(id);
+        ScadenzeVisite.getInstance().annulla(id);
+    }
+
+    /**
+     * Costruisce una visita dalla riga corrente del ResultSet,
+     * applicando l'eventuale aggiornamento ancora in attesa di scrittura.
+     * 
+     * @param rs il ResultSet posizionato sulla riga da leggere
+     * @param tipi i tipi di visita associati a ogni visita, per ID
+     * @return la visita letta
+     * @throws SQLException se la lettura delle colonne fallisce
+     */
+    private Visita mappaVisita(ResultSet rs, Map<Object, List<TipiVisitaClass>> tipi) throws SQLException {
+        int id = rs.getInt("id");
+        String titolo = rs.getString("titolo");
+        String luogo = rs.getString("luogo");
+        List<TipiVisitaClass> tipoVisita = new ArrayList<>(tipi.getOrDefault(id, List.of()));
+        String volontario = rs.getString("volontario");
+        LocalDate data = rs.getDate("data") != null ? rs.getDate("data").toLocalDate() : null;  
+        int maxPersone = rs.getInt("max_persone");
+        String stato = rs.getString("stato");
+        LocalTime oraInizio = rs.getTime("ora_inizio") != null ? rs.getTime("ora_inizio").toLocalTime() : null;
+        int durataMinuti = rs.getInt("durata_minuti");
+        int postiPrenotati = rs.getInt("posti_prenotati");
+        int minPartecipanti = rs.getInt("min_partecipanti");
+        boolean biglietto = rs.getBoolean("biglietto");
+        boolean barriereArchitettoniche = rs.getBoolean("barriere_architettoniche");
+
+        Visita visita = new Visita(id, titolo, luogo, tipoVisita, volontario,
+                                    data, maxPersone, stato, oraInizio,
+                                    durataMinuti, postiPrenotati, minPartecipanti, biglietto, barriereArchitettoniche);
+        CodaAggiornamentiVisite.getInstance().applicaInSospeso(visita);
+        InventarioPosti.getInstance().allinea(id, postiPrenotati);
+        return visita;
+    }
+
+    /**
+     * Aggiunge una nuova visita al database in modo asincrono.
+     * L'ID generato viene assegnato alla visita prima del completamento del future.
      * 
      * @param visita la visita da aggiungere
+     * @return il future con l'ID generato della visita
      */
-    protected void aggiungiVisita(Visita visita) {
-        String inserisciSql = "INSERT INTO visite (luogo, titolo, tipo_visita, volontario, data, stato, max_persone, ora_inizio, durata_minuti, min_partecipanti, biglietto, barriere_architettoniche) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    protected CompletableFuture<EsitoScrittura> aggiungiVisita(Visita visita) {
+        String inserisciSql = "INSERT INTO visite (luogo, titolo, volontario, data, stato, max_persone, ora_inizio, durata_minuti, min_partecipanti, biglietto, barriere_architettoniche) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
+        return scriviAsync("Errore durante l'aggiunta della visita", () -> {
             try (Connection conn = DatabaseConnection.connect();
-                 PreparedStatement pstmt = conn.prepareStatement(inserisciSql)) {
-    
-                pstmt.setString(1, visita.getLuogo());
-                pstmt.setString(2, visita.getTitolo());
-                pstmt.setString(3, visita.getTipiVisitaClassString());
-                pstmt.setString(4, visita.getVolontario());
-                pstmt.setDate(5, visita.getData() != null ? java.sql.Date.valueOf(visita.getData()) : null);
-                pstmt.setString(6, visita.getStato());
-                pstmt.setInt(7, visita.getMaxPersone());
-                pstmt.setTime(8, visita.getOraInizio() != null ? java.sql.Time.valueOf(visita.getOraInizio()) : null);
-                pstmt.setInt(9, visita.getDurataMinuti());
-                pstmt.setInt(10, visita.getMinPartecipanti());
-                pstmt.setBoolean(11, visita.isBiglietto());
-                pstmt.setBoolean(12, visita.getBarriereArchitettoniche());
-                pstmt.executeUpdate();
-    
-                consoleIO.mostraMessaggio("Visita aggiunta con successo.");
-            } catch (SQLException e) {
-                System.err.println("Errore durante l'aggiunta della visita: " + e.getMessage());
+                 PreparedStatement pstmt = conn.prepareStatement(inserisciSql, Statement.RETURN_GENERATED_KEYS)) {
+                conn.setAutoCommit(false);
+                try {
+                    pstmt.setString(1, visita.getLuogo());
+                    pstmt.setString(2, visita.getTitolo());
+                    pstmt.setString(3, visita.getVolontario());
+                    pstmt.setDate(4, visita.getData() != null ? java.sql.Date.valueOf(visita.getData()) : null);
+                    pstmt.setString(5, visita.getStato());
+                    pstmt.setInt(6, visita.getMaxPersone());
+                    pstmt.setTime(7, visita.getOraInizio() != null ? java.sql.Time.valueOf(visita.getOraInizio()) : null);
+                    pstmt.setInt(8, visita.getDurataMinuti());
+                    pstmt.setInt(9, visita.getMinPartecipanti());
+                    pstmt.setBoolean(10, visita.isBiglietto());
+                    pstmt.setBoolean(11, visita.getBarriereArchitettoniche());
+                    EsitoScrittura esito = EsitoScrittura.conChiavi(pstmt.executeUpdate(), pstmt);
+                    int id = (int) esito.getChiaveGenerata();
+                    if (id >= 0) {
+                        TipiVisitaAssociati.sostituisci(conn, Associazione.VISITA, id, visita.getTipiVisitaClass());
+                    }
+                    conn.commit();
+                    if (id >= 0) visita.setId(id);
+                    consoleIO.mostraMessaggio("Visita aggiunta con successo.");
+                    return esito;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
             }
+        });
     }
 
     /**
      * Aggiunge un nuovo tipo di visita al database in modo asincrono.
      * 
      * @param nuovoTipo il nuovo tipo di visita da aggiungere
+     * @return il future con l'ID generato del tipo
      */
-    protected void aggiungiNuovoTipoVisita(TipiVisitaClass nuovoTipo) {
+    protected CompletableFuture<EsitoScrittura> aggiungiNuovoTipoVisita(TipiVisitaClass nuovoTipo) {
         String sql = "INSERT INTO tipi_visita (nome, descrizione) VALUES (?, ?)";
-        executorService.submit(() -> {
+        return scriviAsync("Errore durante l'aggiunta del nuovo tipo di visita", () -> {
             try (Connection conn = DatabaseConnection.connect();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 pstmt.setString(1, nuovoTipo.getNome());
                 pstmt.setString(2, nuovoTipo.getDescrizione());
-                pstmt.executeUpdate();
-
-            } catch (SQLException e) {
-                System.err.println("Errore durante l'aggiunta del nuovo tipo di visita: " + e.getMessage());
+                EsitoScrittura esito = EsitoScrittura.conChiavi(pstmt.executeUpdate(), pstmt);
+                CatalogoTipiVisita.getInstance().aggiunto(nuovoTipo);
+                return esito;
             }
         });
     }
@@ -153,98 +275,143 @@ public class VisiteManagerDB extends DatabaseManager {
      * 
      * @param data la data da precludere
      * @param motivo il motivo della preclusione
+     * @return il future con le righe inserite
      */
-    protected void aggiungiDataPreclusa(LocalDate data, String motivo) {
+    protected CompletableFuture<EsitoScrittura> aggiungiDataPreclusa(LocalDate data, String motivo) {
         String sql = "INSERT INTO date_precluse (data, motivo) VALUES (?, ?)";
-        executorService.submit(() -> {
+        return scriviAsync("Errore durante l'aggiunta della data preclusa", () -> {
             try (Connection conn = DatabaseConnection.connect();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setDate(1, java.sql.Date.valueOf(data));
                 pstmt.setString(2, motivo);
-                pstmt.executeUpdate();
+                int righe = pstmt.executeUpdate();
 
                 synchronized (datePrecluseMap) {
                     datePrecluseMap.putIfAbsent(data, motivo);
                 }
-
-            } catch (SQLException e) {
-                System.err.println("Errore durante l'aggiunta della data preclusa: " + e.getMessage());
+                return EsitoScrittura.righe(righe);
             }
         });
     }
 
     /**
-     * Carica tutte le date precluse dal database nella mappa in memoria.
-     * Svuota la mappa esistente e la riempie con i dati aggiornati.
+     * Carica tutte le date precluse dal database, salvo che un caricamento sia già in corso
+     * (in tal caso ne attende la fine) o sia appena stato eseguito.
      */
     protected void caricaDatePrecluse() {
+        try {
+            caricatoreDatePrecluse.carica(this::leggiDatePrecluse);
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Ricarica tutte le date precluse dal database, ignorando la finestra di freschezza.
+     */
+    protected void ricaricaDatePrecluse() {
+        try {
+            caricatoreDatePrecluse.ricarica(this::leggiDatePrecluse);
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Legge tutte le date precluse dal database e le pubblica come nuovo snapshot.
+     * 
+     * @throws RuntimeException se la lettura non riesce
+     */
+    private void leggiDatePrecluse() {
         String sql = "SELECT data, motivo FROM date_precluse";
         try (Connection conn = DatabaseConnection.connect();
                 PreparedStatement pstmt = conn.prepareStatement(sql);
                 ResultSet rs = pstmt.executeQuery()) {
 
-            synchronized (datePrecluseMap) {
-                datePrecluseMap.clear();
+            Map<LocalDate, String> nuoveDate = new HashMap<>();
+            while (rs.next()) {
+                LocalDate data = rs.getDate("data").toLocalDate();
+                String motivo = rs.getString("motivo");
+                nuoveDate.putIfAbsent(data, motivo);
+            }
+            datePrecluseCache.pubblica(nuoveDate);
+        } catch (SQLException e) {
+            throw new RuntimeException("Errore durante il caricamento delle date precluse: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Carica le sole date precluse modificate a partire dall'istante indicato
+     * e le aggiorna nella mappa senza svuotarla.
+     * 
+     * @param conn la connessione da usare
+     * @param dal l'istante da cui cercare le modifiche (incluso)
+     * @return l'istante di modifica più recente letto, o quello ricevuto se non ci sono modifiche
+     * @throws SQLException se la query fallisce
+     */
+    protected Timestamp caricaDatePrecluseModificate(Connection conn, Timestamp dal) throws SQLException {
+        String sql = "SELECT data, motivo, modificato_il FROM date_precluse WHERE modificato_il >= ?";
+        Timestamp ultimo = dal;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setTimestamp(1, dal);
+            try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    LocalDate data = rs.getDate("data").toLocalDate();
-                    String motivo = rs.getString("motivo");
-                    datePrecluseMap.putIfAbsent(data, motivo);
+                    datePrecluseMap.put(rs.getDate("data").toLocalDate(), rs.getString("motivo"));
+                    Timestamp modificatoIl = rs.getTimestamp("modificato_il");
+                    if (modificatoIl.after(ultimo)) ultimo = modificatoIl;
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Errore durante il caricamento delle date precluse: " + e.getMessage());
         }
+        return ultimo;
+    }
+
+    /**
+     * Rimuove dalla mappa una data preclusa eliminata dal database.
+     * 
+     * @param data la data eliminata
+     */
+    protected void rimuoviDataPreclusaDallaCache(LocalDate data) {
+        datePrecluseMap.remove(data);
     }
 
     /**
      * Elimina una data preclusa dal database in modo asincrono.
      * 
      * @param dataDaEliminare la data da rimuovere dalle date precluse
+     * @return il future con le righe eliminate
      */
-    protected void eliminaDataPreclusa(LocalDate dataDaEliminare) {
+    protected CompletableFuture<EsitoScrittura> eliminaDataPreclusa(LocalDate dataDaEliminare) {
         String sql = "DELETE FROM date_precluse WHERE data = ?";
-        executorService.submit(() -> {
+        return scriviAsync("Errore durante l'eliminazione della data preclusa", () -> {
             try (Connection conn = DatabaseConnection.connect();
                  PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setDate(1, java.sql.Date.valueOf(dataDaEliminare));
                 int rowsAffected = pstmt.executeUpdate();
 
                 if (rowsAffected > 0) {
-                    caricaDatePrecluse();
+                    ricaricaDatePrecluse();
                 } else {
                     System.err.println("Nessuna data preclusa trovata da eliminare.");
                 }
-            } catch (SQLException e) {
-                System.err.println("Errore durante l'eliminazione della data preclusa: " + e.getMessage());
+                return EsitoScrittura.righe(rowsAffected);
             }
         });
     }
 
     /**
-     * Aggiorna i dati di una visita esistente nel database in modo asincrono.
+     * Aggiorna i dati di una visita esistente nel database.
+     * L'aggiornamento viene accodato nella coda write-behind, che fonde
+     * le modifiche ripetute della stessa visita e le scrive in batch.
      * 
      * @param visitaId l'ID della visita da aggiornare
      * @param visitaAggiornata la visita con i dati aggiornati
+     * @return il future completato quando il batch che contiene l'aggiornamento è confermato
      */
-    protected void aggiornaVisitaDB(int visitaId, Visita visitaAggiornata) {
-        String sql = "UPDATE visite SET luogo = ?, tipo_visita = ?, volontario = ?, data = ?, stato = ?, max_persone = ?, ora_inizio = ?, durata_minuti = ? WHERE id = ?";
-        executorService.submit(() -> {
-            try (Connection conn = DatabaseConnection.connect();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, visitaAggiornata.getLuogo());
-                pstmt.setString(2, visitaAggiornata.getTipiVisitaClassString());
-                pstmt.setString(3, visitaAggiornata.getVolontario());
-                pstmt.setDate(4, visitaAggiornata.getData() != null ? java.sql.Date.valueOf(visitaAggiornata.getData()) : null);
-                pstmt.setString(5, visitaAggiornata.getStato());
-                pstmt.setInt(6, visitaAggiornata.getMaxPersone());
-                pstmt.setTime(7, visitaAggiornata.getOraInizio() != null ? java.sql.Time.valueOf(visitaAggiornata.getOraInizio()) : null);
-                pstmt.setInt(8, visitaAggiornata.getDurataMinuti());
-                pstmt.setInt(9, visitaId);
-                pstmt.executeUpdate();
-            } catch (SQLException e) {
-                System.err.println("Errore durante l'aggiornamento della visita: " + e.getMessage());
-            }
-        });
+    protected CompletableFuture<EsitoScrittura> aggiornaVisitaDB(int visitaId, Visita visitaAggiornata) {
+        if (visiteMap.get(visitaId) == visitaAggiornata) {
+            indiceVisite.inserito(visitaId, visitaAggiornata);
+        }
+        return CodaAggiornamentiVisite.getInstance().accoda(visitaId, visitaAggiornata);
     }
 
     /**
@@ -252,19 +419,19 @@ public class VisiteManagerDB extends DatabaseManager {
      * 
      * @param volontarioSelezionato il volontario a cui assegnare la visita
      * @param visitaSelezionata la visita da assegnare
+     * @return il future con le righe aggiornate
      */
-    protected void assegnaVisitaAVolontarioDB(Volontario volontarioSelezionato, Visita visitaSelezionata) {
+    protected CompletableFuture<EsitoScrittura> assegnaVisitaAVolontarioDB(Volontario volontarioSelezionato, Visita visitaSelezionata) {
         String sql = "UPDATE visite SET volontario = ? WHERE id = ?";
-        executorService.submit(() -> {
+        return scriviAsync("Errore durante l'assegnazione della visita al volontario", () -> {
             try (Connection conn = DatabaseConnection.connect();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, volontarioSelezionato.getNome()+" "+volontarioSelezionato.getCognome());
                 pstmt.setInt(2, visitaSelezionata.getId());
-                pstmt.executeUpdate();
+                int righe = pstmt.executeUpdate();
 
                 consoleIO.mostraMessaggio("Visita assegnata con successo al volontario.");
-            } catch (SQLException e) {
-                System.err.println("Errore durante l'assegnazione della visita al volontario: " + e.getMessage());
+                return EsitoScrittura.righe(righe);
             }
         });
     }
@@ -273,112 +440,57 @@ public class VisiteManagerDB extends DatabaseManager {
      * Aggiorna il numero massimo di persone per tutte le visite in modo asincrono.
      * 
      * @param maxPersonePerVisita il nuovo numero massimo di persone
+     * @return il future con le righe aggiornate
      */
-    protected void aggiornaMaxPersonePerVisita(int maxPersonePerVisita) {
+    protected CompletableFuture<EsitoScrittura> aggiornaMaxPersonePerVisita(int maxPersonePerVisita) {
         String sql = "UPDATE visite SET max_persone = ?";
-        executorService.submit(() -> {
+        return scriviAsync("Errore durante l'aggiornamento del numero massimo di persone per visita", () -> {
             try (Connection conn = DatabaseConnection.connect();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, maxPersonePerVisita);
-                pstmt.executeUpdate();
-
-            } catch (SQLException e) {
-                System.err.println("Errore durante l'aggiornamento del numero massimo di persone per visita: " + e.getMessage());
+                return EsitoScrittura.righe(pstmt.executeUpdate());
             }
         });
     }
 
     /**
      * Rimuove un tipo di visita dal sistema aggiornando luoghi, volontari e visite.
-     * Cancella le visite associate e rimuove il tipo dai luoghi e dai volontari.
+     * In un'unica transazione cancella le visite che avevano soltanto quel tipo,
+     * rimuove le associazioni del tipo ed elimina il tipo stesso.
      * Operazione eseguita in modo asincrono.
      * 
      * @param tipoDaRimuovere il tipo di visita da rimuovere
+     * @return il future con il numero di visite cancellate
      */
-    protected void rimuoviTipoDiVisitaDB(TipiVisitaClass tipoDaRimuovere) {
-        String sqlSelectLuoghi = "SELECT nome, tipi_di_visita FROM luoghi WHERE tipi_di_visita LIKE ?";
-        String sqlUpdateLuoghi = "UPDATE luoghi SET tipi_di_visita = ? WHERE nome = ?";
-        String sqlSelectVolontari = "SELECT id, tipi_di_visite FROM volontari WHERE tipi_di_visite LIKE ?";
-        String sqlUpdateVolontari = "UPDATE volontari SET tipi_di_visite = ? WHERE id = ?";
+    protected CompletableFuture<EsitoScrittura> rimuoviTipoDiVisitaDB(TipiVisitaClass tipoDaRimuovere) {
+        String sqlVisite = "UPDATE visite v JOIN visita_tipo a ON a.visita_id = v.id JOIN tipi_visita t ON t.id = a.tipo_id"
+                + " SET v.stato = ? WHERE t.nome = ?"
+                + " AND NOT EXISTS (SELECT 1 FROM visita_tipo b WHERE b.visita_id = v.id AND b.tipo_id <> t.id)";
         String sqlTipiVisita = "DELETE FROM tipi_visita WHERE nome = ?";
-        String sqlVisite = "UPDATE visite SET stato = ? WHERE tipo_visita = ?";
-        executorService.submit(() -> {
+        return scriviAsync("Errore durante la rimozione del tipo di visita", () -> {
             try (Connection conn = DatabaseConnection.connect();
-                 PreparedStatement pstmtSelectLuoghi = conn.prepareStatement(sqlSelectLuoghi);
-                 PreparedStatement pstmtUpdateLuoghi = conn.prepareStatement(sqlUpdateLuoghi);
-                 PreparedStatement pstmtSelectVolontari = conn.prepareStatement(sqlSelectVolontari);
-                 PreparedStatement pstmtUpdateVolontari = conn.prepareStatement(sqlUpdateVolontari);
-                 PreparedStatement pstmtTipiVisita = conn.prepareStatement(sqlTipiVisita);
-                 PreparedStatement pstmtVisite = conn.prepareStatement(sqlVisite)) {
-
-                 
-                pstmtSelectLuoghi.setString(1, "%" + tipoDaRimuovere.getNome() + "%");
-                try (ResultSet rs = pstmtSelectLuoghi.executeQuery()) {
-                    while (rs.next()) {
-                        String luogoNome = rs.getString("nome");
-                        String tipi = rs.getString("tipi_di_visita");
-                        if (tipi == null) continue;
-
-                        String[] parts = tipi.split("\\s*,\\s*");
-                        List<String> keep = new ArrayList<>();
-                        for (String p : parts) {
-                            if (!p.equalsIgnoreCase(tipoDaRimuovere.getNome()) && !p.trim().isEmpty()) {
-                                keep.add(p.trim());
-                            }
-                        }
-                        String newVal = keep.isEmpty() ? null : String.join(", ", keep);
-
-                        if (newVal == null) {
-                            pstmtUpdateLuoghi.setNull(1, java.sql.Types.VARCHAR);
-                        } else {
-                            pstmtUpdateLuoghi.setString(1, newVal);
-                        }
-                        pstmtUpdateLuoghi.setString(2, luogoNome);
-                        pstmtUpdateLuoghi.executeUpdate();
-                    }
-                }
-
-                 
-                pstmtSelectVolontari.setString(1, "%" + tipoDaRimuovere.getNome() + "%");
-                try (ResultSet rs = pstmtSelectVolontari.executeQuery()) {
-                    while (rs.next()) {
-                        int volontarioId = rs.getInt("id");
-                        String tipi = rs.getString("tipi_di_visite");
-                        if (tipi == null) continue;
-
-                        String[] parts = tipi.split("\\s*,\\s*");
-                        List<String> keep = new ArrayList<>();
-                        for (String p : parts) {
-                            if (!p.equalsIgnoreCase(tipoDaRimuovere.getNome()) && !p.trim().isEmpty()) {
-                                keep.add(p.trim());
-                            }
-                        }
-                        String newVal = keep.isEmpty() ? null : String.join(", ", keep);
-
-                        if (newVal == null) {
-                            pstmtUpdateVolontari.setNull(1, java.sql.Types.VARCHAR);
-                        } else {
-                            pstmtUpdateVolontari.setString(1, newVal);
-                        }
-                        pstmtUpdateVolontari.setInt(2, volontarioId);
-                        pstmtUpdateVolontari.executeUpdate();
-                    }
+                 PreparedStatement pstmtVisite = conn.prepareStatement(sqlVisite);
+                 PreparedStatement pstmtTipiVisita = conn.prepareStatement(sqlTipiVisita)) {
+                int visiteCancellate;
+                conn.setAutoCommit(false);
+                try {
+                    pstmtVisite.setString(1, "CANCELLATA");
+                    pstmtVisite.setString(2, tipoDaRimuovere.getNome());
+                    visiteCancellate = pstmtVisite.executeUpdate();
+
+                    TipiVisitaAssociati.rimuoviTipo(conn, tipoDaRimuovere.getNome());
+
+                    pstmtTipiVisita.setString(1, tipoDaRimuovere.getNome());
+                    pstmtTipiVisita.executeUpdate();
+                    conn.commit();
+                    CatalogoTipiVisita.getInstance().rimosso(tipoDaRimuovere);
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
                 }
 
-                 
-                pstmtVisite.setString(1, "CANCELLATA");
-                pstmtVisite.setString(2, tipoDaRimuovere.getNome());
-                pstmtVisite.executeUpdate();
-
-                 
-                pstmtTipiVisita.setString(1, tipoDaRimuovere.getNome());
-                pstmtTipiVisita.executeUpdate();
-
-                 
-                caricaVisite();
-
-            } catch (SQLException e) {
-                System.err.println("Errore durante la rimozione del tipo di visita: " + e.getMessage());
+                ricaricaVisite();
+                return EsitoScrittura.righe(visiteCancellate);
             }
         });
     }
@@ -387,14 +499,15 @@ public class VisiteManagerDB extends DatabaseManager {
      * Aggiunge un nuovo tipo di visita verificando prima che non esista già.
      * 
      * @param nuovoTipo il nuovo tipo di visita da aggiungere
+     * @return il future dell'inserimento, già completato senza modifiche se il tipo esiste
      */
-    public void addNuovoTipoVisita(TipiVisitaClass nuovoTipo) {
+    public CompletableFuture<EsitoScrittura> addNuovoTipoVisita(TipiVisitaClass nuovoTipo) {
         String verificaSql = "SELECT 1 FROM tipi_visita WHERE nome = ?";
         if(!recordEsiste(verificaSql, nuovoTipo.getNome())){
-            aggiungiNuovoTipoVisita(nuovoTipo);
+            return aggiungiNuovoTipoVisita(nuovoTipo);
         } else {
             consoleIO.mostraMessaggio("Il tipo di visita esiste già. Non posso aggiungerlo.");
-            return;
+            return CompletableFuture.completedFuture(EsitoScrittura.NESSUNA_MODIFICA);
         }
     }
 
@@ -402,15 +515,16 @@ public class VisiteManagerDB extends DatabaseManager {
      * Aggiunge una nuova visita verificando prima che non esista già.
      * 
      * @param nuovaVisita la nuova visita da aggiungere
+     * @return il future con l'ID generato, già completato senza modifiche se la visita esiste
      */
-    public void aggiungiNuovaVisita(Visita nuovaVisita) {
+    public CompletableFuture<EsitoScrittura> aggiungiNuovaVisita(Visita nuovaVisita) {
         String verificaSql = "SELECT 1 FROM visite WHERE luogo = ? AND data = ? AND volontario = ? AND ora_inizio = ?";
         if(!recordEsiste(verificaSql, nuovaVisita.getLuogo(), nuovaVisita.getData(), nuovaVisita.getVolontario(), nuovaVisita.getOraInizio())){
             consoleIO.mostraMessaggio("La visita non esiste. Procedo con l'aggiunta.");
-            aggiungiVisita(nuovaVisita);
+            return aggiungiVisita(nuovaVisita);
         } else {
             consoleIO.mostraMessaggio("La visita esiste già. Non posso aggiungerla.");
-            return;
+            return CompletableFuture.completedFuture(EsitoScrittura.NESSUNA_MODIFICA);
         }
     }
 
@@ -419,14 +533,15 @@ public class VisiteManagerDB extends DatabaseManager {
      * 
      * @param data la data da precludere
      * @param motivo il motivo della preclusione
+     * @return il future dell'inserimento, già completato senza modifiche se la data esiste
      */
-    public void aggiungiNuovaDataPreclusa(LocalDate data, String motivo) {
+    public CompletableFuture<EsitoScrittura> aggiungiNuovaDataPreclusa(LocalDate data, String motivo) {
         String verificaSql = "SELECT 1 FROM date_precluse WHERE data = ?";
         if(!recordEsiste(verificaSql, data)){
-            aggiungiDataPreclusa(data, motivo);
+            return aggiungiDataPreclusa(data, motivo);
         } else {
             consoleIO.mostraMessaggio("La data preclusa esiste già. Non posso aggiungerla.");
-            return;
+            return CompletableFuture.completedFuture(EsitoScrittura.NESSUNA_MODIFICA);
         }
     }
 
@@ -451,30 +566,30 @@ public class VisiteManagerDB extends DatabaseManager {
     }    
     
     /**
-     * Elimina una visita dal database.
+     * Elimina una visita dal database in modo asincrono.
      * 
      * @param visitaId l'ID della visita da eliminare
-     * @return true se l'eliminazione è andata a buon fine, false altrimenti
+     * @return il future con le righe eliminate
      */
-    protected boolean eliminaVisitaDB(int visitaId){
+    protected CompletableFuture<EsitoScrittura> eliminaVisitaDB(int visitaId){
         String sql = "DELETE FROM visite WHERE id = ?";
-        try (Connection conn = DatabaseConnection.connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, visitaId);
-            int rowsAffected = pstmt.executeUpdate();
-
-            if (rowsAffected > 0) {
-                visiteMap.remove(visitaId);
-                consoleIO.mostraMessaggio("Visita eliminata con successo.");
-                return true;
-            } else {
-                consoleIO.mostraMessaggio("Nessuna visita trovata da eliminare.");
-                return false;
+        return scriviAsync("Errore durante l'eliminazione della visita", () -> {
+            try (Connection conn = DatabaseConnection.connect();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, visitaId);
+                int rowsAffected = pstmt.executeUpdate();
+
+                if (rowsAffected > 0) {
+                    visiteMap.remove(visitaId);
+                    InventarioPosti.getInstance().rimuovi(visitaId);
+                    ScadenzeVisite.getInstance().annulla(visitaId);
+                    consoleIO.mostraMessaggio("Visita eliminata con successo.");
+                } else {
+                    consoleIO.mostraMessaggio("Nessuna visita trovata da eliminare.");
+                }
+                return EsitoScrittura.righe(rowsAffected);
             }
-        } catch (SQLException e) {
-            System.err.println("Errore durante l'eliminazione della visita: " + e.getMessage());
-            return false;
-        }
+        });
     }
 
     /**
@@ -496,27 +611,112 @@ public class VisiteManagerDB extends DatabaseManager {
     }
 
     /**
-     * Recupera tutti i tipi di visita disponibili dal database.
+     * Restituisce lo snapshot immutabile corrente delle visite.
+     * Da preferire alla mappa per le letture: non è mai vuoto o parziale durante un ricaricamento.
+     * 
+     * @return lo snapshot delle visite
+     */
+    public static CacheVersionata.Snapshot<Integer, Visita> getVisiteSnapshot() {
+        return visiteCache.getSnapshot();
+    }
+
+    /**
+     * Restituisce le statistiche dei caricamenti completi delle visite.
+     * 
+     * @return le statistiche del caricatore delle visite
+     */
+    public static StatisticheCaricatore getStatisticheCaricamentoVisite() {
+        return caricatoreVisite.getStatistiche();
+    }
+
+    /**
+     * Restituisce le statistiche dei caricamenti completi delle date precluse.
+     * 
+     * @return le statistiche del caricatore delle date precluse
+     */
+    public StatisticheCaricatore getStatisticheCaricamentoDatePrecluse() {
+        return caricatoreDatePrecluse.getStatistiche();
+    }
+
+    /**
+     * Restituisce le visite in programma in una data.
+     * 
+     * @param data la data
+     * @return le visite della data
+     */
+    public static List<Visita> getVisitePerData(LocalDate data) {
+        return indiceVisite.perData(data);
+    }
+
+    /**
+     * Restituisce le visite con data compresa tra due estremi inclusi, ordinate per data.
+     * 
+     * @param da la prima data
+     * @param a l'ultima data
+     * @return le visite dell'intervallo
+     */
+    public static List<Visita> getVisiteTraDate(LocalDate da, LocalDate a) {
+        return indiceVisite.traDate(da, a);
+    }
+
+    /**
+     * Restituisce le visite di un luogo.
+     * 
+     * @param luogo il nome del luogo
+     * @return le visite del luogo
+     */
+    public static List<Visita> getVisitePerLuogo(String luogo) {
+        return indiceVisite.perLuogo(luogo);
+    }
+
+    /**
+     * Restituisce le visite assegnate a un volontario.
+     * 
+     * @param volontario il volontario come memorizzato sulla visita
+     * @return le visite del volontario
+     */
+    public static List<Visita> getVisitePerVolontario(String volontario) {
+        return indiceVisite.perVolontario(volontario);
+    }
+
+    /**
+     * Restituisce le visite in un dato stato.
+     * 
+     * @param stato lo stato, senza distinzione tra maiuscole e minuscole
+     * @return le visite nello stato indicato
+     */
+    public static List<Visita> getVisitePerStato(String stato) {
+        return indiceVisite.perStato(stato);
+    }
+
+    /**
+     * Restituisce le visite di un luogo in una data.
+     * 
+     * @param luogo il nome del luogo
+     * @param data la data
+     * @return le visite del luogo nella data
+     */
+    public static List<Visita> getVisitePerLuogoEData(String luogo, LocalDate data) {
+        return indiceVisite.perLuogoEData(luogo, data);
+    }
+
+    /**
+     * Restituisce gli indici secondari delle visite.
+     * 
+     * @return gli indici delle visite
+     */
+    public static IndiceVisite getIndiceVisite() {
+        return indiceVisite;
+    }
+
+    /**
+     * Recupera tutti i tipi di visita disponibili dal catalogo condiviso,
+     * caricato dal database al primo accesso.
      * 
      * @return lista di tutti i tipi di visita
      */
     public static List<TipiVisitaClass> getTipiVisitaClassList() {
-        List<TipiVisitaClass> listTipiVisite = new ArrayList<>();
-        String sql = "SELECT nome, descrizione FROM tipi_visita";
-        try (Connection conn = DatabaseConnection.connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-
-            while (rs.next()) {
-                String nome = rs.getString("nome");
-                String descrizione = rs.getString("descrizione");
-                TipiVisitaClass tipoVisita = new TipiVisitaClass(nome, descrizione);
-                listTipiVisite.add(tipoVisita);
-            }
-        } catch (SQLException e) {
-            System.err.println("Errore durante il recupero dei tipi di visita: " + e.getMessage());
-        }
-        return listTipiVisite;
+        return new ArrayList<>(CatalogoTipiVisita.getInstance().getTipi());
     }
 
     /**
@@ -532,10 +732,12 @@ public class VisiteManagerDB extends DatabaseManager {
      * Elimina una data dalle date precluse.
      * 
      * @param data la data da eliminare
+     * @return il future dell'eliminazione dal database
      */
-    public void eliminaData(LocalDate data){
-        eliminaDataPreclusa(data);
+    public CompletableFuture<EsitoScrittura> eliminaData(LocalDate data){
+        CompletableFuture<EsitoScrittura> eliminazione = eliminaDataPreclusa(data);
         datePrecluseMap.remove(data);
+        return eliminazione;
     }
 
     /**
@@ -543,27 +745,33 @@ public class VisiteManagerDB extends DatabaseManager {
      * 
      * @param visitaId l'ID della visita da aggiornare
      * @param visitaAggiornata la visita con i dati aggiornati
+     * @return il future completato quando l'aggiornamento è scritto sul database
      */
-    public void aggiornaVisita(int visitaId, Visita visitaAggiornata){
-        aggiornaVisitaDB(visitaId, visitaAggiornata);
+    public CompletableFuture<EsitoScrittura> aggiornaVisita(int visitaId, Visita visitaAggiornata){
+        CompletableFuture<EsitoScrittura> scrittura = aggiornaVisitaDB(visitaId, visitaAggiornata);
+        ScadenzeVisite.getInstance().pianifica(visitaAggiornata);
+        BusEventiVisite.getInstance().pubblica(visitaId, EventoVisita.Tipo.VISITA_MODIFICATA);
+        return scrittura;
     }
 
     /**
      * Aggiorna il numero massimo di persone per tutte le visite.
      * 
      * @param numeroMax il nuovo numero massimo di persone
+     * @return il future dell'aggiornamento
      */
-    public void aggiornaMaxPersone(int numeroMax) {
-        aggiornaMaxPersonePerVisita(numeroMax);
+    public CompletableFuture<EsitoScrittura> aggiornaMaxPersone(int numeroMax) {
+        return aggiornaMaxPersonePerVisita(numeroMax);
     }
     
     /**
      * Elimina una visita dal sistema.
      * 
      * @param visita la visita da eliminare
+     * @return il future con le righe eliminate
      */
-    public void eliminaVisita(Visita visita){
-        eliminaVisitaDB(visita.getId());
+    public CompletableFuture<EsitoScrittura> eliminaVisita(Visita visita){
+        return eliminaVisitaDB(visita.getId());
     }
 
     /**
@@ -571,18 +779,20 @@ public class VisiteManagerDB extends DatabaseManager {
      * 
      * @param volontarioSelezionato il volontario a cui assegnare la visita
      * @param visitaSelezionata la visita da assegnare
+     * @return il future dell'aggiornamento
      */
-    public void assegnaVisitaAVolontario(Volontario volontarioSelezionato, Visita visitaSelezionata) {
-        assegnaVisitaAVolontarioDB(volontarioSelezionato, visitaSelezionata);
+    public CompletableFuture<EsitoScrittura> assegnaVisitaAVolontario(Volontario volontarioSelezionato, Visita visitaSelezionata) {
+        return assegnaVisitaAVolontarioDB(volontarioSelezionato, visitaSelezionata);
     }
 
     /**
      * Rimuove un tipo di visita dal sistema.
      * 
      * @param tipoDaRimuovere il tipo di visita da rimuovere
+     * @return il future della rimozione
      */
-    public void rimuoviTipoDiVisita(TipiVisitaClass tipoDaRimuovere) {
-        rimuoviTipoDiVisitaDB(tipoDaRimuovere);
+    public CompletableFuture<EsitoScrittura> rimuoviTipoDiVisita(TipiVisitaClass tipoDaRimuovere) {
+        return rimuoviTipoDiVisitaDB(tipoDaRimuovere);
     }
 
     public static Visita getVisitaById(int visitaId) {
@@ -4,15 +4,19 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 import src.controller.ThreadPoolController;
 import src.model.TipiVisitaClass;
+import src.model.db.TipiVisitaAssociati.Associazione;
 import src.model.Visita;
 import src.model.Volontario;
 
@@ -24,17 +28,23 @@ import src.model.Volontario;
  */
 public class VolontariManager extends DatabaseManager {
 
+    /** Cache versionata dei volontari indicizzata per email */
+    private final CacheVersionata<String, Volontario> volontariCache = new CacheVersionata<>();
+
     /** Mappa concorrente dei volontari indicizzata per email */
-    private ConcurrentHashMap<String, Volontario> volontariMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Volontario> volontariMap = volontariCache.getMappa();
+
+    /** Associazione tra ID e email dei volontari, caricata insieme ai volontari */
+    private final MappaBidirezionale<Integer, String> idEmailVolontari = new MappaBidirezionale<>();
 
     /**
      * Costruttore del manager dei volontari.
-     * Inizializza il thread pool e carica i volontari dal database.
+     * Esegue le scritture asincrone su virtual thread e carica i volontari dal database.
      * 
      * @param threadPoolManager il controller del thread pool
      */
     public VolontariManager(ThreadPoolController threadPoolManager) {
-        super(threadPoolManager);
+        super(threadPoolManager, ThreadPoolController.Pool.DB_IO_VIRTUALE);
         caricaVolontari();
     }
 
@@ -51,66 +61,127 @@ public class VolontariManager extends DatabaseManager {
     }
 
     /**
-     * Carica tutti i volontari dal database nella mappa in memoria.
-     * Svuota la mappa esistente e la riempie con i dati aggiornati.
+     * Carica tutti i volontari dal database e li pubblica come nuovo snapshot.
+     * Il nuovo stato viene costruito a parte, senza mai svuotare la mappa letta dagli altri thread.
      */
     protected void caricaVolontari() {
-        String sql = "SELECT nome, cognome, email, password, tipi_di_visite FROM volontari";
+        String sql = "SELECT id, nome, cognome, email, password FROM volontari";
         try (Connection conn = DatabaseConnection.connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            synchronized (volontariMap) {
-                volontariMap.clear();
+            Map<Object, List<TipiVisitaClass>> tipi = TipiVisitaAssociati.carica(conn, Associazione.VOLONTARIO, null);
+            Map<String, Volontario> nuoviVolontari = new HashMap<>();
+            Map<Integer, String> nuoviId = new HashMap<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    String email = rs.getString("email");
-                    String tipiDiVisite = rs.getString("tipi_di_visite");
-                    List<TipiVisitaClass> listaTipiVisite = new ArrayList<>();
-                    if (tipiDiVisite != null && !tipiDiVisite.isEmpty()) {
-                        for (String tipo : tipiDiVisite.split(",")) {
-                            listaTipiVisite.add(TipiVisitaClass.valueOf(tipo.trim()));
-                        }
-                    }
-                    Volontario volontario = new Volontario(
-                            rs.getString("nome"),
-                            rs.getString("cognome"),
-                            email,
-                            rs.getString("password"),
-                            listaTipiVisite
-                    );
-                    volontariMap.putIfAbsent(email, volontario);
+                    Volontario volontario = mappaVolontario(rs, tipi);
+                    nuoviVolontari.putIfAbsent(volontario.getEmail(), volontario);
+                    nuoviId.put(rs.getInt("id"), volontario.getEmail());
                 }
             }
+            volontariCache.pubblica(nuoviVolontari);
+            idEmailVolontari.sostituisci(nuoviId);
         } catch (SQLException e) {
             System.err.println("Errore durante il caricamento dei volontari: " + e.getMessage());
         }
     }
 
+    /**
+     * Carica i soli volontari modificati a partire dall'istante indicato
+     * e li aggiorna nella mappa senza svuotarla.
+     * 
+     * @param conn la connessione da usare
+     * @param dal l'istante da cui cercare le modifiche (incluso)
+     * @return l'istante di modifica più recente letto, o quello ricevuto se non ci sono modifiche
+     * @throws SQLException se la query fallisce
+     */
+    protected Timestamp caricaVolontariModificati(Connection conn, Timestamp dal) throws SQLException {
+        String sql = "SELECT id, nome, cognome, email, password, aggiornato_il FROM volontari WHERE aggiornato_il >= ?";
+        Timestamp ultimo = dal;
+        Map<Object, List<TipiVisitaClass>> tipi = TipiVisitaAssociati.carica(conn, Associazione.VOLONTARIO,
+                "a.volontario_id IN (SELECT id FROM volontari WHERE aggiornato_il >= ?)", dal);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setTimestamp(1, dal);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Volontario volontario = mappaVolontario(rs, tipi);
+                    volontariMap.put(volontario.getEmail(), volontario);
+                    idEmailVolontari.associa(rs.getInt("id"), volontario.getEmail());
+                    Timestamp aggiornatoIl = rs.getTimestamp("aggiornato_il");
+                    if (aggiornatoIl.after(ultimo)) ultimo = aggiornatoIl;
+                }
+            }
+        }
+        return ultimo;
+    }
+
+    /**
+     * Rimuove dalla mappa un volontario eliminato dal database.
+     * 
+     * @param email l'email del volontario eliminato
+     */
+    protected void rimuoviVolontarioDallaCache(String email) {
+        volontariMap.remove(email);
+        idEmailVolontari.rimuoviInversa(email);
+    }
+
+    /**
+     * Costruisce un volontario dalla riga corrente del ResultSet.
+     * 
+     * @param rs il ResultSet posizionato sulla riga da leggere
+     * @param tipi i tipi di visita associati a ogni volontario, per ID
+     * @return il volontario letto
+     * @throws SQLException se la lettura delle colonne fallisce
+     */
+    private Volontario mappaVolontario(ResultSet rs, Map<Object, List<TipiVisitaClass>> tipi) throws SQLException {
+        return new Volontario(
+                rs.getString("nome"),
+                rs.getString("cognome"),
+                rs.getString("email"),
+                rs.getString("password"),
+                new ArrayList<>(tipi.getOrDefault(rs.getInt("id"), List.of()))
+        );
+    }
+
     /**
      * Aggiunge un nuovo volontario al database.
      * Inserisce il volontario sia nella tabella volontari che nella tabella utenti_unificati.
      * 
      * @param volontario il volontario da aggiungere
+     * @return il future con l'ID generato del volontario
      */
-    protected void aggiungiVolontario(Volontario volontario) {
-        String inserisciSqlVolontari = "INSERT INTO volontari (nome, cognome, email, password, tipi_di_visite, password_modificata) VALUES (?, ?, ?, ?, ?, ?)";
-    
-        try (Connection conn = DatabaseConnection.connect();
-             PreparedStatement pstmt = conn.prepareStatement(inserisciSqlVolontari)) {
-            pstmt.setString(1, volontario.getNome());
-            pstmt.setString(2, volontario.getCognome());
-            pstmt.setString(3, volontario.getEmail());
-            pstmt.setString(4, volontario.getPassword());
-            pstmt.setString(5, String.join(",", volontario.getTipiDiVisite().stream().map(TipiVisitaClass::getNome).toArray(String[]::new)));
-            pstmt.setBoolean(6, false);
-            pstmt.executeUpdate();
-            consoleIO.mostraMessaggio("Volontario aggiunto con successo nella tabella 'volontari'.");
+    protected CompletableFuture<EsitoScrittura> aggiungiVolontario(Volontario volontario) {
+        String inserisciSqlVolontari = "INSERT INTO volontari (nome, cognome, email, password, password_modificata) VALUES (?, ?, ?, ?, ?)";
     
+        return scriviAsync("Errore durante l'aggiunta del volontario", () -> {
+            EsitoScrittura esito;
+            try (Connection conn = DatabaseConnection.connect();
+                 PreparedStatement pstmt = conn.prepareStatement(inserisciSqlVolontari, Statement.RETURN_GENERATED_KEYS)) {
+                conn.setAutoCommit(false);
+                try {
+                    pstmt.setString(1, volontario.getNome());
+                    pstmt.setString(2, volontario.getCognome());
+                    pstmt.setString(3, volontario.getEmail());
+                    pstmt.setString(4, volontario.getPassword());
+                    pstmt.setBoolean(5, false);
+                    esito = EsitoScrittura.conChiavi(pstmt.executeUpdate(), pstmt);
+                    int id = (int) esito.getChiaveGenerata();
+                    if (id >= 0) {
+                        TipiVisitaAssociati.sostituisci(conn, Associazione.VOLONTARIO, id, volontario.getTipiDiVisite());
+                    }
+                    conn.commit();
+                    if (id >= 0) idEmailVolontari.associa(id, volontario.getEmail());
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+                consoleIO.mostraMessaggio("Volontario aggiunto con successo nella tabella 'volontari'.");
+            }
+
              
             aggiungiUtenteUnificato(volontario, false);
-        } catch (SQLException e) {
-            System.err.println("Errore durante l'aggiunta del volontario: " + e.getMessage());
-        }
+            return esito;
+        });
     }
 
     /**
@@ -119,19 +190,20 @@ public class VolontariManager extends DatabaseManager {
      * 
      * @param email l'email del volontario
      * @param nuovaPassword la nuova password
+     * @return il future con le righe aggiornate nella tabella volontari
      */
-    protected void aggiornaPswVolontario(String email, String nuovaPassword) {
+    protected CompletableFuture<EsitoScrittura> aggiornaPswVolontario(String email, String nuovaPassword) {
         String sqlVolontari = "UPDATE volontari SET password = ?, password_modificata = ? WHERE email = ?";
         String sqlUtentiUnificati = "UPDATE utenti_unificati SET password = ?, password_modificata = ? WHERE email = ?";
     
-        executorService.submit(() -> {
+        return scriviAsync("Errore durante l'aggiornamento della password", () -> {
             try (Connection conn = DatabaseConnection.connect()) {
-                 
+                int righe;
                 try (PreparedStatement pstmtVolontari = conn.prepareStatement(sqlVolontari)) {
                     pstmtVolontari.setString(1, nuovaPassword);
                     pstmtVolontari.setBoolean(2, true);  
                     pstmtVolontari.setString(3, email);
-                    pstmtVolontari.executeUpdate();
+                    righe = pstmtVolontari.executeUpdate();
 
                 }
     
@@ -143,8 +215,7 @@ public class VolontariManager extends DatabaseManager {
                     pstmtUtenti.executeUpdate();
 
                 }
-            } catch (SQLException e) {
-                System.err.println("Errore durante l'aggiornamento della password: " + e.getMessage());
+                return EsitoScrittura.righe(righe);
             }
         });
     }    
@@ -154,16 +225,18 @@ public class VolontariManager extends DatabaseManager {
      * Rimuove il volontario sia dalla tabella volontari che dalla tabella utenti_unificati.
      * 
      * @param volontarioDaEliminare il volontario da eliminare
+     * @return il future con le righe eliminate dalla tabella volontari
      */
-    private void eliminaVol(Volontario volontarioDaEliminare) {
+    private CompletableFuture<EsitoScrittura> eliminaVol(Volontario volontarioDaEliminare) {
         String sqlVolontari = "DELETE FROM volontari WHERE email = ?";
         String sqlUtentiUnificati = "DELETE FROM utenti_unificati WHERE email = ?";
-        executorService.submit(() -> {
+        return scriviAsync("Errore durante l'eliminazione del volontario", () -> {
             try (Connection conn = DatabaseConnection.connect()) {
-                 
+                // le associazioni ai tipi di visita vengono eliminate dalla chiave esterna
+                int righe;
                 try (PreparedStatement pstmt = conn.prepareStatement(sqlVolontari)) {
                     pstmt.setString(1, volontarioDaEliminare.getEmail());
-                    pstmt.executeUpdate();
+                    righe = pstmt.executeUpdate();
                 }
 
                  
@@ -171,8 +244,7 @@ public class VolontariManager extends DatabaseManager {
                     pstmt.setString(1, volontarioDaEliminare.getEmail());
                     pstmt.executeUpdate();
                 }
-            } catch (SQLException e) {
-                System.err.println("Errore durante l'eliminazione del volontario: " + e.getMessage());
+                return EsitoScrittura.righe(righe);
             }
         });
     }
@@ -182,10 +254,11 @@ public class VolontariManager extends DatabaseManager {
      * 
      * @param email l'email del volontario
      * @param disponibilita la nuova disponibilità
+     * @return il future con le righe aggiornate
      */
-    public void aggiornaDisponibilitaVolontario(String email, String disponibilita) {
+    public CompletableFuture<EsitoScrittura> aggiornaDisponibilitaVolontario(String email, String disponibilita) {
         String sql = "UPDATE volontari SET disponibilita = ? WHERE email = ?";
-        executorService.submit(() -> {
+        return scriviAsync("Errore durante l'aggiornamento della disponibilità", () -> {
             try (Connection conn = DatabaseConnection.connect();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, disponibilita);
@@ -196,8 +269,7 @@ public class VolontariManager extends DatabaseManager {
                 } else {
                     System.out.println("Nessun volontario trovato con l'email " + email);
                 }
-            } catch (SQLException e) {
-                System.err.println("Errore durante l'aggiornamento della disponibilità: " + e.getMessage());
+                return EsitoScrittura.righe(rowsUpdated);
             }
         });
     }
@@ -206,14 +278,15 @@ public class VolontariManager extends DatabaseManager {
      * Aggiunge un nuovo volontario verificando prima che non esista già.
      * 
      * @param nuovoVolontario il nuovo volontario da aggiungere
+     * @return il future con l'ID generato, già completato senza modifiche se il volontario esiste
      */
-    public void aggiungiNuovoVolontario(Volontario nuovoVolontario) {
+    public CompletableFuture<EsitoScrittura> aggiungiNuovoVolontario(Volontario nuovoVolontario) {
         String verificaSql = "SELECT 1 FROM volontari WHERE email = ?";
         if(!recordEsiste(verificaSql, nuovoVolontario.getEmail())){
-            aggiungiVolontario(nuovoVolontario);
-            consoleIO.mostraMessaggio("Volontario aggiunto con successo.");
+            return aggiungiVolontario(nuovoVolontario);
         } else {
             consoleIO.mostraMessaggio("Il volontario con email " + nuovoVolontario.getEmail() + " esiste già.");
+            return CompletableFuture.completedFuture(EsitoScrittura.NESSUNA_MODIFICA);
         }
     }
 
@@ -222,16 +295,22 @@ public class VolontariManager extends DatabaseManager {
      * 
      * @param email l'email del volontario
      * @param nuoviTipiVisitaClass la nuova lista di tipi di visita supportati
+     * @return il future con una riga modificata se il volontario esiste, nessuna altrimenti
      */
-    protected void aggiornaTipiVisitaClassVolontario(String email, List<TipiVisitaClass> nuoviTipiVisitaClass) {
-        String sql= "UPDATE volontari SET tipi_di_visite = ? WHERE email = ?";
-        executorService.submit(() -> {
-            try (Connection conn = DatabaseConnection.connect();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, String.join(",", nuoviTipiVisitaClass.stream().map(TipiVisitaClass::getNome).toArray(String[]::new)));
-                pstmt.setString(2, email);
-                int rowsUpdated = pstmt.executeUpdate();
-                if (rowsUpdated > 0) {
+    protected CompletableFuture<EsitoScrittura> aggiornaTipiVisitaClassVolontario(String email, List<TipiVisitaClass> nuoviTipiVisitaClass) {
+        return scriviAsync("Errore durante l'aggiornamento dei tipi di visita", () -> {
+            int id = getIdByEmail(email);
+            try (Connection conn = DatabaseConnection.connect()) {
+                if (id >= 0) {
+                    conn.setAutoCommit(false);
+                    try {
+                        TipiVisitaAssociati.sostituisci(conn, Associazione.VOLONTARIO, id, nuoviTipiVisitaClass);
+                        conn.commit();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    }
+
                      
                     synchronized (volontariMap) {
                         Volontario volontario = volontariMap.get(email);
@@ -240,11 +319,11 @@ public class VolontariManager extends DatabaseManager {
                         }
                     }
                     consoleIO.mostraMessaggio("Tipi di visita aggiornati con successo per il volontario " + email);
+                    return EsitoScrittura.righe(1);
                 }else {
                     consoleIO.mostraMessaggio("Nessun volontario trovato con l'email " + email);
+                    return EsitoScrittura.NESSUNA_MODIFICA;
                 }
-            } catch (SQLException e) {
-                System.err.println("Errore durante l'aggiornamento dei tipi di visita: " + e.getMessage());
             }
         });
     }
@@ -254,10 +333,11 @@ public class VolontariManager extends DatabaseManager {
      * 
      * @param visitaSelezionata la visita da rimuovere
      * @param volontarioSelezionato il volontario da cui rimuovere la visita
+     * @return il future con le righe eliminate
      */
-    protected void rimuoviVisitaDaVolontario(Visita visitaSelezionata, Volontario volontarioSelezionato) {
+    protected CompletableFuture<EsitoScrittura> rimuoviVisitaDaVolontario(Visita visitaSelezionata, Volontario volontarioSelezionato) {
         String sql = "DELETE FROM visite WHERE id = ? AND volontario_id = ?";
-        executorService.submit(() -> {
+        return scriviAsync("Errore durante la rimozione della visita dal volontario", () -> {
             try (Connection conn = DatabaseConnection.connect();
                  PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, visitaSelezionata.getId());
@@ -268,8 +348,7 @@ public class VolontariManager extends DatabaseManager {
                 } else {
                     consoleIO.mostraMessaggio("Nessuna visita trovata per il volontario specificato.");
                 }
-            } catch (SQLException e) {
-                System.err.println("Errore durante la rimozione della visita dal volontario: " + e.getMessage());
+                return EsitoScrittura.righe(rowsDeleted);
             }
         });
     }
@@ -281,21 +360,13 @@ public class VolontariManager extends DatabaseManager {
      * @return la lista dei tipi di visita assegnati
      */
     protected List<TipiVisitaClass> getTipiVisitaAssegnatiVolontarioDB(Volontario volontarioCorrente) {
-        String sql = "SELECT tipi_di_visite FROM volontari WHERE email = ?";
         List<TipiVisitaClass> tipiVisitaAssegnati = new ArrayList<>();
-        try (Connection conn = DatabaseConnection.connect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, volontarioCorrente.getEmail());
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    String tipiDiVisite = rs.getString("tipi_di_visite");
-                    if (tipiDiVisite != null && !tipiDiVisite.isEmpty()) {
-                        for (String tipo : tipiDiVisite.split(",")) {
-                            tipiVisitaAssegnati.add(TipiVisitaClass.valueOf(tipo.trim()));
-                        }
-                    }
-                }
-            }
+        int id = getIdByEmail(volontarioCorrente.getEmail());
+        if (id < 0) {
+            return tipiVisitaAssegnati;
+        }
+        try (Connection conn = DatabaseConnection.connect()) {
+            tipiVisitaAssegnati.addAll(TipiVisitaAssociati.caricaDi(conn, Associazione.VOLONTARIO, id));
         } catch (SQLException e) {
             System.err.println("Errore durante il recupero dei tipi di visita assegnati al volontario: " + e.getMessage());
         }
@@ -307,18 +378,20 @@ public class VolontariManager extends DatabaseManager {
      * 
      * @param email l'email del volontario
      * @param tipoVisita il tipo di visita da aggiungere
+     * @return il future dell'aggiornamento, già completato se non c'è nulla da scrivere
      */
-    public void aggiungiTipoVisitaAVolontari (String email, TipiVisitaClass tipoVisita){
+    public CompletableFuture<EsitoScrittura> aggiungiTipoVisitaAVolontari (String email, TipiVisitaClass tipoVisita){
         synchronized (volontariMap){
             Volontario volontario = volontariMap.get(email);
             if (volontario !=null){
                 List<TipiVisitaClass> tipiEsistenti = new ArrayList<>(volontario.getTipiDiVisite());
                 if (!tipiEsistenti.contains(tipoVisita)){
                     tipiEsistenti.add(tipoVisita);
-                    aggiornaTipiVisitaClassVolontario(email, tipiEsistenti);
+                    return aggiornaTipiVisitaClassVolontario(email, tipiEsistenti);
                 } 
             }
         }
+        return CompletableFuture.completedFuture(EsitoScrittura.NESSUNA_MODIFICA);
     }
 
     /**
@@ -326,36 +399,28 @@ public class VolontariManager extends DatabaseManager {
      * 
      * @param email l'email del volontario
      * @param tipiVisitaDaRimuovere la lista dei tipi di visita da rimuovere
+     * @return il future con una riga modificata se il volontario esiste, nessuna altrimenti
      */
-    public void rimuoviTipiVisitaClassVolontario (String email, List<TipiVisitaClass> tipiVisitaDaRimuovere){
-        String sql = "UPDATE volontari SET tipi_di_visite = ? WHERE email = ?";
-        executorService.submit(() -> {
-            try (Connection conn= DatabaseConnection.connect();
-                PreparedStatement pstmt = conn.prepareStatement(sql)){
-                
+    public CompletableFuture<EsitoScrittura> rimuoviTipiVisitaClassVolontario (String email, List<TipiVisitaClass> tipiVisitaDaRimuovere){
+        return scriviAsync("Errore durante la rimozione dei tipi di visita", () -> {
+            int id = getIdByEmail(email);
+            if (id < 0) {
+                consoleIO.mostraMessaggio("Nessun volontario trovato con l'email " + email);
+                return EsitoScrittura.NESSUNA_MODIFICA;
+            }
+            try (Connection conn= DatabaseConnection.connect()){
+                TipiVisitaAssociati.rimuovi(conn, Associazione.VOLONTARIO, id, tipiVisitaDaRimuovere);
+
                 synchronized (volontariMap) {
                     Volontario volontario = volontariMap.get(email);
                     if (volontario != null) {
-                         
                         List<TipiVisitaClass> nuoviTipiVisitaClass = new ArrayList<>(volontario.getTipiDiVisite());
                         nuoviTipiVisitaClass.removeAll(tipiVisitaDaRimuovere);
-
-                        pstmt.setString (1, String.join(",", nuoviTipiVisitaClass.stream().map(TipiVisitaClass::getNome).toArray(String[]::new)));
-                        pstmt.setString(2, email);
-                        int rowsUpdated = pstmt.executeUpdate();
-
-                        if (rowsUpdated > 0) {
-                             
-                            volontario.setTipiDiVisite(nuoviTipiVisitaClass);
-                            consoleIO.mostraMessaggio("Tipi di visita rimossi con successo per il volontario " + email);
-                        } else {
-                            consoleIO.mostraMessaggio("Nessun volontario trovato con l'email " + email);
-                        }
+                        volontario.setTipiDiVisite(nuoviTipiVisitaClass);
                     }
                 }
-                
-            } catch (SQLException e) {
-                System.err.println("Errore durante la rimozione dei tipi di visita: " + e.getMessage());
+                consoleIO.mostraMessaggio("Tipi di visita rimossi con successo per il volontario " + email);
+                return EsitoScrittura.righe(1);
             }
         });
     }
@@ -367,12 +432,17 @@ public class VolontariManager extends DatabaseManager {
      * @return l'ID del volontario, o -1 se non trovato
      */
     public int getIdByEmail(String volontario) {
+        Integer id = idEmailVolontari.getInversa(volontario);
+        if (id != null) {
+            return id;
+        }
         String sql = "SELECT id FROM volontari WHERE email = ?";
         try (Connection conn = DatabaseConnection.connect();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, volontario);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
+                    idEmailVolontari.associa(rs.getInt("id"), volontario);
                     return rs.getInt("id");
                 }
             }
@@ -387,9 +457,10 @@ public class VolontariManager extends DatabaseManager {
      * 
      * @param email l'email del volontario
      * @param tipoVisita il tipo di visita da rimuovere
+     * @return il future della rimozione
      */
-    public void rimuoviTipoVisitaDaVolontario (String email, TipiVisitaClass tipoVisita){
-        rimuoviTipiVisitaClassVolontario(email, Arrays.asList(tipoVisita));
+    public CompletableFuture<EsitoScrittura> rimuoviTipoVisitaDaVolontario (String email, TipiVisitaClass tipoVisita){
+        return rimuoviTipiVisitaClassVolontario(email, Arrays.asList(tipoVisita));
     }
 
     /**
@@ -402,7 +473,7 @@ public class VolontariManager extends DatabaseManager {
         List<Volontario> volontariPerTipo = new ArrayList<>();
         synchronized (volontariMap) {
             for (Volontario volontario : volontariMap.values()) {
-                if (volontario.getTipiDiVisite().contains(tipoVisita)) {
+                if (volontario.contieneTipoVisita(tipoVisita)) {
                     volontariPerTipo.add(volontario);
                 }
             }
@@ -433,24 +504,51 @@ public class VolontariManager extends DatabaseManager {
     public ConcurrentHashMap<String, Volontario> getVolontariMap() {
         return volontariMap;
     }
+
+    /**
+     * Restituisce lo snapshot immutabile corrente dei volontari.
+     * 
+     * @return lo snapshot dei volontari
+     */
+    public CacheVersionata.Snapshot<String, Volontario> getVolontariSnapshot() {
+        return volontariCache.getSnapshot();
+    }
     
     /**
      * Imposta la mappa dei volontari.
+     * Il contenuto viene pubblicato come nuovo snapshot della cache.
      * 
      * @param volontariMap la nuova mappa dei volontari
      */
     public void setVolontariMap(ConcurrentHashMap<String, Volontario> volontariMap) {
-        this.volontariMap = volontariMap;
+        volontariCache.pubblica(new HashMap<>(volontariMap));
     }
 
     /**
      * Elimina un volontario sia dal database che dalla mappa in memoria.
      * 
      * @param volontarioDaEliminare il volontario da eliminare
+     * @return il future dell'eliminazione dal database
      */
-    public void eliminaVolontario(Volontario volontarioDaEliminare) {
-        eliminaVol(volontarioDaEliminare);
+    public CompletableFuture<EsitoScrittura> eliminaVolontario(Volontario volontarioDaEliminare) {
+        CompletableFuture<EsitoScrittura> eliminazione = eliminaVol(volontarioDaEliminare);
         volontariMap.remove(volontarioDaEliminare.getEmail());
+        idEmailVolontari.rimuoviInversa(volontarioDaEliminare.getEmail());
+        return eliminazione;
+    }
+
+    /**
+     * Riallinea l'associazione ID-email dopo il cambio di email di un volontario.
+     * 
+     * @param vecchiaEmail l'email precedente
+     * @param nuovaEmail la nuova email
+     */
+    @Override
+    protected void emailAggiornata(String vecchiaEmail, String nuovaEmail) {
+        Integer id = idEmailVolontari.getInversa(vecchiaEmail);
+        if (id != null) {
+            idEmailVolontari.associa(id, nuovaEmail);
+        }
     }
 
     /**
@@ -458,9 +556,10 @@ public class VolontariManager extends DatabaseManager {
      * 
      * @param email l'email del volontario
      * @param nuovaPassword la nuova password
+     * @return il future dell'aggiornamento
      */
-    public void modificaPsw(String email, String nuovaPassword) {
-        aggiornaPswVolontario(email, nuovaPassword);
+    public CompletableFuture<EsitoScrittura> modificaPsw(String email, String nuovaPassword) {
+        return aggiornaPswVolontario(email, nuovaPassword);
     }
 
     /**
@@ -470,12 +569,17 @@ public class VolontariManager extends DatabaseManager {
      * @return l'email del volontario, o null se non trovato
      */
     public String getEmailById(int volontarioId) {
+        String email = idEmailVolontari.getDiretta(volontarioId);
+        if (email != null) {
+            return email;
+        }
         String sql = "SELECT email FROM volontari WHERE id = ?";
         try (Connection conn = DatabaseConnection.connect();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, volontarioId);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
+                    idEmailVolontari.associa(volontarioId, rs.getString("email"));
                     return rs.getString("email");
                 }
             }
@@ -490,9 +594,10 @@ public class VolontariManager extends DatabaseManager {
      * 
      * @param visitaSelezionata la visita da rimuovere
      * @param volontarioSelezionato il volontario da cui rimuovere la visita
+     * @return il future della rimozione
      */
-    public void rimuoviVisitaVolontario(Visita visitaSelezionata, Volontario volontarioSelezionato) {
-        rimuoviVisitaDaVolontario(visitaSelezionata, volontarioSelezionato);
+    public CompletableFuture<EsitoScrittura> rimuoviVisitaVolontario(Visita visitaSelezionata, Volontario volontarioSelezionato) {
+        return rimuoviVisitaDaVolontario(visitaSelezionata, volontarioSelezionato);
     }
 
     /**
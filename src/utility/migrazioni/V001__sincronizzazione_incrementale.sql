@@ -0,0 +1,67 @@
+-- Supporto alla sincronizzazione incrementale di DatabaseUpdater.
+--
+-- Ogni tabella tenuta in cache dall'applicazione riceve una colonna `aggiornato_il`
+-- aggiornata automaticamente a ogni modifica (date_precluse usa la già presente
+-- `modificato_il`). Le eliminazioni, e i cambi di chiave, vengono registrati dai
+-- trigger nella tabella `eliminazioni`, letta a ogni ciclo dopo l'ultimo id visto.
+--
+-- Script idempotente per MariaDB 10.4+.
+
+ALTER TABLE `volontari`
+  ADD COLUMN IF NOT EXISTS `aggiornato_il` timestamp(3) NOT NULL DEFAULT current_timestamp(3) ON UPDATE current_timestamp(3),
+  ADD INDEX IF NOT EXISTS `idx_volontari_aggiornato_il` (`aggiornato_il`);
+
+ALTER TABLE `configuratori`
+  ADD COLUMN IF NOT EXISTS `aggiornato_il` timestamp(3) NOT NULL DEFAULT current_timestamp(3) ON UPDATE current_timestamp(3),
+  ADD INDEX IF NOT EXISTS `idx_configuratori_aggiornato_il` (`aggiornato_il`);
+
+ALTER TABLE `luoghi`
+  ADD COLUMN IF NOT EXISTS `aggiornato_il` timestamp(3) NOT NULL DEFAULT current_timestamp(3) ON UPDATE current_timestamp(3),
+  ADD INDEX IF NOT EXISTS `idx_luoghi_aggiornato_il` (`aggiornato_il`);
+
+ALTER TABLE `visite`
+  ADD COLUMN IF NOT EXISTS `aggiornato_il` timestamp(3) NOT NULL DEFAULT current_timestamp(3) ON UPDATE current_timestamp(3),
+  ADD INDEX IF NOT EXISTS `idx_visite_aggiornato_il` (`aggiornato_il`);
+
+ALTER TABLE `date_precluse`
+  ADD INDEX IF NOT EXISTS `idx_date_precluse_modificato_il` (`modificato_il`);
+
+CREATE TABLE IF NOT EXISTS `eliminazioni` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `tabella` varchar(64) NOT NULL,
+  `chiave` varchar(255) NOT NULL,
+  `eliminato_il` timestamp(3) NOT NULL DEFAULT current_timestamp(3),
+  PRIMARY KEY (`id`),
+  KEY `idx_eliminazioni_eliminato_il` (`eliminato_il`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+CREATE OR REPLACE TRIGGER `volontari_eliminazione` AFTER DELETE ON `volontari`
+  FOR EACH ROW INSERT INTO `eliminazioni` (`tabella`, `chiave`) VALUES ('volontari', OLD.`email`);
+
+CREATE OR REPLACE TRIGGER `volontari_cambio_chiave` AFTER UPDATE ON `volontari`
+  FOR EACH ROW INSERT INTO `eliminazioni` (`tabella`, `chiave`)
+  SELECT 'volontari', OLD.`email` FROM DUAL WHERE OLD.`email` <> NEW.`email`;
+
+CREATE OR REPLACE TRIGGER `configuratori_eliminazione` AFTER DELETE ON `configuratori`
+  FOR EACH ROW INSERT INTO `eliminazioni` (`tabella`, `chiave`) VALUES ('configuratori', OLD.`email`);
+
+CREATE OR REPLACE TRIGGER `configuratori_cambio_chiave` AFTER UPDATE ON `configuratori`
+  FOR EACH ROW INSERT INTO `eliminazioni` (`tabella`, `chiave`)
+  SELECT 'configuratori', OLD.`email` FROM DUAL WHERE OLD.`email` <> NEW.`email`;
+
+CREATE OR REPLACE TRIGGER `luoghi_eliminazione` AFTER DELETE ON `luoghi`
+  FOR EACH ROW INSERT INTO `eliminazioni` (`tabella`, `chiave`) VALUES ('luoghi', OLD.`nome`);
+
+CREATE OR REPLACE TRIGGER `luoghi_cambio_chiave` AFTER UPDATE ON `luoghi`
+  FOR EACH ROW INSERT INTO `eliminazioni` (`tabella`, `chiave`)
+  SELECT 'luoghi', OLD.`nome` FROM DUAL WHERE OLD.`nome` <> NEW.`nome`;
+
+CREATE OR REPLACE TRIGGER `visite_eliminazione` AFTER DELETE ON `visite`
+  FOR EACH ROW INSERT INTO `eliminazioni` (`tabella`, `chiave`) VALUES ('visite', OLD.`id`);
+
+CREATE OR REPLACE TRIGGER `date_precluse_eliminazione` AFTER DELETE ON `date_precluse`
+  FOR EACH ROW INSERT INTO `eliminazioni` (`tabella`, `chiave`) VALUES ('date_precluse', OLD.`data`);
+
+CREATE OR REPLACE TRIGGER `date_precluse_cambio_chiave` AFTER UPDATE ON `date_precluse`
+  FOR EACH ROW INSERT INTO `eliminazioni` (`tabella`, `chiave`)
+  SELECT 'date_precluse', OLD.`data` FROM DUAL WHERE OLD.`data` <> NEW.`data`;
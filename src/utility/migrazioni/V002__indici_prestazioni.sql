@@ -0,0 +1,28 @@
+-- Indici per le query eseguite da VisiteManagerDB, PrenotazioneManager e DisponibilitaManager.
+--
+-- visite: ricerche per data, volontario, stato e per luogo nella stessa data.
+-- prenotazioni: verifica di prenotazione esistente (email_fruitore, id_visita, stato)
+-- e prenotazioni confermate di una visita (id_visita, stato).
+-- disponibilita: la tabella viene creata se assente, con chiave (volontario_id, data_disponibile)
+-- usata dal salvataggio incrementale per differenza.
+--
+-- Script idempotente per MariaDB 10.4+.
+
+ALTER TABLE `visite`
+  ADD INDEX IF NOT EXISTS `idx_visite_data` (`data`),
+  ADD INDEX IF NOT EXISTS `idx_visite_volontario` (`volontario`),
+  ADD INDEX IF NOT EXISTS `idx_visite_stato` (`stato`),
+  ADD INDEX IF NOT EXISTS `idx_visite_luogo_data` (`luogo`, `data`);
+
+ALTER TABLE `prenotazioni`
+  ADD INDEX IF NOT EXISTS `idx_prenotazioni_fruitore_visita_stato` (`email_fruitore`, `id_visita`, `stato`),
+  ADD INDEX IF NOT EXISTS `idx_prenotazioni_visita_stato` (`id_visita`, `stato`);
+
+CREATE TABLE IF NOT EXISTS `disponibilita` (
+  `volontario_id` int(11) NOT NULL,
+  `data_disponibile` date NOT NULL,
+  PRIMARY KEY (`volontario_id`, `data_disponibile`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+ALTER TABLE `disponibilita`
+  ADD INDEX IF NOT EXISTS `idx_disponibilita_volontario_data` (`volontario_id`, `data_disponibile`);
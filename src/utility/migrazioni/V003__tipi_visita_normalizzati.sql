@@ -0,0 +1,139 @@
+-- Normalizzazione dei tipi di visita.
+--
+-- I tipi associati a luoghi, volontari e visite non sono più salvati come stringhe
+-- separate da virgole (`luoghi.tipi_di_visita`, `volontari.tipi_di_visite`,
+-- `visite.tipo_visita`) ma in tre tabelle di associazione che referenziano
+-- `tipi_visita`.`id`: `luogo_tipo`, `volontario_tipo` e `visita_tipo`.
+-- I nomi presenti nelle vecchie colonne vengono registrati in `tipi_visita` se
+-- mancanti, le associazioni vengono popolate e le vecchie colonne eliminate.
+--
+-- Le associazioni di un luogo, volontario o visita eliminati sono rimosse
+-- dall'applicazione prima della riga principale. I trigger sulle associazioni
+-- aggiornano `aggiornato_il` della riga principale, così la sincronizzazione
+-- incrementale vede anche le modifiche ai soli tipi.
+--
+-- Script per MariaDB 10.4+.
+
+CREATE TABLE IF NOT EXISTS `tipi_visita` (
+  `id` int(11) NOT NULL AUTO_INCREMENT,
+  `nome` varchar(255) NOT NULL,
+  `descrizione` text DEFAULT NULL,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uq_tipi_visita_nome` (`nome`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+ALTER TABLE `tipi_visita`
+  ADD COLUMN IF NOT EXISTS `id` int(11) NOT NULL AUTO_INCREMENT UNIQUE FIRST,
+  ADD UNIQUE INDEX IF NOT EXISTS `uq_tipi_visita_nome` (`nome`);
+
+INSERT IGNORE INTO `tipi_visita` (`nome`, `descrizione`) VALUES
+('STORICA', 'Un percorso guidato alla scoperta della storia e dei monumenti principali della città.'),
+('SCIENTIFICA', 'Un''esperienza educativa dedicata alle scienze e alle innovazioni tecnologiche.'),
+('ENOGASTRONOMICA', 'Un viaggio tra i sapori tipici locali con degustazioni di prodotti tradizionali.'),
+('LABBAMBINI', 'Attività ludico-didattiche pensate per i più piccoli, con laboratori creativi e giochi.');
+
+CREATE TABLE IF NOT EXISTS `luogo_tipo` (
+  `luogo` varchar(255) NOT NULL,
+  `tipo_id` int(11) NOT NULL,
+  PRIMARY KEY (`luogo`, `tipo_id`),
+  KEY `idx_luogo_tipo_tipo` (`tipo_id`),
+  CONSTRAINT `fk_luogo_tipo_tipo` FOREIGN KEY (`tipo_id`) REFERENCES `tipi_visita` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+CREATE TABLE IF NOT EXISTS `volontario_tipo` (
+  `volontario_id` int(11) NOT NULL,
+  `tipo_id` int(11) NOT NULL,
+  PRIMARY KEY (`volontario_id`, `tipo_id`),
+  KEY `idx_volontario_tipo_tipo` (`tipo_id`),
+  CONSTRAINT `fk_volontario_tipo_tipo` FOREIGN KEY (`tipo_id`) REFERENCES `tipi_visita` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+CREATE TABLE IF NOT EXISTS `visita_tipo` (
+  `visita_id` int(11) NOT NULL,
+  `tipo_id` int(11) NOT NULL,
+  PRIMARY KEY (`visita_id`, `tipo_id`),
+  KEY `idx_visita_tipo_tipo` (`tipo_id`),
+  CONSTRAINT `fk_visita_tipo_tipo` FOREIGN KEY (`tipo_id`) REFERENCES `tipi_visita` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+-- Divisione delle vecchie liste: la n-esima voce di ogni lista, fino a 16 voci.
+
+INSERT IGNORE INTO `tipi_visita` (`nome`, `descrizione`)
+SELECT DISTINCT v.`nome`, ''
+FROM (
+  SELECT TRIM(SUBSTRING_INDEX(SUBSTRING_INDEX(l.`tipi_di_visita`, ',', n.`n`), ',', -1)) AS `nome`
+  FROM `luoghi` l
+  JOIN (SELECT 1 AS `n` UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4 UNION ALL SELECT 5 UNION ALL SELECT 6
+        UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9 UNION ALL SELECT 10 UNION ALL SELECT 11
+        UNION ALL SELECT 12 UNION ALL SELECT 13 UNION ALL SELECT 14 UNION ALL SELECT 15 UNION ALL SELECT 16) n
+    ON n.`n` <= 1 + LENGTH(l.`tipi_di_visita`) - LENGTH(REPLACE(l.`tipi_di_visita`, ',', ''))
+  UNION
+  SELECT TRIM(SUBSTRING_INDEX(SUBSTRING_INDEX(vo.`tipi_di_visite`, ',', n.`n`), ',', -1))
+  FROM `volontari` vo
+  JOIN (SELECT 1 AS `n` UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4 UNION ALL SELECT 5 UNION ALL SELECT 6
+        UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9 UNION ALL SELECT 10 UNION ALL SELECT 11
+        UNION ALL SELECT 12 UNION ALL SELECT 13 UNION ALL SELECT 14 UNION ALL SELECT 15 UNION ALL SELECT 16) n
+    ON n.`n` <= 1 + LENGTH(vo.`tipi_di_visite`) - LENGTH(REPLACE(vo.`tipi_di_visite`, ',', ''))
+  UNION
+  SELECT TRIM(SUBSTRING_INDEX(SUBSTRING_INDEX(vi.`tipo_visita`, ',', n.`n`), ',', -1))
+  FROM `visite` vi
+  JOIN (SELECT 1 AS `n` UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4 UNION ALL SELECT 5 UNION ALL SELECT 6
+        UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9 UNION ALL SELECT 10 UNION ALL SELECT 11
+        UNION ALL SELECT 12 UNION ALL SELECT 13 UNION ALL SELECT 14 UNION ALL SELECT 15 UNION ALL SELECT 16) n
+    ON n.`n` <= 1 + LENGTH(vi.`tipo_visita`) - LENGTH(REPLACE(vi.`tipo_visita`, ',', ''))
+) v
+WHERE v.`nome` <> '';
+
+INSERT IGNORE INTO `luogo_tipo` (`luogo`, `tipo_id`)
+SELECT l.`nome`, t.`id`
+FROM `luoghi` l
+JOIN (SELECT 1 AS `n` UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4 UNION ALL SELECT 5 UNION ALL SELECT 6
+      UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9 UNION ALL SELECT 10 UNION ALL SELECT 11
+      UNION ALL SELECT 12 UNION ALL SELECT 13 UNION ALL SELECT 14 UNION ALL SELECT 15 UNION ALL SELECT 16) n
+  ON n.`n` <= 1 + LENGTH(l.`tipi_di_visita`) - LENGTH(REPLACE(l.`tipi_di_visita`, ',', ''))
+JOIN `tipi_visita` t
+  ON t.`nome` = TRIM(SUBSTRING_INDEX(SUBSTRING_INDEX(l.`tipi_di_visita`, ',', n.`n`), ',', -1));
+
+INSERT IGNORE INTO `volontario_tipo` (`volontario_id`, `tipo_id`)
+SELECT vo.`id`, t.`id`
+FROM `volontari` vo
+JOIN (SELECT 1 AS `n` UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4 UNION ALL SELECT 5 UNION ALL SELECT 6
+      UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9 UNION ALL SELECT 10 UNION ALL SELECT 11
+      UNION ALL SELECT 12 UNION ALL SELECT 13 UNION ALL SELECT 14 UNION ALL SELECT 15 UNION ALL SELECT 16) n
+  ON n.`n` <= 1 + LENGTH(vo.`tipi_di_visite`) - LENGTH(REPLACE(vo.`tipi_di_visite`, ',', ''))
+JOIN `tipi_visita` t
+  ON t.`nome` = TRIM(SUBSTRING_INDEX(SUBSTRING_INDEX(vo.`tipi_di_visite`, ',', n.`n`), ',', -1));
+
+INSERT IGNORE INTO `visita_tipo` (`visita_id`, `tipo_id`)
+SELECT vi.`id`, t.`id`
+FROM `visite` vi
+JOIN (SELECT 1 AS `n` UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4 UNION ALL SELECT 5 UNION ALL SELECT 6
+      UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9 UNION ALL SELECT 10 UNION ALL SELECT 11
+      UNION ALL SELECT 12 UNION ALL SELECT 13 UNION ALL SELECT 14 UNION ALL SELECT 15 UNION ALL SELECT 16) n
+  ON n.`n` <= 1 + LENGTH(vi.`tipo_visita`) - LENGTH(REPLACE(vi.`tipo_visita`, ',', ''))
+JOIN `tipi_visita` t
+  ON t.`nome` = TRIM(SUBSTRING_INDEX(SUBSTRING_INDEX(vi.`tipo_visita`, ',', n.`n`), ',', -1));
+
+CREATE OR REPLACE TRIGGER `luogo_tipo_inserimento` AFTER INSERT ON `luogo_tipo`
+  FOR EACH ROW UPDATE `luoghi` SET `aggiornato_il` = current_timestamp(3) WHERE `nome` = NEW.`luogo`;
+
+CREATE OR REPLACE TRIGGER `luogo_tipo_eliminazione` AFTER DELETE ON `luogo_tipo`
+  FOR EACH ROW UPDATE `luoghi` SET `aggiornato_il` = current_timestamp(3) WHERE `nome` = OLD.`luogo`;
+
+CREATE OR REPLACE TRIGGER `volontario_tipo_inserimento` AFTER INSERT ON `volontario_tipo`
+  FOR EACH ROW UPDATE `volontari` SET `aggiornato_il` = current_timestamp(3) WHERE `id` = NEW.`volontario_id`;
+
+CREATE OR REPLACE TRIGGER `volontario_tipo_eliminazione` AFTER DELETE ON `volontario_tipo`
+  FOR EACH ROW UPDATE `volontari` SET `aggiornato_il` = current_timestamp(3) WHERE `id` = OLD.`volontario_id`;
+
+CREATE OR REPLACE TRIGGER `visita_tipo_inserimento` AFTER INSERT ON `visita_tipo`
+  FOR EACH ROW UPDATE `visite` SET `aggiornato_il` = current_timestamp(3) WHERE `id` = NEW.`visita_id`;
+
+CREATE OR REPLACE TRIGGER `visita_tipo_eliminazione` AFTER DELETE ON `visita_tipo`
+  FOR EACH ROW UPDATE `visite` SET `aggiornato_il` = current_timestamp(3) WHERE `id` = OLD.`visita_id`;
+
+ALTER TABLE `luoghi` DROP COLUMN IF EXISTS `tipi_di_visita`;
+
+ALTER TABLE `volontari` DROP COLUMN IF EXISTS `tipi_di_visite`;
+
+ALTER TABLE `visite` DROP COLUMN IF EXISTS `tipo_visita`;
@@ -0,0 +1,35 @@
+-- Chiavi esterne dalle associazioni dei tipi di visita alle righe proprietarie.
+--
+-- `luogo_tipo`, `volontario_tipo` e `visita_tipo` referenziano ora anche
+-- `luoghi`.`nome`, `volontari`.`id` e `visite`.`id`: l'eliminazione del proprietario
+-- elimina le sue associazioni nella stessa istruzione, e la ridenominazione di un
+-- luogo aggiorna le associazioni. L'applicazione non rimuove più le associazioni
+-- prima della riga principale. Le eliminazioni a cascata non attivano i trigger
+-- delle associazioni: l'eliminazione del proprietario è già registrata in `eliminazioni`.
+-- Le associazioni orfane lasciate dalla versione precedente vengono eliminate.
+--
+-- Script idempotente per MariaDB 10.4+.
+
+DELETE lt FROM `luogo_tipo` lt
+  LEFT JOIN `luoghi` l ON l.`nome` = lt.`luogo`
+  WHERE l.`nome` IS NULL;
+
+DELETE vt FROM `volontario_tipo` vt
+  LEFT JOIN `volontari` vo ON vo.`id` = vt.`volontario_id`
+  WHERE vo.`id` IS NULL;
+
+DELETE vt FROM `visita_tipo` vt
+  LEFT JOIN `visite` vi ON vi.`id` = vt.`visita_id`
+  WHERE vi.`id` IS NULL;
+
+ALTER TABLE `luogo_tipo`
+  ADD CONSTRAINT `fk_luogo_tipo_luogo` FOREIGN KEY IF NOT EXISTS (`luogo`)
+    REFERENCES `luoghi` (`nome`) ON DELETE CASCADE ON UPDATE CASCADE;
+
+ALTER TABLE `volontario_tipo`
+  ADD CONSTRAINT `fk_volontario_tipo_volontario` FOREIGN KEY IF NOT EXISTS (`volontario_id`)
+    REFERENCES `volontari` (`id`) ON DELETE CASCADE;
+
+ALTER TABLE `visita_tipo`
+  ADD CONSTRAINT `fk_visita_tipo_visita` FOREIGN KEY IF NOT EXISTS (`visita_id`)
+    REFERENCES `visite` (`id`) ON DELETE CASCADE;
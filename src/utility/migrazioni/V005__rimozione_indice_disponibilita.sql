@@ -0,0 +1,10 @@
+-- Rimozione dell'indice `idx_disponibilita_volontario_data` creato da V002.
+--
+-- L'indice copre le stesse colonne della chiave primaria di `disponibilita`
+-- (`volontario_id`, `data_disponibile`): non serve a nessuna query e rallenta
+-- solo le scritture. V002 resta invariato perché già applicato.
+--
+-- Script idempotente per MariaDB 10.4+.
+
+ALTER TABLE `disponibilita`
+  DROP INDEX IF EXISTS `idx_disponibilita_volontario_data`;
@@ -16,8 +16,10 @@ import lib.InputDati;
 import src.model.AmbitoTerritoriale;
 import src.model.CredentialManager;
 import src.model.Luogo;
+import src.model.MascheraTipi;
 import src.model.Prenotazione;
 import src.model.TipiVisitaClass;
+import src.model.DateDisponibili;
 import src.model.Visita;
 import src.model.Volontario;
 import src.model.db.VisiteManagerDB;
@@ -46,7 +48,7 @@ import src.model.db.DisponibilitaManager;
 public class ConsoleIO implements View{
 
     /** Mappa delle disponibilità dei volontari indicizzata per email */
-    private ConcurrentHashMap<String, List<LocalDate>> disponibilitaVolontari = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<String, DateDisponibili> disponibilitaVolontari = new ConcurrentHashMap<>();
     
     /** Lista delle durate standard per le visite (in minuti) */
     private final List<Integer> durataList = List.of(30, 60, 90, 120);
@@ -240,10 +242,10 @@ public class ConsoleIO implements View{
         Volontario volontario = scegliVolontario(volontariConDisp, volontariManager);
         if (volontario == null) return null;
 
-        List<LocalDate> dateDisp = disponibilitaVolontari.get(volontario.getEmail());
-        if (dateDisp.isEmpty()) return null;
+        DateDisponibili dateDisp = disponibilitaVolontari.get(volontario.getEmail());
+        if (dateDisp == null || dateDisp.isEmpty()) return null;
 
-        LocalDate data = scegliDataDisponibile(dateDisp);
+        LocalDate data = scegliDataDisponibile(dateDisp.comeLista());
         if (data == null) return null;
 
         TipiVisitaClass tipoScelto = scegliTipoVisita(volontario.getTipiDiVisite());
@@ -264,8 +266,7 @@ public class ConsoleIO implements View{
                                         data, visiteManagerDB.getMaxPersone(), "Proposta", orario, 
                                         durata, visiteManagerDB.getMaxPersone(), 
                                         minPartecipanti, biglietto, barriereArchitettoniche);
-        dateDisp.remove(String.valueOf(data.getDayOfMonth()));
-        disponibilitaVolontari.put(volontario.getEmail(), dateDisp);
+        dateDisp.rimuovi(data);
         return nuovaVisita;
     }
 
@@ -290,13 +291,20 @@ public class ConsoleIO implements View{
             return null;
         }
 
-        Volontario volontario = scegliVolontario(new ArrayList<>(volontariMap.keySet()), volontariManager, tipiVisitaScelti);
-        if (volontario == null) return null;
-        String volontarioNomeScelto = volontario.getNome() + " " + volontario.getCognome();
-
         LocalDate dataVisita = scegliDataVisita();
         if (dataVisita == null) return null;
 
+        // si propongono i volontari liberi nella data, o tutti se nessuno ha indicato quella data
+        caricaDisponibilitaMap(volontariManager);
+        List<String> volontariLiberi = DateDisponibili.disponibiliIl(disponibilitaVolontari, dataVisita);
+        if (volontariLiberi.isEmpty()) {
+            mostraMessaggio("Nessun volontario ha indicato disponibilità per il " + dataVisita + ".");
+            volontariLiberi = new ArrayList<>(volontariMap.keySet());
+        }
+        Volontario volontario = scegliVolontario(volontariLiberi, volontariManager, tipiVisitaScelti);
+        if (volontario == null) return null;
+        String volontarioNomeScelto = volontario.getNome() + " " + volontario.getCognome();
+
         int minPartecipanti = InputDati.leggiIntero("Minimo partecipanti: ", 3, visiteManagerDB.getMaxPersone());
         boolean biglietto = InputDati.yesOrNo("Richiesta biglietto?");
         boolean barriereArchitettoniche = InputDati.yesOrNo("Presenza di barriere architettoniche?");
@@ -323,7 +331,9 @@ public class ConsoleIO implements View{
                     mostraMessaggio("Visita non valida per l'orario selezionato.");
                 }
             } while (!validatoreVisite.validaVisita(nuovaVisita));
-            visiteManagerDB.aggiungiNuovaVisita(nuovaVisita);
+            // l'inserimento va atteso: il chiamante riprova ad aggiungere la visita
+            // e deve trovarla già presente; l'eventuale errore è già stato stampato
+            visiteManagerDB.aggiungiNuovaVisita(nuovaVisita).handle((esito, errore) -> esito).join();
         } else {
             durataMinuti = scegliDurata();
             List<LocalTime> slotDisponibili = validatoreVisite.trovaSlotDisponibili(dataVisita, luogoNomeScelto, durataMinuti);
@@ -346,9 +356,9 @@ public class ConsoleIO implements View{
     private List<String> getVolontariConDisponibilita(VolontariManager volontariManager) {
         List<String> volontariConDisp = new ArrayList<>();
 
-        for (Map.Entry<String, List<LocalDate>> entry : disponibilitaVolontari.entrySet()) {
+        for (Map.Entry<String, DateDisponibili> entry : disponibilitaVolontari.entrySet()) {
             String email = entry.getKey();
-            List<LocalDate> dateDisponibili = entry.getValue();
+            DateDisponibili dateDisponibili = entry.getValue();
             if (dateDisponibili != null && !dateDisponibili.isEmpty()) {
                 volontariConDisp.add(email);
             }
@@ -364,6 +374,7 @@ public class ConsoleIO implements View{
         if (emails == null || emails.isEmpty()) return null;
 
         List<String> filtrati = new ArrayList<>();
+        MascheraTipi mascheraRichiesta = MascheraTipi.di(tipiRichiesti);
         for (String email : emails) {
             Volontario v = volontariManager.getVolontariMap().get(email);
             if (v == null) continue;
@@ -373,8 +384,7 @@ public class ConsoleIO implements View{
                 continue;
             }
 
-            List<TipiVisitaClass> tipiVolontario = v.getTipiDiVisite();
-            if (tipiVolontario != null && tipiVolontario.stream().anyMatch(t -> tipiRichiesti.contains(t))) {
+            if (v.getMascheraTipi().interseca(mascheraRichiesta)) {
                 filtrati.add(email);
             }
         }
@@ -426,7 +436,7 @@ public class ConsoleIO implements View{
     private String scegliLuogoCompatibile(TipiVisitaClass tipoScelto, LuoghiManager luoghiManager) {
         List<String> luoghiCompatibili = new ArrayList<>();
         for (Luogo luogo : luoghiManager.getLuoghiMap().values()) {
-            if (luogo.getTipiVisitaClass() != null && luogo.getTipiVisitaClass().stream().anyMatch(tv -> tv.equals(tipoScelto))) {
+            if (luogo.getMascheraTipi().contiene(tipoScelto)) {
                 luoghiCompatibili.add(luogo.getNome());
             }
         }
@@ -1,6 +1,5 @@
 package src.view;
 
-import java.io.File;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -8,7 +7,6 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import lib.InputDati;
-import lib.ServizioFile;
 import src.controller.VolontariController;
 import src.model.AmbitoTerritoriale;
 import src.model.Fruitore;
@@ -17,13 +15,13 @@ import src.model.Prenotazione;
 import src.model.TipiVisitaClass;
 import src.model.Visita;
 import src.model.Volontario;
-import src.model.db.ApplicationSettingsDAO;
+import src.model.db.ImpostazioniApplicazione;
+import src.model.db.IndicePrenotazioni;
 import src.model.db.PrenotazioneManager;
 import src.model.db.VisiteManagerDB;
 import src.model.db.VolontariManager;
 import src.controller.VisiteController;
 import src.controller.LuoghiController;
-import src.controller.ThreadPoolController;
 
 /**
  * Classe di utilità per la visualizzazione e stampa di dati nel sistema di gestione visite.
@@ -42,18 +40,9 @@ import src.controller.ThreadPoolController;
  */
 public class ViewUtilita {
 
-    /** File di configurazione per il numero massimo di persone iscrivibili */
-    private static final File NUMERO_PERSONE_FILE = new File("src/utility/max_persone_iscrivibili.config");
-    
-    /** Mappa delle visite attive nel sistema */
-    private ConcurrentHashMap<Integer, Visita> visiteMap = new VisiteManagerDB(ThreadPoolController.getInstance()).getVisiteMap();
-    
     /** Interfaccia console per l'output */
     private final ConsoleIO consoleIO = new ConsoleIO();
     
-    /** Lista dei tipi di visita disponibili nel sistema */
-    private List<TipiVisitaClass> tipiVisitaList = VisiteManagerDB.getTipiVisitaClassList();
-    
     /** Istanza singleton della classe */
     private static ViewUtilita instance;
 
@@ -120,6 +109,7 @@ public class ViewUtilita {
 
      
     public void stampaVisitePerStato() { 
+        Map<Integer, Visita> visiteMap = VisiteManagerDB.getVisiteSnapshot().getDati();
         if (visiteMap.isEmpty()) {
             System.out.println("Non ci sono visite disponibili.");
             return;
@@ -133,14 +123,9 @@ public class ViewUtilita {
 
         int sceltaStato = InputDati.leggiIntero("Seleziona lo stato da visualizzare: ", 1, stati.length) - 1;
         String statoScelto = stati[sceltaStato];
-        List<Visita> visiteInStato = new ArrayList<>();
+        List<Visita> visiteInStato = VisiteManagerDB.getVisitePerStato(statoScelto);
 
         System.out.printf("Visite in stato '%s':%n", statoScelto);
-        for (Visita visita : visiteMap.values()) {
-            if (visita.getStato().equalsIgnoreCase(statoScelto)) {
-                visiteInStato.add(visita);
-            }
-        }
         consoleIO.mostraElencoConOggetti(visiteInStato);
     }
 
@@ -154,12 +139,10 @@ public class ViewUtilita {
         }
 
         System.out.println("Archivio storico delle visite effettuate:");
-        for (Visita visita : visiteMap.values()) {
-            if ("Effettuata".equalsIgnoreCase(visita.getStato())) {
-                System.out.printf("Luogo: %s, Tipo Visita: %s, Volontario: %s, Data: %s%n",
-                        visita.getLuogo(), visita.getTipiVisitaClass(), visita.getVolontario(),
-                        visita.getData() != null ? visita.getData() : "Nessuna data");
-            }
+        for (Visita visita : VisiteManagerDB.getVisitePerStato("Effettuata")) {
+            System.out.printf("Luogo: %s, Tipo Visita: %s, Volontario: %s, Data: %s%n",
+                    visita.getLuogo(), visita.getTipiVisitaClass(), visita.getVolontario(),
+                    visita.getData() != null ? visita.getData() : "Nessuna data");
         }
     }
 
@@ -167,29 +150,27 @@ public class ViewUtilita {
      
     public void stampaVisiteVolontario(Volontario volontario) {
         System.out.println("Visite assegnate a " + volontario.getNome() + " " + volontario.getCognome() + ":");
+        Map<Integer, Visita> visiteMap = VisiteManagerDB.getVisiteSnapshot().getDati();
         if (visiteMap.isEmpty()) {
             System.out.println("Nessuna visita disponibile.");
             return;
         }
 
         boolean visiteTrovate = false;
-        ConcurrentHashMap<String, Prenotazione> prenotazioniMap = PrenotazioneManager.getPrenotazioniMap();
+        IndicePrenotazioni indicePrenotazioni = PrenotazioneManager.getIndicePrenotazioni();
     
-        for (Map.Entry<Integer, Visita> entry : visiteMap.entrySet()) {
-            Visita visita = entry.getValue();
-            if (visita.getVolontario().equals(volontario.getNome() + " " + volontario.getCognome()) &&
-                !visita.getStato().equalsIgnoreCase("CANCELLATA")) {
-                consoleIO.mostraMessaggio("ID: " + entry.getKey());
+        for (Visita visita : VisiteManagerDB.getVisitePerVolontario(volontario.getNome() + " " + volontario.getCognome())) {
+            if (!visita.getStato().equalsIgnoreCase("CANCELLATA")) {
+                consoleIO.mostraMessaggio("ID: " + visita.getId());
                 consoleIO.mostraMessaggio("Luogo: " + visita.getLuogo());
                 consoleIO.mostraMessaggio("Tipi Visita: " + visita.getTipiVisitaClassString());
                 consoleIO.mostraMessaggio("Data: " + (visita.getData() != null ? visita.getData() : "Nessuna data"));
                 consoleIO.mostraMessaggio("Stato: " + visita.getStato());
                 consoleIO.mostraMessaggio("Posti prenotati: " + (visita.getPostiPrenotati()));
                 consoleIO.mostraMessaggio("Codici di Prenotazione associati: \n");
-                for (String codice : prenotazioniMap.keySet()) {
-                    if (prenotazioniMap.get(codice).getIdVisita() == entry.getKey() &&
-                        !prenotazioniMap.get(codice).getStato().equals("CANCELLATA")) {
-                        consoleIO.mostraMessaggio("\t- " + codice + " Numero Persone: " + prenotazioniMap.get(codice).getNumeroPersone());
+                for (Prenotazione prenotazione : indicePrenotazioni.perVisita(visita.getId())) {
+                    if (!prenotazione.getStato().equals("CANCELLATA")) {
+                        consoleIO.mostraMessaggio("\t- " + prenotazione.getCodicePrenotazione() + " Numero Persone: " + prenotazione.getNumeroPersone());
                     }
                 }
                 consoleIO.mostraMessaggio("==========================");
@@ -258,7 +239,7 @@ public class ViewUtilita {
         System.out.println("Visite disponibili (stato: Proposta/Confermata, posti ancora disponibili):");
         boolean visiteTrovate = false;
 
-        for (Visita visita : visiteMap.values()) {
+        for (Visita visita : VisiteManagerDB.getVisiteSnapshot().valori()) {
             String stato = visita.getStato();
             int postiDisponibili = visita.getPostiDisponibili();
 
@@ -289,6 +270,7 @@ public class ViewUtilita {
     public void visualizzaPrenotazioni(Fruitore fruitoreCorrente, PrenotazioneManager prenotazioniManager) {
         consoleIO.mostraMessaggio("Le tue prenotazioni:");
         List<Prenotazione> visitePrenotate = prenotazioniManager.miePrenotazioni(fruitoreCorrente);
+        Map<Integer, Visita> visiteMap = VisiteManagerDB.getVisiteSnapshot().getDati();
         for (Prenotazione prenotazione : visitePrenotate) {
             Visita visita = visiteMap.get(prenotazione.getIdVisita());
             consoleIO.mostraMessaggio("Codice Prenotazione: " + prenotazione.getCodicePrenotazione());
@@ -302,6 +284,7 @@ public class ViewUtilita {
 
          
     public void visualizzaVolontariPerTipoVisita(VolontariManager volontariManager){
+        List<TipiVisitaClass> tipiVisitaList = VisiteManagerDB.getTipiVisitaClassList();
 
         if (tipiVisitaList.isEmpty()) {
             consoleIO.mostraMessaggio("Nessun tipo di visita disponibile.");
@@ -330,38 +313,7 @@ public class ViewUtilita {
     }
 
     public void stampaMaxPersoneIscrivibiliNow() {
-    Integer maxDb = null;
-        try {
-            maxDb = ApplicationSettingsDAO.getMaxPeoplePerVisit();
-        } catch (Throwable t) {
-             
-        }
-
-        int value;
-        if (maxDb != null) {
-            value = maxDb.intValue();
-        } else {
-             
-            Object props = ServizioFile.caricaProperties(NUMERO_PERSONE_FILE);
-             
-            int fallback = 10;
-            try {
-                if (props instanceof java.util.Properties) {
-                    java.util.Properties p = (java.util.Properties) props;
-                    if (!p.isEmpty()) {
-                        String first = p.values().iterator().next().toString();
-                        fallback = Integer.parseInt(first.trim());
-                    }
-                } else if (props != null) {
-                    String s = props.toString().trim();
-                    fallback = Integer.parseInt(s);
-                }
-            } catch (Exception e) {
-                 
-            }
-            value = fallback;
-        }
-
+        int value = ImpostazioniApplicazione.getInstance().get().getMaxPersonePerVisitaOPredefinito();
         consoleIO.mostraMessaggio("Il numero massimo di persone iscrivibili da un fruitore è attualmente: " + value);
     }
 